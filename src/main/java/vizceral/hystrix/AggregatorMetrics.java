@@ -0,0 +1,75 @@
+package vizceral.hystrix;
+
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Counters and gauges describing what an aggregator is doing.
+ */
+public class AggregatorMetrics
+{
+    private final ConcurrentMap<String, AtomicLong> counters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+
+    /**
+     * Increments a counter by one.
+     *
+     * @param name The name of the counter.
+     */
+    public void increment(String name)
+    {
+        counters.computeIfAbsent(name, n -> new AtomicLong()).incrementAndGet();
+    }
+
+    /**
+     * Registers a gauge that is read every time the metrics are fetched.
+     *
+     * @param name  The name of the gauge.
+     * @param gauge The supplier of the value.
+     */
+    public void gauge(String name, LongSupplier gauge)
+    {
+        gauges.put(name, gauge);
+    }
+
+    /**
+     * Gets the current value of a counter.
+     *
+     * @param name The name of the counter.
+     *
+     * @return The value, 0 if never incremented.
+     */
+    public long getCounter(String name)
+    {
+        AtomicLong counter = counters.get(name);
+        return counter == null ? 0 : counter.get();
+    }
+
+    /**
+     * Gets all counters and gauges as json, sorted by name.
+     *
+     * @return Json object with one field per metric.
+     */
+    public ObjectNode toJson()
+    {
+        Map<String, Long> values = new TreeMap<>();
+        for (Map.Entry<String, AtomicLong> counter : counters.entrySet())
+        {
+            values.put(counter.getKey(), counter.getValue().get());
+        }
+        for (Map.Entry<String, LongSupplier> gauge : gauges.entrySet())
+        {
+            values.put(gauge.getKey(), gauge.getValue().getAsLong());
+        }
+        ObjectNode node = JsonNodeFactory.instance.objectNode();
+        values.forEach(node::put);
+        return node;
+    }
+}
@@ -0,0 +1,434 @@
+package vizceral.hystrix;
+
+import io.netty.handler.ssl.util.InsecureTrustManagerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import rx.Observable;
+import rx.Subscriber;
+import rx.subscriptions.Subscriptions;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocket;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Locale;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Reads a hystrix event stream (typically from turbine) with a blocking client, using one thread per stream.
+ * Virtual threads are used when the runtime supports them, which makes a thread per stream cheap even with thousands
+ * of clusters. On older runtimes it falls back to daemon platform threads.
+ */
+public class BlockingHystrixReader implements HystrixReader
+{
+    private static final Logger logger = LoggerFactory.getLogger(BlockingHystrixReader.class);
+    private static final ThreadFactory threadFactory = createThreadFactory();
+    private static final int CONNECT_TIMEOUT_MILLIS = 10000;
+    private static final long RETRY_DELAY_MILLIS = TimeUnit.SECONDS.toMillis(10);
+    private final Configuration configuration;
+    private final String cluster;
+    private final HystrixEventParser parser;
+
+    /**
+     * Creates a new blocking hystrix reader.
+     *
+     * @param configuration The configuration to use.
+     * @param cluster       The cluster to read from.
+     */
+    public BlockingHystrixReader(Configuration configuration, String cluster)
+    {
+        this.configuration = configuration;
+        this.cluster = cluster;
+        this.parser = new HystrixEventParser(configuration);
+    }
+
+    /**
+     * Gets if streams are read on virtual threads.
+     *
+     * @return true if virtual threads are used, otherwise false.
+     */
+    public static boolean usesVirtualThreads()
+    {
+        return !(threadFactory instanceof PlatformThreadFactory);
+    }
+
+    @Override
+    public Observable<HystrixEvent> read()
+    {
+        return Observable.create(subscriber ->
+        {
+            AtomicReference<Closeable> connection = new AtomicReference<>();
+            Thread thread = threadFactory.newThread(() -> run(subscriber, connection));
+            subscriber.add(Subscriptions.create(() ->
+            {
+                closeQuietly(connection.getAndSet(null));
+                thread.interrupt();
+            }));
+            thread.start();
+        });
+    }
+
+    private void run(Subscriber<? super HystrixEvent> subscriber, AtomicReference<Closeable> connection)
+    {
+        String path = configuration.getTurbinePath(cluster);
+        while (!subscriber.isUnsubscribed())
+        {
+            try
+            {
+                logger.info("Starting to read from path {}", path);
+                stream(path, subscriber, connection);
+                if (subscriber.isUnsubscribed())
+                {
+                    return;
+                }
+                logger.info("Cluster {} got on completed", cluster);
+            }
+            catch (UnknownClusterException | IllegalStateException ex)
+            {
+                logger.warn("{} returned", ex.getClass().getSimpleName());
+                subscriber.onError(ex);
+                return;
+            }
+            catch (IOException | RuntimeException ex)
+            {
+                if (subscriber.isUnsubscribed())
+                {
+                    return;
+                }
+                logger.error("Exception from hystrix event for cluster " + cluster + " for region " + configuration.getRegionName() + ". Will retry in 10s", ex);
+                try
+                {
+                    Thread.sleep(RETRY_DELAY_MILLIS);
+                }
+                catch (InterruptedException e)
+                {
+                    return;
+                }
+            }
+            finally
+            {
+                closeQuietly(connection.getAndSet(null));
+            }
+        }
+    }
+
+    private void stream(String path, Subscriber<? super HystrixEvent> subscriber, AtomicReference<Closeable> connection) throws IOException
+    {
+        InputStream in;
+        OutputStream out;
+        if (configuration.isSecure())
+        {
+            // connect plain first to keep the connect timeout, then layer TLS on it with the host name so the
+            // handshake sends SNI. Like the netty client, any certificate is trusted
+            Socket plain = new Socket();
+            connection.set(plain);
+            plain.connect(new InetSocketAddress(configuration.getTurbineHost(), configuration.getTurbinePort()), CONNECT_TIMEOUT_MILLIS);
+            SSLSocket socket = (SSLSocket) createSslContext().getSocketFactory().createSocket(plain, configuration.getTurbineHost(), configuration.getTurbinePort(), true);
+            connection.set(socket);
+            in = socket.getInputStream();
+            out = socket.getOutputStream();
+        }
+        else
+        {
+            SocketChannel channel = SocketChannel.open();
+            connection.set(channel);
+            channel.socket().connect(new InetSocketAddress(configuration.getTurbineHost(), configuration.getTurbinePort()), CONNECT_TIMEOUT_MILLIS);
+            in = Channels.newInputStream(channel);
+            out = Channels.newOutputStream(channel);
+        }
+        if (subscriber.isUnsubscribed())
+        {
+            return;
+        }
+        out.write(createRequest(path).getBytes(StandardCharsets.ISO_8859_1));
+        out.flush();
+
+        InputStream response = new BufferedInputStream(in, 16384);
+        int status = readStatus(response);
+        logger.info("Http code {} for path {} in region {}", status, path, configuration.getRegionName());
+        if (status == 404)
+        {
+            throw new UnknownClusterException("Turbine does not recognize cluster " + cluster);
+        }
+        else if (status != 200)
+        {
+            throw new IllegalStateException("Got " + status + " from turbine");
+        }
+        boolean chunked = false;
+        String header;
+        while (!(header = readLine(response)).isEmpty())
+        {
+            String lower = header.toLowerCase(Locale.ROOT);
+            if (lower.startsWith("transfer-encoding:") && lower.contains("chunked"))
+            {
+                chunked = true;
+            }
+        }
+        readEvents(chunked ? new ChunkedInputStream(response) : response, subscriber);
+    }
+
+    private void readEvents(InputStream body, Subscriber<? super HystrixEvent> subscriber) throws IOException
+    {
+        StringBuilder data = new StringBuilder();
+        String line;
+        while ((line = readUtf8Line(body)) != null && !subscriber.isUnsubscribed())
+        {
+            if (line.isEmpty())
+            {
+                if (data.length() > 0)
+                {
+                    HystrixEvent event = parser.parse(data.toString());
+                    if (event != null)
+                    {
+                        subscriber.onNext(event);
+                    }
+                    data.setLength(0);
+                }
+            }
+            else if (line.startsWith("data:"))
+            {
+                if (data.length() > 0)
+                {
+                    data.append('\n');
+                }
+                data.append(line, line.startsWith("data: ") ? 6 : 5, line.length());
+            }
+        }
+    }
+
+    private String createRequest(String path)
+    {
+        StringBuilder request = new StringBuilder()
+                .append("GET ").append(path).append(" HTTP/1.1\r\n")
+                .append("Host: ").append(configuration.getTurbineHost()).append(':').append(configuration.getTurbinePort()).append("\r\n")
+                .append("Accept: text/event-stream\r\n");
+        if (configuration.authEnabled())
+        {
+            String credentials = configuration.getUsername() + ":" + configuration.getPassword();
+            request.append("Authorization: Basic ").append(Base64.getEncoder().encodeToString(credentials.getBytes(StandardCharsets.UTF_8))).append("\r\n");
+        }
+        return request.append("\r\n").toString();
+    }
+
+    private static int readStatus(InputStream in) throws IOException
+    {
+        String statusLine = readLine(in);
+        String[] parts = statusLine.split(" ");
+        if (parts.length < 2 || !parts[0].startsWith("HTTP/"))
+        {
+            throw new IOException("Invalid status line " + statusLine);
+        }
+        try
+        {
+            return Integer.parseInt(parts[1]);
+        }
+        catch (NumberFormatException e)
+        {
+            throw new IOException("Invalid status line " + statusLine);
+        }
+    }
+
+    private static String readLine(InputStream in) throws IOException
+    {
+        String line = readUtf8Line(in);
+        if (line == null)
+        {
+            throw new EOFException("Connection closed while reading response headers");
+        }
+        return line;
+    }
+
+    /**
+     * Reads a line terminated by \n or \r\n.
+     *
+     * @return The line without the terminator, or null at end of stream.
+     */
+    private static String readUtf8Line(InputStream in) throws IOException
+    {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+        int b;
+        while ((b = in.read()) != -1)
+        {
+            if (b == '\n')
+            {
+                return trimCarriageReturn(line);
+            }
+            line.write(b);
+        }
+        return line.size() == 0 ? null : trimCarriageReturn(line);
+    }
+
+    private static String trimCarriageReturn(ByteArrayOutputStream line) throws IOException
+    {
+        String value = line.toString(StandardCharsets.UTF_8.name());
+        return value.endsWith("\r") ? value.substring(0, value.length() - 1) : value;
+    }
+
+    private static SSLContext createSslContext() throws IOException
+    {
+        try
+        {
+            SSLContext context = SSLContext.getInstance("TLS");
+            context.init(null, InsecureTrustManagerFactory.INSTANCE.getTrustManagers(), null);
+            return context;
+        }
+        catch (Exception e)
+        {
+            throw new IOException("Failed to create default SSL context", e);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable)
+    {
+        if (closeable == null)
+        {
+            return;
+        }
+        try
+        {
+            closeable.close();
+        }
+        catch (IOException e)
+        {
+            logger.debug("Could not close connection", e);
+        }
+    }
+
+    /**
+     * Creates a factory for virtual threads through reflection, since the source level does not include them.
+     */
+    private static ThreadFactory createThreadFactory()
+    {
+        try
+        {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, "hystrix-reader-", 0L);
+            Method factory = builderClass.getMethod("factory");
+            logger.info("Reading hystrix streams on virtual threads");
+            return (ThreadFactory) factory.invoke(builder);
+        }
+        catch (ReflectiveOperationException | RuntimeException e)
+        {
+            logger.info("Virtual threads are not available, reading hystrix streams on platform threads");
+            return new PlatformThreadFactory();
+        }
+    }
+
+    private static class PlatformThreadFactory implements ThreadFactory
+    {
+        private final AtomicLong counter = new AtomicLong();
+
+        @Override
+        public Thread newThread(Runnable runnable)
+        {
+            Thread thread = new Thread(runnable, "hystrix-reader-" + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    /**
+     * Decodes a body sent with chunked transfer encoding.
+     */
+    private static class ChunkedInputStream extends InputStream
+    {
+        private final InputStream in;
+        private int remaining;
+        private boolean done;
+
+        private ChunkedInputStream(InputStream in)
+        {
+            this.in = in;
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            if (!nextChunk())
+            {
+                return -1;
+            }
+            int b = in.read();
+            if (b == -1)
+            {
+                throw new EOFException("Connection closed in the middle of a chunk");
+            }
+            remaining--;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException
+        {
+            if (length == 0)
+            {
+                return 0;
+            }
+            if (!nextChunk())
+            {
+                return -1;
+            }
+            int read = in.read(buffer, offset, Math.min(length, remaining));
+            if (read == -1)
+            {
+                throw new EOFException("Connection closed in the middle of a chunk");
+            }
+            remaining -= read;
+            return read;
+        }
+
+        private boolean nextChunk() throws IOException
+        {
+            if (done)
+            {
+                return false;
+            }
+            if (remaining > 0)
+            {
+                return true;
+            }
+            String sizeLine = readUtf8Line(in);
+            if (sizeLine != null && sizeLine.isEmpty())
+            {
+                //CRLF terminating the previous chunk
+                sizeLine = readUtf8Line(in);
+            }
+            if (sizeLine == null)
+            {
+                done = true;
+                return false;
+            }
+            int extension = sizeLine.indexOf(';');
+            try
+            {
+                remaining = Integer.parseInt((extension == -1 ? sizeLine : sizeLine.substring(0, extension)).trim(), 16);
+            }
+            catch (NumberFormatException e)
+            {
+                throw new IOException("Invalid chunk size " + sizeLine);
+            }
+            if (remaining == 0)
+            {
+                done = true;
+                return false;
+            }
+            return true;
+        }
+    }
+}
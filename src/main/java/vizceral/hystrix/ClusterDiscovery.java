@@ -0,0 +1,197 @@
+package vizceral.hystrix;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import rx.Observable;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Queue of clusters to start tailing, worked off by one dedicated thread.
+ * <p>
+ * Clusters can be offered from any thread, e.g. the netty threads delivering events. Offering is non-blocking and a
+ * cluster that is already known is ignored, so the same cluster is never opened twice. The discovery thread opens the
+ * streams in the order they were discovered, with at most a configured number of streams connecting at the same time.
+ * A stream counts as connecting until it delivers its first event, fails or times out.
+ */
+public class ClusterDiscovery
+{
+    private static final Logger logger = LoggerFactory.getLogger(ClusterDiscovery.class);
+    private static final int OPEN_TIMEOUT_SECONDS = 30;
+    private final Set<String> known = ConcurrentHashMap.newKeySet();
+    private final Queue<String> waiting = new ArrayDeque<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger opening = new AtomicInteger();
+    private final ExecutorService executor;
+    private final int maxConcurrentOpens;
+    private final Function<String, Observable<String>> opener;
+
+    /**
+     * Creates a new discovery queue.
+     *
+     * @param name               Name of the discovery thread.
+     * @param maxConcurrentOpens Max number of streams connecting at the same time.
+     * @param opener             Starts tailing a cluster. The returned observable must terminate once the stream has
+     *                           delivered its first event or failed.
+     */
+    public ClusterDiscovery(String name, int maxConcurrentOpens, Function<String, Observable<String>> opener)
+    {
+        this.maxConcurrentOpens = maxConcurrentOpens;
+        this.opener = opener;
+        this.executor = Executors.newSingleThreadExecutor(runnable ->
+        {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Offers a cluster to be tailed. Never blocks.
+     *
+     * @param cluster The name of the cluster.
+     *
+     * @return true if the cluster was not known before and has been queued, otherwise false.
+     */
+    public boolean discover(String cluster)
+    {
+        if (!known.add(cluster))
+        {
+            return false;
+        }
+        queued.incrementAndGet();
+        executor.execute(() ->
+        {
+            waiting.add(cluster);
+            openWaiting();
+        });
+        return true;
+    }
+
+    /**
+     * Forgets a cluster that is no longer tailed, so it can be discovered again.
+     *
+     * @param cluster The name of the cluster.
+     */
+    public void forget(String cluster)
+    {
+        executor.execute(() ->
+        {
+            if (waiting.remove(cluster))
+            {
+                queued.decrementAndGet();
+            }
+            known.remove(cluster);
+        });
+    }
+
+    /**
+     * Opens a known cluster again, e.g. after the turbine settings changed. The cluster waits for its turn like a
+     * newly discovered one. Never blocks.
+     *
+     * @param cluster The name of the cluster.
+     */
+    public void reopen(String cluster)
+    {
+        executor.execute(() ->
+        {
+            if (known.contains(cluster) && !waiting.contains(cluster))
+            {
+                queued.incrementAndGet();
+                waiting.add(cluster);
+                openWaiting();
+            }
+        });
+    }
+
+    /**
+     * Checks if a cluster is known, i.e. tailed or waiting to be tailed.
+     *
+     * @param cluster The name of the cluster.
+     *
+     * @return true if known, otherwise false.
+     */
+    public boolean isKnown(String cluster)
+    {
+        return known.contains(cluster);
+    }
+
+    /**
+     * Gets the number of known clusters, i.e. tailed or waiting to be tailed.
+     *
+     * @return Number of known clusters.
+     */
+    public int getKnownCount()
+    {
+        return known.size();
+    }
+
+    /**
+     * Gets the number of clusters waiting to be opened.
+     *
+     * @return Number of waiting clusters.
+     */
+    public int getQueued()
+    {
+        return queued.get();
+    }
+
+    /**
+     * Gets the number of streams currently connecting.
+     *
+     * @return Number of connecting streams.
+     */
+    public int getOpening()
+    {
+        return opening.get();
+    }
+
+    /**
+     * Stops the discovery thread.
+     */
+    public void stop()
+    {
+        executor.shutdownNow();
+    }
+
+    private void openWaiting()
+    {
+        while (opening.get() < maxConcurrentOpens && !waiting.isEmpty())
+        {
+            String cluster = waiting.poll();
+            queued.decrementAndGet();
+            opening.incrementAndGet();
+            Observable<String> opened;
+            try
+            {
+                opened = opener.apply(cluster);
+            }
+            catch (RuntimeException ex)
+            {
+                logger.error("Could not start tailing cluster " + cluster, ex);
+                opening.decrementAndGet();
+                known.remove(cluster);
+                continue;
+            }
+            opened.timeout(OPEN_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                    .onErrorResumeNext(Observable.empty())
+                    .subscribe(ignore ->
+                    {
+                    }, ex ->
+                    {
+                    }, () -> executor.execute(() ->
+                    {
+                        opening.decrementAndGet();
+                        openWaiting();
+                    }));
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package vizceral.hystrix;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Renders the focused graph of one cluster, with one node per hystrix command and a connection from each command to
+ * the group it calls. The graphs are rendered on first request and cached per cluster until the cluster publishes new
+ * events, so dashboards looking at one service do not pay for the whole region.
+ */
+public class ClusterFocus
+{
+    private final ConcurrentMap<String, Rendered> cache = new ConcurrentHashMap<>();
+
+    /**
+     * Gets the focused graph of a cluster.
+     *
+     * @param cluster The cluster.
+     *
+     * @return JsonNode that can be fed to vizceral.
+     */
+    public JsonNode get(HystrixCluster cluster)
+    {
+        //Read the version before the events, at worst a newer graph is cached under an older version and rendered again
+        long version = cluster.getVersion();
+        Rendered rendered = cache.get(cluster.getName());
+        if (rendered == null || rendered.version != version || rendered.cluster != cluster)
+        {
+            rendered = new Rendered(cluster, version, render(cluster));
+            cache.put(cluster.getName(), rendered);
+        }
+        return rendered.json;
+    }
+
+    /**
+     * Drops the cached graph of a cluster.
+     *
+     * @param clusterName The name of the cluster.
+     */
+    public void invalidate(String clusterName)
+    {
+        cache.remove(clusterName);
+    }
+
+    private static JsonNode render(HystrixCluster cluster)
+    {
+        List<HystrixEvent> events = new ArrayList<>(cluster.getEvents());
+        events.sort((a, b) -> a.getName().compareTo(b.getName()));
+        ObjectNode objectNode = JsonNodeFactory.instance.objectNode()
+                .put("renderer", "focused")
+                .put("name", cluster.getName())
+                .put("updated", cluster.getUpdated())
+                .put("maxVolume", cluster.getMaxValue());
+        ArrayNode nodes = objectNode.putArray("nodes");
+        ArrayNode connections = objectNode.putArray("connections");
+        Set<String> targets = new LinkedHashSet<>();
+        for (HystrixEvent event : events)
+        {
+            String status = "normal";
+            ObjectNode commandNode = nodes.addObject()
+                    .put("name", event.getName());
+            ArrayNode notices = commandNode.putArray("notices");
+            if (event.isCircuitBreakerOpen())
+            {
+                status = "danger";
+                notices.add(VizceralNotice.newBuilder().severity(NoticeSeverity.ERROR).title("Circuit breaker triggered").build().toJson());
+            }
+            else if (event.getRejectedCount() > 0)
+            {
+                status = "warning";
+                notices.add(VizceralNotice.newBuilder().severity(NoticeSeverity.WARNING).title(event.getRejectedCount() + " rejected/s").build().toJson());
+            }
+            commandNode.put("class", status);
+            commandNode.putObject("metadata")
+                    .put("streaming", 1)
+                    .put("group", event.getGroup());
+            commandNode.putArray("nodes");
+            if (event.getGroup() == null)
+            {
+                continue;
+            }
+            targets.add(event.getGroup());
+            ObjectNode connectionNode = connections.addObject()
+                    .put("source", event.getName())
+                    .put("target", event.getGroup());
+            ObjectNode metadata = connectionNode.putObject("metadata").put("streaming", 1);
+            if (event.getLatency() != null)
+            {
+                event.getLatency().writeMetadata(metadata);
+            }
+            connectionNode.putObject("metrics")
+                    .put("danger", event.getErrorCount())
+                    .put("warning", event.getTimeoutCount())
+                    .put("normal", event.getRequestCount());
+            connectionNode.putArray("notices");
+        }
+        for (String target : targets)
+        {
+            ObjectNode targetNode = nodes.addObject()
+                    .put("name", target)
+                    .put("class", "normal");
+            targetNode.putObject("metadata").put("streaming", 1);
+            targetNode.putArray("notices");
+            targetNode.putArray("nodes");
+        }
+        return objectNode;
+    }
+
+    private static final class Rendered
+    {
+        private final HystrixCluster cluster;
+        private final long version;
+        private final JsonNode json;
+
+        private Rendered(HystrixCluster cluster, long version, JsonNode json)
+        {
+            this.cluster = cluster;
+            this.version = version;
+            this.json = json;
+        }
+    }
+}
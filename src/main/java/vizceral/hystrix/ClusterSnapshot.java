@@ -0,0 +1,167 @@
+package vizceral.hystrix;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The state of one cluster at one point (or period) in time, as needed to render it in Vizceral.
+ */
+public class ClusterSnapshot
+{
+    private final String name;
+    private final Collection<VizceralConnection> connections;
+    private final List<VizceralNotice> notices;
+    private final int maxValue;
+    private final int outgoingRequests;
+    private final boolean rejected;
+    private final long updated;
+
+    private ClusterSnapshot(Builder builder)
+    {
+        name = builder.name;
+        connections = builder.connections == null ? Collections.emptyList() : builder.connections;
+        notices = builder.notices == null ? Collections.emptyList() : builder.notices;
+        maxValue = builder.maxValue;
+        outgoingRequests = builder.outgoingRequests;
+        rejected = builder.rejected;
+        updated = builder.updated;
+    }
+
+    public static Builder newBuilder()
+    {
+        return new Builder();
+    }
+
+    /**
+     * Gets the name of the cluster.
+     *
+     * @return The name.
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * Gets all connections going out from this cluster.
+     *
+     * @return Collection of connections.
+     */
+    public Collection<VizceralConnection> getConnections()
+    {
+        return connections;
+    }
+
+    /**
+     * Gets the notices for the cluster itself, e.g. from monitoring systems.
+     *
+     * @return List of notices.
+     */
+    public List<VizceralNotice> getNotices()
+    {
+        return notices;
+    }
+
+    /**
+     * Gets the maximum number of requests per second seen.
+     *
+     * @return Maximum number of requests.
+     */
+    public int getMaxValue()
+    {
+        return maxValue;
+    }
+
+    /**
+     * Gets the sum of all requests going out from this cluster.
+     *
+     * @return Sum of outgoing requests.
+     */
+    public int getOutgoingRequests()
+    {
+        return outgoingRequests;
+    }
+
+    /**
+     * Gets if this cluster has any thread pool/semaphore rejected requests going outwards.
+     *
+     * @return true if any requests are rejected, false otherwise.
+     */
+    public boolean isRejected()
+    {
+        return rejected;
+    }
+
+    /**
+     * Gets when the state was last updated.
+     *
+     * @return Epoch millis.
+     */
+    public long getUpdated()
+    {
+        return updated;
+    }
+
+    public static final class Builder
+    {
+        private String name;
+        private Collection<VizceralConnection> connections;
+        private List<VizceralNotice> notices;
+        private int maxValue;
+        private int outgoingRequests;
+        private boolean rejected;
+        private long updated;
+
+        private Builder()
+        {
+        }
+
+        public Builder name(String name)
+        {
+            this.name = name;
+            return this;
+        }
+
+        public Builder connections(Collection<VizceralConnection> connections)
+        {
+            this.connections = connections;
+            return this;
+        }
+
+        public Builder notices(List<VizceralNotice> notices)
+        {
+            this.notices = notices;
+            return this;
+        }
+
+        public Builder maxValue(int maxValue)
+        {
+            this.maxValue = maxValue;
+            return this;
+        }
+
+        public Builder outgoingRequests(int outgoingRequests)
+        {
+            this.outgoingRequests = outgoingRequests;
+            return this;
+        }
+
+        public Builder rejected(boolean rejected)
+        {
+            this.rejected = rejected;
+            return this;
+        }
+
+        public Builder updated(long updated)
+        {
+            this.updated = updated;
+            return this;
+        }
+
+        public ClusterSnapshot build()
+        {
+            return new ClusterSnapshot(this);
+        }
+    }
+}
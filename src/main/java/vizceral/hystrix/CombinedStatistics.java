@@ -0,0 +1,102 @@
+package vizceral.hystrix;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Several statistics kept on the same connections, with their notices concatenated.
+ */
+class CombinedStatistics implements ConnectionStatistics
+{
+    private final List<ConnectionStatistics> statistics;
+
+    private CombinedStatistics(List<ConnectionStatistics> statistics)
+    {
+        this.statistics = statistics;
+    }
+
+    /**
+     * Combines statistics.
+     *
+     * @param statistics The statistics, null entries are skipped.
+     *
+     * @return The combined statistics, or null if there are none.
+     */
+    static ConnectionStatistics of(ConnectionStatistics... statistics)
+    {
+        List<ConnectionStatistics> present = new ArrayList<>();
+        for (ConnectionStatistics statistic : statistics)
+        {
+            if (statistic != null)
+            {
+                present.add(statistic);
+            }
+        }
+        if (present.isEmpty())
+        {
+            return null;
+        }
+        return present.size() == 1 ? present.get(0) : new CombinedStatistics(present);
+    }
+
+    @Override
+    public void record(String source, ConnectionRollup rollup, long now)
+    {
+        for (ConnectionStatistics statistic : statistics)
+        {
+            statistic.record(source, rollup, now);
+        }
+    }
+
+    @Override
+    public List<VizceralNotice> getNotices(String source, ConnectionRollup rollup, long now)
+    {
+        List<VizceralNotice> notices = Collections.emptyList();
+        for (ConnectionStatistics statistic : statistics)
+        {
+            List<VizceralNotice> found = statistic.getNotices(source, rollup, now);
+            if (!found.isEmpty())
+            {
+                if (notices.isEmpty())
+                {
+                    notices = new ArrayList<>();
+                }
+                notices.addAll(found);
+            }
+        }
+        return notices;
+    }
+
+    @Override
+    public void forget(String source)
+    {
+        for (ConnectionStatistics statistic : statistics)
+        {
+            statistic.forget(source);
+        }
+    }
+
+    @Override
+    public void forget(String source, ConnectionRollup rollup)
+    {
+        for (ConnectionStatistics statistic : statistics)
+        {
+            statistic.forget(source, rollup);
+        }
+    }
+
+    /**
+     * Gets the number of connections of the statistics keeping the most connections.
+     */
+    @Override
+    public int size()
+    {
+        int size = 0;
+        for (ConnectionStatistics statistic : statistics)
+        {
+            size = Math.max(size, statistic.size());
+        }
+        return size;
+    }
+}
@@ -3,18 +3,29 @@ package vizceral.hystrix;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import vizceral.hystrix.admission.AdmissionConfiguration;
+import vizceral.hystrix.anomaly.AnomalyConfiguration;
+import vizceral.hystrix.checkpoint.CheckpointConfiguration;
+import vizceral.hystrix.federation.FederationConfiguration;
+import vizceral.hystrix.history.HistoryConfiguration;
 import vizceral.hystrix.monitoring.MonitoringSystem;
 import vizceral.hystrix.monitoring.zmon.ZmonConfiguration;
 import vizceral.hystrix.monitoring.zmon.ZmonMonitoringSystem;
+import vizceral.hystrix.sharding.ShardingConfiguration;
+import vizceral.hystrix.slo.SloConfiguration;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 
 /**
@@ -22,23 +33,46 @@ import java.util.Set;
  */
 public class Configuration
 {
+    private static final Set<String> RELOADABLE = new HashSet<>(Arrays.asList("timeoutPercentageThreshold", "failurePercentageThreshold", "latencyThresholdMillis",
+            "entryClusters", "internetClusters", "hystrixGroupToCluster", "groupToRegion", "commandTtlSeconds", "clusterTtlSeconds", "turbine", "zmon"));
     private final ObjectMapper objectMapper = new ObjectMapper();
     private final String fileName;
-    private String turbineHost;
-    private int turbinePort;
-    private String turbinePath;
-    private Set<String> entryClusters = new HashSet<>();
-    private Set<String> internetClusters = new HashSet<>();
-    private final Map<String, String> hystrixGroupsToCluster = new HashMap<>();
+    private JsonNode source;
+    //Volatile fields can be changed by update while running
+    private volatile String turbineHost;
+    private volatile int turbinePort;
+    private volatile String turbinePath;
+    private volatile Set<String> entryClusters = new HashSet<>();
+    private volatile Set<String> internetClusters = new HashSet<>();
+    private volatile GroupMatcher hystrixGroupsToCluster = GroupMatcher.newBuilder().build();
+    private volatile Map<String, String> groupsToRegion = new HashMap<>();
+    private volatile List<String[]> groupPrefixesToRegion = new ArrayList<>();
     private int httpPort = 8081;
+    private int maxStalenessMillis = 1000;
     private String regionName;
-    private boolean secure;
-    private String username;
-    private String password;
-    private Double timeoutPercentageThreshold;
-    private Double failurePercentageThreshold;
+    private volatile boolean secure;
+    private volatile TurbineClient turbineClient = TurbineClient.RX;
+    private volatile String username;
+    private volatile String password;
+    private volatile Double timeoutPercentageThreshold;
+    private volatile Double failurePercentageThreshold;
+    private volatile Integer latencyThresholdMillis;
     private int maxTrafficTtlSeconds = 604800;//one week
-    private final List<MonitoringSystem> monitoringSystems = new ArrayList<>();
+    private int maxConcurrentStreamOpens = 16;
+    private volatile int commandTtlSeconds = 600;
+    private int ingestionThreads = Runtime.getRuntime().availableProcessors();
+    private int eventLoopThreads = Runtime.getRuntime().availableProcessors();
+    private volatile int clusterTtlSeconds = 3600;
+    private int topConnectionsCapacity = 1024;
+    private int viewerIdleSeconds;
+    private volatile List<MonitoringSystem> monitoringSystems = new ArrayList<>();
+    private HistoryConfiguration historyConfiguration;
+    private CheckpointConfiguration checkpointConfiguration;
+    private ShardingConfiguration shardingConfiguration;
+    private FederationConfiguration federationConfiguration;
+    private AdmissionConfiguration admissionConfiguration;
+    private AnomalyConfiguration anomalyConfiguration;
+    private SloConfiguration sloConfiguration;
 
     private Configuration(String fileName)
     {
@@ -112,7 +146,8 @@ public class Configuration
 
     /**
      * Gets the group (cluster to be used) based on the group from a hystrix event.
-     * This is mapped using the hystrixGroupToCluster in order to allow groups to not be exact match of the cluster name
+     * This is mapped using the hystrixGroupToCluster in order to allow groups to not be exact match of the cluster name.
+     * Exact groups win over prefixes, prefixes over suffixes and suffixes over patterns, see {@link GroupMatcher}.
      *
      * @param name The name of the group to check.
      *
@@ -120,16 +155,32 @@ public class Configuration
      */
     public String getEffectiveGroup(String name)
     {
-        String lower = name.toLowerCase();
-        String effectiveGroup = hystrixGroupsToCluster.get(lower);
-        if (effectiveGroup != null)
-        {
-            return effectiveGroup;
-        }
-        else
+        return hystrixGroupsToCluster.getCluster(name);
+    }
+
+    /**
+     * Gets the region a group (cluster) lives in, when it is mapped to another region than this one with groupToRegion.
+     * Exact group matches win over prefixes, and longer prefixes win over shorter.
+     *
+     * @param group The effective group.
+     *
+     * @return The other region, or null if the group is in this region.
+     */
+    public String getRegionForGroup(String group)
+    {
+        String region = groupsToRegion.get(group);
+        if (region == null)
         {
-            return name;
+            for (String[] prefix : groupPrefixesToRegion)
+            {
+                if (group.startsWith(prefix[0]))
+                {
+                    region = prefix[1];
+                    break;
+                }
+            }
         }
+        return region == null || region.equals(regionName) ? null : region;
     }
 
     /**
@@ -142,6 +193,16 @@ public class Configuration
         return secure;
     }
 
+    /**
+     * Gets the client implementation used to read hystrix streams from turbine.
+     *
+     * @return The turbine client.
+     */
+    public TurbineClient getTurbineClient()
+    {
+        return turbineClient;
+    }
+
     /**
      * Gets if we should use basic auth.
      *
@@ -192,6 +253,17 @@ public class Configuration
         return httpPort;
     }
 
+    /**
+     * Gets how old a rendered graph may be when it is handed to another request instead of rendering it again.
+     * Default 1000.
+     *
+     * @return The staleness in millis, 0 to only share graphs being rendered.
+     */
+    public int getMaxStalenessMillis()
+    {
+        return maxStalenessMillis;
+    }
+
     /**
      * Loads configuration from the specified file.
      *
@@ -208,6 +280,85 @@ public class Configuration
         return configuration;
     }
 
+    /**
+     * Takes over the settings of a newer version of the file that can change while running: thresholds, entry and
+     * internet clusters, group mappings, ttls, turbine and monitoring. Thresholds and mappings are used from the next
+     * event or render, turbine and monitoring changes must be acted on by the caller. Other changed settings are
+     * left as they are and reported as requiring a restart.
+     *
+     * @param newer The newer configuration, loaded from the same file.
+     *
+     * @return What changed.
+     */
+    public synchronized ConfigurationChange update(Configuration newer)
+    {
+        ConfigurationChange.Builder change = ConfigurationChange.newBuilder();
+        ObjectNode updated = source.deepCopy();
+        Set<String> keys = new LinkedHashSet<>();
+        source.fieldNames().forEachRemaining(keys::add);
+        newer.source.fieldNames().forEachRemaining(keys::add);
+        for (String key : keys)
+        {
+            if (Objects.equals(source.get(key), newer.source.get(key)))
+            {
+                continue;
+            }
+            if (!RELOADABLE.contains(key))
+            {
+                change.requiresRestart(key);
+                continue;
+            }
+            change.applied(key);
+            if (newer.source.has(key))
+            {
+                updated.set(key, newer.source.get(key));
+            }
+            else
+            {
+                updated.remove(key);
+            }
+            if ("turbine".equals(key))
+            {
+                change.turbineChanged(true);
+            }
+            else if ("zmon".equals(key))
+            {
+                change.monitoringChanged(true);
+            }
+            else if ("entryClusters".equals(key))
+            {
+                Set<String> added = new HashSet<>(newer.entryClusters);
+                added.removeAll(entryClusters);
+                change.addedEntryClusters(added);
+            }
+        }
+        source = updated;
+        timeoutPercentageThreshold = newer.timeoutPercentageThreshold;
+        failurePercentageThreshold = newer.failurePercentageThreshold;
+        latencyThresholdMillis = newer.latencyThresholdMillis;
+        entryClusters = newer.entryClusters;
+        internetClusters = newer.internetClusters;
+        hystrixGroupsToCluster = newer.hystrixGroupsToCluster;
+        groupsToRegion = newer.groupsToRegion;
+        groupPrefixesToRegion = newer.groupPrefixesToRegion;
+        commandTtlSeconds = newer.commandTtlSeconds;
+        clusterTtlSeconds = newer.clusterTtlSeconds;
+        turbineHost = newer.turbineHost;
+        turbinePort = newer.turbinePort;
+        turbinePath = newer.turbinePath;
+        secure = newer.secure;
+        turbineClient = newer.turbineClient;
+        username = newer.username;
+        password = newer.password;
+        ConfigurationChange built = change.build();
+        if (built.isMonitoringChanged())
+        {
+            //Otherwise keep the systems that are running
+            monitoringSystems = newer.monitoringSystems;
+        }
+        return built;
+    }
+
     /**
      * Gets the threshold for when a connection is set to warning given percentage of timeouts.
      *
@@ -228,6 +379,16 @@ public class Configuration
         return failurePercentageThreshold;
     }
 
+    /**
+     * Gets the threshold for when a connection is set to warning given its 99th percentile latency.
+     *
+     * @return The threshold in milliseconds, or null if not activated.
+     */
+    public Integer getLatencyThresholdMillis()
+    {
+        return latencyThresholdMillis;
+    }
+
     /**
      * Gets how many seconds back we should consider max traffic volume. Defaults to 1 week.
      *
@@ -238,6 +399,91 @@ public class Configuration
         return maxTrafficTtlSeconds;
     }
 
+    /**
+     * Gets how many streams may be in the process of being opened at the same time. Defaults to 16.
+     *
+     * @return Max number of concurrent stream opens.
+     */
+    public int getMaxConcurrentStreamOpens()
+    {
+        return maxConcurrentStreamOpens;
+    }
+
+    /**
+     * Gets how long a hystrix command may go without events before it is removed. Defaults to 10 minutes, 0 disables.
+     *
+     * @return Seconds without events before a command is removed.
+     */
+    public int getCommandTtlSeconds()
+    {
+        return commandTtlSeconds;
+    }
+
+    /**
+     * Gets how long a cluster may go without events from it or towards it before it is no longer tailed.
+     * Entry and internet clusters are always tailed. Defaults to 1 hour, 0 disables.
+     *
+     * @return Seconds without activity before a cluster is removed.
+     */
+    public int getClusterTtlSeconds()
+    {
+        return clusterTtlSeconds;
+    }
+
+    /**
+     * Gets the number of writer threads that events are applied on. Defaults to the number of processors.
+     *
+     * @return Number of ingestion threads.
+     */
+    public int getIngestionThreads()
+    {
+        return ingestionThreads;
+    }
+
+    /**
+     * Gets the number of event loop threads the turbine streams of the region are read on. Defaults to the number of
+     * processors.
+     *
+     * @return Number of event loop threads.
+     */
+    public int getEventLoopThreads()
+    {
+        return eventLoopThreads;
+    }
+
+    /**
+     * Gets how many connections are tracked to rank the heaviest ones. Defaults to 1024.
+     *
+     * @return Number of tracked connections.
+     */
+    public int getTopConnectionsCapacity()
+    {
+        return topConnectionsCapacity;
+    }
+
+    /**
+     * Gets how long a cluster stays tailed after it was last viewed, when only viewed clusters are tailed. Entry and
+     * internet clusters are always tailed. Defaults to 0, tailing all clusters all the time.
+     *
+     * @return Seconds since the last view, or 0 if all clusters are tailed.
+     */
+    public int getViewerIdleSeconds()
+    {
+        return viewerIdleSeconds;
+    }
+
+    /**
+     * Checks if this cluster is configured as an entry cluster.
+     *
+     * @param cluster The cluster to check.
+     *
+     * @return True if the cluster is an entry cluster, otherwise false.
+     */
+    public boolean isEntryCluster(String cluster)
+    {
+        return entryClusters.contains(cluster);
+    }
+
     /**
      * Gets all the monitoring systems.
      *
@@ -248,6 +494,76 @@ public class Configuration
         return monitoringSystems;
     }
 
+    /**
+     * Gets the configuration for the connection history store.
+     *
+     * @return The history configuration, or null if history is not activated.
+     */
+    public HistoryConfiguration getHistoryConfiguration()
+    {
+        return historyConfiguration;
+    }
+
+    /**
+     * Gets the configuration for checkpointing state to disk.
+     *
+     * @return The checkpoint configuration, or null if checkpointing is not activated.
+     */
+    public CheckpointConfiguration getCheckpointConfiguration()
+    {
+        return checkpointConfiguration;
+    }
+
+    /**
+     * Gets the configuration for notices on connections deviating from their baselines.
+     *
+     * @return The anomaly configuration, or null if only the thresholds are used.
+     */
+    public AnomalyConfiguration getAnomalyConfiguration()
+    {
+        return anomalyConfiguration;
+    }
+
+    /**
+     * Gets the configuration for the error budget burn rates of the connections.
+     *
+     * @return The slo configuration, or null if burn rates are not computed.
+     */
+    public SloConfiguration getSloConfiguration()
+    {
+        return sloConfiguration;
+    }
+
+    /**
+     * Gets the configuration for limiting the tailed clusters and tracked commands.
+     *
+     * @return The admission configuration, or null if everything is admitted.
+     */
+    public AdmissionConfiguration getAdmissionConfiguration()
+    {
+        return admissionConfiguration;
+    }
+
+    /**
+     * Gets the configuration for reading the region from another vizceral-hystrix instance instead of from turbine.
+     *
+     * @return The federation configuration, or null if the region is read from turbine.
+     */
+    public FederationConfiguration getFederationConfiguration()
+    {
+        return federationConfiguration;
+    }
+
+    /**
+     * Gets the configuration for splitting the clusters of the region between several instances.
+     *
+     * @return The sharding configuration, or null if this instance tails all clusters.
+     */
+    public ShardingConfiguration getShardingConfiguration()
+    {
+        return shardingConfiguration;
+    }
+
     private void load() throws ConfigurationException
     {
         File file = new File(fileName);
@@ -264,6 +580,11 @@ public class Configuration
         {
             throw new ConfigurationException("Exception when reading file", e);
         }
+        if (!objectNode.isObject())
+        {
+            throw new ConfigurationException("Json must be an object");
+        }
+        source = objectNode;
         if (!objectNode.has("regionName"))
         {
             throw new ConfigurationException("/regionName is required");
@@ -298,6 +619,15 @@ public class Configuration
             }
 
         }
+        if (objectNode.has("latencyThresholdMillis"))
+        {
+            JsonNode latencyThresholdMillisNode = objectNode.get("latencyThresholdMillis");
+            if (!latencyThresholdMillisNode.isInt() || latencyThresholdMillisNode.asInt() <= 0)
+            {
+                throw new ConfigurationException("/latencyThresholdMillis must be an int larger than 0");
+            }
+            latencyThresholdMillis = latencyThresholdMillisNode.asInt();
+        }
         //Http conf
         if (objectNode.has("httpPort"))
         {
@@ -308,6 +638,15 @@ public class Configuration
             }
             httpPort = httpPortNode.asInt();
         }
+        if (objectNode.has("maxStalenessMillis"))
+        {
+            JsonNode maxStalenessMillisNode = objectNode.get("maxStalenessMillis");
+            if (!maxStalenessMillisNode.isInt() || maxStalenessMillisNode.asInt() < 0)
+            {
+                throw new ConfigurationException("/maxStalenessMillis must be an int, 0 or larger");
+            }
+            maxStalenessMillis = maxStalenessMillisNode.asInt();
+        }
         //Max volume
         if (objectNode.has("maxTrafficTtlSeconds"))
         {
@@ -318,94 +657,85 @@ public class Configuration
             }
             maxTrafficTtlSeconds = maxTrafficTtlSecondsNode.asInt();
         }
-        //Turbine conf
-        if (!objectNode.has("turbine"))
-        {
-            throw new ConfigurationException("Json must have /turbine");
-        }
-        JsonNode turbineNode = objectNode.get("turbine");
-        if (!turbineNode.has("host"))
-        {
-            throw new ConfigurationException("Json must have /turbine/host");
-        }
-        if (!turbineNode.get("host").isTextual())
-        {
-            throw new ConfigurationException("/turbine/host must be a string");
-        }
-        if (!turbineNode.has("port"))
-        {
-            throw new ConfigurationException("Json must have /turbine/port");
-        }
-        if (!turbineNode.get("port").isInt())
-        {
-            throw new ConfigurationException("/turbine/port must be an int");
-        }
-        if (turbineNode.has("secure"))
+        commandTtlSeconds = getTtl(objectNode, "commandTtlSeconds", commandTtlSeconds);
+        clusterTtlSeconds = getTtl(objectNode, "clusterTtlSeconds", clusterTtlSeconds);
+        if (objectNode.has("ingestionThreads"))
         {
-            JsonNode secureNode = turbineNode.get("secure");
-            if (!secureNode.isBoolean())
+            JsonNode ingestionThreadsNode = objectNode.get("ingestionThreads");
+            if (!ingestionThreadsNode.isInt() || ingestionThreadsNode.asInt() <= 0)
             {
-                throw new ConfigurationException("/turbine/secure must be a boolean");
+                throw new ConfigurationException("/ingestionThreads must be an int larger than 0");
             }
-            secure = secureNode.asBoolean();
+            ingestionThreads = ingestionThreadsNode.asInt();
         }
-        if (turbineNode.has("auth"))
+        if (objectNode.has("eventLoopThreads"))
         {
-            JsonNode authNode = turbineNode.get("auth");
-            if (!authNode.isObject())
+            JsonNode eventLoopThreadsNode = objectNode.get("eventLoopThreads");
+            if (!eventLoopThreadsNode.isInt() || eventLoopThreadsNode.asInt() <= 0)
             {
-                throw new ConfigurationException("/turbine/auth must be am object");
+                throw new ConfigurationException("/eventLoopThreads must be an int larger than 0");
             }
-            if (!authNode.has("username"))
-            {
-                throw new ConfigurationException("/turbine/auth/username must be exist if /turbine/auth exists");
-            }
-            if (!authNode.has("password"))
-            {
-                throw new ConfigurationException("/turbine/auth/password must be exist if /turbine/password exists");
-            }
-            if (!authNode.get("username").isTextual())
+            eventLoopThreads = eventLoopThreadsNode.asInt();
+        }
+        if (objectNode.has("topConnectionsCapacity"))
+        {
+            JsonNode topConnectionsCapacityNode = objectNode.get("topConnectionsCapacity");
+            if (!topConnectionsCapacityNode.isInt() || topConnectionsCapacityNode.asInt() <= 0)
             {
-                throw new ConfigurationException("/turbine/auth/username must be a string");
+                throw new ConfigurationException("/topConnectionsCapacity must be an int larger than 0");
             }
-            if (!authNode.get("password").isTextual())
+            topConnectionsCapacity = topConnectionsCapacityNode.asInt();
+        }
+        if (objectNode.has("viewerIdleSeconds"))
+        {
+            JsonNode viewerIdleSecondsNode = objectNode.get("viewerIdleSeconds");
+            if (!viewerIdleSecondsNode.isInt() || viewerIdleSecondsNode.asInt() < 0)
             {
-                throw new ConfigurationException("/turbine/auth/password must be a string");
+                throw new ConfigurationException("/viewerIdleSeconds must be an int, 0 or larger");
             }
-            username = authNode.get("username").asText();
-            password = authNode.get("password").asText();
+            viewerIdleSeconds = viewerIdleSecondsNode.asInt();
         }
-        turbineHost = turbineNode.get("host").asText();
-        turbinePort = turbineNode.get("port").asInt();
-        if (turbineNode.has("path"))
+        if (objectNode.has("maxConcurrentStreamOpens"))
         {
-            if (!turbineNode.get("path").isTextual())
+            JsonNode maxConcurrentStreamOpensNode = objectNode.get("maxConcurrentStreamOpens");
+            if (!maxConcurrentStreamOpensNode.isInt() || maxConcurrentStreamOpensNode.asInt() <= 0)
             {
-                throw new ConfigurationException("/turbine/path must be a string");
+                throw new ConfigurationException("/maxConcurrentStreamOpens must be an int larger than 0");
             }
-            turbinePath = turbineNode.get("path").asText();
+            maxConcurrentStreamOpens = maxConcurrentStreamOpensNode.asInt();
         }
-        else
+        //Federation conf, a federated region reads from another instance instead of turbine
+        if (objectNode.has("federation"))
         {
-            turbinePath = "/turbine.stream?cluster=";
+            federationConfiguration = treeToValue(objectNode.get("federation"), FederationConfiguration.class);
+        }
+
+        //Turbine conf
+        if (objectNode.has("turbine") || federationConfiguration == null)
+        {
+            loadTurbine(objectNode);
         }
 
         //Entry clusters conf
-        if (!objectNode.has("entryClusters"))
+        if (!objectNode.has("entryClusters") && federationConfiguration == null)
         {
             throw new ConfigurationException("/Json must have /entryClusters");
         }
-        if (!objectNode.get("entryClusters").isArray())
+        if (objectNode.has("entryClusters") && !objectNode.get("entryClusters").isArray())
         {
             throw new ConfigurationException("/entryClusters must be an array");
         }
 
-        for (JsonNode node : objectNode.get("entryClusters"))
+        for (JsonNode node : objectNode.path("entryClusters"))
         {
             if (!node.isTextual())
             {
                 throw new ConfigurationException("Element in /entryClusters must be a string: " + node);
             }
+            if (TopConnections.OTHER.equals(node.asText()))
+            {
+                throw new ConfigurationException("Element in /entryClusters must not be the reserved name " + TopConnections.OTHER);
+            }
             entryClusters.add(node.asText());
         }
 
@@ -424,6 +754,10 @@ public class Configuration
                 {
                     throw new ConfigurationException("Element in /internetClusters must be a string: " + node);
                 }
+                if (TopConnections.OTHER.equals(node.asText()))
+                {
+                    throw new ConfigurationException("Element in /internetClusters must not be the reserved name " + TopConnections.OTHER);
+                }
                 internetClusters.add(node.asText());
             }
         }
@@ -435,20 +769,13 @@ public class Configuration
                 throw new ConfigurationException("/hystrixGroupToCluster must be an array");
             }
 
+            GroupMatcher.Builder builder = GroupMatcher.newBuilder();
             for (JsonNode node : hystrixGroupToClusterNode)
             {
                 if (!node.isObject())
                 {
                     throw new ConfigurationException("Element in /hystrixGroupToCluster must be an object:" + node);
                 }
-                if (!node.has("group"))
-                {
-                    throw new ConfigurationException("Element in /hystrixGroupToCluster must be have key group:" + node);
-                }
-                if (!node.get("group").isTextual())
-                {
-                    throw new ConfigurationException("Element in /hystrixGroupToCluster, group must be text:" + node);
-                }
                 if (!node.has("cluster"))
                 {
                     throw new ConfigurationException("Element in /hystrixGroupToCluster must be have key cluster:" + node);
@@ -457,30 +784,230 @@ public class Configuration
                 {
                     throw new ConfigurationException("Element in /hystrixGroupToCluster, cluster must be text:" + node);
                 }
-                if (hystrixGroupsToCluster.containsKey(node.get("group").asText()))
+                String cluster = node.get("cluster").asText();
+                try
                 {
-                    throw new ConfigurationException("Duplicate group in /hystrixGroupToCluster " + node.get("group").asText());
+                    if (node.has("group") && node.get("group").isTextual())
+                    {
+                        builder.group(node.get("group").asText(), cluster);
+                    }
+                    else if (node.has("groupPrefix") && node.get("groupPrefix").isTextual())
+                    {
+                        builder.groupPrefix(node.get("groupPrefix").asText(), cluster);
+                    }
+                    else if (node.has("groupSuffix") && node.get("groupSuffix").isTextual())
+                    {
+                        builder.groupSuffix(node.get("groupSuffix").asText(), cluster);
+                    }
+                    else if (node.has("groupPattern") && node.get("groupPattern").isTextual())
+                    {
+                        builder.groupPattern(node.get("groupPattern").asText(), cluster);
+                    }
+                    else
+                    {
+                        throw new ConfigurationException("Element in /hystrixGroupToCluster must have a text group, groupPrefix, groupSuffix or groupPattern:" + node);
+                    }
                 }
-                hystrixGroupsToCluster.put(node.get("group").asText(), node.get("cluster").asText());
+                catch (IllegalArgumentException e)
+                {
+                    throw new ConfigurationException("Invalid element in /hystrixGroupToCluster, " + e.getMessage());
+                }
+            }
+            try
+            {
+                hystrixGroupsToCluster = builder.build();
+            }
+            catch (IllegalArgumentException e)
+            {
+                throw new ConfigurationException("Invalid /hystrixGroupToCluster, " + e.getMessage());
             }
         }
-        if (objectNode.has("zmon"))
+        if (objectNode.has("groupToRegion"))
         {
-            try
+            JsonNode groupToRegionNode = objectNode.get("groupToRegion");
+            if (!groupToRegionNode.isArray())
             {
-                monitoringSystems.add(new ZmonMonitoringSystem(objectMapper.treeToValue(objectNode.get("zmon"), ZmonConfiguration.class)));
+                throw new ConfigurationException("/groupToRegion must be an array");
             }
-            catch (JsonProcessingException e)
+            for (JsonNode node : groupToRegionNode)
             {
-                if (e.getCause() instanceof ConfigurationException)
+                if (!node.isObject())
+                {
+                    throw new ConfigurationException("Element in /groupToRegion must be an object:" + node);
+                }
+                if (!node.has("region") || !node.get("region").isTextual())
                 {
-                    throw (ConfigurationException) e.getCause();
+                    throw new ConfigurationException("Element in /groupToRegion must have a text region:" + node);
+                }
+                String region = node.get("region").asText();
+                if (node.has("group") && node.get("group").isTextual())
+                {
+                    if (groupsToRegion.put(node.get("group").asText(), region) != null)
+                    {
+                        throw new ConfigurationException("Duplicate group in /groupToRegion " + node.get("group").asText());
+                    }
+                }
+                else if (node.has("groupPrefix") && node.get("groupPrefix").isTextual())
+                {
+                    groupPrefixesToRegion.add(new String[]{node.get("groupPrefix").asText(), region});
                 }
                 else
                 {
-                    throw new ConfigurationException(e);
+                    throw new ConfigurationException("Element in /groupToRegion must have a text group or groupPrefix:" + node);
                 }
             }
+            groupPrefixesToRegion.sort((a, b) -> b[0].length() - a[0].length());
+        }
+        if (objectNode.has("zmon"))
+        {
+            monitoringSystems.add(new ZmonMonitoringSystem(treeToValue(objectNode.get("zmon"), ZmonConfiguration.class)));
+        }
+        if (objectNode.has("history"))
+        {
+            historyConfiguration = treeToValue(objectNode.get("history"), HistoryConfiguration.class);
+        }
+        if (objectNode.has("checkpoint"))
+        {
+            checkpointConfiguration = treeToValue(objectNode.get("checkpoint"), CheckpointConfiguration.class);
+        }
+        if (objectNode.has("sharding"))
+        {
+            shardingConfiguration = treeToValue(objectNode.get("sharding"), ShardingConfiguration.class);
+        }
+        if (objectNode.has("admission"))
+        {
+            admissionConfiguration = treeToValue(objectNode.get("admission"), AdmissionConfiguration.class);
+        }
+        if (objectNode.has("anomaly"))
+        {
+            anomalyConfiguration = treeToValue(objectNode.get("anomaly"), AnomalyConfiguration.class);
+        }
+        if (objectNode.has("slo"))
+        {
+            sloConfiguration = treeToValue(objectNode.get("slo"), SloConfiguration.class);
+        }
+    }
+
+    private void loadTurbine(JsonNode objectNode) throws ConfigurationException
+    {
+        if (!objectNode.has("turbine"))
+        {
+            throw new ConfigurationException("Json must have /turbine");
+        }
+        JsonNode turbineNode = objectNode.get("turbine");
+        if (!turbineNode.has("host"))
+        {
+            throw new ConfigurationException("Json must have /turbine/host");
+        }
+        if (!turbineNode.get("host").isTextual())
+        {
+            throw new ConfigurationException("/turbine/host must be a string");
+        }
+        if (!turbineNode.has("port"))
+        {
+            throw new ConfigurationException("Json must have /turbine/port");
+        }
+        if (!turbineNode.get("port").isInt())
+        {
+            throw new ConfigurationException("/turbine/port must be an int");
+        }
+        if (turbineNode.has("secure"))
+        {
+            JsonNode secureNode = turbineNode.get("secure");
+            if (!secureNode.isBoolean())
+            {
+                throw new ConfigurationException("/turbine/secure must be a boolean");
+            }
+            secure = secureNode.asBoolean();
+        }
+        if (turbineNode.has("auth"))
+        {
+            JsonNode authNode = turbineNode.get("auth");
+            if (!authNode.isObject())
+            {
+                throw new ConfigurationException("/turbine/auth must be am object");
+            }
+            if (!authNode.has("username"))
+            {
+                throw new ConfigurationException("/turbine/auth/username must be exist if /turbine/auth exists");
+            }
+            if (!authNode.has("password"))
+            {
+                throw new ConfigurationException("/turbine/auth/password must be exist if /turbine/password exists");
+            }
+            if (!authNode.get("username").isTextual())
+            {
+                throw new ConfigurationException("/turbine/auth/username must be a string");
+            }
+            if (!authNode.get("password").isTextual())
+            {
+                throw new ConfigurationException("/turbine/auth/password must be a string");
+            }
+            username = authNode.get("username").asText();
+            password = authNode.get("password").asText();
+        }
+        turbineHost = turbineNode.get("host").asText();
+        turbinePort = turbineNode.get("port").asInt();
+        if (turbineNode.has("path"))
+        {
+            if (!turbineNode.get("path").isTextual())
+            {
+                throw new ConfigurationException("/turbine/path must be a string");
+            }
+            turbinePath = turbineNode.get("path").asText();
+        }
+        else
+        {
+            turbinePath = "/turbine.stream?cluster=";
+        }
+        if (turbineNode.has("client"))
+        {
+            JsonNode clientNode = turbineNode.get("client");
+            if (!clientNode.isTextual())
+            {
+                throw new ConfigurationException("/turbine/client must be a string");
+            }
+            try
+            {
+                turbineClient = TurbineClient.valueOf(clientNode.asText().toUpperCase());
+            }
+            catch (IllegalArgumentException e)
+            {
+                throw new ConfigurationException("/turbine/client must be one of rx or blocking");
+            }
+        }
+    }
+
+    private static int getTtl(JsonNode objectNode, String key, int defaultValue) throws ConfigurationException
+    {
+        if (!objectNode.has(key))
+        {
+            return defaultValue;
+        }
+        JsonNode node = objectNode.get(key);
+        if (!node.isInt() || node.asInt() < 0)
+        {
+            throw new ConfigurationException("/" + key + " must be an int, 0 or larger");
+        }
+        return node.asInt();
+    }
+
+    private <T> T treeToValue(JsonNode node, Class<T> type) throws ConfigurationException
+    {
+        try
+        {
+            return objectMapper.treeToValue(node, type);
+        }
+        catch (JsonProcessingException e)
+        {
+            if (e.getCause() instanceof ConfigurationException)
+            {
+                throw (ConfigurationException) e.getCause();
+            }
+            else
+            {
+                throw new ConfigurationException(e);
+            }
         }
     }
 }
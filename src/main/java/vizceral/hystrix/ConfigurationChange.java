@@ -0,0 +1,141 @@
+package vizceral.hystrix;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * What changed when a configuration was updated from a newer version of its file.
+ */
+public class ConfigurationChange
+{
+    private final List<String> applied;
+    private final List<String> requiresRestart;
+    private final Set<String> addedEntryClusters;
+    private final boolean turbineChanged;
+    private final boolean monitoringChanged;
+
+    private ConfigurationChange(Builder builder)
+    {
+        applied = Collections.unmodifiableList(builder.applied);
+        requiresRestart = Collections.unmodifiableList(builder.requiresRestart);
+        addedEntryClusters = Collections.unmodifiableSet(builder.addedEntryClusters);
+        turbineChanged = builder.turbineChanged;
+        monitoringChanged = builder.monitoringChanged;
+    }
+
+    public static Builder newBuilder()
+    {
+        return new Builder();
+    }
+
+    /**
+     * Gets the keys of the settings that were taken over.
+     *
+     * @return The keys, in file order.
+     */
+    public List<String> getApplied()
+    {
+        return applied;
+    }
+
+    /**
+     * Gets the keys of the settings that changed but only take effect after a restart, and were not taken over.
+     *
+     * @return The keys.
+     */
+    public List<String> getRequiresRestart()
+    {
+        return requiresRestart;
+    }
+
+    /**
+     * Gets the entry clusters that were added.
+     *
+     * @return The names of the clusters.
+     */
+    public Set<String> getAddedEntryClusters()
+    {
+        return addedEntryClusters;
+    }
+
+    /**
+     * Gets if the turbine settings changed, which means the streams have to be opened again.
+     *
+     * @return true if changed, otherwise false.
+     */
+    public boolean isTurbineChanged()
+    {
+        return turbineChanged;
+    }
+
+    /**
+     * Gets if the monitoring systems changed, which means they have to be replaced.
+     *
+     * @return true if changed, otherwise false.
+     */
+    public boolean isMonitoringChanged()
+    {
+        return monitoringChanged;
+    }
+
+    /**
+     * Gets if nothing changed.
+     *
+     * @return true if the files were equal, otherwise false.
+     */
+    public boolean isEmpty()
+    {
+        return applied.isEmpty() && requiresRestart.isEmpty();
+    }
+
+    public static final class Builder
+    {
+        private final List<String> applied = new ArrayList<>();
+        private final List<String> requiresRestart = new ArrayList<>();
+        private final Set<String> addedEntryClusters = new TreeSet<>();
+        private boolean turbineChanged;
+        private boolean monitoringChanged;
+
+        private Builder()
+        {
+        }
+
+        public Builder applied(String key)
+        {
+            applied.add(key);
+            return this;
+        }
+
+        public Builder requiresRestart(String key)
+        {
+            requiresRestart.add(key);
+            return this;
+        }
+
+        public Builder addedEntryClusters(Set<String> clusters)
+        {
+            addedEntryClusters.addAll(clusters);
+            return this;
+        }
+
+        public Builder turbineChanged(boolean turbineChanged)
+        {
+            this.turbineChanged = turbineChanged;
+            return this;
+        }
+
+        public Builder monitoringChanged(boolean monitoringChanged)
+        {
+            this.monitoringChanged = monitoringChanged;
+            return this;
+        }
+
+        public ConfigurationChange build()
+        {
+            return new ConfigurationChange(this);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package vizceral.hystrix;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Watches a configuration file and loads it again when its content changes. Any change in the directory of the file
+ * is checked, since editors and config maps often replace the file instead of writing to it. Changes are picked up
+ * once the directory has been quiet for a moment, and invalid files are logged and skipped.
+ */
+public class ConfigurationWatcher
+{
+    private static final Logger logger = LoggerFactory.getLogger(ConfigurationWatcher.class);
+    private static final long QUIET_MILLIS = 500;
+    private final Path file;
+    private final Consumer<Configuration> listener;
+    private WatchService watchService;
+    private byte[] content;
+
+    /**
+     * Creates a new watcher.
+     *
+     * @param fileName The configuration file.
+     * @param listener Called with the configuration every time the file changed and is valid. Called on the watcher
+     *                 thread.
+     */
+    public ConfigurationWatcher(String fileName, Consumer<Configuration> listener)
+    {
+        this.file = Paths.get(fileName).toAbsolutePath();
+        this.listener = listener;
+    }
+
+    /**
+     * Starts watching on a daemon thread.
+     *
+     * @throws IOException If the directory of the file can not be watched.
+     */
+    public void start() throws IOException
+    {
+        content = read();
+        watchService = file.getFileSystem().newWatchService();
+        file.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        Thread thread = new Thread(this::run, "config-watcher-" + file.getFileName());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops watching.
+     */
+    public void stop()
+    {
+        try
+        {
+            watchService.close();
+        }
+        catch (IOException e)
+        {
+            logger.debug("Could not close watch service", e);
+        }
+    }
+
+    private void run()
+    {
+        try
+        {
+            while (true)
+            {
+                WatchKey key = watchService.take();
+                key.pollEvents();
+                key.reset();
+                //Wait for the writes to settle
+                while ((key = watchService.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS)) != null)
+                {
+                    key.pollEvents();
+                    key.reset();
+                }
+                check();
+            }
+        }
+        catch (InterruptedException | ClosedWatchServiceException e)
+        {
+            logger.debug("Stopped watching {}", file);
+        }
+    }
+
+    private void check()
+    {
+        byte[] current = read();
+        if (current == null || Arrays.equals(current, content))
+        {
+            return;
+        }
+        content = current;
+        try
+        {
+            listener.accept(Configuration.load(file.toString()));
+        }
+        catch (ConfigurationException ex)
+        {
+            logger.error("Not reloading invalid configuration " + file + ": " + ex.getMessage(), ex.getCause());
+        }
+        catch (RuntimeException ex)
+        {
+            logger.error("Could not reload configuration " + file, ex);
+        }
+    }
+
+    private byte[] read()
+    {
+        try
+        {
+            return Files.readAllBytes(file);
+        }
+        catch (IOException e)
+        {
+            //Being replaced
+            return null;
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package vizceral.hystrix;
+
+/**
+ * Running totals of the last event of every hystrix command going from one cluster towards one group.
+ * The totals are kept up to date incrementally when an event replaces the previous one for the same command, so reading
+ * them does not require looking at the individual events. Only the writer of the cluster mutates a rollup, readers get
+ * copies through the published state of the cluster.
+ * <p>
+ * The latency of the connection is the mean of the latency percentiles of its commands weighted by their total
+ * requests, kept as running weighted sums the same way.
+ */
+public class ConnectionRollup
+{
+    private final String target;
+    private int requests;
+    private int errors;
+    private int timeouts;
+    private int totalRequests;
+    private int rejected;
+    private int openCircuitBreakers;
+    private int commands;
+    private long latencyWeight;
+    private long latency50;
+    private long latency90;
+    private long latency99;
+    private int slot = -1;
+
+    /**
+     * Creates a new empty rollup.
+     *
+     * @param target The group (cluster) the connection goes to.
+     */
+    public ConnectionRollup(String target)
+    {
+        this.target = target;
+    }
+
+    /**
+     * Creates a copy of this rollup.
+     *
+     * @return The copy.
+     */
+    ConnectionRollup copy()
+    {
+        ConnectionRollup copy = new ConnectionRollup(target);
+        copy.requests = requests;
+        copy.errors = errors;
+        copy.timeouts = timeouts;
+        copy.totalRequests = totalRequests;
+        copy.rejected = rejected;
+        copy.openCircuitBreakers = openCircuitBreakers;
+        copy.commands = commands;
+        copy.latencyWeight = latencyWeight;
+        copy.latency50 = latency50;
+        copy.latency90 = latency90;
+        copy.latency99 = latency99;
+        copy.slot = slot;
+        return copy;
+    }
+
+    /**
+     * Adds an event to the totals.
+     *
+     * @param event The event to add.
+     */
+    void add(HystrixEvent event)
+    {
+        apply(event, 1);
+    }
+
+    /**
+     * Removes an event that has previously been added from the totals.
+     *
+     * @param event The event to remove.
+     */
+    void remove(HystrixEvent event)
+    {
+        apply(event, -1);
+    }
+
+    /**
+     * Gets the slot of the connection in the {@link ConnectionSlots}, copies carry the slot of the rollup they were
+     * taken from.
+     *
+     * @return The slot, or -1 if it has none.
+     */
+    int getSlot()
+    {
+        return slot;
+    }
+
+    void setSlot(int slot)
+    {
+        this.slot = slot;
+    }
+
+    private void apply(HystrixEvent event, int sign)
+    {
+        requests += sign * event.getRequestCount();
+        errors += sign * event.getErrorCount();
+        timeouts += sign * event.getTimeoutCount();
+        totalRequests += sign * event.getTotalRequestCount();
+        rejected += sign * event.getRejectedCount();
+        openCircuitBreakers += sign * (event.isCircuitBreakerOpen() ? 1 : 0);
+        commands += sign;
+        LatencyPercentiles latency = event.getLatency();
+        if (latency != null)
+        {
+            long weight = sign * (long) event.getTotalRequestCount();
+            latencyWeight += weight;
+            latency50 += weight * latency.getP50();
+            latency90 += weight * latency.getP90();
+            latency99 += weight * latency.getP99();
+        }
+    }
+
+    /**
+     * Gets the group (cluster) the connection goes to.
+     *
+     * @return The target.
+     */
+    public String getTarget()
+    {
+        return target;
+    }
+
+    /**
+     * Gets the number of successful requests per second.
+     *
+     * @return Successful requests.
+     */
+    public int getRequests()
+    {
+        return requests;
+    }
+
+    /**
+     * Gets the number of errors per second.
+     *
+     * @return Errors.
+     */
+    public int getErrors()
+    {
+        return errors;
+    }
+
+    /**
+     * Gets the number of timeouts per second.
+     *
+     * @return Timeouts.
+     */
+    public int getTimeouts()
+    {
+        return timeouts;
+    }
+
+    /**
+     * Gets the total number of requests per second, including errors, timeouts and rejections.
+     *
+     * @return Total requests.
+     */
+    public int getTotalRequests()
+    {
+        return totalRequests;
+    }
+
+    /**
+     * Gets the number of thread pool/semaphore rejected requests per second.
+     *
+     * @return Rejected requests.
+     */
+    public int getRejected()
+    {
+        return rejected;
+    }
+
+    /**
+     * Gets if any command on this connection has an open circuit breaker.
+     *
+     * @return true if any circuit breaker is open, otherwise false.
+     */
+    public boolean isCircuitBreakerOpen()
+    {
+        return openCircuitBreakers > 0;
+    }
+
+    /**
+     * Gets the latency percentiles of the commands, weighted by their total requests.
+     *
+     * @return The percentiles, or null if no command with latencies has traffic.
+     */
+    public LatencyPercentiles getLatency()
+    {
+        if (latencyWeight <= 0)
+        {
+            return null;
+        }
+        return new LatencyPercentiles((int) (latency50 / latencyWeight), (int) (latency90 / latencyWeight), (int) (latency99 / latencyWeight));
+    }
+
+    /**
+     * Gets the number of commands contributing to this connection.
+     *
+     * @return Number of commands.
+     */
+    public int getCommands()
+    {
+        return commands;
+    }
+}
@@ -0,0 +1,166 @@
+package vizceral.hystrix;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.IntConsumer;
+
+/**
+ * Hands out a dense int slot per connection, so per connection state can live in primitive arrays indexed by slot
+ * instead of in an object per connection. The slot is cached on the {@link ConnectionRollup} of the connection, so
+ * sampling needs no lookup, and freed when the rollup is dropped or its cluster is forgotten. Freed slots are reset
+ * by every statistics sharing the slots, then reused.
+ */
+public class ConnectionSlots
+{
+    private final Map<Integer, Connection> connections = new ConcurrentHashMap<>();
+    private final List<IntConsumer> resets = new CopyOnWriteArrayList<>();
+    private final Deque<Integer> free = new ArrayDeque<>();
+    private int nextSlot;
+
+    /**
+     * Registers a reset of the state kept for a slot, called when the slot is freed, before it can be handed out
+     * again.
+     *
+     * @param reset The reset.
+     */
+    public void onFree(IntConsumer reset)
+    {
+        resets.add(reset);
+    }
+
+    /**
+     * Gets the slot of a connection, allocating one if its rollup has none. Must only be called by the writer thread
+     * of the source cluster.
+     *
+     * @param source The cluster the connection goes out from.
+     * @param rollup The current totals of the connection.
+     *
+     * @return The slot.
+     */
+    public int getOrAllocate(String source, ConnectionRollup rollup)
+    {
+        int slot = rollup.getSlot();
+        return slot >= 0 ? slot : allocate(source, rollup);
+    }
+
+    /**
+     * Gets the slot of a connection.
+     *
+     * @param rollup The totals of the connection, current or published.
+     *
+     * @return The slot, or -1 if the connection has none.
+     */
+    public int get(ConnectionRollup rollup)
+    {
+        return rollup.getSlot();
+    }
+
+    /**
+     * Frees the slot of a connection, e.g. when its last command is removed. Must only be called by the writer thread
+     * of the source cluster.
+     *
+     * @param rollup The totals of the connection.
+     */
+    public synchronized void free(ConnectionRollup rollup)
+    {
+        int slot = rollup.getSlot();
+        if (slot >= 0)
+        {
+            rollup.setSlot(-1);
+            release(slot);
+        }
+    }
+
+    /**
+     * Frees the slots of all connections going out from a cluster.
+     *
+     * @param source The cluster.
+     */
+    public synchronized void forget(String source)
+    {
+        Iterator<Map.Entry<Integer, Connection>> iterator = connections.entrySet().iterator();
+        while (iterator.hasNext())
+        {
+            Map.Entry<Integer, Connection> entry = iterator.next();
+            if (entry.getValue().source.equals(source))
+            {
+                entry.getValue().rollup.setSlot(-1);
+                release(entry.getKey());
+            }
+        }
+    }
+
+    /**
+     * Calls a visitor for every connection with a slot.
+     *
+     * @param visitor The visitor.
+     */
+    public void forEach(Visitor visitor)
+    {
+        for (Map.Entry<Integer, Connection> entry : connections.entrySet())
+        {
+            visitor.visit(entry.getValue().source, entry.getValue().rollup.getTarget(), entry.getKey());
+        }
+    }
+
+    /**
+     * Gets the number of connections with a slot.
+     *
+     * @return Number of connections.
+     */
+    public int size()
+    {
+        return connections.size();
+    }
+
+    private synchronized int allocate(String source, ConnectionRollup rollup)
+    {
+        int slot = free.isEmpty() ? nextSlot++ : free.pop();
+        connections.put(slot, new Connection(source, rollup));
+        rollup.setSlot(slot);
+        return slot;
+    }
+
+    private void release(int slot)
+    {
+        connections.remove(slot);
+        for (IntConsumer reset : resets)
+        {
+            reset.accept(slot);
+        }
+        free.push(slot);
+    }
+
+    private static final class Connection
+    {
+        private final String source;
+        private final ConnectionRollup rollup;
+
+        private Connection(String source, ConnectionRollup rollup)
+        {
+            this.source = source;
+            this.rollup = rollup;
+        }
+    }
+
+    /**
+     * Visits the connections with a slot.
+     */
+    @FunctionalInterface
+    public interface Visitor
+    {
+        /**
+         * Visits one connection.
+         *
+         * @param source The cluster the connection goes out from.
+         * @param target The group the connection goes to.
+         * @param slot   The slot of the connection.
+         */
+        void visit(String source, String target, int slot);
+    }
+}
@@ -0,0 +1,53 @@
+package vizceral.hystrix;
+
+import java.util.List;
+
+/**
+ * Statistics kept per connection from the rollups seen at ingest, which can put notices on the connections.
+ */
+public interface ConnectionStatistics
+{
+    /**
+     * Samples the current totals of a connection. Must only be called by the writer thread of the source cluster.
+     *
+     * @param source The cluster the connection goes out from.
+     * @param rollup The current totals of the connection.
+     * @param now    The current time.
+     */
+    void record(String source, ConnectionRollup rollup, long now);
+
+    /**
+     * Gets the notices for the current totals of a connection.
+     *
+     * @param source The cluster the connection goes out from.
+     * @param rollup The current totals of the connection.
+     * @param now    The current time.
+     *
+     * @return The notices, empty if there is nothing to report.
+     */
+    List<VizceralNotice> getNotices(String source, ConnectionRollup rollup, long now);
+
+    /**
+     * Drops the statistics of all connections going out from a cluster, e.g. when it is no longer tailed. Must be
+     * called by the writer thread of the cluster, after its last sample.
+     *
+     * @param source The cluster.
+     */
+    void forget(String source);
+
+    /**
+     * Drops the statistics of one connection, when its last command is removed and its rollup dropped. Must be called
+     * by the writer thread of the source cluster.
+     *
+     * @param source The cluster the connection goes out from.
+     * @param rollup The dropped totals of the connection.
+     */
+    void forget(String source, ConnectionRollup rollup);
+
+    /**
+     * Gets the number of connections with statistics.
+     *
+     * @return Number of connections.
+     */
+    int size();
+}
@@ -0,0 +1,394 @@
+package vizceral.hystrix;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Selects part of a region graph before it is rendered, so consumers only download the clusters they look at.
+ * <p>
+ * A cluster is kept if it matches every given criterion, and a connection is kept if both its ends are kept. The
+ * criteria are evaluated against an index of the cluster snapshots (volume, status and neighbours per cluster), built
+ * once per request, instead of on the rendered json.
+ */
+public class GraphFilter
+{
+    /**
+     * Filter keeping the whole graph.
+     */
+    public static final GraphFilter NONE = newBuilder().build();
+    private final List<Pattern> names;
+    private final int minVolume;
+    private final Set<String> statuses;
+    private final boolean withNotices;
+    private final String around;
+    private final int hops;
+    private final int top;
+
+    private GraphFilter(Builder builder)
+    {
+        names = builder.names;
+        minVolume = builder.minVolume;
+        statuses = builder.statuses;
+        withNotices = builder.withNotices;
+        around = builder.around;
+        hops = builder.hops;
+        top = builder.top;
+    }
+
+    public static Builder newBuilder()
+    {
+        return new Builder();
+    }
+
+    /**
+     * Creates a filter from the query parameters of a request:
+     * <ul>
+     * <li>{@code cluster} glob patterns (* and ?) of cluster names, comma separated.</li>
+     * <li>{@code minVolume} minimum requests per second going into or out of a cluster.</li>
+     * <li>{@code status} normal, warning and/or danger, comma separated.</li>
+     * <li>{@code notices=true} only clusters with notices on them or on their connections.</li>
+     * <li>{@code around} a cluster, together with {@code hops} (default 1) the neighbourhood to keep.</li>
+     * <li>{@code top} how many of the heaviest connections to keep, the rest is folded into one cluster.</li>
+     * </ul>
+     *
+     * @param parameters The query parameters.
+     *
+     * @return The filter.
+     *
+     * @throws IllegalArgumentException If a parameter is invalid.
+     */
+    public static GraphFilter fromQuery(Map<String, List<String>> parameters)
+    {
+        Builder builder = newBuilder();
+        for (String pattern : getList(parameters, "cluster"))
+        {
+            builder.name(pattern);
+        }
+        String minVolume = getFirst(parameters, "minVolume");
+        if (minVolume != null)
+        {
+            builder.minVolume(parseInt("minVolume", minVolume));
+        }
+        for (String status : getList(parameters, "status"))
+        {
+            builder.status(status);
+        }
+        String notices = getFirst(parameters, "notices");
+        if (notices != null)
+        {
+            builder.withNotices(Boolean.parseBoolean(notices));
+        }
+        String around = getFirst(parameters, "around");
+        if (around != null)
+        {
+            String hops = getFirst(parameters, "hops");
+            builder.around(around, hops == null ? 1 : parseInt("hops", hops));
+        }
+        String top = getFirst(parameters, "top");
+        if (top != null)
+        {
+            builder.top(parseInt("top", top));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Gets how many of the heaviest connections to keep. Unlike the other criteria this is not applied by
+     * {@link #apply(Collection)}, since the connections are ranked by the aggregator as events arrive.
+     *
+     * @return The number of connections, or 0 to keep all.
+     * @see TopConnections
+     */
+    public int getTop()
+    {
+        return top;
+    }
+
+    /**
+     * Gets if this filter keeps all clusters.
+     *
+     * @return true if no cluster is filtered out, otherwise false.
+     */
+    public boolean isEmpty()
+    {
+        return names.isEmpty() && minVolume == 0 && statuses.isEmpty() && !withNotices && around == null;
+    }
+
+    /**
+     * Applies the filter to the snapshots of a region.
+     *
+     * @param snapshots The snapshots of all clusters.
+     *
+     * @return The snapshots of the kept clusters, with only the connections between kept clusters.
+     */
+    public Collection<ClusterSnapshot> apply(Collection<ClusterSnapshot> snapshots)
+    {
+        if (isEmpty())
+        {
+            return snapshots;
+        }
+        Index index = new Index(snapshots);
+        Set<String> kept = new HashSet<>();
+        Collection<String> candidates = around == null ? index.byName.keySet() : index.neighbourhood(around, hops);
+        for (String cluster : candidates)
+        {
+            if (matches(index, cluster))
+            {
+                kept.add(cluster);
+            }
+        }
+        List<ClusterSnapshot> filtered = new ArrayList<>();
+        for (String cluster : kept)
+        {
+            ClusterSnapshot snapshot = index.byName.get(cluster);
+            List<VizceralConnection> connections = new ArrayList<>();
+            for (VizceralConnection connection : snapshot.getConnections())
+            {
+                if (kept.contains(connection.getName()))
+                {
+                    connections.add(connection);
+                }
+            }
+            filtered.add(ClusterSnapshot.newBuilder()
+                    .name(snapshot.getName())
+                    .connections(connections)
+                    .notices(snapshot.getNotices())
+                    .maxValue(snapshot.getMaxValue())
+                    .outgoingRequests(snapshot.getOutgoingRequests())
+                    .rejected(snapshot.isRejected())
+                    .updated(snapshot.getUpdated())
+                    .build());
+        }
+        return filtered;
+    }
+
+    private boolean matches(Index index, String cluster)
+    {
+        if (!names.isEmpty() && names.stream().noneMatch(pattern -> pattern.matcher(cluster).matches()))
+        {
+            return false;
+        }
+        if (minVolume > 0 && index.volume.getOrDefault(cluster, 0) < minVolume)
+        {
+            return false;
+        }
+        if (!statuses.isEmpty() && !statuses.contains(index.status(cluster)))
+        {
+            return false;
+        }
+        return !withNotices || index.withNotices.contains(cluster);
+    }
+
+    private static int parseInt(String key, String value)
+    {
+        try
+        {
+            int parsed = Integer.parseInt(value);
+            if (parsed < 0)
+            {
+                throw new IllegalArgumentException(key + " must not be negative, got " + value);
+            }
+            return parsed;
+        }
+        catch (NumberFormatException e)
+        {
+            throw new IllegalArgumentException(key + " must be an int, got " + value);
+        }
+    }
+
+    private static String getFirst(Map<String, List<String>> parameters, String key)
+    {
+        List<String> values = parameters.get(key);
+        return values == null || values.isEmpty() ? null : values.get(0);
+    }
+
+    private static List<String> getList(Map<String, List<String>> parameters, String key)
+    {
+        List<String> values = parameters.get(key);
+        if (values == null)
+        {
+            return Collections.emptyList();
+        }
+        List<String> split = new ArrayList<>();
+        for (String value : values)
+        {
+            for (String part : value.split(","))
+            {
+                if (!part.trim().isEmpty())
+                {
+                    split.add(part.trim());
+                }
+            }
+        }
+        return split;
+    }
+
+    /**
+     * Per cluster lookups over the snapshots of a region.
+     */
+    private static class Index
+    {
+        private final Map<String, ClusterSnapshot> byName = new HashMap<>();
+        private final Map<String, Set<String>> neighbours = new HashMap<>();
+        private final Map<String, Integer> volume = new HashMap<>();
+        private final Set<String> circuitBreakersOpen = new HashSet<>();
+        private final Set<String> withNotices = new HashSet<>();
+
+        private Index(Collection<ClusterSnapshot> snapshots)
+        {
+            for (ClusterSnapshot snapshot : snapshots)
+            {
+                byName.put(snapshot.getName(), snapshot);
+                volume.merge(snapshot.getName(), snapshot.getOutgoingRequests(), Integer::sum);
+                if (!snapshot.getNotices().isEmpty())
+                {
+                    withNotices.add(snapshot.getName());
+                }
+                for (VizceralConnection connection : snapshot.getConnections())
+                {
+                    String target = connection.getName();
+                    neighbours.computeIfAbsent(snapshot.getName(), ignore -> new HashSet<>()).add(target);
+                    neighbours.computeIfAbsent(target, ignore -> new HashSet<>()).add(snapshot.getName());
+                    volume.merge(target, connection.getRequests() + connection.getErrors() + connection.getTimeouts(), Integer::sum);
+                    if (connection.isCircuitBreakerOpen())
+                    {
+                        circuitBreakersOpen.add(target);
+                    }
+                    if (!connection.getNotices().isEmpty())
+                    {
+                        withNotices.add(snapshot.getName());
+                        withNotices.add(target);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Same status as the cluster gets when rendered.
+         */
+        private String status(String cluster)
+        {
+            if (circuitBreakersOpen.contains(cluster))
+            {
+                return "danger";
+            }
+            return byName.get(cluster).isRejected() ? "warning" : "normal";
+        }
+
+        private Set<String> neighbourhood(String cluster, int hops)
+        {
+            Set<String> visited = new HashSet<>();
+            if (!byName.containsKey(cluster))
+            {
+                return visited;
+            }
+            Deque<String> queue = new ArrayDeque<>();
+            visited.add(cluster);
+            queue.add(cluster);
+            for (int hop = 0; hop < hops && !queue.isEmpty(); hop++)
+            {
+                Deque<String> next = new ArrayDeque<>();
+                for (String current : queue)
+                {
+                    for (String neighbour : neighbours.getOrDefault(current, Collections.emptySet()))
+                    {
+                        if (byName.containsKey(neighbour) && visited.add(neighbour))
+                        {
+                            next.add(neighbour);
+                        }
+                    }
+                }
+                queue = next;
+            }
+            return visited;
+        }
+    }
+
+    public static final class Builder
+    {
+        private final List<Pattern> names = new ArrayList<>();
+        private int minVolume;
+        private final Set<String> statuses = new HashSet<>();
+        private boolean withNotices;
+        private String around;
+        private int hops;
+        private int top;
+
+        private Builder()
+        {
+        }
+
+        public Builder name(String glob)
+        {
+            StringBuilder regex = new StringBuilder();
+            for (char c : glob.toCharArray())
+            {
+                if (c == '*')
+                {
+                    regex.append(".*");
+                }
+                else if (c == '?')
+                {
+                    regex.append('.');
+                }
+                else
+                {
+                    regex.append(Pattern.quote(String.valueOf(c)));
+                }
+            }
+            names.add(Pattern.compile(regex.toString()));
+            return this;
+        }
+
+        public Builder minVolume(int minVolume)
+        {
+            this.minVolume = minVolume;
+            return this;
+        }
+
+        public Builder status(String status)
+        {
+            String lower = status.toLowerCase(Locale.ROOT);
+            if (!"normal".equals(lower) && !"warning".equals(lower) && !"danger".equals(lower))
+            {
+                throw new IllegalArgumentException("status must be normal, warning or danger, got " + status);
+            }
+            statuses.add(lower);
+            return this;
+        }
+
+        public Builder withNotices(boolean withNotices)
+        {
+            this.withNotices = withNotices;
+            return this;
+        }
+
+        public Builder around(String cluster, int hops)
+        {
+            this.around = cluster;
+            this.hops = hops;
+            return this;
+        }
+
+        public Builder top(int top)
+        {
+            this.top = top;
+            return this;
+        }
+
+        public GraphFilter build()
+        {
+            return new GraphFilter(this);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package vizceral.hystrix;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Locale;
+
+/**
+ * The encodings the graphs are served in. The binary encodings carry the same model as the json, but are smaller and
+ * faster to parse for consumers reading the graph every few seconds.
+ */
+public enum GraphFormat
+{
+    JSON("application/json", new ObjectMapper()),
+    SMILE("application/x-jackson-smile", new ObjectMapper(new SmileFactory())),
+    CBOR("application/cbor", new ObjectMapper(new CBORFactory()));
+
+    private final String contentType;
+    private final ObjectMapper objectMapper;
+
+    GraphFormat(String contentType, ObjectMapper objectMapper)
+    {
+        this.contentType = contentType;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Gets the content type of the format.
+     *
+     * @return The content type.
+     */
+    public String getContentType()
+    {
+        return contentType;
+    }
+
+    /**
+     * Encodes a graph.
+     *
+     * @param jsonNode The graph.
+     *
+     * @return The encoded graph.
+     */
+    public byte[] write(JsonNode jsonNode)
+    {
+        try
+        {
+            return objectMapper.writeValueAsBytes(jsonNode);
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Decodes a graph.
+     *
+     * @param bytes The encoded graph.
+     *
+     * @return The graph.
+     *
+     * @throws IOException If the bytes are not valid in this format.
+     */
+    public JsonNode read(byte[] bytes) throws IOException
+    {
+        return objectMapper.readTree(bytes);
+    }
+
+    /**
+     * Gets the format of a content type.
+     *
+     * @param contentType The content type, parameters such as charset are ignored.
+     *
+     * @return The format, json if the content type is missing or unknown.
+     */
+    public static GraphFormat fromContentType(String contentType)
+    {
+        if (contentType == null)
+        {
+            return JSON;
+        }
+        String mediaType = contentType.split(";")[0].trim().toLowerCase(Locale.ROOT);
+        for (GraphFormat format : values())
+        {
+            if (format.contentType.equals(mediaType))
+            {
+                return format;
+            }
+        }
+        return JSON;
+    }
+
+    /**
+     * Picks the format to respond with from an Accept header. The supported media type with the highest quality wins,
+     * the first listed on ties.
+     *
+     * @param accept The Accept header, may be null.
+     *
+     * @return The format, json if nothing supported is accepted.
+     */
+    public static GraphFormat negotiate(String accept)
+    {
+        if (accept == null)
+        {
+            return JSON;
+        }
+        GraphFormat best = JSON;
+        double bestQuality = 0;
+        for (String range : accept.split(","))
+        {
+            String[] parts = range.split(";");
+            String mediaType = parts[0].trim().toLowerCase(Locale.ROOT);
+            double quality = 1;
+            for (int i = 1; i < parts.length; i++)
+            {
+                String parameter = parts[i].trim();
+                if (parameter.startsWith("q="))
+                {
+                    try
+                    {
+                        quality = Double.parseDouble(parameter.substring(2));
+                    }
+                    catch (NumberFormatException e)
+                    {
+                        quality = 0;
+                    }
+                }
+            }
+            for (GraphFormat format : values())
+            {
+                if (format.contentType.equals(mediaType) && quality > bestQuality)
+                {
+                    best = format;
+                    bestQuality = quality;
+                }
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,344 @@
+package vizceral.hystrix;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Maps hystrix groups to clusters with exact, prefix, suffix and regex rules. Rules are matched against the lower case
+ * group: an exact rule wins over prefixes, the longest prefix wins over suffixes, the longest suffix wins over regexes
+ * and the first regex in rule order wins over later ones. Groups no rule matches are kept as they are.
+ * <p>
+ * Prefixes and suffixes are kept in tries, so a lookup costs the length of the group whatever the number of rules.
+ * The regexes are tried one by one in rule order, each on its own so backreferences and named groups keep working.
+ * Since the same few groups are seen over and over, resolved groups are remembered in a bounded cache, making the common
+ * lookup a single hash lookup and trying the regexes a cost paid once per group.
+ */
+public class GroupMatcher
+{
+    /**
+     * The default number of groups remembered.
+     */
+    public static final int DEFAULT_CACHE_SIZE = 8192;
+    private final Map<String, String> exact;
+    private final Trie prefixes;
+    private final Trie suffixes;
+    private final List<Pattern> patterns;
+    private final List<String> patternClusters;
+    private final int cacheSize;
+    private final Map<String, String> cache = new ConcurrentHashMap<>();
+
+    private GroupMatcher(Builder builder)
+    {
+        exact = builder.exact;
+        prefixes = builder.prefixes;
+        suffixes = builder.suffixes;
+        patterns = builder.patterns;
+        patternClusters = builder.patternClusters;
+        cacheSize = builder.cacheSize;
+    }
+
+    public static Builder newBuilder()
+    {
+        return new Builder();
+    }
+
+    /**
+     * Gets the cluster for a group.
+     *
+     * @param group The group from a hystrix event.
+     *
+     * @return The cluster of the first matching rule, otherwise the group.
+     */
+    public String getCluster(String group)
+    {
+        String cluster = cache.get(group);
+        if (cluster == null)
+        {
+            cluster = resolve(group);
+            if (cache.size() >= cacheSize)
+            {
+                //Simpler and cheaper than LRU, and only happens when there are far more groups than expected
+                cache.clear();
+            }
+            cache.put(group, cluster);
+        }
+        return cluster;
+    }
+
+    /**
+     * Gets if there are no rules.
+     *
+     * @return true if no rules, otherwise false.
+     */
+    public boolean isEmpty()
+    {
+        return exact.isEmpty() && prefixes.isEmpty() && suffixes.isEmpty() && patterns.isEmpty();
+    }
+
+    int getCacheCount()
+    {
+        return cache.size();
+    }
+
+    private String resolve(String group)
+    {
+        String lower = group.toLowerCase();
+        String cluster = exact.get(lower);
+        if (cluster == null)
+        {
+            cluster = prefixes.longestMatch(lower, false);
+        }
+        if (cluster == null)
+        {
+            cluster = suffixes.longestMatch(lower, true);
+        }
+        if (cluster == null)
+        {
+            cluster = matchPattern(lower);
+        }
+        return cluster == null ? group : cluster;
+    }
+
+    private String matchPattern(String lower)
+    {
+        for (int i = 0; i < patterns.size(); i++)
+        {
+            Matcher rule = patterns.get(i).matcher(lower);
+            if (rule.matches())
+            {
+                StringBuffer cluster = new StringBuffer();
+                rule.appendReplacement(cluster, patternClusters.get(i));
+                return cluster.toString();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A trie of strings, read forwards for prefixes or backwards for suffixes. The children of a node are kept in
+     * sorted arrays to keep large rule sets small.
+     */
+    private static final class Trie
+    {
+        private final Node root = new Node();
+        private boolean empty = true;
+
+        private boolean put(String key, String value, boolean reverse)
+        {
+            Node node = root;
+            for (int i = 0; i < key.length(); i++)
+            {
+                node = node.child(key.charAt(reverse ? key.length() - 1 - i : i), true);
+            }
+            if (node.value != null)
+            {
+                return false;
+            }
+            node.value = value;
+            empty = false;
+            return true;
+        }
+
+        private String longestMatch(String key, boolean reverse)
+        {
+            if (empty)
+            {
+                return null;
+            }
+            Node node = root;
+            String value = root.value;
+            for (int i = 0; i < key.length() && node != null; i++)
+            {
+                node = node.child(key.charAt(reverse ? key.length() - 1 - i : i), false);
+                if (node != null && node.value != null)
+                {
+                    value = node.value;
+                }
+            }
+            return value;
+        }
+
+        private boolean isEmpty()
+        {
+            return empty;
+        }
+    }
+
+    private static final class Node
+    {
+        private char[] keys = new char[0];
+        private Node[] children = new Node[0];
+        private String value;
+
+        private Node child(char key, boolean create)
+        {
+            int index = Arrays.binarySearch(keys, key);
+            if (index >= 0)
+            {
+                return children[index];
+            }
+            if (!create)
+            {
+                return null;
+            }
+            int insert = -index - 1;
+            char[] newKeys = new char[keys.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, insert);
+            System.arraycopy(children, 0, newChildren, 0, insert);
+            System.arraycopy(keys, insert, newKeys, insert + 1, keys.length - insert);
+            System.arraycopy(children, insert, newChildren, insert + 1, children.length - insert);
+            Node child = new Node();
+            newKeys[insert] = key;
+            newChildren[insert] = child;
+            keys = newKeys;
+            children = newChildren;
+            return child;
+        }
+    }
+
+    public static final class Builder
+    {
+        private final Map<String, String> exact = new HashMap<>();
+        private final Trie prefixes = new Trie();
+        private final Trie suffixes = new Trie();
+        private final List<Pattern> patterns = new ArrayList<>();
+        private final List<String> patternClusters = new ArrayList<>();
+        private int cacheSize = DEFAULT_CACHE_SIZE;
+
+        private Builder()
+        {
+        }
+
+        /**
+         * Maps a group to a cluster.
+         *
+         * @param group   The group, case insensitive.
+         * @param cluster The cluster.
+         *
+         * @return The builder.
+         *
+         * @throws IllegalArgumentException If the group was already mapped.
+         */
+        public Builder group(String group, String cluster)
+        {
+            if (exact.put(group.toLowerCase(), cluster) != null)
+            {
+                throw new IllegalArgumentException("Duplicate group " + group);
+            }
+            return this;
+        }
+
+        /**
+         * Maps all groups starting with a prefix to a cluster.
+         *
+         * @param prefix  The prefix, case insensitive.
+         * @param cluster The cluster.
+         *
+         * @return The builder.
+         *
+         * @throws IllegalArgumentException If the prefix was already mapped.
+         */
+        public Builder groupPrefix(String prefix, String cluster)
+        {
+            if (!prefixes.put(prefix.toLowerCase(), cluster, false))
+            {
+                throw new IllegalArgumentException("Duplicate groupPrefix " + prefix);
+            }
+            return this;
+        }
+
+        /**
+         * Maps all groups ending with a suffix to a cluster.
+         *
+         * @param suffix  The suffix, case insensitive.
+         * @param cluster The cluster.
+         *
+         * @return The builder.
+         *
+         * @throws IllegalArgumentException If the suffix was already mapped.
+         */
+        public Builder groupSuffix(String suffix, String cluster)
+        {
+            if (!suffixes.put(suffix.toLowerCase(), cluster, true))
+            {
+                throw new IllegalArgumentException("Duplicate groupSuffix " + suffix);
+            }
+            return this;
+        }
+
+        /**
+         * Maps all groups matching a regex to a cluster.
+         *
+         * @param regex   The regex the whole lower case group must match.
+         * @param cluster The cluster, can refer to groups of the regex with $1, $2 etc. or to named groups with ${name}.
+         *
+         * @return The builder.
+         *
+         * @throws IllegalArgumentException If the regex is invalid or the cluster refers to a group it does not have.
+         */
+        public Builder groupPattern(String regex, String cluster)
+        {
+            Pattern pattern;
+            try
+            {
+                pattern = Pattern.compile(regex);
+            }
+            catch (PatternSyntaxException e)
+            {
+                throw new IllegalArgumentException("Invalid groupPattern " + regex + ": " + e.getDescription());
+            }
+            //Fail now rather than on the first event
+            int groupCount = pattern.matcher("").groupCount();
+            for (int i = 0; i < cluster.length(); i++)
+            {
+                char c = cluster.charAt(i);
+                if (c == '\\')
+                {
+                    i++;
+                }
+                else if (c == '$' && i + 1 < cluster.length() && cluster.charAt(i + 1) == '{')
+                {
+                    int end = cluster.indexOf('}', i);
+                    if (end == -1 || !regex.contains("(?<" + cluster.substring(i + 2, end) + ">"))
+                    {
+                        throw new IllegalArgumentException("Cluster " + cluster + " refers to a group groupPattern " + regex + " does not have");
+                    }
+                    i = end;
+                }
+                else if (c == '$' && (i + 1 >= cluster.length() || !Character.isDigit(cluster.charAt(i + 1)) || cluster.charAt(i + 1) - '0' > groupCount))
+                {
+                    throw new IllegalArgumentException("Cluster " + cluster + " refers to a group groupPattern " + regex + " does not have");
+                }
+            }
+            patterns.add(pattern);
+            patternClusters.add(cluster);
+            return this;
+        }
+
+        /**
+         * Sets how many resolved groups are remembered.
+         *
+         * @param cacheSize The number of groups.
+         *
+         * @return The builder.
+         */
+        public Builder cacheSize(int cacheSize)
+        {
+            this.cacheSize = cacheSize;
+            return this;
+        }
+
+        public GroupMatcher build()
+        {
+            return new GroupMatcher(this);
+        }
+    }
+}
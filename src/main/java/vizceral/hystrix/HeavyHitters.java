@@ -0,0 +1,156 @@
+package vizceral.hystrix;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Finds the heaviest keys of a weighted stream with the Space-Saving algorithm, using a fixed number of counters.
+ * When a new key arrives and all counters are taken, the smallest counter is handed over to the new key and keeps its
+ * count, which may overestimate the new key by at most that count. Any key heavier than total weight / capacity is
+ * guaranteed to have a counter.
+ * <p>
+ * Counts are halved by {@link #decay()}, so the heavy hitters follow the recent traffic rather than all traffic since
+ * startup.
+ * <p>
+ * The methods are synchronized, but meant to be offered to by a single thread, see {@link TopConnections}, so the lock is
+ * only contended by readers.
+ */
+public class HeavyHitters
+{
+    private final int capacity;
+    private final Map<String, Counter> counters = new HashMap<>();
+    private final TreeSet<Counter> byCount = new TreeSet<>((a, b) -> a.count != b.count ? Long.compare(a.count, b.count) : Long.compare(a.id, b.id));
+    private long nextId;
+
+    /**
+     * Creates a new heavy hitters tracker.
+     *
+     * @param capacity The number of counters.
+     */
+    public HeavyHitters(int capacity)
+    {
+        if (capacity <= 0)
+        {
+            throw new IllegalArgumentException("Capacity must be larger than 0");
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * Adds weight to a key.
+     *
+     * @param key    The key.
+     * @param weight The weight to add, keys with no weight are ignored.
+     */
+    public synchronized void offer(String key, long weight)
+    {
+        if (weight <= 0)
+        {
+            return;
+        }
+        Counter counter = counters.get(key);
+        if (counter == null)
+        {
+            long base = 0;
+            if (counters.size() >= capacity)
+            {
+                Counter smallest = byCount.pollFirst();
+                counters.remove(smallest.key);
+                base = smallest.count;
+            }
+            counter = new Counter(key, base, nextId++);
+            counters.put(key, counter);
+        }
+        else
+        {
+            byCount.remove(counter);
+        }
+        counter.count += weight;
+        byCount.add(counter);
+    }
+
+    /**
+     * Gets the heaviest keys.
+     *
+     * @param k How many keys to get.
+     *
+     * @return The keys, heaviest first.
+     */
+    public synchronized List<String> top(int k)
+    {
+        List<String> top = new ArrayList<>(Math.min(k, counters.size()));
+        Iterator<Counter> iterator = byCount.descendingIterator();
+        while (iterator.hasNext() && top.size() < k)
+        {
+            top.add(iterator.next().key);
+        }
+        return top;
+    }
+
+    /**
+     * Gets the estimated weights of all tracked keys.
+     *
+     * @return Copy of the weight per key.
+     */
+    public synchronized Map<String, Long> getCounts()
+    {
+        Map<String, Long> counts = new HashMap<>();
+        for (Counter counter : counters.values())
+        {
+            counts.put(counter.key, counter.count);
+        }
+        return counts;
+    }
+
+    /**
+     * Gets the estimated weight of a key.
+     *
+     * @param key The key.
+     *
+     * @return The estimate, which may be too high but never too low for tracked keys, or 0 if not tracked.
+     */
+    public synchronized long getCount(String key)
+    {
+        Counter counter = counters.get(key);
+        return counter == null ? 0 : counter.count;
+    }
+
+    /**
+     * Halves all counts, dropping keys that reach 0.
+     */
+    public synchronized void decay()
+    {
+        List<Counter> all = new ArrayList<>(byCount);
+        byCount.clear();
+        for (Counter counter : all)
+        {
+            counter.count /= 2;
+            if (counter.count == 0)
+            {
+                counters.remove(counter.key);
+            }
+            else
+            {
+                byCount.add(counter);
+            }
+        }
+    }
+
+    private static final class Counter
+    {
+        private final String key;
+        private final long id;
+        private long count;
+
+        private Counter(String key, long count, long id)
+        {
+            this.key = key;
+            this.count = count;
+            this.id = id;
+        }
+    }
+}
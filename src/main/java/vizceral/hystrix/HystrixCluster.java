@@ -1,30 +1,37 @@
 package vizceral.hystrix;
 
-import rx.schedulers.Schedulers;
-import rx.subjects.ReplaySubject;
-
 import java.text.DecimalFormat;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.TimeUnit;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A monitored cluster through hystrix, together with all events for it.
+ * <p>
+ * Events are applied by a single writer thread at a time. Readers never see the writer's state directly, they see the
+ * state as of the last {@link #publish()}, so everything read from one snapshot is consistent. Publishing only copies the
+ * commands and rollups changed since the previous publish, see {@link SnapshotMap}.
  */
 public class HystrixCluster
 {
     private static final DecimalFormat FORMAT = new DecimalFormat("#.##");
     private final String name;
-    private final ConcurrentMap<String, HystrixEvent> events = new ConcurrentHashMap<>();
-    private final ReplaySubject<Integer> maxSubject;
+    private final Map<String, HystrixEvent> events = new HashMap<>();
+    private final Map<String, ConnectionRollup> rollups = new HashMap<>();
+    private final MaxVolumeWindow maxVolumeWindow;
+    private int sumOfOutgoingRequests;
+    private long lastEventTime;
+    private final Map<String, HystrixEvent> changedEvents = new HashMap<>();
+    private final Set<String> changedRollups = new HashSet<>();
+    private long version;
+    private volatile Snapshot published = Snapshot.EMPTY;
+    private volatile long lastTargetedTime;
 
     /**
      * Creates a new cluster
@@ -35,19 +42,174 @@ public class HystrixCluster
     public HystrixCluster(String name, int maxTrafficTtlSeconds)
     {
         this.name = name;
-        this.maxSubject = ReplaySubject.createWithTime(maxTrafficTtlSeconds, TimeUnit.SECONDS, Schedulers.computation());
+        this.maxVolumeWindow = new MaxVolumeWindow(maxTrafficTtlSeconds);
     }
 
     /**
-     * Adds an event, storing it as the last one for the command.
+     * Adds an event, storing it as the last one for the command, and publishes the new state.
      *
      * @param event The event to add.
+     *
+     * @return true if this is the first event for the command, otherwise false.
+     */
+    public boolean addEvent(HystrixEvent event)
+    {
+        boolean first = applyEvent(event);
+        publish();
+        return first;
+    }
+
+    /**
+     * Removes the event of a command, if it still is the last one for the command, and publishes the new state.
+     *
+     * @param event The event to remove.
+     *
+     * @return true if it was removed, false if it has been replaced by a newer event.
+     */
+    public boolean removeEvent(HystrixEvent event)
+    {
+        boolean removed = applyRemoval(event);
+        publish();
+        return removed;
+    }
+
+    /**
+     * Adds an event without publishing it. Must only be called by the writer thread.
+     *
+     * @param event The event to add.
+     *
+     * @return true if this is the first event for the command, otherwise false.
+     */
+    public boolean applyEvent(HystrixEvent event)
+    {
+        HystrixEvent previous = events.put(event.getName(), event);
+        int currentSum = sumOfOutgoingRequests + event.getTotalRequestCount();
+        //Add before removing, so the rollup is not dropped and recreated when the command stays in the same group
+        if (event.getGroup() != null)
+        {
+            rollups.computeIfAbsent(event.getGroup(), ConnectionRollup::new).add(event);
+            changedRollups.add(event.getGroup());
+        }
+        if (previous != null)
+        {
+            currentSum -= previous.getTotalRequestCount();
+            removeFromRollup(previous);
+        }
+        sumOfOutgoingRequests = currentSum;
+        lastEventTime = Math.max(lastEventTime, event.getCreated());
+        maxVolumeWindow.record(event.getCreated(), currentSum);
+        changedEvents.put(event.getName(), event);
+        return previous == null;
+    }
+
+    /**
+     * Removes the event of a command without publishing it. Must only be called by the writer thread.
+     *
+     * @param event The event to remove.
+     *
+     * @return true if it was removed, false if it has been replaced by a newer event.
+     */
+    public boolean applyRemoval(HystrixEvent event)
+    {
+        if (!events.remove(event.getName(), event))
+        {
+            return false;
+        }
+        sumOfOutgoingRequests -= event.getTotalRequestCount();
+        removeFromRollup(event);
+        changedEvents.put(event.getName(), null);
+        return true;
+    }
+
+    /**
+     * Makes the changes applied since the last publish visible to readers. Must only be called by the writer thread.
+     */
+    public void publish()
+    {
+        if (changedEvents.isEmpty())
+        {
+            return;
+        }
+        Map<String, ConnectionRollup> rollupCopies = new HashMap<>();
+        for (String target : changedRollups)
+        {
+            ConnectionRollup rollup = rollups.get(target);
+            rollupCopies.put(target, rollup == null ? null : rollup.copy());
+        }
+        Snapshot current = published;
+        published = new Snapshot(current.events.with(changedEvents), current.rollups.with(rollupCopies), sumOfOutgoingRequests, lastEventTime, ++version);
+        changedEvents.clear();
+        changedRollups.clear();
+    }
+
+    private void removeFromRollup(HystrixEvent event)
+    {
+        if (event.getGroup() != null)
+        {
+            ConnectionRollup rollup = rollups.get(event.getGroup());
+            rollup.remove(event);
+            changedRollups.add(event.getGroup());
+            if (rollup.getCommands() == 0)
+            {
+                rollups.remove(event.getGroup());
+            }
+        }
+    }
+
+    /**
+     * Gets the version of the published state, which changes every time new changes are published.
+     *
+     * @return The version.
      */
-    public void addEvent(HystrixEvent event)
+    public long getVersion()
     {
-        events.put(event.getName(), event);
-        int currentSum = events.values().stream().mapToInt(c -> c.getTotalRequestCount()).sum();
-        maxSubject.onNext(currentSum);
+        return published.version;
+    }
+
+    /**
+     * Gets the last event of a command.
+     *
+     * @param command The name of the command.
+     *
+     * @return The event, or null if there is none.
+     */
+    public HystrixEvent getEvent(String command)
+    {
+        return published.events.get(command);
+    }
+
+    /**
+     * Gets when the latest event was received for this cluster. Unlike {@link #getUpdated()} this is not affected by
+     * events being removed.
+     *
+     * @return Epoch millis, or 0 if no event has been received.
+     */
+    public long getLastEventTime()
+    {
+        return published.lastEventTime;
+    }
+
+    /**
+     * Marks that another cluster has sent traffic to this cluster.
+     *
+     * @param timestamp Epoch millis of when the traffic was seen.
+     */
+    public void markTargeted(long timestamp)
+    {
+        if (timestamp > lastTargetedTime)
+        {
+            lastTargetedTime = timestamp;
+        }
+    }
+
+    /**
+     * Gets when another cluster was last seen sending traffic to this cluster.
+     *
+     * @return Epoch millis, or 0 if never seen.
+     */
+    public long getLastTargetedTime()
+    {
+        return lastTargetedTime;
     }
 
     /***
@@ -56,7 +218,65 @@ public class HystrixCluster
      */
     public int getSumOfOutgoingRequests()
     {
-        return events.values().stream().mapToInt(c -> c.getTotalRequestCount()).sum();
+        return published.sumOfOutgoingRequests;
+    }
+
+    /**
+     * Gets the running totals for the connection from this cluster towards a group.
+     *
+     * @param group The group (cluster) the connection goes to.
+     *
+     * @return The rollup, or null if no command has sent requests towards the group.
+     */
+    public ConnectionRollup getRollup(String group)
+    {
+        return published.rollups.get(group);
+    }
+
+    /**
+     * Gets the running totals for the connection towards a group, including changes not yet published. Must only be
+     * called by the writer thread.
+     *
+     * @param group The group (cluster) the connection goes to.
+     *
+     * @return The rollup, or null if no command has sent requests towards the group.
+     */
+    public ConnectionRollup getCurrentRollup(String group)
+    {
+        return rollups.get(group);
+    }
+
+    /**
+     * Gets the last event of a command, including changes not yet published. Must only be called by the writer thread.
+     *
+     * @param command The name of the command.
+     *
+     * @return The event, or null if there is none.
+     */
+    public HystrixEvent getCurrentEvent(String command)
+    {
+        return events.get(command);
+    }
+
+    /**
+     * Gets the last event of every command, including changes not yet published. Must only be called by the writer
+     * thread.
+     *
+     * @return The events.
+     */
+    public Collection<HystrixEvent> getCurrentEvents()
+    {
+        return Collections.unmodifiableCollection(events.values());
+    }
+
+    /**
+     * Gets the running totals for all connections going out from this cluster.
+     *
+     * @return Collection of rollups, one per target group.
+     */
+    public Collection<ConnectionRollup> getRollups()
+    {
+        return published.rollups.values();
     }
 
     /**
@@ -76,7 +296,7 @@ public class HystrixCluster
      */
     public Collection<HystrixEvent> getEvents()
     {
-        return Collections.unmodifiableCollection(events.values());
+        return published.events.values();
     }
 
     /**
@@ -88,11 +308,26 @@ public class HystrixCluster
      */
     public Collection<VizceralConnection> getConnections(Configuration configuration)
     {
+        return getConnections(configuration, null);
+    }
+
+    /**
+     * Gets all connections going out from this cluster, with the notices of the statistics kept on them.
+     *
+     * @param configuration The configuration to use for creating notices.
+     * @param statistics    The statistics of the connections, or null for only the threshold notices.
+     *
+     * @return Collection of connections.
+     */
+    public Collection<VizceralConnection> getConnections(Configuration configuration, ConnectionStatistics statistics)
+    {
+        long now = System.currentTimeMillis();
         Map<String, AtomicInteger> errorsPerGroup = new HashMap<>();
         Map<String, AtomicInteger> requestsPerGroup = new HashMap<>();
         Map<String, AtomicInteger> timeoutsPerGroup = new HashMap<>();
         Map<String, List<VizceralNotice>> notices = new HashMap<>();
-        for (HystrixEvent hystrixEvent : events.values())
+        Snapshot snapshot = published;
+        for (HystrixEvent hystrixEvent : snapshot.events.values())
         {
             String group = hystrixEvent.getGroup();
             if (!errorsPerGroup.containsKey(group))
@@ -129,7 +364,19 @@ public class HystrixCluster
         List<VizceralConnection> connections = new ArrayList<>();
         for (String group : errorsPerGroup.keySet())
         {
-            VizceralConnection connection = new VizceralConnection(group, errorsPerGroup.get(group).get(), requestsPerGroup.get(group).get(), timeoutsPerGroup.get(group).get(), notices.get(group));
+            ConnectionRollup rollup = snapshot.rollups.get(group);
+            boolean circuitBreakerOpen = rollup != null && rollup.isCircuitBreakerOpen();
+            LatencyPercentiles latency = rollup == null ? null : rollup.getLatency();
+            Integer latencyThreshold = configuration.getLatencyThresholdMillis();
+            if (latency != null && latencyThreshold != null && latencyThreshold < latency.getP99())
+            {
+                notices.get(group).add(VizceralNotice.newBuilder().severity(NoticeSeverity.WARNING).title("p99 latency " + latency.getP99() + " ms").subtitle("p50 " + latency.getP50() + " ms, p90 " + latency.getP90() + " ms").build());
+            }
+            if (statistics != null && rollup != null)
+            {
+                notices.get(group).addAll(statistics.getNotices(name, rollup, now));
+            }
+            VizceralConnection connection = new VizceralConnection(group, errorsPerGroup.get(group).get(), requestsPerGroup.get(group).get(), timeoutsPerGroup.get(group).get(), circuitBreakerOpen, notices.get(group), latency);
             connections.add(connection);
         }
         return Collections.unmodifiableCollection(connections);
@@ -142,12 +389,27 @@ public class HystrixCluster
      */
     public int getMaxValue()
     {
-        int size = maxSubject.size();
-        if (size == 0)
-        {
-            return 0;
-        }
-        return Collections.max(Arrays.asList(maxSubject.getValues(new Integer[size])));
+        return maxVolumeWindow.getMax(System.currentTimeMillis());
+    }
+
+    /**
+     * Gets the sliding window of max volumes.
+     *
+     * @return The window.
+     */
+    public MaxVolumeWindow getMaxVolumeWindow()
+    {
+        return maxVolumeWindow;
+    }
+
+    /**
+     * Gets when the last event was received for this cluster.
+     *
+     * @return Epoch millis of the last event, or 0 if no events have been received.
+     */
+    public long getUpdated()
+    {
+        return published.events.values().stream().mapToLong(HystrixEvent::getCreated).max().orElse(0);
     }
 
     /**
@@ -157,6 +419,25 @@ public class HystrixCluster
      */
     public boolean anyRejected()
     {
-        return events.values().stream().anyMatch(c -> c.getRejectedCount() > 0);
+        return published.rollups.values().stream().anyMatch(c -> c.getRejected() > 0);
+    }
+
+    private static final class Snapshot
+    {
+        private static final Snapshot EMPTY = new Snapshot(SnapshotMap.empty(), SnapshotMap.empty(), 0, 0, 0);
+        private final SnapshotMap<HystrixEvent> events;
+        private final SnapshotMap<ConnectionRollup> rollups;
+        private final int sumOfOutgoingRequests;
+        private final long lastEventTime;
+        private final long version;
+
+        private Snapshot(SnapshotMap<HystrixEvent> events, SnapshotMap<ConnectionRollup> rollups, int sumOfOutgoingRequests, long lastEventTime, long version)
+        {
+            this.version = version;
+            this.events = events;
+            this.rollups = rollups;
+            this.sumOfOutgoingRequests = sumOfOutgoingRequests;
+            this.lastEventTime = lastEventTime;
+        }
     }
 }
@@ -13,7 +13,8 @@ public class HystrixEvent
     private final boolean isCircuitBreakerOpen;
     private final String group;
     private final String name;
-    private final long created = System.currentTimeMillis();
+    private final long created;
+    private final LatencyPercentiles latency;
 
     private HystrixEvent(Builder builder)
     {
@@ -25,6 +26,8 @@ public class HystrixEvent
         isCircuitBreakerOpen = builder.isCircuitBreakerOpen;
         group = builder.group;
         name = builder.name;
+        created = builder.created == 0 ? System.currentTimeMillis() : builder.created;
+        latency = builder.latency;
     }
 
     public static Builder newBuilder(HystrixEvent copy)
@@ -38,6 +41,7 @@ public class HystrixEvent
         builder.isCircuitBreakerOpen = copy.isCircuitBreakerOpen;
         builder.group = copy.group;
         builder.name = copy.name;
+        builder.latency = copy.latency;
         return builder;
     }
 
@@ -131,6 +135,17 @@ public class HystrixEvent
         return totalRequestCount;
     }
 
+    /**
+     * Gets the latency percentiles of the command, from the start of the command until its result (including
+     * queueing and fallbacks).
+     *
+     * @return The percentiles, or null if the event had none.
+     */
+    public LatencyPercentiles getLatency()
+    {
+        return latency;
+    }
+
     @Override
     public String toString()
     {
@@ -142,6 +157,7 @@ public class HystrixEvent
                 ", group='" + group + '\'' +
                 ", name='" + name + '\'' +
                 ", created=" + created +
+                ", latency=" + latency +
                 '}';
     }
 
@@ -160,6 +176,8 @@ public class HystrixEvent
         private int requestCount;
         private int timeoutCount;
         private int rejectedCount;
+        private long created;
+        private LatencyPercentiles latency;
 
         private Builder()
         {
@@ -217,5 +235,24 @@ public class HystrixEvent
             this.rejectedCount = rejectedCount;
             return this;
         }
+
+        /**
+         * Sets when the event was received, e.g. when restoring an event from a checkpoint. Defaults to now.
+         *
+         * @param created Epoch millis.
+         *
+         * @return The builder.
+         */
+        public Builder created(long created)
+        {
+            this.created = created;
+            return this;
+        }
+
+        public Builder latency(LatencyPercentiles latency)
+        {
+            this.latency = latency;
+            return this;
+        }
     }
 }
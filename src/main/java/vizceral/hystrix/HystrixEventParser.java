@@ -0,0 +1,193 @@
+package vizceral.hystrix;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+
+/**
+ * Parses the data of a hystrix Server Sent Event into a hystrix event. Shared by the different reader implementations so
+ * they produce identical events.
+ * <p>
+ * The data is read as a stream of tokens, only keeping the fields that are used, so the many fields of an event that
+ * are not used (and the events of thread pools) do not allocate a tree.
+ */
+public class HystrixEventParser
+{
+    private static final Logger logger = LoggerFactory.getLogger(HystrixEventParser.class);
+    private static final JsonFactory jsonFactory = new JsonFactory();
+    private final Configuration configuration;
+
+    /**
+     * Creates a new parser.
+     *
+     * @param configuration The configuration used to map hystrix groups to clusters.
+     */
+    public HystrixEventParser(Configuration configuration)
+    {
+        this.configuration = configuration;
+    }
+
+    /**
+     * Parses the data of one Server Sent Event.
+     *
+     * @param data The json data of the event.
+     * @return The parsed event, or null if the data is not a valid HystrixCommand event.
+     */
+    public HystrixEvent parse(String data)
+    {
+        try (JsonParser parser = jsonFactory.createParser(data))
+        {
+            if (parser.nextToken() != JsonToken.START_OBJECT)
+            {
+                return null;
+            }
+            String type = null;
+            String commandName = null;
+            String hystrixGroup = null;
+            int semaphoreRejected = 0;
+            int threadPoolRejected = 0;
+            int timeouts = 0;
+            int failures = 0;
+            int shortCircuited = 0;
+            int successes = 0;
+            int requests = 0;
+            boolean circuitBreakerOpen = false;
+            LatencyPercentiles latencyTotal = null;
+            LatencyPercentiles latencyExecute = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME)
+            {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                switch (field)
+                {
+                    case "type":
+                        type = parser.getValueAsString();
+                        if (!"HystrixCommand".equals(type))
+                        {
+                            return null;
+                        }
+                        break;
+                    case "name":
+                        commandName = parser.getValueAsString();
+                        break;
+                    case "group":
+                        hystrixGroup = parser.getValueAsString();
+                        break;
+                    case "rollingCountSemaphoreRejected":
+                        semaphoreRejected = parser.getValueAsInt();
+                        break;
+                    case "rollingCountThreadPoolRejected":
+                        threadPoolRejected = parser.getValueAsInt();
+                        break;
+                    case "rollingCountTimeout":
+                        timeouts = parser.getValueAsInt();
+                        break;
+                    case "rollingCountFailure":
+                        failures = parser.getValueAsInt();
+                        break;
+                    case "rollingCountShortCircuited":
+                        shortCircuited = parser.getValueAsInt();
+                        break;
+                    case "rollingCountSuccess":
+                        successes = parser.getValueAsInt();
+                        break;
+                    case "requestCount":
+                        requests = parser.getValueAsInt();
+                        break;
+                    case "isCircuitBreakerOpen":
+                        circuitBreakerOpen = parser.getValueAsBoolean();
+                        break;
+                    case "latencyTotal":
+                        latencyTotal = parseLatency(parser);
+                        break;
+                    case "latencyExecute":
+                        latencyExecute = parseLatency(parser);
+                        break;
+                    default:
+                        parser.skipChildren();
+                }
+            }
+            if (type == null)
+            {
+                return null;
+            }
+            if (hystrixGroup == null)
+            {
+                logger.warn("Invalid hystrix event without a group for command {}", commandName);
+                return null;
+            }
+            String group = configuration.getEffectiveGroup(hystrixGroup);
+            if (group.isEmpty())
+            {
+                logger.warn("Invalid hystrix event with an empty group for command {}", commandName);
+                return null;
+            }
+            if (TopConnections.OTHER.equals(group))
+            {
+                logger.warn("Invalid hystrix event with the reserved group {} for command {}", group, commandName);
+                return null;
+            }
+            return HystrixEvent
+                    .newBuilder()
+                    .rejectedCount((semaphoreRejected + threadPoolRejected) / 10)
+                    .timeoutCount(timeouts / 10)
+                    .errorCount((failures + semaphoreRejected + shortCircuited) / 10)
+                    .requestCount(successes / 10)
+                    .totalRequestCount(requests / 10)
+                    .group(group)
+                    .name(commandName)
+                    .isCircuitBreakerOpen(circuitBreakerOpen)
+                    .latency(latencyTotal != null ? latencyTotal : latencyExecute)
+                    .build();
+        }
+        catch (IOException e)
+        {
+            logger.error("Could not parse json", e);
+            return null;
+        }
+    }
+
+    /**
+     * Reads the 50th, 90th and 99th percentile out of a hystrix latency object, e.g.
+     * <code>{"0":1,"25":3,"50":5,"75":9,"90":14,"95":21,"99":48,"99.5":60,"100":112}</code>.
+     *
+     * @return The percentiles, or null if the value is not an object.
+     */
+    private static LatencyPercentiles parseLatency(JsonParser parser) throws IOException
+    {
+        if (parser.currentToken() != JsonToken.START_OBJECT)
+        {
+            parser.skipChildren();
+            return null;
+        }
+        int p50 = 0;
+        int p90 = 0;
+        int p99 = 0;
+        while (parser.nextToken() == JsonToken.FIELD_NAME)
+        {
+            String percentile = parser.getCurrentName();
+            parser.nextToken();
+            if ("50".equals(percentile))
+            {
+                p50 = parser.getValueAsInt();
+            }
+            else if ("90".equals(percentile))
+            {
+                p90 = parser.getValueAsInt();
+            }
+            else if ("99".equals(percentile))
+            {
+                p99 = parser.getValueAsInt();
+            }
+            else
+            {
+                parser.skipChildren();
+            }
+        }
+        return new LatencyPercentiles(p50, p90, p99);
+    }
+}
@@ -0,0 +1,185 @@
+package vizceral.hystrix;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Applies all changes to clusters on a fixed set of writer threads.
+ * <p>
+ * Each cluster is assigned to one shard by its name, and every change to it runs on that shard's thread, so the cluster
+ * never has more than one writer and needs no locking. Changes are handed over through a lock free queue. When a
+ * shard has drained its queue (or applied a batch), the clusters it changed are published for readers.
+ */
+public class IngestionScheduler
+{
+    private static final Logger logger = LoggerFactory.getLogger(IngestionScheduler.class);
+    private static final int MAX_BATCH = 1024;
+    private final Worker[] workers;
+
+    /**
+     * Creates and starts the writer threads.
+     *
+     * @param name    Prefix of the thread names.
+     * @param threads The number of shards.
+     */
+    public IngestionScheduler(String name, int threads)
+    {
+        workers = new Worker[threads];
+        for (int i = 0; i < threads; i++)
+        {
+            workers[i] = new Worker(name + "-" + i);
+            workers[i].thread.start();
+        }
+    }
+
+    /**
+     * Runs a change on the writer thread of the cluster. Never blocks.
+     *
+     * @param cluster The cluster to change.
+     * @param change  The change to apply. Runs on the writer thread, must not block.
+     */
+    public void submit(HystrixCluster cluster, Consumer<HystrixCluster> change)
+    {
+        workers[shardOf(cluster.getName(), workers.length)].submit(new Task(cluster, change));
+    }
+
+    /**
+     * Gets the shard, i.e. the writer thread, a cluster is changed on.
+     *
+     * @param clusterName The name of the cluster.
+     * @param shards      The number of shards.
+     *
+     * @return The shard, from 0 to shards - 1.
+     */
+    public static int shardOf(String clusterName, int shards)
+    {
+        return Math.floorMod(clusterName.hashCode(), shards);
+    }
+
+    /**
+     * Gets the number of changes waiting to be applied, over all shards. Walks the queues, so it's not cheap.
+     *
+     * @return Number of waiting changes.
+     */
+    public int getQueueDepth()
+    {
+        int depth = 0;
+        for (Worker worker : workers)
+        {
+            depth += worker.queue.size();
+        }
+        return depth;
+    }
+
+    /**
+     * Stops the writer threads. Changes still waiting are dropped.
+     */
+    public void stop()
+    {
+        for (Worker worker : workers)
+        {
+            worker.running = false;
+            LockSupport.unpark(worker.thread);
+        }
+    }
+
+    private static class Task
+    {
+        private final HystrixCluster cluster;
+        private final Consumer<HystrixCluster> change;
+
+        private Task(HystrixCluster cluster, Consumer<HystrixCluster> change)
+        {
+            this.cluster = cluster;
+            this.change = change;
+        }
+    }
+
+    private static class Worker implements Runnable
+    {
+        private final Queue<Task> queue = new ConcurrentLinkedQueue<>();
+        private final Set<HystrixCluster> changed = Collections.newSetFromMap(new IdentityHashMap<>());
+        private final Thread thread;
+        private volatile boolean parked;
+        private volatile boolean running = true;
+
+        private Worker(String name)
+        {
+            thread = new Thread(this, name);
+            thread.setDaemon(true);
+        }
+
+        private void submit(Task task)
+        {
+            queue.add(task);
+            if (parked)
+            {
+                LockSupport.unpark(thread);
+            }
+        }
+
+        @Override
+        public void run()
+        {
+            int batch = 0;
+            while (running)
+            {
+                Task task = queue.poll();
+                if (task != null)
+                {
+                    try
+                    {
+                        task.change.accept(task.cluster);
+                    }
+                    catch (Throwable ex)
+                    {
+                        //Any error of one change is logged, ending the thread would stop every cluster of this shard
+                        logger.error("Could not apply change to cluster " + task.cluster.getName(), ex);
+                    }
+                    changed.add(task.cluster);
+                    if (++batch < MAX_BATCH)
+                    {
+                        continue;
+                    }
+                }
+                publish();
+                batch = 0;
+                if (task == null)
+                {
+                    parked = true;
+                    //Checked after announcing that we park, a producer either sees parked or we see its task
+                    if (queue.isEmpty())
+                    {
+                        LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(100));
+                    }
+                    parked = false;
+                }
+            }
+        }
+
+        private void publish()
+        {
+            for (HystrixCluster cluster : changed)
+            {
+                try
+                {
+                    cluster.publish();
+                }
+                catch (Throwable ex)
+                {
+                    logger.error("Could not publish cluster " + cluster.getName(), ex);
+                }
+            }
+            changed.clear();
+        }
+    }
+}
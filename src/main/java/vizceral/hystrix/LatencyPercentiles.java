@@ -0,0 +1,80 @@
+package vizceral.hystrix;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Latency percentiles of a hystrix command, or of a connection where they are the mean of the percentiles of its
+ * commands weighted by their request volume.
+ */
+public class LatencyPercentiles
+{
+    private final int p50;
+    private final int p90;
+    private final int p99;
+
+    /**
+     * Creates new percentiles.
+     *
+     * @param p50 The median in milliseconds.
+     * @param p90 The 90th percentile in milliseconds.
+     * @param p99 The 99th percentile in milliseconds.
+     */
+    public LatencyPercentiles(int p50, int p90, int p99)
+    {
+        this.p50 = p50;
+        this.p90 = p90;
+        this.p99 = p99;
+    }
+
+    /**
+     * Gets the median.
+     *
+     * @return Milliseconds.
+     */
+    public int getP50()
+    {
+        return p50;
+    }
+
+    /**
+     * Gets the 90th percentile.
+     *
+     * @return Milliseconds.
+     */
+    public int getP90()
+    {
+        return p90;
+    }
+
+    /**
+     * Gets the 99th percentile.
+     *
+     * @return Milliseconds.
+     */
+    public int getP99()
+    {
+        return p99;
+    }
+
+    /**
+     * Writes the percentiles to the metadata of a vizceral node or connection.
+     *
+     * @param metadata The metadata.
+     */
+    public void writeMetadata(ObjectNode metadata)
+    {
+        metadata.put("latencyP50", p50)
+                .put("latencyP90", p90)
+                .put("latencyP99", p99);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "LatencyPercentiles{" +
+                "p50=" + p50 +
+                ", p90=" + p90 +
+                ", p99=" + p99 +
+                '}';
+    }
+}
@@ -1,7 +1,5 @@
 package vizceral.hystrix;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.node.ArrayNode;
 import io.netty.buffer.ByteBuf;
 import io.reactivex.netty.RxNetty;
 import io.reactivex.netty.protocol.http.server.HttpServer;
@@ -27,6 +25,7 @@ public class Main
                 return;
             }
             List<VizceralAggregator> aggregators = new ArrayList<>();
+            List<ConfigurationWatcher> watchers = new ArrayList<>();
             int port = 0;
             for (String file : args)
             {
@@ -54,51 +53,12 @@ public class Main
                 VizceralAggregator vizceralAggregator = new VizceralAggregator(configuration);
                 aggregators.add(vizceralAggregator);
                 vizceralAggregator.start();
+                ConfigurationWatcher watcher = new ConfigurationWatcher(file, vizceralAggregator::reload);
+                watcher.start();
+                watchers.add(watcher);
             }
 
-            HttpServer<ByteBuf, ByteBuf> server = RxNetty.<ByteBuf, ByteBuf>newHttpServerBuilder(port, (request, response) ->
-            {
-                JsonNode jsonNode = null;
-                for (VizceralAggregator vizceralAggregator : aggregators)
-                {
-                    if (jsonNode == null)
-                    {
-                        jsonNode = vizceralAggregator.vizceral();
-                    }
-                    else
-                    {
-                        for (JsonNode node : vizceralAggregator.vizceral().get("nodes"))
-                        {
-                            if ("INTERNET".equals(node.get("name").asText()))
-                            {
-                                continue;
-                            }
-                            ((ArrayNode) jsonNode.get("nodes")).add(node);
-                        }
-                        for (JsonNode node : vizceralAggregator.vizceral().get("connections"))
-                        {
-                            ((ArrayNode) jsonNode.get("connections")).add(node);
-                        }
-                    }
-                    ArrayNode connections = (ArrayNode) jsonNode.get("connections");
-                    for (VizceralAggregator otherAggregator : aggregators)
-                    {
-                        if (otherAggregator == vizceralAggregator)
-                        {
-                            continue;
-                        }
-                        connections.addObject()
-                                .put("source", vizceralAggregator.getConfiguration().getRegionName())
-                                .put("target", otherAggregator.getConfiguration().getRegionName())
-                                .putObject("metrics");
-                    }
-                }
-                response.getHeaders().add("Access-Control-Allow-Origin", "*");
-                response.getHeaders().add("Access-Control-Allow-Methods", "GET,POST,PUT,DELETE,OPTIONS");
-                response.getHeaders().add("Access-Control-Allow-Headers", "Content-Type");
-                response.getHeaders().add("Content-Type", "application/json");
-                return response.writeStringAndFlush(jsonNode.toString());
-            }).build();
+            HttpServer<ByteBuf, ByteBuf> server = RxNetty.newHttpServerBuilder(port, new VizceralRequestHandler(aggregators)).build();
 
             server.start();
             Runtime.getRuntime().addShutdownHook(new Thread()
@@ -108,9 +68,14 @@ public class Main
                 {
                     try
                     {
+                        watchers.forEach(ConfigurationWatcher::stop);
                         logger.info("Shutting down server");
                         server.shutdown();
                         logger.info("Server shut down");
+                        for (VizceralAggregator aggregator : aggregators)
+                        {
+                            aggregator.stop();
+                        }
                     }
                     catch (InterruptedException e)
                     {
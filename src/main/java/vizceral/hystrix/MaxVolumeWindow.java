@@ -0,0 +1,133 @@
+package vizceral.hystrix;
+
+import java.util.Arrays;
+
+/**
+ * Sliding window of the maximum volume seen, kept as a fixed number of buckets each holding the max of its period.
+ * Values are kept for at least the ttl and at most one bucket longer.
+ */
+public class MaxVolumeWindow
+{
+    private static final int MAX_BUCKETS = 1024;
+    private final long ttlMillis;
+    private final long bucketMillis;
+    private final long[] slots;
+    private final int[] values;
+
+    /**
+     * Creates a new window.
+     *
+     * @param ttlSeconds How many seconds back values should be considered.
+     */
+    public MaxVolumeWindow(int ttlSeconds)
+    {
+        this.ttlMillis = ttlSeconds * 1000L;
+        this.bucketMillis = Math.max(1000, (ttlMillis + MAX_BUCKETS - 1) / MAX_BUCKETS);
+        int buckets = (int) ((ttlMillis + bucketMillis - 1) / bucketMillis) + 1;
+        this.slots = new long[buckets];
+        this.values = new int[buckets];
+        Arrays.fill(slots, Long.MIN_VALUE);
+    }
+
+    /**
+     * Records a value.
+     *
+     * @param timestamp Epoch millis of when the value was seen.
+     * @param value     The value.
+     */
+    public synchronized void record(long timestamp, int value)
+    {
+        long slot = Math.floorDiv(timestamp, bucketMillis);
+        int index = (int) Math.floorMod(slot, (long) slots.length);
+        if (slots[index] != slot)
+        {
+            if (slots[index] > slot)
+            {
+                //Older than what the bucket holds now, so it has already expired
+                return;
+            }
+            slots[index] = slot;
+            values[index] = value;
+        }
+        else if (value > values[index])
+        {
+            values[index] = value;
+        }
+    }
+
+    /**
+     * Gets the maximum value seen within the ttl.
+     *
+     * @param now Epoch millis of now.
+     *
+     * @return The max value, or 0 if nothing has been recorded within the ttl.
+     */
+    public synchronized int getMax(long now)
+    {
+        long oldest = Math.floorDiv(now - ttlMillis, bucketMillis);
+        int max = 0;
+        for (int i = 0; i < slots.length; i++)
+        {
+            if (slots[i] >= oldest && values[i] > max)
+            {
+                max = values[i];
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Gets the length of each bucket.
+     *
+     * @return Milliseconds per bucket.
+     */
+    public long getBucketMillis()
+    {
+        return bucketMillis;
+    }
+
+    /**
+     * Copies the buckets that hold a value.
+     *
+     * @param slotsOut  Array of at least {@link #size()} length to copy the bucket slots to.
+     * @param valuesOut Array of at least {@link #size()} length to copy the bucket values to.
+     *
+     * @return The number of buckets copied.
+     */
+    public synchronized int copyTo(long[] slotsOut, int[] valuesOut)
+    {
+        int count = 0;
+        for (int i = 0; i < slots.length; i++)
+        {
+            if (slots[i] != Long.MIN_VALUE)
+            {
+                slotsOut[count] = slots[i];
+                valuesOut[count] = values[i];
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Restores a bucket that was previously copied with {@link #copyTo(long[], int[])}.
+     *
+     * @param bucketMillis The length of the buckets when copied. Buckets of another length are converted.
+     * @param slot         The slot of the bucket.
+     * @param value        The max value of the bucket.
+     */
+    public void restore(long bucketMillis, long slot, int value)
+    {
+        record(slot * bucketMillis, value);
+    }
+
+    /**
+     * Gets the number of buckets.
+     *
+     * @return Number of buckets.
+     */
+    public int size()
+    {
+        return slots.length;
+    }
+}
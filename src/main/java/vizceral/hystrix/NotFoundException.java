@@ -0,0 +1,21 @@
+package vizceral.hystrix;
+
+/**
+ * Exception that is thrown when something that does not exist is asked for, e.g. an unknown region or the history of
+ * a region that does not keep any. Served as 404.
+ */
+public class NotFoundException extends RuntimeException
+{
+    /**
+     * Constructs a new runtime exception with the specified detail message.
+     * The cause is not initialized, and may subsequently be initialized by a
+     * call to {@link #initCause}.
+     *
+     * @param message the detail message. The detail message is saved for
+     *                later retrieval by the {@link #getMessage()} method.
+     */
+    public NotFoundException(String message)
+    {
+        super(message);
+    }
+}
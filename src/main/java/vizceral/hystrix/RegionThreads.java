@@ -0,0 +1,95 @@
+package vizceral.hystrix;
+
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.SingleThreadEventExecutor;
+import rx.Scheduler;
+import rx.schedulers.Schedulers;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The threads one region does its work on: an event loop group for its turbine streams and a single thread scheduler
+ * for its timers and retries. Each region gets its own, so a slow or flapping turbine in one region cannot delay
+ * reading or ingestion in the others.
+ */
+public class RegionThreads
+{
+    private final NioEventLoopGroup eventLoops;
+    private final ThreadPoolExecutor executor;
+    private final Scheduler scheduler;
+
+    /**
+     * Creates and starts the threads.
+     *
+     * @param name             Prefix of the thread names.
+     * @param eventLoopThreads The number of event loop threads.
+     */
+    public RegionThreads(String name, int eventLoopThreads)
+    {
+        this.eventLoops = new NioEventLoopGroup(eventLoopThreads, new DefaultThreadFactory(name + "-loop", true));
+        this.executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), new DefaultThreadFactory(name + "-scheduler", true));
+        this.scheduler = Schedulers.from(executor);
+    }
+
+    /**
+     * Gets the event loops the turbine streams of the region are read on.
+     *
+     * @return The event loop group.
+     */
+    public EventLoopGroup getEventLoops()
+    {
+        return eventLoops;
+    }
+
+    /**
+     * Gets the scheduler the timers and retries of the region run on. Work on it must not block.
+     *
+     * @return The scheduler.
+     */
+    public Scheduler getScheduler()
+    {
+        return scheduler;
+    }
+
+    /**
+     * Gets the number of tasks waiting on the event loops, e.g. reads that could not be handled yet.
+     *
+     * @return Number of waiting tasks.
+     */
+    public int getEventLoopQueueDepth()
+    {
+        int depth = 0;
+        for (EventExecutor eventLoop : eventLoops)
+        {
+            if (eventLoop instanceof SingleThreadEventExecutor)
+            {
+                depth += ((SingleThreadEventExecutor) eventLoop).pendingTasks();
+            }
+        }
+        return depth;
+    }
+
+    /**
+     * Gets the number of timers and retries that are due but waiting for the scheduler thread.
+     *
+     * @return Number of waiting tasks.
+     */
+    public int getSchedulerQueueDepth()
+    {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * Stops the threads.
+     */
+    public void stop()
+    {
+        executor.shutdownNow();
+        eventLoops.shutdownGracefully(0, 1, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,121 @@
+package vizceral.hystrix;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Running totals of the traffic from the clusters of one region towards the clusters of other regions.
+ * Groups are mapped to regions through {@link Configuration#getRegionForGroup(String)}. The totals are kept up to date
+ * as the last event of each command is replaced, the same way {@link ConnectionRollup} is, so reading them only costs one
+ * entry per region. Ingestion threads of different clusters update the totals concurrently.
+ * <p>
+ * The region an event was counted for is remembered with it, so removing the event takes it off the same totals even
+ * if groupToRegion was reloaded in between. Commands move to their new region with their next event.
+ */
+public class RegionTraffic
+{
+    private final Configuration configuration;
+    private final Map<String, Totals> regions = new ConcurrentHashMap<>();
+    //Keyed by identity, since events do not override equals
+    private final Map<HystrixEvent, String> counted = new ConcurrentHashMap<>();
+
+    /**
+     * Creates new empty totals.
+     *
+     * @param configuration The configuration mapping groups to regions.
+     */
+    public RegionTraffic(Configuration configuration)
+    {
+        this.configuration = configuration;
+    }
+
+    /**
+     * Replaces the last event of a command.
+     *
+     * @param previous The previous event of the command, or null if there was none.
+     * @param next     The new event of the command, or null if the command was removed.
+     */
+    public void replace(HystrixEvent previous, HystrixEvent next)
+    {
+        if (previous != null)
+        {
+            String region = counted.remove(previous);
+            if (region != null)
+            {
+                add(region, previous, -1);
+            }
+        }
+        if (next != null && next.getGroup() != null)
+        {
+            String region = configuration.getRegionForGroup(next.getGroup());
+            if (region != null)
+            {
+                counted.put(next, region);
+                add(region, next, 1);
+            }
+        }
+    }
+
+    private void add(String region, HystrixEvent event, int sign)
+    {
+        Totals totals = regions.computeIfAbsent(region, ignore -> new Totals());
+        totals.requests.add(sign * event.getRequestCount());
+        totals.errors.add(sign * event.getErrorCount());
+        totals.timeouts.add(sign * event.getTimeoutCount());
+    }
+
+    /**
+     * Gets the traffic towards each other region.
+     *
+     * @return One connection per region that has received traffic.
+     */
+    public List<VizceralConnection> getConnections()
+    {
+        List<VizceralConnection> connections = new ArrayList<>();
+        for (Map.Entry<String, Totals> entry : regions.entrySet())
+        {
+            Totals totals = entry.getValue();
+            connections.add(new VizceralConnection(entry.getKey(), totals.errors.intValue(), totals.requests.intValue(), totals.timeouts.intValue(), false, new ArrayList<>()));
+        }
+        return connections;
+    }
+
+    /**
+     * Sums the traffic of several sources by region.
+     *
+     * @param sources The traffic to sum.
+     * @return One connection per region.
+     */
+    public static Collection<VizceralConnection> sum(Collection<? extends Collection<VizceralConnection>> sources)
+    {
+        Map<String, int[]> sums = new LinkedHashMap<>();
+        for (Collection<VizceralConnection> source : sources)
+        {
+            for (VizceralConnection connection : source)
+            {
+                int[] sum = sums.computeIfAbsent(connection.getName(), ignore -> new int[3]);
+                sum[0] += connection.getRequests();
+                sum[1] += connection.getErrors();
+                sum[2] += connection.getTimeouts();
+            }
+        }
+        List<VizceralConnection> connections = new ArrayList<>();
+        for (Map.Entry<String, int[]> entry : sums.entrySet())
+        {
+            connections.add(new VizceralConnection(entry.getKey(), entry.getValue()[1], entry.getValue()[0], entry.getValue()[2], false, new ArrayList<>()));
+        }
+        return connections;
+    }
+
+    private static class Totals
+    {
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder timeouts = new LongAdder();
+    }
+}
@@ -0,0 +1,48 @@
+package vizceral.hystrix;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A rendered graph together with its encodings, so each encoding is serialized once no matter how many requests
+ * share the graph.
+ */
+public class RenderedGraph
+{
+    private final JsonNode jsonNode;
+    private final ConcurrentMap<GraphFormat, byte[]> encoded = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new rendered graph.
+     *
+     * @param jsonNode The graph, must not be changed afterwards.
+     */
+    public RenderedGraph(JsonNode jsonNode)
+    {
+        this.jsonNode = jsonNode;
+    }
+
+    /**
+     * Gets the graph.
+     *
+     * @return The graph.
+     */
+    public JsonNode getJsonNode()
+    {
+        return jsonNode;
+    }
+
+    /**
+     * Gets the graph in a format, serializing it on first use.
+     *
+     * @param format The format.
+     *
+     * @return The encoded graph.
+     */
+    public byte[] getBytes(GraphFormat format)
+    {
+        return encoded.computeIfAbsent(format, ignore -> format.write(jsonNode));
+    }
+}
@@ -0,0 +1,105 @@
+package vizceral.hystrix;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent computations of the same value. The first caller for a key computes the value on its own
+ * thread, and callers arriving while it is computing, or up to a maximum staleness after it started, get the same
+ * result instead of computing their own copy.
+ *
+ * @param <K> The type of the keys.
+ * @param <V> The type of the values.
+ */
+public class SingleFlight<K, V>
+{
+    private static final int CLEAN_UP_THRESHOLD = 64;
+    private final long maxStalenessMillis;
+    private final ConcurrentMap<K, Flight<V>> flights = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new single flight.
+     *
+     * @param maxStalenessMillis How long after a computation started its result may be handed out, 0 to only share
+     *                           computations that are in flight.
+     */
+    public SingleFlight(long maxStalenessMillis)
+    {
+        this.maxStalenessMillis = maxStalenessMillis;
+    }
+
+    /**
+     * Gets a value, computing it unless a computation for the key is in flight or recent enough.
+     *
+     * @param key     The key.
+     * @param compute Computes the value, on the thread of the caller.
+     *
+     * @return The value, which completes exceptionally if the computation threw. Failures are not shared with later
+     * callers.
+     *
+     * @throws Error If the computation of this caller threw an error, after failing the callers waiting for it.
+     */
+    public CompletableFuture<V> get(K key, Supplier<V> compute)
+    {
+        long now = System.currentTimeMillis();
+        Flight<V> created = new Flight<>(now);
+        Flight<V> flight = flights.compute(key, (ignore, existing) -> existing != null && existing.isFresh(now, maxStalenessMillis) ? existing : created);
+        if (flight != created)
+        {
+            return flight.future;
+        }
+        try
+        {
+            created.future.complete(compute.get());
+            if (maxStalenessMillis == 0)
+            {
+                flights.remove(key, created);
+            }
+        }
+        catch (RuntimeException e)
+        {
+            flights.remove(key, created);
+            created.future.completeExceptionally(e);
+        }
+        catch (Error e)
+        {
+            //The callers waiting for the result are failed as well, instead of waiting forever
+            flights.remove(key, created);
+            created.future.completeExceptionally(e);
+            throw e;
+        }
+        if (flights.size() > CLEAN_UP_THRESHOLD)
+        {
+            flights.values().removeIf(existing -> !existing.isFresh(now, maxStalenessMillis));
+        }
+        return created.future;
+    }
+
+    /**
+     * Gets how many results are in flight or kept.
+     *
+     * @return Number of keys.
+     */
+    public int size()
+    {
+        return flights.size();
+    }
+
+    private static final class Flight<V>
+    {
+        private final CompletableFuture<V> future = new CompletableFuture<>();
+        private final long started;
+
+        private Flight(long started)
+        {
+            this.started = started;
+        }
+
+        private boolean isFresh(long now, long maxStalenessMillis)
+        {
+            return !future.isDone() || (!future.isCompletedExceptionally() && now - started <= maxStalenessMillis);
+        }
+    }
+}
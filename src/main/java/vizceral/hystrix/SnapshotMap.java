@@ -0,0 +1,150 @@
+package vizceral.hystrix;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable map from name to value for published snapshots, split into buckets by hash of the name. A new version
+ * only copies the buckets holding changed names and shares all others with the previous version, so publishing a few
+ * changes does not copy the whole map.
+ *
+ * @param <V> The type of the values.
+ */
+final class SnapshotMap<V>
+{
+    private static final int BUCKETS = 64;
+    private static final SnapshotMap<?> EMPTY = new SnapshotMap<>(Collections.nCopies(BUCKETS, Collections.emptyMap()), 0);
+    private final List<Map<String, V>> buckets;
+    private final int size;
+
+    private SnapshotMap(List<Map<String, V>> buckets, int size)
+    {
+        this.buckets = buckets;
+        this.size = size;
+    }
+
+    /**
+     * Gets the empty map.
+     *
+     * @param <V> The type of the values.
+     *
+     * @return The empty map.
+     */
+    @SuppressWarnings("unchecked")
+    static <V> SnapshotMap<V> empty()
+    {
+        return (SnapshotMap<V>) EMPTY;
+    }
+
+    /**
+     * Creates a new version of this map with changes applied, this map is left unchanged.
+     *
+     * @param changes The new value per changed name, null if the name was removed.
+     *
+     * @return The new version, or this map if there are no changes.
+     */
+    SnapshotMap<V> with(Map<String, V> changes)
+    {
+        if (changes.isEmpty())
+        {
+            return this;
+        }
+        List<Map<String, V>> copy = new ArrayList<>(buckets);
+        boolean[] copied = new boolean[BUCKETS];
+        int newSize = size;
+        for (Map.Entry<String, V> change : changes.entrySet())
+        {
+            int index = index(change.getKey());
+            if (!copied[index])
+            {
+                copy.set(index, new HashMap<>(buckets.get(index)));
+                copied[index] = true;
+            }
+            Map<String, V> bucket = copy.get(index);
+            V previous = change.getValue() == null ? bucket.remove(change.getKey()) : bucket.put(change.getKey(), change.getValue());
+            if (previous == null && change.getValue() != null)
+            {
+                newSize++;
+            }
+            else if (previous != null && change.getValue() == null)
+            {
+                newSize--;
+            }
+        }
+        return new SnapshotMap<>(copy, newSize);
+    }
+
+    /**
+     * Gets the value of a name.
+     *
+     * @param name The name.
+     *
+     * @return The value, or null if there is none.
+     */
+    V get(String name)
+    {
+        return buckets.get(index(name)).get(name);
+    }
+
+    /**
+     * Gets all values, in no particular order.
+     *
+     * @return Read-only collection of values.
+     */
+    Collection<V> values()
+    {
+        return new AbstractCollection<V>()
+        {
+            @Override
+            public Iterator<V> iterator()
+            {
+                return new ValueIterator();
+            }
+
+            @Override
+            public int size()
+            {
+                return size;
+            }
+        };
+    }
+
+    private static int index(String name)
+    {
+        int hash = name.hashCode();
+        return (hash ^ (hash >>> 16)) & (BUCKETS - 1);
+    }
+
+    private final class ValueIterator implements Iterator<V>
+    {
+        private int bucket;
+        private Iterator<V> current = Collections.emptyIterator();
+
+        @Override
+        public boolean hasNext()
+        {
+            while (!current.hasNext() && bucket < BUCKETS)
+            {
+                current = buckets.get(bucket++).values().iterator();
+            }
+            return current.hasNext();
+        }
+
+        @Override
+        public V next()
+        {
+            if (!hasNext())
+            {
+                throw new NoSuchElementException();
+            }
+            return current.next();
+        }
+    }
+}
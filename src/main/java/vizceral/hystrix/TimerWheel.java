@@ -0,0 +1,133 @@
+package vizceral.hystrix;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Hashed timer wheel for expiring entries.
+ * Scheduling is lock free and O(1), it only puts the timeout on a queue that is drained on the next tick. On each tick
+ * the timeouts in the slots that were passed are checked, and a timeout can ask to be checked again later instead of
+ * having to be cancelled and rescheduled every time the entry it watches is updated.
+ */
+public class TimerWheel
+{
+    /**
+     * Returned from {@link Timeout#expire(long)} when the timeout should not be checked again.
+     */
+    public static final long DONE = -1;
+    private final long tickMillis;
+    private final List<Queue<Entry>> slots;
+    private final Queue<Entry> incoming = new ConcurrentLinkedQueue<>();
+    private long currentTick = -1;
+
+    /**
+     * Something to check when its deadline has passed.
+     */
+    public interface Timeout
+    {
+        /**
+         * Called when the deadline has passed.
+         *
+         * @param now Epoch millis of now.
+         *
+         * @return A new deadline (epoch millis) to be checked again then, or {@link #DONE}.
+         */
+        long expire(long now);
+    }
+
+    /**
+     * Creates a new timer wheel.
+     *
+     * @param tickMillis The resolution of the wheel.
+     * @param size       The number of slots. Deadlines further away than one turn of the wheel are kept in their slot
+     *                   for several turns.
+     */
+    public TimerWheel(long tickMillis, int size)
+    {
+        this.tickMillis = tickMillis;
+        this.slots = new ArrayList<>(size);
+        for (int i = 0; i < size; i++)
+        {
+            slots.add(new ArrayDeque<>());
+        }
+    }
+
+    /**
+     * Schedules a timeout. Can be called from any thread.
+     *
+     * @param deadline Epoch millis of when to call the timeout.
+     * @param timeout  The timeout.
+     */
+    public void schedule(long deadline, Timeout timeout)
+    {
+        incoming.add(new Entry(deadline, timeout));
+    }
+
+    /**
+     * Moves the wheel forward to now, calling all timeouts whose deadline has passed.
+     * Must only be called from one thread at a time.
+     *
+     * @param now Epoch millis of now.
+     */
+    public synchronized void advance(long now)
+    {
+        long tick = now / tickMillis;
+        if (currentTick < 0)
+        {
+            currentTick = tick - 1;
+        }
+        for (Entry entry = incoming.poll(); entry != null; entry = incoming.poll())
+        {
+            add(entry);
+        }
+        long ticks = Math.min(tick - currentTick, slots.size());
+        for (long i = 1; i <= ticks; i++)
+        {
+            Queue<Entry> slot = slots.get(index(currentTick + i));
+            int size = slot.size();
+            Iterator<Entry> iterator = slot.iterator();
+            for (int j = 0; j < size && iterator.hasNext(); j++)
+            {
+                Entry entry = iterator.next();
+                if (entry.deadline <= now)
+                {
+                    iterator.remove();
+                    long next = entry.timeout.expire(now);
+                    if (next != DONE)
+                    {
+                        incoming.add(new Entry(Math.max(next, now + tickMillis), entry.timeout));
+                    }
+                }
+            }
+        }
+        currentTick = Math.max(currentTick, tick);
+    }
+
+    private void add(Entry entry)
+    {
+        //The first tick starting at or after the deadline, so the entry is due whenever its slot is visited
+        long tick = Math.max((entry.deadline + tickMillis - 1) / tickMillis, currentTick + 1);
+        slots.get(index(tick)).add(entry);
+    }
+
+    private int index(long tick)
+    {
+        return (int) (tick % slots.size());
+    }
+
+    private static class Entry
+    {
+        private final long deadline;
+        private final Timeout timeout;
+
+        private Entry(long deadline, Timeout timeout)
+        {
+            this.deadline = deadline;
+            this.timeout = timeout;
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package vizceral.hystrix;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Keeps the heaviest connections of a region and folds the long tail into a synthetic {@value #OTHER} cluster, so
+ * large regions stay readable and cheap to serialize and draw.
+ * <p>
+ * The connections are ranked as events arrive with {@link HeavyHitters}, instead of sorting every connection on each
+ * request. There is one sketch per writer shard of the {@link IngestionScheduler}, so writer threads never wait on each
+ * other, and the sketches are merged when the ranking is read. The connections of a cluster all go to the sketch of its
+ * shard, so merging is a union. Connections with notices or an open circuit breaker are always kept. A folded connection from a cluster
+ * that is still shown becomes part of its connection to {@value #OTHER}, a folded connection to a cluster that is
+ * still shown becomes part of the connection from {@value #OTHER}, and clusters with no kept connections are hidden.
+ */
+public class TopConnections
+{
+    /**
+     * Name of the synthetic cluster holding the folded connections. It is reserved: events with this group are dropped
+     * by the {@link HystrixEventParser} and the configuration rejects it as cluster name, so no real cluster has it.
+     */
+    public static final String OTHER = "<other>";
+    private static final char SEPARATOR = '\u0000';
+    private final List<HeavyHitters> shards = new ArrayList<>();
+
+    /**
+     * Creates a new ranking of connections.
+     *
+     * @param capacity How many connections are tracked per shard, should be well above the largest top requested.
+     * @param shards   The number of writer shards recording connections.
+     */
+    public TopConnections(int capacity, int shards)
+    {
+        for (int i = 0; i < shards; i++)
+        {
+            this.shards.add(new HeavyHitters(capacity));
+        }
+    }
+
+    /**
+     * Adds the volume of an event to the connection from its cluster to its group. Must be called by the writer thread
+     * of the cluster.
+     *
+     * @param cluster The cluster the event was read from.
+     * @param event   The event.
+     */
+    public void record(String cluster, HystrixEvent event)
+    {
+        if (event.getGroup() != null)
+        {
+            shards.get(IngestionScheduler.shardOf(cluster, shards.size()))
+                    .offer(key(cluster, event.getGroup()), event.getRequestCount() + event.getErrorCount() + event.getTimeoutCount());
+        }
+    }
+
+    /**
+     * Halves the recorded volumes, so the ranking follows the recent traffic.
+     */
+    public void decay()
+    {
+        shards.forEach(HeavyHitters::decay);
+    }
+
+    /**
+     * Gets the tracked connections, heaviest first.
+     *
+     * @return The ranking, to pass to {@link #fold(Collection, int, List, Predicate)}.
+     */
+    public List<String> getRanking()
+    {
+        List<Map.Entry<String, Long>> counts = new ArrayList<>();
+        for (HeavyHitters shard : shards)
+        {
+            counts.addAll(shard.getCounts().entrySet());
+        }
+        counts.sort(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder()));
+        List<String> ranking = new ArrayList<>(counts.size());
+        for (Map.Entry<String, Long> entry : counts)
+        {
+            ranking.add(entry.getKey());
+        }
+        return ranking;
+    }
+
+    /**
+     * Keeps the top connections of a region and folds the rest.
+     *
+     * @param snapshots The snapshots of all clusters.
+     * @param top       How many connections to keep, besides the ones with notices or an open circuit breaker.
+     * @param ranking   The connections, heaviest first. Connections not in the ranking are ranked after it by their
+     *                  current volume, so an empty ranking sorts the connections of the snapshots.
+     * @param internet  The clusters receiving traffic from the internet, which are always shown.
+     *
+     * @return The snapshots of the shown clusters, with the folded connections going to or from {@value #OTHER}.
+     */
+    public static Collection<ClusterSnapshot> fold(Collection<ClusterSnapshot> snapshots, int top, List<String> ranking, Predicate<String> internet)
+    {
+        Map<String, VizceralConnection> byKey = new HashMap<>();
+        Set<String> kept = new HashSet<>();
+        Set<String> shown = new HashSet<>();
+        for (ClusterSnapshot snapshot : snapshots)
+        {
+            if (internet.test(snapshot.getName()) || !snapshot.getNotices().isEmpty())
+            {
+                shown.add(snapshot.getName());
+            }
+            for (VizceralConnection connection : snapshot.getConnections())
+            {
+                String key = key(snapshot.getName(), connection.getName());
+                byKey.put(key, connection);
+                if (connection.isCircuitBreakerOpen() || !connection.getNotices().isEmpty())
+                {
+                    kept.add(key);
+                }
+            }
+        }
+        int ranked = 0;
+        for (String key : ranking)
+        {
+            if (ranked >= top)
+            {
+                break;
+            }
+            if (byKey.containsKey(key))
+            {
+                kept.add(key);
+                ranked++;
+            }
+        }
+        if (ranked < top)
+        {
+            List<String> unranked = new ArrayList<>(byKey.keySet());
+            unranked.removeAll(new HashSet<>(ranking));
+            unranked.sort((a, b) -> Integer.compare(volume(byKey.get(b)), volume(byKey.get(a))));
+            for (int i = 0; i < unranked.size() && ranked < top; i++, ranked++)
+            {
+                kept.add(unranked.get(i));
+            }
+        }
+        for (String key : kept)
+        {
+            int separator = key.indexOf(SEPARATOR);
+            shown.add(key.substring(0, separator));
+            shown.add(key.substring(separator + 1));
+        }
+
+        List<ClusterSnapshot> folded = new ArrayList<>();
+        Map<String, Folded> fromOther = new LinkedHashMap<>();
+        boolean anyFolded = false;
+        int otherOutgoing = 0;
+        int otherMaxValue = 0;
+        for (ClusterSnapshot snapshot : snapshots)
+        {
+            boolean sourceShown = shown.contains(snapshot.getName());
+            List<VizceralConnection> connections = new ArrayList<>();
+            Folded toOther = new Folded();
+            for (VizceralConnection connection : snapshot.getConnections())
+            {
+                if (kept.contains(key(snapshot.getName(), connection.getName())))
+                {
+                    connections.add(connection);
+                }
+                else if (sourceShown)
+                {
+                    toOther.add(connection);
+                }
+                else if (shown.contains(connection.getName()))
+                {
+                    fromOther.computeIfAbsent(connection.getName(), ignore -> new Folded()).add(connection);
+                }
+                else
+                {
+                    anyFolded = true;
+                    otherOutgoing += volume(connection);
+                }
+            }
+            if (!sourceShown)
+            {
+                otherMaxValue = Math.max(otherMaxValue, snapshot.getMaxValue());
+                continue;
+            }
+            if (toOther.count > 0)
+            {
+                connections.add(toOther.toConnection(OTHER));
+            }
+            folded.add(ClusterSnapshot.newBuilder()
+                    .name(snapshot.getName())
+                    .connections(connections)
+                    .notices(snapshot.getNotices())
+                    .maxValue(snapshot.getMaxValue())
+                    .outgoingRequests(snapshot.getOutgoingRequests())
+                    .rejected(snapshot.isRejected())
+                    .updated(snapshot.getUpdated())
+                    .build());
+            anyFolded |= toOther.count > 0;
+        }
+        if (!anyFolded && fromOther.isEmpty())
+        {
+            return folded;
+        }
+        List<VizceralConnection> otherConnections = new ArrayList<>();
+        for (Map.Entry<String, Folded> entry : fromOther.entrySet())
+        {
+            VizceralConnection connection = entry.getValue().toConnection(entry.getKey());
+            otherOutgoing += volume(connection);
+            otherConnections.add(connection);
+        }
+        folded.add(ClusterSnapshot.newBuilder()
+                .name(OTHER)
+                .connections(otherConnections)
+                .maxValue(Math.max(otherMaxValue, otherOutgoing))
+                .outgoingRequests(otherOutgoing)
+                .updated(snapshots.stream().mapToLong(ClusterSnapshot::getUpdated).max().orElse(0))
+                .build());
+        return folded;
+    }
+
+    static String key(String source, String target)
+    {
+        return source + SEPARATOR + target;
+    }
+
+    private static int volume(VizceralConnection connection)
+    {
+        return connection.getRequests() + connection.getErrors() + connection.getTimeouts();
+    }
+
+    /**
+     * Sum of folded connections.
+     */
+    private static final class Folded
+    {
+        private int count;
+        private int errors;
+        private int requests;
+        private int timeouts;
+
+        private void add(VizceralConnection connection)
+        {
+            count++;
+            errors += connection.getErrors();
+            requests += connection.getRequests();
+            timeouts += connection.getTimeouts();
+        }
+
+        private VizceralConnection toConnection(String name)
+        {
+            return new VizceralConnection(name, errors, requests, timeouts, false, Collections.emptyList());
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package vizceral.hystrix;
+
+/**
+ * The client implementation used to read hystrix streams from turbine.
+ */
+public enum TurbineClient
+{
+    /**
+     * Non-blocking RxNetty client sharing the netty event loop between all streams.
+     */
+    RX,
+    /**
+     * Blocking client with one thread per stream, virtual threads are used when the runtime supports them.
+     */
+    BLOCKING
+}
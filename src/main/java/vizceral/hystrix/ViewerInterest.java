@@ -0,0 +1,86 @@
+package vizceral.hystrix;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Remembers when clusters were last viewed, to only tail the clusters someone is looking at. A cluster is wanted from
+ * its first view until it has not been viewed for the idle timeout.
+ */
+public class ViewerInterest
+{
+    private final long idleMillis;
+    private final ConcurrentMap<String, Long> lastViewed = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new viewer interest.
+     *
+     * @param idleMillis How long a cluster is wanted after its last view.
+     */
+    public ViewerInterest(long idleMillis)
+    {
+        this.idleMillis = idleMillis;
+    }
+
+    /**
+     * Records a view of a cluster.
+     *
+     * @param cluster The name of the cluster.
+     * @param now     The time of the view.
+     *
+     * @return true if the cluster was not wanted before the view, otherwise false.
+     */
+    public boolean view(String cluster, long now)
+    {
+        Long previous = lastViewed.put(cluster, now);
+        return previous == null || previous + idleMillis < now;
+    }
+
+    /**
+     * Checks if a cluster has been viewed within the idle timeout.
+     *
+     * @param cluster The name of the cluster.
+     * @param now     The current time.
+     *
+     * @return true if wanted, otherwise false.
+     */
+    public boolean isWanted(String cluster, long now)
+    {
+        Long viewed = lastViewed.get(cluster);
+        return viewed != null && viewed + idleMillis >= now;
+    }
+
+    /**
+     * Forgets the clusters that have not been viewed within the idle timeout.
+     *
+     * @param now The current time.
+     *
+     * @return The clusters no longer wanted.
+     */
+    public Collection<String> expire(long now)
+    {
+        List<String> expired = new ArrayList<>();
+        for (Map.Entry<String, Long> entry : lastViewed.entrySet())
+        {
+            if (entry.getValue() + idleMillis < now && lastViewed.remove(entry.getKey(), entry.getValue()))
+            {
+                expired.add(entry.getKey());
+            }
+        }
+        return expired;
+    }
+
+    /**
+     * Gets the number of wanted clusters, including those that have just become idle.
+     *
+     * @return Number of clusters.
+     */
+    public int size()
+    {
+        return lastViewed.size();
+    }
+}
@@ -6,15 +6,41 @@ import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import rx.Observable;
+import rx.Subscription;
+import rx.schedulers.Schedulers;
+import rx.subjects.AsyncSubject;
+import vizceral.hystrix.admission.AdmissionControl;
+import vizceral.hystrix.anomaly.ConnectionBaselines;
+import vizceral.hystrix.checkpoint.CheckpointConfiguration;
+import vizceral.hystrix.checkpoint.StateCheckpointer;
+import vizceral.hystrix.federation.FederationSource;
+import vizceral.hystrix.history.HistoryConfiguration;
+import vizceral.hystrix.history.HistoryPoint;
+import vizceral.hystrix.history.HistoryStore;
+import vizceral.hystrix.history.NoticeHistory;
 import vizceral.hystrix.monitoring.MonitoringService;
+import vizceral.hystrix.sharding.ChangeStamps;
+import vizceral.hystrix.sharding.PartialSnapshotCodec;
+import vizceral.hystrix.sharding.ShardCoordinator;
+import vizceral.hystrix.sharding.ShardingConfiguration;
+import vizceral.hystrix.slo.BurnRates;
 
+import java.io.IOException;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.stream.Stream;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Reads events from hystrix and aggregates them into a json that Vizceral can understand.
@@ -24,9 +50,48 @@ public class VizceralAggregator
 {
     private static final Logger logger = LoggerFactory.getLogger(VizceralAggregator.class);
     private final ConcurrentMap<String, HystrixCluster> clusters = new ConcurrentHashMap<>();
-    private final Map<String, HystrixReader> readers = new HashMap<>();
+    private final ConcurrentMap<String, HystrixReader> readers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Subscription> subscriptions = new ConcurrentHashMap<>();
+    private final ClusterDiscovery discovery;
+    //Clusters that sent or were the target of events since startup, only recorded until the restored clusters are pruned
+    private final Set<String> reported = ConcurrentHashMap.newKeySet();
+    private volatile boolean pruning;
     private final Configuration configuration;
     private final MonitoringService monitoringService;
+    private static final int NOTICE_HISTORY_INTERVAL_SECONDS = 10;
+    private static final int HISTORY_SWEEP_INTERVAL_SECONDS = 60;
+    private static final int TOP_CONNECTIONS_DECAY_SECONDS = 30;
+    //Only clusters and commands idle for this long are evicted to stay within budget, so busy ones are not churned
+    private static final long CLUSTER_EVICTABLE_MILLIS = 60000;
+    private static final long COMMAND_EVICTABLE_MILLIS = 10000;
+    private static final DecimalFormat FORMAT = new DecimalFormat("#.##");
+    private final HistoryStore historyStore;
+    private final NoticeHistory noticeHistory;
+    private final StateCheckpointer checkpointer;
+    private Subscription checkpointSubscription;
+    //Checkpoints write to disk, so they have their own lock instead of one shared with the ingestion paths
+    private final Object checkpointLock = new Object();
+    private final AggregatorMetrics metrics = new AggregatorMetrics();
+    private final TimerWheel expiry = new TimerWheel(1000, 512);
+    private final IngestionScheduler ingestion;
+    private final ShardCoordinator sharding;
+    private final Set<String> known = ConcurrentHashMap.newKeySet();
+    //Clusters seen in the snapshots of the peers, replaced on each rebalance
+    private volatile Set<String> peerKnown = Collections.emptySet();
+    private final FederationSource federation;
+    private final RegionTraffic regionTraffic;
+    private final ClusterFocus focus = new ClusterFocus();
+    private final TopConnections topConnections;
+    private final ChangeStamps changeStamps = new ChangeStamps();
+    private final RegionThreads threads;
+    private final AdmissionControl admission;
+    private final ViewerInterest viewers;
+    private final ConnectionBaselines baselines;
+    private final BurnRates burnRates;
+    private final ConnectionStatistics statistics;
+    //Guards eviction, reached from stream callbacks and renders
+    private final Object evictionLock = new Object();
+    private long nextEvictionScan;
 
     /**
      * Creates a new VizceralAggregator
@@ -37,18 +102,250 @@ public class VizceralAggregator
     {
         this.configuration = configuration;
         this.monitoringService = new MonitoringService(configuration);
+        HistoryConfiguration historyConfiguration = configuration.getHistoryConfiguration();
+        this.historyStore = historyConfiguration == null ? null : new HistoryStore(historyConfiguration);
+        this.noticeHistory = historyConfiguration == null ? null : new NoticeHistory(historyConfiguration);
+        CheckpointConfiguration checkpointConfiguration = configuration.getCheckpointConfiguration();
+        this.checkpointer = checkpointConfiguration == null ? null : new StateCheckpointer(checkpointConfiguration, configuration.getMaxTrafficTtlSeconds());
+        this.threads = new RegionThreads("region-" + configuration.getRegionName(), configuration.getEventLoopThreads());
+        this.ingestion = new IngestionScheduler("ingest-" + configuration.getRegionName(), configuration.getIngestionThreads());
+        ShardingConfiguration shardingConfiguration = configuration.getShardingConfiguration();
+        this.sharding = shardingConfiguration == null ? null : new ShardCoordinator(shardingConfiguration, configuration.getRegionName());
+        this.regionTraffic = new RegionTraffic(configuration);
+        this.topConnections = new TopConnections(configuration.getTopConnectionsCapacity(), configuration.getIngestionThreads());
+        this.admission = new AdmissionControl(configuration.getAdmissionConfiguration());
+        ConnectionSlots slots = new ConnectionSlots();
+        this.baselines = configuration.getAnomalyConfiguration() == null ? null : new ConnectionBaselines(configuration.getAnomalyConfiguration(), slots);
+        this.burnRates = configuration.getSloConfiguration() == null ? null : new BurnRates(configuration.getSloConfiguration(), slots);
+        this.statistics = CombinedStatistics.of(baselines, burnRates);
+        //A federated region is read from upstream, so there is nothing to tail on demand
+        boolean onDemand = configuration.getViewerIdleSeconds() > 0 && configuration.getFederationConfiguration() == null;
+        this.viewers = onDemand ? new ViewerInterest(configuration.getViewerIdleSeconds() * 1000L) : null;
+        this.federation = configuration.getFederationConfiguration() == null ? null : new FederationSource(configuration.getFederationConfiguration(), configuration.getRegionName());
+        this.discovery = new ClusterDiscovery("discovery-" + configuration.getRegionName(), configuration.getMaxConcurrentStreamOpens(), this::startReader);
+        metrics.gauge("clusters", clusters::size);
+        metrics.gauge("discoveryQueued", discovery::getQueued);
+        metrics.gauge("streamsOpening", discovery::getOpening);
+        metrics.gauge("ingestionQueueDepth", ingestion::getQueueDepth);
+        metrics.gauge("eventLoopQueueDepth", threads::getEventLoopQueueDepth);
+        metrics.gauge("schedulerQueueDepth", threads::getSchedulerQueueDepth);
+        metrics.gauge("commands", admission::getCommands);
+        metrics.gauge("deniedClusters", admission::getDenied);
+        if (viewers != null)
+        {
+            metrics.gauge("viewedClusters", viewers::size);
+        }
+        if (baselines != null)
+        {
+            metrics.gauge("baselines", baselines::size);
+        }
+        if (burnRates != null)
+        {
+            metrics.gauge("burnRates", burnRates::size);
+        }
+        if (sharding != null)
+        {
+            metrics.gauge("shardMembers", sharding::getMembers);
+        }
+        if (federation != null)
+        {
+            metrics.gauge("federatedClusters", () -> federation.getSnapshots().size());
+            metrics.gauge("federationConnected", () -> federation.isConnected() ? 1 : 0);
+        }
     }
 
     /**
-     * Starts the reading and aggregration by tailing the entry clusters.
+     * Starts the reading and aggregration by tailing the entry clusters, or by polling the upstream instance if the
+     * region is federated. Monitoring and notice history run in either case.
      */
     public void start()
     {
+        boolean tailing = true;
+        if (federation != null)
+        {
+            federation.start();
+            //A federated region only opens streams if it has entry clusters of its own
+            tailing = configuration.getEntryClusters().iterator().hasNext();
+        }
+        Set<String> toStart = new LinkedHashSet<>();
         for (String cluster : configuration.getEntryClusters())
         {
-            startReader(cluster);
+            toStart.add(cluster);
+        }
+        if (tailing && checkpointer != null)
+        {
+            pruning = true;
+            toStart.addAll(restore());
+        }
+        Observable.interval(1, 1, TimeUnit.SECONDS, threads.getScheduler())
+                .subscribe(ignore -> expiry.advance(System.currentTimeMillis()), ex -> logger.error("Expiry failed", ex));
+        Observable.interval(TOP_CONNECTIONS_DECAY_SECONDS, TOP_CONNECTIONS_DECAY_SECONDS, TimeUnit.SECONDS, threads.getScheduler())
+                .subscribe(ignore -> topConnections.decay(), ex -> logger.error("Could not decay top connections", ex));
+        if (tailing && sharding != null)
+        {
+            //Find the live peers first so we only open the streams we own, without holding up the caller
+            int interval = sharding.getRefreshInterval();
+            sharding.refresh()
+                    .observeOn(threads.getScheduler())
+                    .subscribe(ignore -> open(toStart), ex ->
+                    {
+                        logger.error("First shard refresh failed", ex);
+                        open(toStart);
+                    });
+            Observable.interval(interval, interval, TimeUnit.SECONDS, threads.getScheduler())
+                    .onBackpressureDrop()
+                    .concatMap(ignore -> sharding.refresh())
+                    .observeOn(threads.getScheduler())
+                    .subscribe(this::rebalance, ex -> logger.error("Shard refresh failed", ex));
+        }
+        if (viewers != null)
+        {
+            int interval = Math.min(configuration.getViewerIdleSeconds(), 10);
+            Observable.interval(interval, interval, TimeUnit.SECONDS, threads.getScheduler())
+                    .subscribe(ignore -> stopUnviewed(), ex -> logger.error("Could not stop unviewed clusters", ex));
+        }
+        if (tailing && sharding == null)
+        {
+            open(toStart);
+        }
+        if (tailing && checkpointer != null)
+        {
+            Set<String> restored = new HashSet<>(toStart);
+            configuration.getEntryClusters().forEach(restored::remove);
+            Observable.timer(configuration.getCheckpointConfiguration().getPruneAfterSeconds(), TimeUnit.SECONDS, threads.getScheduler())
+                    .subscribe(ignore -> prune(restored), ex -> logger.error("Could not prune restored clusters", ex));
         }
         monitoringService.start();
+        if (noticeHistory != null)
+        {
+            Observable.interval(0, NOTICE_HISTORY_INTERVAL_SECONDS, TimeUnit.SECONDS, threads.getScheduler())
+                    .subscribe(ignore -> recordNotices(), ex -> logger.error("Could not record notice history", ex));
+        }
+        if (historyStore != null)
+        {
+            Observable.interval(HISTORY_SWEEP_INTERVAL_SECONDS, HISTORY_SWEEP_INTERVAL_SECONDS, TimeUnit.SECONDS, threads.getScheduler())
+                    .subscribe(ignore -> historyStore.sweep(System.currentTimeMillis()), ex -> logger.error("Could not sweep connection history", ex));
+        }
+        if (checkpointer != null)
+        {
+            int interval = configuration.getCheckpointConfiguration().getIntervalSeconds();
+            checkpointSubscription = Observable.interval(interval, interval, TimeUnit.SECONDS, Schedulers.io())
+                    .subscribe(ignore -> checkpoint(), ex -> logger.error("Checkpointing stopped for region " + configuration.getRegionName(), ex));
+        }
+    }
+
+    /**
+     * Takes over the settings of a newer version of the configuration file. Thresholds and mappings are used from the
+     * next event or render, streams are only opened again if the turbine settings changed and monitoring systems are
+     * only replaced if their settings changed. Settings that need a restart are logged and ignored.
+     *
+     * @param newer The newer configuration.
+     */
+    public void reload(Configuration newer)
+    {
+        ConfigurationChange change = configuration.update(newer);
+        if (change.isEmpty())
+        {
+            return;
+        }
+        if (!change.getRequiresRestart().isEmpty())
+        {
+            logger.warn("Changes to {} in region {} take effect after a restart", change.getRequiresRestart(), configuration.getRegionName());
+        }
+        if (change.getApplied().isEmpty())
+        {
+            return;
+        }
+        logger.info("Reloaded {} for region {}", change.getApplied(), configuration.getRegionName());
+        metrics.increment("configurationReloads");
+        if (change.isMonitoringChanged())
+        {
+            monitoringService.replace(configuration.getMonitoringSystems());
+        }
+        if (change.isTurbineChanged())
+        {
+            logger.info("Turbine changed for region {}, opening {} streams again", configuration.getRegionName(), subscriptions.size());
+            for (String clusterName : subscriptions.keySet())
+            {
+                discovery.reopen(clusterName);
+            }
+        }
+        change.getAddedEntryClusters().forEach(this::discover);
+    }
+
+    /**
+     * Stops the aggregator, writing a last checkpoint if checkpointing is activated.
+     */
+    public void stop()
+    {
+        if (federation != null)
+        {
+            federation.stop();
+        }
+        discovery.stop();
+        if (checkpointSubscription != null)
+        {
+            checkpointSubscription.unsubscribe();
+            checkpoint();
+        }
+        ingestion.stop();
+        threads.stop();
+    }
+
+    private Set<String> restore()
+    {
+        long start = System.currentTimeMillis();
+        Set<String> restored = new LinkedHashSet<>();
+        for (HystrixCluster cluster : checkpointer.load())
+        {
+            clusters.putIfAbsent(cluster.getName(), cluster);
+            restored.add(cluster.getName());
+            for (HystrixEvent event : cluster.getEvents())
+            {
+                regionTraffic.replace(null, event);
+                admission.commandAdded();
+                restored.add(event.getGroup());
+                scheduleCommandExpiry(cluster, event);
+            }
+        }
+        logger.info("Restored {} clusters for region {} from checkpoint in {}ms", restored.size(), configuration.getRegionName(), System.currentTimeMillis() - start);
+        return restored;
+    }
+
+    /**
+     * Stops tailing clusters that were known from the checkpoint but have neither sent any events nor been the target
+     * of any since startup.
+     *
+     * @param restored The clusters restored from the checkpoint.
+     */
+    private void prune(Set<String> restored)
+    {
+        for (String clusterName : restored)
+        {
+            if (!reported.contains(clusterName))
+            {
+                stopReader(clusterName);
+                known.remove(clusterName);
+            }
+        }
+        pruning = false;
+        reported.clear();
+    }
+
+    private void checkpoint()
+    {
+        synchronized (checkpointLock)
+        {
+            try
+            {
+                checkpointer.write(clusters.values());
+            }
+            catch (IOException | RuntimeException e)
+            {
+                //Logged instead of thrown so the next interval still writes a checkpoint
+                logger.error("Could not write checkpoint for region " + configuration.getRegionName(), e);
+            }
+        }
     }
 
     /**
@@ -61,12 +358,365 @@ public class VizceralAggregator
         return configuration;
     }
 
+    /**
+     * Gets the metrics of the aggregator.
+     *
+     * @return The metrics.
+     */
+    public AggregatorMetrics getMetrics()
+    {
+        return metrics;
+    }
+
+    /**
+     * Gets the history of all connections in the region.
+     *
+     * @return The history store, or null if history is not activated.
+     */
+    public HistoryStore getHistoryStore()
+    {
+        return historyStore;
+    }
+
     /**
      * Gets a vizceral json
      *
      * @return JsonNode that can be fed to vizceral.
      */
     public JsonNode vizceral()
+    {
+        return vizceral(GraphFilter.NONE);
+    }
+
+    /**
+     * Gets a vizceral json with only the part of the region selected by a filter.
+     *
+     * @param filter The filter to apply.
+     *
+     * @return JsonNode that can be fed to vizceral.
+     */
+    public JsonNode vizceral(GraphFilter filter)
+    {
+        if (sharding == null && federation == null)
+        {
+            Collection<ClusterSnapshot> snapshots = snapshot();
+            Collection<ClusterSnapshot> selected = select(filter, snapshots, topConnections.getRanking());
+            viewed(filter, selected, snapshots);
+            return render(selected, getUpdated());
+        }
+        Collection<ClusterSnapshot> snapshots = regionSnapshot();
+        long updated = getUpdated();
+        for (ClusterSnapshot snapshot : snapshots)
+        {
+            updated = Math.max(updated, snapshot.getUpdated());
+        }
+        //The ranking only covers our own clusters, so rank the whole region by current volume instead
+        Collection<ClusterSnapshot> selected = select(filter, snapshots, Collections.emptyList());
+        viewed(filter, selected, snapshots);
+        return render(selected, updated);
+    }
+
+    /**
+     * Gets a vizceral json focused on one cluster, with its hystrix commands and the clusters they call.
+     *
+     * @param clusterName The name of the cluster.
+     *
+     * @return JsonNode that can be fed to vizceral, or null if this instance does not tail the cluster. When only viewed
+     * clusters are tailed, a cluster known in the region is tailed from now on and can be viewed once its stream
+     * delivered events.
+     */
+    public JsonNode vizceral(String clusterName)
+    {
+        if (viewers != null && isKnownCluster(clusterName))
+        {
+            viewed(clusterName, System.currentTimeMillis());
+        }
+        HystrixCluster cluster = clusters.get(clusterName);
+        return cluster == null ? null : focus.get(cluster);
+    }
+
+    /**
+     * Gets the compact snapshot of the clusters tailed by this instance, which is what peers merge into their graph.
+     *
+     * @return The partial snapshot json.
+     */
+    public JsonNode partial()
+    {
+        return PartialSnapshotCodec.toJson(configuration.getRegionName(), snapshot(), 0, null, regionTraffic.getConnections());
+    }
+
+    /**
+     * Gets the compact snapshot of the whole region, including the clusters tailed by peers and read from an upstream
+     * instance. This is what a federating instance reads.
+     *
+     * @param since The generation of the previous snapshot the caller has, or 0 to get all clusters in full.
+     * @return The snapshot json.
+     */
+    public JsonNode regionPartial(long since)
+    {
+        return PartialSnapshotCodec.toJson(configuration.getRegionName(), regionSnapshot(), since, changeStamps, getRegionTraffic());
+    }
+
+    /**
+     * Gets the traffic from the clusters of this region towards clusters mapped to other regions with groupToRegion,
+     * including the traffic seen by peers and read from an upstream instance.
+     *
+     * @return One connection per other region, named after the region.
+     */
+    public Collection<VizceralConnection> getRegionTraffic()
+    {
+        List<Collection<VizceralConnection>> sources = new ArrayList<>();
+        sources.add(regionTraffic.getConnections());
+        if (sharding != null)
+        {
+            sources.addAll(sharding.getPeerRegionTraffic());
+        }
+        if (federation != null)
+        {
+            sources.add(federation.getRegionTraffic());
+        }
+        return RegionTraffic.sum(sources);
+    }
+
+    /**
+     * Gets the requests entering the region, taken as the traffic going out from its internet clusters, including
+     * those tailed by peers or read from an upstream instance.
+     *
+     * @return The requests per second.
+     */
+    public int getInternetRequests()
+    {
+        int requests = 0;
+        for (String clusterName : configuration.getInternetClusters())
+        {
+            HystrixCluster cluster = clusters.get(clusterName);
+            if (cluster != null)
+            {
+                requests += cluster.getSumOfOutgoingRequests();
+                continue;
+            }
+            List<ClusterSnapshot> others = new ArrayList<>();
+            if (sharding != null)
+            {
+                others.addAll(sharding.getPeerSnapshots());
+            }
+            if (federation != null)
+            {
+                others.addAll(federation.getSnapshots());
+            }
+            for (ClusterSnapshot snapshot : others)
+            {
+                if (clusterName.equals(snapshot.getName()))
+                {
+                    requests += snapshot.getOutgoingRequests();
+                    break;
+                }
+            }
+        }
+        return requests;
+    }
+
+    /**
+     * Gets the current state of all clusters in the region. Our own clusters win over what a peer or the upstream last
+     * reported.
+     */
+    private Collection<ClusterSnapshot> regionSnapshot()
+    {
+        Map<String, ClusterSnapshot> merged = new LinkedHashMap<>();
+        for (ClusterSnapshot snapshot : snapshot())
+        {
+            merged.put(snapshot.getName(), snapshot);
+        }
+        if (sharding != null)
+        {
+            for (ClusterSnapshot snapshot : sharding.getPeerSnapshots())
+            {
+                merged.putIfAbsent(snapshot.getName(), snapshot);
+            }
+        }
+        if (federation != null)
+        {
+            for (ClusterSnapshot snapshot : federation.getSnapshots())
+            {
+                merged.putIfAbsent(snapshot.getName(), snapshot);
+            }
+        }
+        return merged.values();
+    }
+
+    /**
+     * Gets a vizceral json for how the region looked during a period in the past, rendered from the history store.
+     * The traffic on each connection is the average over the period and notices and statuses are set if they were seen
+     * anywhere in the period.
+     *
+     * @param from Epoch millis to start from, inclusive.
+     * @param to   Epoch millis to end at, inclusive.
+     *
+     * @return JsonNode that can be fed to vizceral.
+     *
+     * @throws NotFoundException If history is not activated.
+     */
+    public JsonNode vizceral(long from, long to)
+    {
+        return vizceral(from, to, GraphFilter.NONE);
+    }
+
+    /**
+     * Gets a vizceral json for how part of the region looked during a period in the past.
+     *
+     * @param from   Epoch millis to start from, inclusive.
+     * @param to     Epoch millis to end at, inclusive.
+     * @param filter The filter to apply.
+     *
+     * @return JsonNode that can be fed to vizceral.
+     *
+     * @throws NotFoundException If history is not activated.
+     * @see #vizceral(long, long)
+     */
+    public JsonNode vizceral(long from, long to, GraphFilter filter)
+    {
+        if (historyStore == null)
+        {
+            throw new NotFoundException("History is not activated for region " + configuration.getRegionName());
+        }
+        return render(select(filter, historicSnapshot(from, to), Collections.emptyList()), to);
+    }
+
+    /**
+     * Gets the error and timeout ratios and burn rates of the connections over the configured windows.
+     *
+     * @param clusterName Only the connections going out from this cluster, or null for all connections.
+     *
+     * @return JsonNode with the burn rates.
+     *
+     * @throws NotFoundException If burn rates are not activated.
+     */
+    public JsonNode burnRates(String clusterName)
+    {
+        if (burnRates == null)
+        {
+            throw new NotFoundException("Burn rates are not activated for region " + configuration.getRegionName());
+        }
+        return burnRates.toJson(clusterName, System.currentTimeMillis());
+    }
+
+    private Collection<ClusterSnapshot> select(GraphFilter filter, Collection<ClusterSnapshot> snapshots, List<String> ranking)
+    {
+        Collection<ClusterSnapshot> selected = filter.apply(snapshots);
+        if (filter.getTop() == 0)
+        {
+            return selected;
+        }
+        return TopConnections.fold(selected, filter.getTop(), ranking, configuration::isInternetCluster);
+    }
+
+    /**
+     * Gets the current state of all clusters.
+     *
+     * @return Collection of cluster snapshots.
+     */
+    public Collection<ClusterSnapshot> snapshot()
+    {
+        long now = System.currentTimeMillis();
+        List<ClusterSnapshot> snapshots = new ArrayList<>();
+        for (HystrixCluster cluster : clusters.values())
+        {
+            snapshots.add(ClusterSnapshot.newBuilder()
+                    .name(cluster.getName())
+                    .connections(cluster.getConnections(configuration, statistics))
+                    .notices(getNotices(cluster.getName(), now))
+                    .maxValue(cluster.getMaxValue())
+                    .outgoingRequests(cluster.getSumOfOutgoingRequests())
+                    .rejected(cluster.anyRejected())
+                    .updated(cluster.getUpdated())
+                    .build());
+        }
+        return snapshots;
+    }
+
+    private List<VizceralNotice> getNotices(String clusterName, long now)
+    {
+        List<VizceralNotice> notices = monitoringService.getAlertsForCluster(clusterName);
+        notices.addAll(admission.getNotices(clusterName, now));
+        return notices;
+    }
+
+    private Collection<ClusterSnapshot> historicSnapshot(long from, long to)
+    {
+        Set<String> allClusters = new HashSet<>();
+        List<ClusterSnapshot> snapshots = new ArrayList<>();
+        for (Map.Entry<String, List<String>> source : historyStore.getConnections().entrySet())
+        {
+            List<VizceralConnection> connections = new ArrayList<>();
+            boolean rejected = false;
+            int outgoingRequests = 0;
+            for (String target : source.getValue())
+            {
+                HistoryPoint point = historyStore.aggregate(source.getKey(), target, from, to);
+                if (point == null)
+                {
+                    continue;
+                }
+                allClusters.add(target);
+                rejected |= point.isRejected();
+                outgoingRequests += point.getRequests() + point.getErrors() + point.getTimeouts();
+                connections.add(new VizceralConnection(target, point.getErrors(), point.getRequests(), point.getTimeouts(), point.isCircuitBreakerOpen(), getNotices(point)));
+            }
+            if (connections.isEmpty())
+            {
+                continue;
+            }
+            snapshots.add(ClusterSnapshot.newBuilder()
+                    .name(source.getKey())
+                    .connections(connections)
+                    .notices(noticeHistory.get(source.getKey(), from, to))
+                    .maxValue(Math.max(outgoingRequests, historyStore.getMaxOutgoing(source.getKey(), from, to)))
+                    .outgoingRequests(outgoingRequests)
+                    .rejected(rejected)
+                    .updated(to)
+                    .build());
+        }
+        //Clusters that only received traffic in the period
+        for (ClusterSnapshot snapshot : snapshots)
+        {
+            allClusters.remove(snapshot.getName());
+        }
+        for (String clusterName : allClusters)
+        {
+            snapshots.add(ClusterSnapshot.newBuilder()
+                    .name(clusterName)
+                    .notices(noticeHistory.get(clusterName, from, to))
+                    .updated(to)
+                    .build());
+        }
+        return snapshots;
+    }
+
+    private List<VizceralNotice> getNotices(HistoryPoint point)
+    {
+        List<VizceralNotice> notices = new ArrayList<>();
+        int total = point.getRequests() + point.getErrors() + point.getTimeouts();
+        if (total > 0)
+        {
+            double failurePercentage = (double) point.getErrors() / total;
+            double timeoutPercentage = (double) point.getTimeouts() / total;
+            if (configuration.getTimeoutPercentageThreshold() != null && configuration.getTimeoutPercentageThreshold() < timeoutPercentage)
+            {
+                notices.add(VizceralNotice.newBuilder().severity(NoticeSeverity.WARNING).title(FORMAT.format(timeoutPercentage * 100) + "% timeouts").build());
+            }
+            if (configuration.getFailurePercentageThreshold() != null && configuration.getFailurePercentageThreshold() < failurePercentage)
+            {
+                notices.add(VizceralNotice.newBuilder().severity(NoticeSeverity.ERROR).title(FORMAT.format(failurePercentage * 100) + "% failures").build());
+            }
+        }
+        if (point.isCircuitBreakerOpen())
+        {
+            notices.add(VizceralNotice.newBuilder().severity(NoticeSeverity.ERROR).title("Circuit breaker triggered").build());
+        }
+        return notices;
+    }
+
+    private JsonNode render(Collection<ClusterSnapshot> snapshots, long updated)
     {
         String regionName = configuration.getRegionName();
         ObjectNode objectNode = JsonNodeFactory.instance.objectNode()
@@ -83,23 +733,36 @@ public class VizceralAggregator
                 .put("renderer", "region")
                 .put("name", regionName)
                 .put("class", "normal")
-                .put("updated", getUpdated());
+                .put("updated", updated);
 
         ArrayNode regionNodes = regionNode.putArray("nodes");
 
-        Set<String> allClusters = new HashSet<>(clusters.keySet());
+        Map<String, ClusterSnapshot> byName = new HashMap<>();
+        Set<String> circuitBreakersOpen = new HashSet<>();
+        for (ClusterSnapshot snapshot : snapshots)
+        {
+            byName.put(snapshot.getName(), snapshot);
+            for (VizceralConnection connection : snapshot.getConnections())
+            {
+                if (connection.isCircuitBreakerOpen())
+                {
+                    circuitBreakersOpen.add(connection.getName());
+                }
+            }
+        }
+        Set<String> allClusters = new HashSet<>(byName.keySet());
         allClusters.add("INTERNET");
         for (String clusterName : allClusters)
         {
             String status = "normal";
-            if (clusters.containsKey(clusterName))
+            ClusterSnapshot cluster = byName.get(clusterName);
+            if (cluster != null)
             {
-                HystrixCluster cluster = clusters.get(clusterName);
-                if (hasAnyoneCircuitBreakerOnMe(clusterName))
+                if (circuitBreakersOpen.contains(clusterName))
                 {
                     status = "danger";
                 }
-                else if (cluster.anyRejected())
+                else if (cluster.isRejected())
                 {
                     status = "warning";
                 }
@@ -111,26 +774,33 @@ public class VizceralAggregator
                     .putObject("metadata")
                     .put("streaming", 1);
             ArrayNode notices = clusterNode.withArray("notices");
-            for (VizceralNotice notice : monitoringService.getAlertsForCluster(clusterName))
+            if (cluster != null)
             {
-                notices.add(notice.toJson());
+                for (VizceralNotice notice : cluster.getNotices())
+                {
+                    notices.add(notice.toJson());
+                }
             }
 
             clusterNode.putArray("nodes");
         }
 
         //Max volume in cluster
-        int maxVolume = clusters.values().stream().mapToInt(c -> c.getMaxValue()).max().orElse(0);
+        int maxVolume = snapshots.stream().mapToInt(c -> c.getMaxValue()).max().orElse(0);
 
         ArrayNode connectionNodes = regionNode.putArray("connections");
-        for (Map.Entry<String, HystrixCluster> cluster : clusters.entrySet())
+        for (ClusterSnapshot cluster : snapshots)
         {
-            for (VizceralConnection connection : cluster.getValue().getConnections(configuration))
+            for (VizceralConnection connection : cluster.getConnections())
             {
                 ObjectNode connectionNode = connectionNodes.addObject()
-                        .put("source", cluster.getKey())
+                        .put("source", cluster.getName())
                         .put("target", connection.getName());
-                connectionNode.putObject("metadata").put("streaming", 1);
+                ObjectNode metadata = connectionNode.putObject("metadata").put("streaming", 1);
+                if (connection.getLatency() != null)
+                {
+                    connection.getLatency().writeMetadata(metadata);
+                }
                 connectionNode.putObject("metrics")
                         .put("danger", connection.getErrors())
                         .put("warning", connection.getTimeouts())
@@ -144,16 +814,21 @@ public class VizceralAggregator
         }
         for (String internetCluster : configuration.getInternetClusters())
         {
-            HystrixCluster cluster = clusters.get(internetCluster);
+            ClusterSnapshot cluster = byName.get(internetCluster);
+            if (cluster == null)
+            {
+                //Not tailed yet, or filtered out
+                continue;
+            }
             ObjectNode connectionNode = connectionNodes.addObject()
                     .put("source", "INTERNET")
                     .put("target", internetCluster);
             connectionNode.putObject("metadata").put("streaming", 1);
-            connectionNode.putObject("metrics").put("normal", cluster.getSumOfOutgoingRequests());
+            connectionNode.putObject("metrics").put("normal", cluster.getOutgoingRequests());
         }
         regionNode.put("maxVolume", maxVolume);
         //Requests are all nodes that are leaving the internet clusters (not really true, but close enough)
-        int currentRequests = clusters.values().stream().filter(c -> configuration.isInternetCluster(c.getName())).mapToInt(c -> c.getSumOfOutgoingRequests()).sum();
+        int currentRequests = snapshots.stream().filter(c -> configuration.isInternetCluster(c.getName())).mapToInt(c -> c.getOutgoingRequests()).sum();
 
         ObjectNode internetConnection = objectNode.putArray("connections")
                 .addObject()
@@ -170,36 +845,149 @@ public class VizceralAggregator
 
     private long getUpdated()
     {
-        return clusters.values().stream().flatMap(c -> c.getEvents().stream()).mapToLong(c -> c.getCreated()).max().orElse(0);
+        return clusters.values().stream().mapToLong(c -> c.getUpdated()).max().orElse(0);
+    }
+
+    private void recordNotices()
+    {
+        long now = System.currentTimeMillis();
+        for (String clusterName : clusters.keySet())
+        {
+            noticeHistory.record(clusterName, monitoringService.getAlertsForCluster(clusterName), now);
+        }
     }
 
-    private boolean hasAnyoneCircuitBreakerOnMe(String cluster)
+    /**
+     * Starts tailing a cluster unless it is already tailed or, when sharded, owned by another instance.
+     *
+     * @return true if the cluster was new to this instance.
+     */
+    private boolean discover(String clusterName)
     {
-        return getEventsTowardsMe(cluster).anyMatch(c -> c.isCircuitBreakerOpen());
+        known.add(clusterName);
+        if (sharding != null && !sharding.isOwner(clusterName))
+        {
+            return false;
+        }
+        return discovery.discover(clusterName);
     }
 
-    private Stream<HystrixEvent> getEventsTowardsMe(String cluster)
+    /**
+     * Opens the streams of the entry and restored clusters at once instead of discovering them one hop at a time.
+     */
+    private void open(Set<String> toStart)
     {
-        return clusters.values().stream().flatMap(c -> c.getEvents().stream()).filter(c -> cluster.equals(c.getGroup()));
+        for (String clusterName : toStart)
+        {
+            if (isWanted(clusterName))
+            {
+                discover(clusterName);
+            }
+            else
+            {
+                //Remembered, so viewing it starts it
+                known.add(clusterName);
+            }
+        }
     }
 
-    private void startReader(String clusterName)
+    /**
+     * Moves clusters to match the ring after the peers were refreshed. Clusters seen by the peers are learned as well,
+     * since a cluster owned by this instance may only be discovered through the events of a cluster tailed elsewhere.
+     * They are forgotten with the snapshots of the peers, after one more round so the clusters of a peer that left are
+     * taken over. Runs on the region scheduler.
+     *
+     * @param changed If the ring changed with the refresh.
+     */
+    private void rebalance(boolean changed)
+    {
+        Set<String> learned = new HashSet<>();
+        for (ClusterSnapshot snapshot : sharding.getPeerSnapshots())
+        {
+            learned.add(snapshot.getName());
+            for (VizceralConnection connection : snapshot.getConnections())
+            {
+                learned.add(connection.getName());
+                HystrixCluster target = clusters.get(connection.getName());
+                if (target != null)
+                {
+                    target.markTargeted(snapshot.getUpdated());
+                }
+            }
+        }
+        Set<String> candidates = new HashSet<>(known);
+        candidates.addAll(peerKnown);
+        candidates.addAll(learned);
+        peerKnown = learned;
+        int started = 0;
+        int stopped = 0;
+        for (String clusterName : candidates)
+        {
+            boolean owner = sharding.isOwner(clusterName);
+            if (owner && !discovery.isKnown(clusterName) && isWanted(clusterName))
+            {
+                discovery.discover(clusterName);
+                started++;
+            }
+            else if (!owner && (discovery.isKnown(clusterName) || clusters.containsKey(clusterName)))
+            {
+                stopReader(clusterName);
+                stopped++;
+            }
+        }
+        if (changed || started > 0 || stopped > 0)
+        {
+            logger.info("Rebalanced region {}, started {} and handed over {} clusters", configuration.getRegionName(), started, stopped);
+        }
+    }
+
+    /**
+     * Starts tailing a cluster, or opens its stream again if it is already tailed. The old stream is closed once the
+     * new one is subscribed, so the cluster keeps its state.
+     */
+    private Observable<String> startReader(String clusterName)
     {
         logger.info("Starting to tail cluster " + clusterName);
-        HystrixCluster cluster = new HystrixCluster(clusterName, configuration.getMaxTrafficTtlSeconds());
-        clusters.put(clusterName, cluster);
-        HystrixReader reader = new HystrixReader(configuration, clusterName);
+        boolean reopening = subscriptions.containsKey(clusterName);
+        HystrixCluster cluster = clusters.computeIfAbsent(clusterName, name -> new HystrixCluster(name, configuration.getMaxTrafficTtlSeconds()));
+        if (!reopening)
+        {
+            //Discovered through a connection towards it, which also keeps it from being evicted right away
+            cluster.markTargeted(System.currentTimeMillis());
+            scheduleClusterExpiry(cluster, System.currentTimeMillis());
+        }
+        HystrixReader reader = HystrixReader.create(configuration, clusterName, threads);
         readers.put(clusterName, reader);
-        reader.read().subscribe(c ->
+        AsyncSubject<String> opened = AsyncSubject.create();
+        Subscription subscription = reader.read().subscribe(c ->
         {
-            if (!readers.containsKey(c.getGroup()))
+            if (!opened.hasCompleted())
             {
-                startReader(c.getGroup());
+                if (pruning)
+                {
+                    reported.add(clusterName);
+                }
+                opened.onNext(clusterName);
+                opened.onCompleted();
+            }
+            if (isWanted(c.getGroup()) && admit(clusterName, c.getGroup()) && discover(c.getGroup()))
+            {
+                metrics.increment("discoveredClusters");
+            }
+            if (pruning)
+            {
+                reported.add(c.getGroup());
             }
             logger.debug("Cluster {} has event towards {}, {}", clusterName, c.getGroup(), c);
-            cluster.addEvent(c);
+            HystrixCluster target = clusters.get(c.getGroup());
+            if (target != null)
+            {
+                target.markTargeted(c.getCreated());
+            }
+            ingestion.submit(cluster, writer -> ingest(writer, c));
         }, ex ->
         {
+            opened.onCompleted();
             if (ex instanceof UnknownClusterException)
             {
                 logger.info("Turbine does not recognize cluster " + clusterName + " for region " + configuration.getRegionName());
@@ -209,5 +997,356 @@ public class VizceralAggregator
                 logger.error("Exception from hystrix event for cluster " + clusterName + " for region " + configuration.getRegionName(), ex);
             }
         });
+        Subscription previous = subscriptions.put(clusterName, subscription);
+        if (previous != null)
+        {
+            previous.unsubscribe();
+        }
+        return opened;
+    }
+
+    /**
+     * Checks if a cluster should be tailed: always, unless only viewed clusters are tailed. Entry and internet clusters
+     * are always tailed so the region graph stays complete.
+     */
+    private boolean isWanted(String clusterName)
+    {
+        return viewers == null || configuration.isEntryCluster(clusterName) || configuration.isInternetCluster(clusterName)
+                || viewers.isWanted(clusterName, System.currentTimeMillis());
+    }
+
+    /**
+     * Checks if a cluster is known in the region: tailed, restored from the checkpoint, seen by a peer or the target of
+     * a connection of a tailed cluster. Only known clusters are started by a view, so made up names are never tailed.
+     */
+    private boolean isKnownCluster(String clusterName)
+    {
+        if (clusters.containsKey(clusterName) || known.contains(clusterName) || peerKnown.contains(clusterName))
+        {
+            return true;
+        }
+        for (HystrixCluster cluster : clusters.values())
+        {
+            if (cluster.getRollup(clusterName) != null)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Records the views of the clusters in a filtered graph, when only viewed clusters are tailed. The targets of their
+     * connections are viewed as well, so looking at part of the graph tails the clusters one hop further. The targets
+     * are taken from the unfiltered snapshots, since a filtered graph only keeps connections between tailed clusters.
+     * The whole graph does not count as a view, otherwise every dashboard would keep every cluster tailed.
+     */
+    private void viewed(GraphFilter filter, Collection<ClusterSnapshot> selected, Collection<ClusterSnapshot> snapshots)
+    {
+        if (viewers == null || filter.isEmpty())
+        {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        Set<String> names = new HashSet<>();
+        for (ClusterSnapshot snapshot : selected)
+        {
+            names.add(snapshot.getName());
+        }
+        for (ClusterSnapshot snapshot : snapshots)
+        {
+            if (!names.contains(snapshot.getName()))
+            {
+                continue;
+            }
+            viewed(snapshot.getName(), now);
+            for (VizceralConnection connection : snapshot.getConnections())
+            {
+                viewed(connection.getName(), now);
+            }
+        }
+    }
+
+    private void viewed(String clusterName, long now)
+    {
+        if (TopConnections.OTHER.equals(clusterName))
+        {
+            return;
+        }
+        viewers.view(clusterName, now);
+        if (!discovery.isKnown(clusterName) && admit(clusterName, clusterName) && discover(clusterName))
+        {
+            metrics.increment("viewedStartedClusters");
+        }
+    }
+
+    /**
+     * Stops tailing the clusters nobody has viewed within the idle timeout.
+     */
+    private void stopUnviewed()
+    {
+        long now = System.currentTimeMillis();
+        viewers.expire(now);
+        for (String clusterName : clusters.keySet())
+        {
+            if (!isWanted(clusterName))
+            {
+                logger.debug("Cluster {} in region {} has not been viewed for {}s", clusterName, configuration.getRegionName(), configuration.getViewerIdleSeconds());
+                stopReader(clusterName);
+                metrics.increment("unviewedStoppedClusters");
+            }
+        }
+    }
+
+    /**
+     * Checks if a cluster seen in the events of another cluster may be tailed. When the cluster budget is used up, room
+     * is made by stopping the least active cluster, if one has been idle for a while.
+     *
+     * @param source      The cluster whose events target the cluster, shows the notice if the cluster is not admitted.
+     * @param clusterName The cluster to tail.
+     *
+     * @return true if the cluster may be tailed, otherwise false.
+     */
+    private boolean admit(String source, String clusterName)
+    {
+        if (discovery.isKnown(clusterName) || configuration.isEntryCluster(clusterName))
+        {
+            return true;
+        }
+        if (!admission.isAllowed(clusterName))
+        {
+            admission.limited(source, "Cluster denied", "Not tailing " + clusterName, System.currentTimeMillis());
+            return false;
+        }
+        if ((sharding != null && !sharding.isOwner(clusterName)) || !admission.isFull(discovery.getKnownCount()))
+        {
+            return true;
+        }
+        return makeRoom(source, clusterName);
+    }
+
+    private boolean makeRoom(String source, String clusterName)
+    {
+        synchronized (evictionLock)
+        {
+            long now = System.currentTimeMillis();
+            HystrixCluster victim = null;
+            long victimActive = Long.MAX_VALUE;
+            //Scanning is skipped for a while after finding nothing, runaway group names would otherwise scan on every event
+            if (now >= nextEvictionScan)
+            {
+                for (HystrixCluster cluster : clusters.values())
+                {
+                    long lastActive = Math.max(cluster.getLastEventTime(), cluster.getLastTargetedTime());
+                    if (lastActive < victimActive && lastActive + CLUSTER_EVICTABLE_MILLIS < now
+                            && !configuration.isEntryCluster(cluster.getName()) && !configuration.isInternetCluster(cluster.getName()))
+                    {
+                        victim = cluster;
+                        victimActive = lastActive;
+                    }
+                }
+            }
+            if (victim == null)
+            {
+                nextEvictionScan = now + 1000;
+                metrics.increment("rejectedClusters");
+                admission.limited(source, "Cluster budget reached", "Not tailing " + clusterName, now);
+                return false;
+            }
+            logger.info("Cluster budget reached in region {}, evicting cluster {} silent since {} for {}", configuration.getRegionName(), victim.getName(), victimActive, clusterName);
+            stopReader(victim.getName());
+            known.remove(victim.getName());
+            metrics.increment("budgetEvictedClusters");
+            return true;
+        }
+    }
+
+    /**
+     * Checks if a new command may be tracked for a cluster. When a budget is used up, room is made by removing the
+     * least recently updated command of the cluster, if it has been idle for a while. Runs on the writer thread of the
+     * cluster.
+     */
+    private boolean admitCommand(HystrixCluster cluster, HystrixEvent event)
+    {
+        if (admission.hasRoomForCommand(cluster.getCurrentEvents().size()))
+        {
+            return true;
+        }
+        HystrixEvent victim = null;
+        for (HystrixEvent current : cluster.getCurrentEvents())
+        {
+            if (current.getCreated() + COMMAND_EVICTABLE_MILLIS < event.getCreated() && (victim == null || current.getCreated() < victim.getCreated()))
+            {
+                victim = current;
+            }
+        }
+        if (victim == null)
+        {
+            metrics.increment("rejectedCommands");
+            admission.limited(cluster.getName(), "Command budget reached", "Not tracking " + event.getName(), System.currentTimeMillis());
+            return false;
+        }
+        ConnectionRollup victimRollup = getCurrentRollup(cluster, victim);
+        cluster.applyRemoval(victim);
+        forgetIfDropped(cluster, victimRollup);
+        regionTraffic.replace(victim, null);
+        admission.commandsRemoved(1);
+        metrics.increment("budgetEvictedCommands");
+        admission.limited(cluster.getName(), "Command budget reached", "Evicted " + victim.getName() + " for " + event.getName(), System.currentTimeMillis());
+        return true;
+    }
+
+    /**
+     * Applies an event to a cluster. Runs on the writer thread of the cluster.
+     */
+    private void ingest(HystrixCluster cluster, HystrixEvent event)
+    {
+        if (clusters.get(cluster.getName()) != cluster)
+        {
+            //Stopped while the event was queued
+            return;
+        }
+        HystrixEvent previous = cluster.getCurrentEvent(event.getName());
+        if (previous == null && !admitCommand(cluster, event))
+        {
+            return;
+        }
+        ConnectionRollup previousRollup = getCurrentRollup(cluster, previous);
+        if (cluster.applyEvent(event))
+        {
+            admission.commandAdded();
+            scheduleCommandExpiry(cluster, event);
+        }
+        forgetIfDropped(cluster, previousRollup);
+        regionTraffic.replace(previous, event);
+        topConnections.record(cluster.getName(), event);
+        if (statistics != null)
+        {
+            ConnectionRollup rollup = cluster.getCurrentRollup(event.getGroup());
+            if (rollup != null)
+            {
+                statistics.record(cluster.getName(), rollup, event.getCreated());
+            }
+        }
+        if (historyStore != null)
+        {
+            historyStore.record(cluster.getName(), cluster.getCurrentRollup(event.getGroup()), event.getCreated());
+        }
+    }
+
+    private static ConnectionRollup getCurrentRollup(HystrixCluster cluster, HystrixEvent event)
+    {
+        return event == null || event.getGroup() == null ? null : cluster.getCurrentRollup(event.getGroup());
+    }
+
+    /**
+     * Frees the statistics of a connection once its last command is gone and its rollup dropped, so the slots of
+     * connections that stopped do not pile up while their cluster keeps being tailed. Runs on the writer thread.
+     */
+    private void forgetIfDropped(HystrixCluster cluster, ConnectionRollup rollup)
+    {
+        if (statistics != null && rollup != null && cluster.getCurrentRollup(rollup.getTarget()) != rollup)
+        {
+            statistics.forget(cluster.getName(), rollup);
+        }
+    }
+
+    private void scheduleCommandExpiry(HystrixCluster cluster, HystrixEvent event)
+    {
+        long ttl = configuration.getCommandTtlSeconds() * 1000L;
+        if (ttl == 0)
+        {
+            return;
+        }
+        String command = event.getName();
+        expiry.schedule(event.getCreated() + ttl, now ->
+        {
+            HystrixEvent last = cluster.getEvent(command);
+            if (last == null || clusters.get(cluster.getName()) != cluster)
+            {
+                return TimerWheel.DONE;
+            }
+            if (last.getCreated() + ttl > now)
+            {
+                return last.getCreated() + ttl;
+            }
+            ingestion.submit(cluster, writer ->
+            {
+                if (clusters.get(writer.getName()) != writer)
+                {
+                    return;
+                }
+                ConnectionRollup rollup = getCurrentRollup(writer, last);
+                if (writer.applyRemoval(last))
+                {
+                    forgetIfDropped(writer, rollup);
+                    regionTraffic.replace(last, null);
+                    admission.commandsRemoved(1);
+                    logger.debug("Removing command {} in cluster {} that has not been updated since {}", command, writer.getName(), last.getCreated());
+                    metrics.increment("evictedCommands");
+                }
+                else
+                {
+                    //A new event came in after the check, keep watching that one
+                    scheduleCommandExpiry(writer, writer.getEvent(command) == null ? last : writer.getEvent(command));
+                }
+            });
+            return TimerWheel.DONE;
+        });
+    }
+
+    private void scheduleClusterExpiry(HystrixCluster cluster, long started)
+    {
+        long ttl = configuration.getClusterTtlSeconds() * 1000L;
+        String clusterName = cluster.getName();
+        if (ttl == 0 || configuration.isEntryCluster(clusterName) || configuration.isInternetCluster(clusterName))
+        {
+            return;
+        }
+        expiry.schedule(started + ttl, now ->
+        {
+            if (clusters.get(clusterName) != cluster)
+            {
+                return TimerWheel.DONE;
+            }
+            long lastActive = Math.max(started, Math.max(cluster.getLastEventTime(), cluster.getLastTargetedTime()));
+            if (lastActive + ttl > now)
+            {
+                return lastActive + ttl;
+            }
+            logger.info("Cluster {} in region {} has been silent since {}", clusterName, configuration.getRegionName(), lastActive);
+            stopReader(clusterName);
+            known.remove(clusterName);
+            metrics.increment("evictedClusters");
+            return TimerWheel.DONE;
+        });
+    }
+
+    private void stopReader(String clusterName)
+    {
+        logger.info("Stopping to tail cluster {} for region {}", clusterName, configuration.getRegionName());
+        Subscription subscription = subscriptions.remove(clusterName);
+        if (subscription != null)
+        {
+            subscription.unsubscribe();
+        }
+        readers.remove(clusterName);
+        HystrixCluster cluster = clusters.remove(clusterName);
+        focus.invalidate(clusterName);
+        if (cluster != null)
+        {
+            //Queued behind any events still being applied to the cluster
+            ingestion.submit(cluster, writer ->
+            {
+                writer.getCurrentEvents().forEach(event -> regionTraffic.replace(event, null));
+                admission.commandsRemoved(writer.getCurrentEvents().size());
+                if (statistics != null)
+                {
+                    statistics.forget(writer.getName());
+                }
+            });
+        }
+        admission.forget(clusterName);
+        discovery.forget(clusterName);
     }
 }
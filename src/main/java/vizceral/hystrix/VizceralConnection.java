@@ -11,7 +11,9 @@ public class VizceralConnection
     private final int errors;
     private final int requests;
     private final int timeouts;
+    private final boolean circuitBreakerOpen;
     private final List<VizceralNotice> notices;
+    private final LatencyPercentiles latency;
 
     /**
      * Creates a new Vizceral connection.
@@ -20,15 +22,34 @@ public class VizceralConnection
      * @param errors   The number of errors seen in the period.
      * @param requests The number of successful requests seen in the period.
      * @param timeouts The number of timeouts seen in the period.
+     * @param circuitBreakerOpen If any circuit breaker on the connection is open.
      * @param notices  The notices to show.
      */
-    public VizceralConnection(String name, int errors, int requests, int timeouts, List<VizceralNotice> notices)
+    public VizceralConnection(String name, int errors, int requests, int timeouts, boolean circuitBreakerOpen, List<VizceralNotice> notices)
+    {
+        this(name, errors, requests, timeouts, circuitBreakerOpen, notices, null);
+    }
+
+    /**
+     * Creates a new Vizceral connection with latencies.
+     *
+     * @param name     The name of the cluster this connection is to.
+     * @param errors   The number of errors seen in the period.
+     * @param requests The number of successful requests seen in the period.
+     * @param timeouts The number of timeouts seen in the period.
+     * @param circuitBreakerOpen If any circuit breaker on the connection is open.
+     * @param notices  The notices to show.
+     * @param latency  The latency percentiles, or null if unknown.
+     */
+    public VizceralConnection(String name, int errors, int requests, int timeouts, boolean circuitBreakerOpen, List<VizceralNotice> notices, LatencyPercentiles latency)
     {
         this.name = name;
         this.errors = errors;
         this.requests = requests;
         this.timeouts = timeouts;
+        this.circuitBreakerOpen = circuitBreakerOpen;
         this.notices = notices;
+        this.latency = latency;
     }
 
     /**
@@ -71,6 +92,16 @@ public class VizceralConnection
         return timeouts;
     }
 
+    /**
+     * Gets if any circuit breaker on this connection is open.
+     *
+     * @return true if a circuit breaker is open, otherwise false.
+     */
+    public boolean isCircuitBreakerOpen()
+    {
+        return circuitBreakerOpen;
+    }
+
     /**
      * Gets notices for this connection.
      *
@@ -80,4 +111,14 @@ public class VizceralConnection
     {
         return notices;
     }
+
+    /**
+     * Gets the latency percentiles of this connection.
+     *
+     * @return The percentiles, or null if unknown.
+     */
+    public LatencyPercentiles getLatency()
+    {
+        return latency;
+    }
 }
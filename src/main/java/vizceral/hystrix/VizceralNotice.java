@@ -3,6 +3,8 @@ package vizceral.hystrix;
 import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
+import java.util.Objects;
+
 /**
  * A notice on a connection.
  */
@@ -66,6 +68,29 @@ public class VizceralNotice
         return severity;
     }
 
+    @Override
+    public boolean equals(Object o)
+    {
+        if (this == o)
+        {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass())
+        {
+            return false;
+        }
+        VizceralNotice that = (VizceralNotice) o;
+        return Objects.equals(title, that.title)
+                && Objects.equals(subtitle, that.subtitle)
+                && Objects.equals(link, that.link)
+                && severity == that.severity;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Objects.hash(title, subtitle, link, severity);
+    }
 
     public ObjectNode toJson()
     {
@@ -0,0 +1,373 @@
+package vizceral.hystrix;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.reactivex.netty.protocol.http.server.HttpServerRequest;
+import io.reactivex.netty.protocol.http.server.HttpServerResponse;
+import io.reactivex.netty.protocol.http.server.RequestHandler;
+import rx.Observable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+/**
+ * Http handler serving the vizceral json for all regions, merged into one graph, and the metrics of each region on
+ * /metrics.
+ * <p>
+ * Each region is also served on its own on {@code /regions/<region name>}, and {@code /summary} serves only the
+ * regions, the requests entering each and the traffic between them, from the running totals of the regions.
+ * <p>
+ * A single cluster, with one node per hystrix command, is served on {@code /regions/<region name>/clusters/<cluster name>}.
+ * <p>
+ * Instances sharing a region fetch the clusters tailed by each other from {@code /partial?region=<region name>}.
+ * With {@code scope=region} the whole region is returned instead, which is what a federating instance reads, and
+ * {@code since=<generation>}, the generation of the previous payload, limits it to the clusters that changed.
+ * <p>
+ * Given that an slo is configured, {@code /burnrates?region=<region name>} serves the error budget burn rates of the
+ * connections, limited to those going out from one cluster with {@code cluster=<cluster name>}.
+ * <p>
+ * Supports looking at the graph as it was in the past, given that history is activated:
+ * <ul>
+ * <li>{@code ?at=<epoch millis>} renders the hystrix rolling window (10 seconds) ending at that instant.</li>
+ * <li>{@code ?from=<epoch millis>&to=<epoch millis>} renders the average over the range.</li>
+ * </ul>
+ * The graph can be limited with the parameters of {@link GraphFilter#fromQuery(Map)}.
+ * <p>
+ * Every graph (path and query) is rendered on its own. Concurrent requests for the same graph wait for a single
+ * rendering, which is also handed to requests arriving up to the configured max staleness later.
+ * <p>
+ * Responses are json unless the Accept header asks for one of the binary {@link GraphFormat}s (Smile or CBOR).
+ */
+public class VizceralRequestHandler implements RequestHandler<ByteBuf, ByteBuf>
+{
+    private static final long ROLLING_WINDOW_MILLIS = 10000;
+    private static final String REGIONS_PATH = "/regions/";
+    private static final String CLUSTERS = "clusters";
+    private static final String SUMMARY_PATH = "/summary";
+    private final List<VizceralAggregator> aggregators;
+    private final SingleFlight<String, RenderedGraph> graphs;
+
+    /**
+     * Creates a new handler.
+     *
+     * @param aggregators The aggregators, one per region. The max staleness is taken from the first.
+     */
+    public VizceralRequestHandler(List<VizceralAggregator> aggregators)
+    {
+        this.aggregators = aggregators;
+        this.graphs = new SingleFlight<>(aggregators.get(0).getConfiguration().getMaxStalenessMillis());
+    }
+
+    @Override
+    public Observable<Void> handle(HttpServerRequest<ByteBuf> request, HttpServerResponse<ByteBuf> response)
+    {
+        response.getHeaders().add("Access-Control-Allow-Origin", "*");
+        response.getHeaders().add("Access-Control-Allow-Methods", "GET,POST,PUT,DELETE,OPTIONS");
+        response.getHeaders().add("Access-Control-Allow-Headers", "Content-Type");
+        response.getHeaders().add("Vary", "Accept");
+        GraphFormat format = GraphFormat.negotiate(request.getHeaders().get("Accept"));
+        if ("/metrics".equals(request.getPath()))
+        {
+            ObjectNode metrics = JsonNodeFactory.instance.objectNode();
+            for (VizceralAggregator aggregator : aggregators)
+            {
+                metrics.set(aggregator.getConfiguration().getRegionName(), aggregator.getMetrics().toJson());
+            }
+            return write(response, format, format.write(metrics));
+        }
+        String[] parts = request.getPath().split("/");
+        if (request.getPath().startsWith(REGIONS_PATH) && parts.length == 5 && CLUSTERS.equals(parts[3]))
+        {
+            VizceralAggregator aggregator = getAggregator(parts[2]);
+            JsonNode focused = aggregator == null ? null : aggregator.vizceral(parts[4]);
+            if (focused == null)
+            {
+                return error(response, HttpResponseStatus.NOT_FOUND, "Unknown region or cluster");
+            }
+            return write(response, format, format.write(focused));
+        }
+        if ("/partial".equals(request.getPath()))
+        {
+            VizceralAggregator aggregator = getRegion(request.getQueryParameters());
+            if (aggregator == null)
+            {
+                return error(response, HttpResponseStatus.NOT_FOUND, "Unknown region");
+            }
+            JsonNode partial;
+            try
+            {
+                Map<String, List<String>> parameters = request.getQueryParameters();
+                Long since = getLong(parameters, "since");
+                List<String> scope = parameters.get("scope");
+                boolean region = scope != null && scope.contains("region");
+                partial = region ? aggregator.regionPartial(since == null ? 0 : since) : aggregator.partial();
+            }
+            catch (IllegalArgumentException ex)
+            {
+                return error(response, HttpResponseStatus.BAD_REQUEST, ex.getMessage());
+            }
+            return write(response, format, format.write(partial));
+        }
+        if ("/burnrates".equals(request.getPath()))
+        {
+            VizceralAggregator aggregator = getRegion(request.getQueryParameters());
+            if (aggregator == null)
+            {
+                return error(response, HttpResponseStatus.NOT_FOUND, "Unknown region");
+            }
+            List<String> cluster = request.getQueryParameters().get("cluster");
+            JsonNode burnRates;
+            try
+            {
+                burnRates = aggregator.burnRates(cluster == null || cluster.isEmpty() ? null : cluster.get(0));
+            }
+            catch (NotFoundException ex)
+            {
+                return error(response, HttpResponseStatus.NOT_FOUND, ex.getMessage());
+            }
+            return write(response, format, format.write(burnRates));
+        }
+        Map<String, List<String>> parameters = request.getQueryParameters();
+        String path = request.getPath();
+        CompletableFuture<RenderedGraph> graph = graphs.get(request.getUri(), () -> new RenderedGraph(render(path, parameters)));
+        return Observable.<RenderedGraph>create(subscriber -> graph.whenComplete((rendered, ex) ->
+        {
+            if (ex != null)
+            {
+                subscriber.onError(ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex);
+            }
+            else
+            {
+                subscriber.onNext(rendered);
+                subscriber.onCompleted();
+            }
+        })).flatMap(rendered -> write(response, format, rendered.getBytes(format))).onErrorResumeNext(ex ->
+        {
+            if (ex instanceof IllegalArgumentException)
+            {
+                return error(response, HttpResponseStatus.BAD_REQUEST, ex.getMessage());
+            }
+            if (ex instanceof NotFoundException)
+            {
+                return error(response, HttpResponseStatus.NOT_FOUND, ex.getMessage());
+            }
+            return Observable.error(ex);
+        });
+    }
+
+    /**
+     * Renders the graph for the path and query parameters of a request: one region on /regions/{name}, only the
+     * regions and the connections between them on /summary, otherwise all regions merged.
+     *
+     * @throws IllegalArgumentException If a parameter is invalid.
+     * @throws NotFoundException         If the region is unknown, or history is asked for but not activated.
+     */
+    private JsonNode render(String path, Map<String, List<String>> parameters)
+    {
+        if (SUMMARY_PATH.equals(path))
+        {
+            if (parameters.containsKey("at") || parameters.containsKey("from") || parameters.containsKey("to"))
+            {
+                throw new IllegalArgumentException("The summary only shows the current traffic");
+            }
+            return summarize();
+        }
+        Function<VizceralAggregator, JsonNode> render = getRenderer(parameters);
+        if (path.startsWith(REGIONS_PATH))
+        {
+            VizceralAggregator aggregator = getAggregator(path.substring(REGIONS_PATH.length()));
+            if (aggregator == null)
+            {
+                throw new NotFoundException("Unknown region");
+            }
+            return render.apply(aggregator);
+        }
+        return merge(render);
+    }
+
+    private Function<VizceralAggregator, JsonNode> getRenderer(Map<String, List<String>> parameters)
+    {
+        Long at = getLong(parameters, "at");
+        Long from = getLong(parameters, "from");
+        Long to = getLong(parameters, "to");
+        GraphFilter filter = GraphFilter.fromQuery(parameters);
+        if (at != null)
+        {
+            return aggregator -> aggregator.vizceral(at - ROLLING_WINDOW_MILLIS, at, filter);
+        }
+        else if (from != null || to != null)
+        {
+            if (from == null || to == null || from > to)
+            {
+                throw new IllegalArgumentException("Both from and to must be set, and from must not be after to");
+            }
+            return aggregator -> aggregator.vizceral(from, to, filter);
+        }
+        return aggregator -> aggregator.vizceral(filter);
+    }
+
+    /**
+     * Renders the regions without their clusters. The requests entering each region are those leaving its internet
+     * clusters, and the traffic between regions is taken from the hystrix commands whose groups are mapped to another
+     * region with groupToRegion. Both are running totals, so no cluster graph is rendered.
+     */
+    private JsonNode summarize()
+    {
+        long now = System.currentTimeMillis();
+        ObjectNode objectNode = JsonNodeFactory.instance.objectNode()
+                .put("renderer", "global")
+                .put("name", "edge");
+        ArrayNode nodes = objectNode.putArray("nodes");
+        ArrayNode connections = objectNode.putArray("connections");
+        nodes.addObject()
+                .put("renderer", "region")
+                .put("name", "INTERNET")
+                .put("class", "normal")
+                .put("updated", now)
+                .putArray("nodes");
+        int maxVolume = 0;
+        for (VizceralAggregator aggregator : aggregators)
+        {
+            String regionName = aggregator.getConfiguration().getRegionName();
+            int requests = aggregator.getInternetRequests();
+            maxVolume = Math.max(maxVolume, requests);
+            nodes.addObject()
+                    .put("renderer", "region")
+                    .put("name", regionName)
+                    .put("class", "normal")
+                    .put("updated", now)
+                    .putArray("nodes");
+            ObjectNode internetConnection = connections.addObject()
+                    .put("source", "INTERNET")
+                    .put("target", regionName)
+                    .put("class", "normal");
+            internetConnection.putObject("metrics").put("normal", requests);
+            internetConnection.putArray("notices");
+        }
+        addRegionConnections(connections);
+        objectNode.put("maxVolume", maxVolume);
+        return objectNode;
+    }
+
+    private JsonNode merge(Function<VizceralAggregator, JsonNode> render)
+    {
+        List<JsonNode> regions = new ArrayList<>();
+        for (VizceralAggregator vizceralAggregator : aggregators)
+        {
+            regions.add(render.apply(vizceralAggregator));
+        }
+        JsonNode jsonNode = regions.get(0);
+        for (int i = 1; i < regions.size(); i++)
+        {
+            JsonNode regionNode = regions.get(i);
+            for (JsonNode node : regionNode.get("nodes"))
+            {
+                if ("INTERNET".equals(node.get("name").asText()))
+                {
+                    continue;
+                }
+                ((ArrayNode) jsonNode.get("nodes")).add(node);
+            }
+            for (JsonNode node : regionNode.get("connections"))
+            {
+                ((ArrayNode) jsonNode.get("connections")).add(node);
+            }
+        }
+        addRegionConnections((ArrayNode) jsonNode.get("connections"));
+        return jsonNode;
+    }
+
+    /**
+     * Adds a connection between every pair of regions. The traffic from region A to region B is the running total of
+     * the hystrix commands in A whose groups are mapped to B with groupToRegion, kept as events arrive. Regions without
+     * such a mapping get a connection without traffic.
+     */
+    private void addRegionConnections(ArrayNode connections)
+    {
+        for (VizceralAggregator source : aggregators)
+        {
+            Map<String, VizceralConnection> traffic = new HashMap<>();
+            for (VizceralConnection connection : source.getRegionTraffic())
+            {
+                traffic.put(connection.getName(), connection);
+            }
+            for (VizceralAggregator target : aggregators)
+            {
+                if (source == target)
+                {
+                    continue;
+                }
+                String targetName = target.getConfiguration().getRegionName();
+                VizceralConnection mapped = traffic.get(targetName);
+                connections.addObject()
+                        .put("source", source.getConfiguration().getRegionName())
+                        .put("target", targetName)
+                        .putObject("metrics")
+                        .put("normal", mapped == null ? 0 : mapped.getRequests())
+                        .put("warning", mapped == null ? 0 : mapped.getTimeouts())
+                        .put("danger", mapped == null ? 0 : mapped.getErrors());
+            }
+        }
+    }
+
+    private VizceralAggregator getRegion(Map<String, List<String>> parameters)
+    {
+        List<String> values = parameters.get("region");
+        if (values == null || values.isEmpty())
+        {
+            return aggregators.size() == 1 ? aggregators.get(0) : null;
+        }
+        return getAggregator(values.get(0));
+    }
+
+    private VizceralAggregator getAggregator(String regionName)
+    {
+        for (VizceralAggregator aggregator : aggregators)
+        {
+            if (aggregator.getConfiguration().getRegionName().equals(regionName))
+            {
+                return aggregator;
+            }
+        }
+        return null;
+    }
+
+    private static Long getLong(Map<String, List<String>> parameters, String key)
+    {
+        List<String> values = parameters.get(key);
+        if (values == null || values.isEmpty())
+        {
+            return null;
+        }
+        try
+        {
+            return Long.parseLong(values.get(0));
+        }
+        catch (NumberFormatException e)
+        {
+            throw new IllegalArgumentException(key + " must be epoch millis, got " + values.get(0));
+        }
+    }
+
+    private static Observable<Void> write(HttpServerResponse<ByteBuf> response, GraphFormat format, byte[] body)
+    {
+        response.getHeaders().add("Content-Type", format.getContentType());
+        return response.writeBytesAndFlush(body);
+    }
+
+    private static Observable<Void> error(HttpServerResponse<ByteBuf> response, HttpResponseStatus status, String message)
+    {
+        response.setStatus(status);
+        response.getHeaders().add("Content-Type", "text/plain");
+        return response.writeStringAndFlush(message);
+    }
+}
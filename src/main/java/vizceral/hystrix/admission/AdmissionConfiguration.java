@@ -0,0 +1,172 @@
+package vizceral.hystrix.admission;
+
+import com.fasterxml.jackson.annotation.JsonSetter;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonPOJOBuilder;
+import vizceral.hystrix.ConfigurationException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Configuration for limiting which clusters are tailed and how many clusters and commands are tracked.
+ */
+@JsonDeserialize(builder = AdmissionConfiguration.Builder.class)
+public class AdmissionConfiguration
+{
+    private final List<String> allow;
+    private final List<String> deny;
+    private final int maxClusters;
+    private final int maxCommandsPerCluster;
+    private final int maxCommands;
+
+    private AdmissionConfiguration(Builder builder)
+    {
+        allow = Collections.unmodifiableList(builder.allow);
+        deny = Collections.unmodifiableList(builder.deny);
+        maxClusters = builder.maxClusters;
+        maxCommandsPerCluster = builder.maxCommandsPerCluster;
+        maxCommands = builder.maxCommands;
+        validatePatterns("allow", allow);
+        validatePatterns("deny", deny);
+        if (maxClusters < 0)
+        {
+            throw new ConfigurationException("admission.maxClusters must be 0 or larger");
+        }
+        if (maxCommandsPerCluster < 0)
+        {
+            throw new ConfigurationException("admission.maxCommandsPerCluster must be 0 or larger");
+        }
+        if (maxCommands < 0)
+        {
+            throw new ConfigurationException("admission.maxCommands must be 0 or larger");
+        }
+    }
+
+    private static void validatePatterns(String key, List<String> patterns)
+    {
+        for (String pattern : patterns)
+        {
+            try
+            {
+                Pattern.compile(pattern);
+            }
+            catch (PatternSyntaxException e)
+            {
+                throw new ConfigurationException("admission." + key + " has an invalid pattern " + pattern + ": " + e.getDescription());
+            }
+        }
+    }
+
+    public static Builder newBuilder()
+    {
+        return new Builder();
+    }
+
+    /**
+     * Gets the regexes of the clusters that may be tailed. Empty allows all clusters.
+     *
+     * @return The regexes, matching the whole cluster name.
+     */
+    public List<String> getAllow()
+    {
+        return allow;
+    }
+
+    /**
+     * Gets the regexes of the clusters that are never tailed, even if allowed.
+     *
+     * @return The regexes, matching the whole cluster name.
+     */
+    public List<String> getDeny()
+    {
+        return deny;
+    }
+
+    /**
+     * Gets the max number of clusters tailed at the same time, 0 for no limit.
+     *
+     * @return Max number of clusters.
+     */
+    public int getMaxClusters()
+    {
+        return maxClusters;
+    }
+
+    /**
+     * Gets the max number of commands tracked for one cluster, 0 for no limit.
+     *
+     * @return Max number of commands.
+     */
+    public int getMaxCommandsPerCluster()
+    {
+        return maxCommandsPerCluster;
+    }
+
+    /**
+     * Gets the max number of commands tracked for all clusters together, 0 for no limit.
+     *
+     * @return Max number of commands.
+     */
+    public int getMaxCommands()
+    {
+        return maxCommands;
+    }
+
+    @JsonPOJOBuilder(withPrefix = "")
+    public static final class Builder
+    {
+        private List<String> allow = new ArrayList<>();
+        private List<String> deny = new ArrayList<>();
+        private int maxClusters;
+        private int maxCommandsPerCluster;
+        private int maxCommands;
+
+        private Builder()
+        {
+        }
+
+        @JsonSetter
+        public Builder allow(List<String> val)
+        {
+            allow = new ArrayList<>(val);
+            return this;
+        }
+
+        @JsonSetter
+        public Builder deny(List<String> val)
+        {
+            deny = new ArrayList<>(val);
+            return this;
+        }
+
+        @JsonSetter
+        public Builder maxClusters(int val)
+        {
+            maxClusters = val;
+            return this;
+        }
+
+        @JsonSetter
+        public Builder maxCommandsPerCluster(int val)
+        {
+            maxCommandsPerCluster = val;
+            return this;
+        }
+
+        @JsonSetter
+        public Builder maxCommands(int val)
+        {
+            maxCommands = val;
+            return this;
+        }
+
+        public AdmissionConfiguration build()
+        {
+            return new AdmissionConfiguration(this);
+        }
+    }
+}
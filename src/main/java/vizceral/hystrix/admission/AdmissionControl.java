@@ -0,0 +1,221 @@
+package vizceral.hystrix.admission;
+
+import vizceral.hystrix.NoticeSeverity;
+import vizceral.hystrix.VizceralNotice;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * Decides which clusters may be tailed and keeps count of the tracked commands against the budgets of an
+ * {@link AdmissionConfiguration}. Without a configuration everything is admitted.
+ * <p>
+ * The aggregator asks for every group it sees in the events, so decisions on the patterns are remembered in a bounded
+ * cache. When a limit is hit, a notice is shown on the cluster concerned for a while.
+ */
+public class AdmissionControl
+{
+    private static final int CACHE_SIZE = 8192;
+    private static final long NOTICE_MILLIS = 60000;
+    private final Pattern allow;
+    private final Pattern deny;
+    private final int maxClusters;
+    private final int maxCommandsPerCluster;
+    private final int maxCommands;
+    private final AtomicInteger commands = new AtomicInteger();
+    private final AtomicInteger denied = new AtomicInteger();
+    private final Map<String, Boolean> allowed = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Limit> limits = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new admission control.
+     *
+     * @param configuration The configuration, or null to admit everything.
+     */
+    public AdmissionControl(AdmissionConfiguration configuration)
+    {
+        allow = configuration == null ? null : combine(configuration.getAllow());
+        deny = configuration == null ? null : combine(configuration.getDeny());
+        maxClusters = configuration == null ? 0 : configuration.getMaxClusters();
+        maxCommandsPerCluster = configuration == null ? 0 : configuration.getMaxCommandsPerCluster();
+        maxCommands = configuration == null ? 0 : configuration.getMaxCommands();
+    }
+
+    private static Pattern combine(List<String> patterns)
+    {
+        if (patterns.isEmpty())
+        {
+            return null;
+        }
+        StringBuilder alternation = new StringBuilder();
+        for (String pattern : patterns)
+        {
+            if (alternation.length() > 0)
+            {
+                alternation.append('|');
+            }
+            alternation.append("(?:").append(pattern).append(')');
+        }
+        return Pattern.compile(alternation.toString());
+    }
+
+    /**
+     * Checks the allow and deny patterns for a cluster.
+     *
+     * @param cluster The name of the cluster.
+     *
+     * @return true if the cluster may be tailed, otherwise false.
+     */
+    public boolean isAllowed(String cluster)
+    {
+        if (allow == null && deny == null)
+        {
+            return true;
+        }
+        Boolean result = allowed.get(cluster);
+        if (result == null)
+        {
+            result = (allow == null || allow.matcher(cluster).matches()) && (deny == null || !deny.matcher(cluster).matches());
+            if (!result)
+            {
+                denied.incrementAndGet();
+            }
+            if (allowed.size() >= CACHE_SIZE)
+            {
+                allowed.clear();
+            }
+            allowed.put(cluster, result);
+        }
+        return result;
+    }
+
+    /**
+     * Gets the number of clusters denied by the patterns. A cluster may be counted again after many other clusters
+     * have been checked.
+     *
+     * @return Number of denied clusters.
+     */
+    public int getDenied()
+    {
+        return denied.get();
+    }
+
+    /**
+     * Checks if the cluster budget is used up.
+     *
+     * @param clusters The number of clusters tailed or waiting to be tailed.
+     *
+     * @return true if no more clusters may be tailed, otherwise false.
+     */
+    public boolean isFull(int clusters)
+    {
+        return maxClusters > 0 && clusters >= maxClusters;
+    }
+
+    /**
+     * Checks if a new command may be tracked for a cluster.
+     *
+     * @param clusterCommands The number of commands tracked for the cluster.
+     *
+     * @return true if both the budget of the cluster and the total budget allow one more command, otherwise false.
+     */
+    public boolean hasRoomForCommand(int clusterCommands)
+    {
+        return (maxCommandsPerCluster == 0 || clusterCommands < maxCommandsPerCluster) && (maxCommands == 0 || commands.get() < maxCommands);
+    }
+
+    /**
+     * Counts a command that started being tracked.
+     */
+    public void commandAdded()
+    {
+        commands.incrementAndGet();
+    }
+
+    /**
+     * Counts commands that are no longer tracked.
+     *
+     * @param count The number of commands.
+     */
+    public void commandsRemoved(int count)
+    {
+        commands.addAndGet(-count);
+    }
+
+    /**
+     * Gets the number of commands tracked for all clusters.
+     *
+     * @return Number of commands.
+     */
+    public int getCommands()
+    {
+        return commands.get();
+    }
+
+    /**
+     * Records that a limit was hit for a cluster, to be shown as a notice.
+     *
+     * @param cluster  The cluster the notice is shown on.
+     * @param title    The title of the notice.
+     * @param subtitle What was limited.
+     * @param now      The current time.
+     */
+    public void limited(String cluster, String title, String subtitle, long now)
+    {
+        limits.put(cluster, new Limit(VizceralNotice.newBuilder()
+                .title(title)
+                .subtitle(subtitle)
+                .severity(NoticeSeverity.WARNING)
+                .build(), now));
+    }
+
+    /**
+     * Gets the notices of the limits recently hit for a cluster.
+     *
+     * @param cluster The cluster.
+     * @param now     The current time.
+     *
+     * @return The notices, empty if no limit was hit lately.
+     */
+    public List<VizceralNotice> getNotices(String cluster, long now)
+    {
+        Limit limit = limits.get(cluster);
+        if (limit == null)
+        {
+            return Collections.emptyList();
+        }
+        if (limit.time + NOTICE_MILLIS < now)
+        {
+            limits.remove(cluster, limit);
+            return Collections.emptyList();
+        }
+        return Collections.singletonList(limit.notice);
+    }
+
+    /**
+     * Forgets the notices of a cluster that is no longer tailed.
+     *
+     * @param cluster The cluster.
+     */
+    public void forget(String cluster)
+    {
+        limits.remove(cluster);
+    }
+
+    private static final class Limit
+    {
+        private final VizceralNotice notice;
+        private final long time;
+
+        private Limit(VizceralNotice notice, long time)
+        {
+            this.notice = notice;
+            this.time = time;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package vizceral.hystrix.anomaly;
+
+import com.fasterxml.jackson.annotation.JsonSetter;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonPOJOBuilder;
+import vizceral.hystrix.ConfigurationException;
+
+/**
+ * Configuration for the notices on connections whose error, timeout or traffic rates deviate from their own baseline.
+ */
+@JsonDeserialize(builder = AnomalyConfiguration.Builder.class)
+public class AnomalyConfiguration
+{
+    private final int halfLifeSeconds;
+    private final double threshold;
+    private final int warmupSeconds;
+    private final int seasonalBuckets;
+    private final double minRateChange;
+    private final int minVolume;
+
+    private AnomalyConfiguration(Builder builder)
+    {
+        halfLifeSeconds = builder.halfLifeSeconds == 0 ? 600 : builder.halfLifeSeconds;
+        threshold = builder.threshold == 0 ? 4 : builder.threshold;
+        warmupSeconds = builder.warmupSeconds == null ? 120 : builder.warmupSeconds;
+        seasonalBuckets = builder.seasonalBuckets == 0 ? 1 : builder.seasonalBuckets;
+        minRateChange = builder.minRateChange == null ? 0.02 : builder.minRateChange;
+        minVolume = builder.minVolume == null ? 1 : builder.minVolume;
+        if (halfLifeSeconds < 0)
+        {
+            throw new ConfigurationException("anomaly.halfLifeSeconds must be larger than 0");
+        }
+        if (threshold < 0)
+        {
+            throw new ConfigurationException("anomaly.threshold must be larger than 0");
+        }
+        if (warmupSeconds < 0)
+        {
+            throw new ConfigurationException("anomaly.warmupSeconds must be 0 or larger");
+        }
+        if (seasonalBuckets < 0 || 86400 % seasonalBuckets != 0)
+        {
+            throw new ConfigurationException("anomaly.seasonalBuckets must divide a day in whole seconds, e.g. 24");
+        }
+        if (minRateChange < 0 || minRateChange > 1)
+        {
+            throw new ConfigurationException("anomaly.minRateChange must be in range 0-1");
+        }
+        if (minVolume < 0)
+        {
+            throw new ConfigurationException("anomaly.minVolume must be 0 or larger");
+        }
+    }
+
+    public static Builder newBuilder()
+    {
+        return new Builder();
+    }
+
+    /**
+     * Gets after how many seconds (one sample per second) a sample weighs half as much in the baseline. Defaults to
+     * 600.
+     *
+     * @return Half life in seconds.
+     */
+    public int getHalfLifeSeconds()
+    {
+        return halfLifeSeconds;
+    }
+
+    /**
+     * Gets how many standard deviations a value must be away from its baseline to show a notice. Defaults to 4.
+     *
+     * @return The number of standard deviations.
+     */
+    public double getThreshold()
+    {
+        return threshold;
+    }
+
+    /**
+     * Gets how many samples a baseline needs before it is trusted. Defaults to 120.
+     *
+     * @return Number of samples, one per second.
+     */
+    public int getWarmupSeconds()
+    {
+        return warmupSeconds;
+    }
+
+    /**
+     * Gets into how many parts of the day the baselines are split, e.g. 24 for a baseline per hour of the day.
+     * Defaults to 1, a single baseline.
+     *
+     * @return Number of baselines per connection and rate.
+     */
+    public int getSeasonalBuckets()
+    {
+        return seasonalBuckets;
+    }
+
+    /**
+     * Gets how much higher an error or timeout rate must at least be than its baseline, so small absolute changes on
+     * very stable connections are not shown. Defaults to 0.02.
+     *
+     * @return Minimum change, range 0-1.
+     */
+    public double getMinRateChange()
+    {
+        return minRateChange;
+    }
+
+    /**
+     * Gets the requests per second below which a connection gets no notices, as its rates are too noisy. Defaults
+     * to 1.
+     *
+     * @return Requests per second.
+     */
+    public int getMinVolume()
+    {
+        return minVolume;
+    }
+
+    @JsonPOJOBuilder(withPrefix = "")
+    public static final class Builder
+    {
+        private int halfLifeSeconds;
+        private double threshold;
+        private Integer warmupSeconds;
+        private int seasonalBuckets;
+        private Double minRateChange;
+        private Integer minVolume;
+
+        private Builder()
+        {
+        }
+
+        @JsonSetter
+        public Builder halfLifeSeconds(int val)
+        {
+            halfLifeSeconds = val;
+            return this;
+        }
+
+        @JsonSetter
+        public Builder threshold(double val)
+        {
+            threshold = val;
+            return this;
+        }
+
+        @JsonSetter
+        public Builder warmupSeconds(int val)
+        {
+            warmupSeconds = val;
+            return this;
+        }
+
+        @JsonSetter
+        public Builder seasonalBuckets(int val)
+        {
+            seasonalBuckets = val;
+            return this;
+        }
+
+        @JsonSetter
+        public Builder minRateChange(double val)
+        {
+            minRateChange = val;
+            return this;
+        }
+
+        @JsonSetter
+        public Builder minVolume(int val)
+        {
+            minVolume = val;
+            return this;
+        }
+
+        public AnomalyConfiguration build()
+        {
+            return new AnomalyConfiguration(this);
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package vizceral.hystrix.anomaly;
+
+import vizceral.hystrix.ConnectionRollup;
+import vizceral.hystrix.ConnectionSlots;
+import vizceral.hystrix.ConnectionStatistics;
+import vizceral.hystrix.NoticeSeverity;
+import vizceral.hystrix.VizceralNotice;
+
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Streaming baselines of the error rate, timeout rate and traffic of every connection, to show notices when a
+ * connection behaves unlike itself instead of crossing a fixed threshold.
+ * <p>
+ * Each baseline is an exponentially weighted mean and variance, updated in constant time from at most one sample per
+ * second per connection. Optionally every part of the day gets its own baseline, so daily patterns are not reported.
+ * The state is kept in pages of primitive arrays indexed by a slot per connection, which keeps tens of thousands of
+ * connections cheap and never moves the state of a connection once it has a slot.
+ * <p>
+ * A connection is only sampled by the writer thread of its source cluster. Readers may see a baseline that is one
+ * sample behind.
+ */
+public class ConnectionBaselines implements ConnectionStatistics
+{
+    private static final ThreadLocal<DecimalFormat> FORMAT = ThreadLocal.withInitial(() -> new DecimalFormat("#.##"));
+    private static final int PAGE_SIZE = 1024;
+    private static final int ERRORS = 0;
+    private static final int TIMEOUTS = 1;
+    private static final int VOLUME = 2;
+    private static final int RATES = 3;
+    private final double alpha;
+    private final double threshold;
+    private final int warmup;
+    private final int buckets;
+    private final long bucketMillis;
+    private final double minRateChange;
+    private final int minVolume;
+    private final ConnectionSlots slots;
+    private volatile Page[] pages = new Page[0];
+
+    /**
+     * Creates empty baselines.
+     *
+     * @param configuration The configuration.
+     */
+    public ConnectionBaselines(AnomalyConfiguration configuration)
+    {
+        this(configuration, new ConnectionSlots());
+    }
+
+    /**
+     * Creates empty baselines on slots shared with other statistics.
+     *
+     * @param configuration The configuration.
+     * @param slots         The slots of the connections.
+     */
+    public ConnectionBaselines(AnomalyConfiguration configuration, ConnectionSlots slots)
+    {
+        this.alpha = 1 - Math.pow(0.5, 1.0 / configuration.getHalfLifeSeconds());
+        this.threshold = configuration.getThreshold();
+        this.warmup = configuration.getWarmupSeconds();
+        this.buckets = configuration.getSeasonalBuckets();
+        this.bucketMillis = 86400000L / buckets;
+        this.minRateChange = configuration.getMinRateChange();
+        this.minVolume = configuration.getMinVolume();
+        this.slots = slots;
+        slots.onFree(slot -> page(slot).reset(slot % PAGE_SIZE, buckets * RATES));
+    }
+
+    /**
+     * Samples the current totals of a connection into its baselines. Samples less than a second after the previous
+     * one are ignored.
+     */
+    @Override
+    public void record(String source, ConnectionRollup rollup, long now)
+    {
+        int slot = slots.getOrAllocate(source, rollup);
+        Page page = page(slot);
+        int index = slot % PAGE_SIZE;
+        if (now < page.nextSample[index])
+        {
+            return;
+        }
+        page.nextSample[index] = now + 1000;
+        int base = (index * buckets + bucket(now)) * RATES;
+        int total = rollup.getTotalRequests();
+        if (total > 0)
+        {
+            update(page, base + ERRORS, (double) rollup.getErrors() / total);
+            update(page, base + TIMEOUTS, (double) rollup.getTimeouts() / total);
+        }
+        update(page, base + VOLUME, total);
+    }
+
+    /**
+     * Gets the notices for the current totals of a connection that deviate from its baselines, none while the
+     * baselines are not warmed up.
+     */
+    @Override
+    public List<VizceralNotice> getNotices(String source, ConnectionRollup rollup, long now)
+    {
+        int slot = slots.get(rollup);
+        Page[] current = pages;
+        if (slot < 0 || slot / PAGE_SIZE >= current.length)
+        {
+            return Collections.emptyList();
+        }
+        Page page = current[slot / PAGE_SIZE];
+        int base = (slot % PAGE_SIZE * buckets + bucket(now)) * RATES;
+        int total = rollup.getTotalRequests();
+        List<VizceralNotice> notices = new ArrayList<>();
+        if (total >= minVolume && total > 0)
+        {
+            double errorRate = (double) rollup.getErrors() / total;
+            if (isAbove(page, base + ERRORS, errorRate, minRateChange))
+            {
+                notices.add(notice(NoticeSeverity.ERROR, FORMAT.get().format(errorRate * 100) + "% failures, usually " + FORMAT.get().format(page.mean[base + ERRORS] * 100) + "%"));
+            }
+            double timeoutRate = (double) rollup.getTimeouts() / total;
+            if (isAbove(page, base + TIMEOUTS, timeoutRate, minRateChange))
+            {
+                notices.add(notice(NoticeSeverity.WARNING, FORMAT.get().format(timeoutRate * 100) + "% timeouts, usually " + FORMAT.get().format(page.mean[base + TIMEOUTS] * 100) + "%"));
+            }
+        }
+        double usual = page.mean[base + VOLUME];
+        if (usual >= minVolume && isOutside(page, base + VOLUME, total, usual / 2))
+        {
+            notices.add(notice(NoticeSeverity.WARNING, total + " requests/s, usually " + FORMAT.get().format(usual)));
+        }
+        return notices;
+    }
+
+    @Override
+    public void forget(String source)
+    {
+        slots.forget(source);
+    }
+
+    @Override
+    public void forget(String source, ConnectionRollup rollup)
+    {
+        slots.free(rollup);
+    }
+
+    @Override
+    public int size()
+    {
+        return slots.size();
+    }
+
+    private void update(Page page, int index, double value)
+    {
+        if (page.samples[index] == 0)
+        {
+            page.mean[index] = value;
+            page.variance[index] = 0;
+        }
+        else
+        {
+            double diff = value - page.mean[index];
+            double increment = alpha * diff;
+            page.mean[index] += increment;
+            page.variance[index] = (1 - alpha) * (page.variance[index] + diff * increment);
+        }
+        if (page.samples[index] < Integer.MAX_VALUE)
+        {
+            page.samples[index]++;
+        }
+    }
+
+    private boolean isAbove(Page page, int index, double value, double minChange)
+    {
+        double diff = value - page.mean[index];
+        return page.samples[index] >= warmup && diff >= minChange && diff >= threshold * Math.sqrt(page.variance[index]);
+    }
+
+    private boolean isOutside(Page page, int index, double value, double minChange)
+    {
+        double diff = Math.abs(value - page.mean[index]);
+        return page.samples[index] >= warmup && diff >= minChange && diff >= threshold * Math.sqrt(page.variance[index]);
+    }
+
+    private static VizceralNotice notice(NoticeSeverity severity, String title)
+    {
+        return VizceralNotice.newBuilder().severity(severity).title(title).subtitle("Unusual for this connection").build();
+    }
+
+    private int bucket(long now)
+    {
+        return buckets == 1 ? 0 : (int) ((now / bucketMillis) % buckets);
+    }
+
+    private Page page(int slot)
+    {
+        Page[] current = pages;
+        if (slot / PAGE_SIZE < current.length)
+        {
+            return current[slot / PAGE_SIZE];
+        }
+        return grow(slot);
+    }
+
+    private synchronized Page grow(int slot)
+    {
+        while (slot / PAGE_SIZE >= pages.length)
+        {
+            Page[] grown = new Page[pages.length + 1];
+            System.arraycopy(pages, 0, grown, 0, pages.length);
+            grown[pages.length] = new Page(buckets * RATES);
+            pages = grown;
+        }
+        return pages[slot / PAGE_SIZE];
+    }
+
+    /**
+     * The state of {@link #PAGE_SIZE} connections, with one mean, variance and sample count per bucket and rate.
+     */
+    private static final class Page
+    {
+        private final double[] mean;
+        private final double[] variance;
+        private final int[] samples;
+        private final long[] nextSample = new long[PAGE_SIZE];
+
+        private Page(int perSlot)
+        {
+            mean = new double[PAGE_SIZE * perSlot];
+            variance = new double[PAGE_SIZE * perSlot];
+            samples = new int[PAGE_SIZE * perSlot];
+        }
+
+        private void reset(int index, int perSlot)
+        {
+            int from = index * perSlot;
+            for (int i = from; i < from + perSlot; i++)
+            {
+                mean[i] = 0;
+                variance[i] = 0;
+                samples[i] = 0;
+            }
+            nextSample[index] = 0;
+        }
+    }
+}
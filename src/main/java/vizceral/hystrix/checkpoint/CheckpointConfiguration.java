@@ -0,0 +1,110 @@
+package vizceral.hystrix.checkpoint;
+
+import com.fasterxml.jackson.annotation.JsonSetter;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonPOJOBuilder;
+import vizceral.hystrix.ConfigurationException;
+
+/**
+ * Configuration for checkpointing the state of the aggregator to disk.
+ */
+@JsonDeserialize(builder = CheckpointConfiguration.Builder.class)
+public class CheckpointConfiguration
+{
+    private final String file;
+    private final int intervalSeconds;
+    private final int pruneAfterSeconds;
+
+    private CheckpointConfiguration(Builder builder)
+    {
+        file = builder.file;
+        intervalSeconds = builder.intervalSeconds == 0 ? 30 : builder.intervalSeconds;
+        pruneAfterSeconds = builder.pruneAfterSeconds == 0 ? 300 : builder.pruneAfterSeconds;
+        if (file == null || file.isEmpty())
+        {
+            throw new ConfigurationException("checkpoint.file cannot be empty");
+        }
+        if (intervalSeconds < 0)
+        {
+            throw new ConfigurationException("checkpoint.intervalSeconds must be larger than 0");
+        }
+        if (pruneAfterSeconds < 0)
+        {
+            throw new ConfigurationException("checkpoint.pruneAfterSeconds must be larger than 0");
+        }
+    }
+
+    public static Builder newBuilder()
+    {
+        return new Builder();
+    }
+
+    /**
+     * Gets the base name of the checkpoint files. Two files are written alternately, with .0 and .1 appended.
+     *
+     * @return The file name.
+     */
+    public String getFile()
+    {
+        return file;
+    }
+
+    /**
+     * Gets how often a checkpoint is written. Defaults to 30 seconds.
+     *
+     * @return Seconds between checkpoints.
+     */
+    public int getIntervalSeconds()
+    {
+        return intervalSeconds;
+    }
+
+    /**
+     * Gets how long after startup clusters restored from the checkpoint are stopped if they have not reported.
+     * Defaults to 300 seconds.
+     *
+     * @return Seconds after startup.
+     */
+    public int getPruneAfterSeconds()
+    {
+        return pruneAfterSeconds;
+    }
+
+    @JsonPOJOBuilder(withPrefix = "")
+    public static final class Builder
+    {
+        private String file;
+        private int intervalSeconds;
+        private int pruneAfterSeconds;
+
+        private Builder()
+        {
+        }
+
+        @JsonSetter
+        public Builder file(String val)
+        {
+            file = val;
+            return this;
+        }
+
+        @JsonSetter
+        public Builder intervalSeconds(int val)
+        {
+            intervalSeconds = val;
+            return this;
+        }
+
+        @JsonSetter
+        public Builder pruneAfterSeconds(int val)
+        {
+            pruneAfterSeconds = val;
+            return this;
+        }
+
+        public CheckpointConfiguration build()
+        {
+            return new CheckpointConfiguration(this);
+        }
+    }
+}
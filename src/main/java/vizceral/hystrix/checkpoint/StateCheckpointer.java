@@ -0,0 +1,255 @@
+package vizceral.hystrix.checkpoint;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import vizceral.hystrix.HystrixCluster;
+import vizceral.hystrix.HystrixEvent;
+import vizceral.hystrix.MaxVolumeWindow;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Writes the state of all clusters to memory mapped files and reads it back at startup.
+ * <p>
+ * Two files are written alternately so that a crash while writing one of them leaves the other one intact. Each file
+ * starts with a fixed size header:
+ * <pre>
+ * int magic, int version, long generation, long timestamp, int payload length, int crc32 of payload
+ * </pre>
+ * followed by the payload:
+ * <pre>
+ * int cluster count, per cluster:
+ *   utf name
+ *   long bucket millis, int bucket count, per bucket: long slot, int max
+ *   int event count, per event: utf name, utf group, int rejected, int timeouts, int requests, int errors,
+ *                               int total requests, boolean circuit breaker open, long created
+ * </pre>
+ */
+public class StateCheckpointer
+{
+    private static final Logger logger = LoggerFactory.getLogger(StateCheckpointer.class);
+    private static final int MAGIC = 0x56484350;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private final CheckpointConfiguration configuration;
+    private final int maxTrafficTtlSeconds;
+    private final ByteArrayOutputStream payload = new ByteArrayOutputStream();
+    private long generation;
+
+    /**
+     * Creates a new checkpointer.
+     *
+     * @param configuration        The checkpoint configuration.
+     * @param maxTrafficTtlSeconds The max traffic ttl of the clusters to restore.
+     */
+    public StateCheckpointer(CheckpointConfiguration configuration, int maxTrafficTtlSeconds)
+    {
+        this.configuration = configuration;
+        this.maxTrafficTtlSeconds = maxTrafficTtlSeconds;
+    }
+
+    /**
+     * Writes a checkpoint of the clusters. The clusters are read while they are being updated, so each cluster is
+     * consistent only with itself. Must not be called concurrently.
+     *
+     * @param clusters The clusters to write.
+     *
+     * @throws IOException If the file could not be written.
+     */
+    public void write(Collection<HystrixCluster> clusters) throws IOException
+    {
+        payload.reset();
+        DataOutputStream out = new DataOutputStream(payload);
+        List<HystrixCluster> toWrite = new ArrayList<>(clusters);
+        out.writeInt(toWrite.size());
+        long[] slots = null;
+        int[] values = null;
+        for (HystrixCluster cluster : toWrite)
+        {
+            out.writeUTF(cluster.getName());
+            MaxVolumeWindow window = cluster.getMaxVolumeWindow();
+            if (slots == null || slots.length < window.size())
+            {
+                slots = new long[window.size()];
+                values = new int[window.size()];
+            }
+            int buckets = window.copyTo(slots, values);
+            out.writeLong(window.getBucketMillis());
+            out.writeInt(buckets);
+            for (int i = 0; i < buckets; i++)
+            {
+                out.writeLong(slots[i]);
+                out.writeInt(values[i]);
+            }
+            List<HystrixEvent> events = new ArrayList<>(cluster.getEvents());
+            out.writeInt(events.size());
+            for (HystrixEvent event : events)
+            {
+                out.writeUTF(event.getName());
+                out.writeUTF(event.getGroup());
+                out.writeInt(event.getRejectedCount());
+                out.writeInt(event.getTimeoutCount());
+                out.writeInt(event.getRequestCount());
+                out.writeInt(event.getErrorCount());
+                out.writeInt(event.getTotalRequestCount());
+                out.writeBoolean(event.isCircuitBreakerOpen());
+                out.writeLong(event.getCreated());
+            }
+        }
+        out.flush();
+        byte[] bytes = payload.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+
+        generation++;
+        Path path = getPath(generation);
+        int size = HEADER_SIZE + bytes.length;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE))
+        {
+            channel.truncate(size);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            //Payload first and header last, a torn write will then fail on the crc
+            buffer.position(HEADER_SIZE);
+            buffer.put(bytes);
+            buffer.position(0);
+            buffer.putInt(MAGIC)
+                    .putInt(VERSION)
+                    .putLong(generation)
+                    .putLong(System.currentTimeMillis())
+                    .putInt(bytes.length)
+                    .putInt((int) crc.getValue());
+            buffer.force();
+        }
+    }
+
+    /**
+     * Loads the latest valid checkpoint, if there is any.
+     *
+     * @return The restored clusters, or an empty list if there is no valid checkpoint.
+     */
+    public List<HystrixCluster> load()
+    {
+        MappedByteBuffer latest = null;
+        for (int i = 0; i < 2; i++)
+        {
+            MappedByteBuffer buffer = map(getPath(i));
+            if (buffer != null && (latest == null || buffer.getLong(8) > latest.getLong(8)))
+            {
+                latest = buffer;
+            }
+        }
+        if (latest == null)
+        {
+            return Collections.emptyList();
+        }
+        generation = latest.getLong(8);
+        byte[] bytes = new byte[latest.getInt(24)];
+        latest.position(HEADER_SIZE);
+        latest.get(bytes);
+        try
+        {
+            return read(new DataInputStream(new ByteArrayInputStream(bytes)));
+        }
+        catch (IOException e)
+        {
+            logger.error("Could not read checkpoint " + configuration.getFile(), e);
+            return Collections.emptyList();
+        }
+    }
+
+    private List<HystrixCluster> read(DataInputStream in) throws IOException
+    {
+        int clusterCount = in.readInt();
+        List<HystrixCluster> clusters = new ArrayList<>(clusterCount);
+        for (int i = 0; i < clusterCount; i++)
+        {
+            HystrixCluster cluster = new HystrixCluster(in.readUTF(), maxTrafficTtlSeconds);
+            long bucketMillis = in.readLong();
+            int buckets = in.readInt();
+            for (int j = 0; j < buckets; j++)
+            {
+                cluster.getMaxVolumeWindow().restore(bucketMillis, in.readLong(), in.readInt());
+            }
+            int events = in.readInt();
+            for (int j = 0; j < events; j++)
+            {
+                cluster.addEvent(HystrixEvent.newBuilder()
+                        .name(in.readUTF())
+                        .group(in.readUTF())
+                        .rejectedCount(in.readInt())
+                        .timeoutCount(in.readInt())
+                        .requestCount(in.readInt())
+                        .errorCount(in.readInt())
+                        .totalRequestCount(in.readInt())
+                        .isCircuitBreakerOpen(in.readBoolean())
+                        .created(in.readLong())
+                        .build());
+            }
+            clusters.add(cluster);
+        }
+        return clusters;
+    }
+
+    private MappedByteBuffer map(Path path)
+    {
+        if (!Files.exists(path))
+        {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+        {
+            if (channel.size() < HEADER_SIZE)
+            {
+                return null;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION)
+            {
+                logger.warn("Ignoring checkpoint {} with unknown format", path);
+                return null;
+            }
+            int length = buffer.getInt(24);
+            if (length < 0 || HEADER_SIZE + (long) length > channel.size())
+            {
+                logger.warn("Ignoring truncated checkpoint {}", path);
+                return null;
+            }
+            byte[] bytes = new byte[length];
+            buffer.position(HEADER_SIZE);
+            buffer.get(bytes);
+            CRC32 crc = new CRC32();
+            crc.update(bytes);
+            if ((int) crc.getValue() != buffer.getInt(28))
+            {
+                logger.warn("Ignoring corrupt checkpoint {}", path);
+                return null;
+            }
+            return buffer;
+        }
+        catch (IOException e)
+        {
+            logger.error("Could not read checkpoint " + path, e);
+            return null;
+        }
+    }
+
+    private Path getPath(long generation)
+    {
+        return Paths.get(configuration.getFile() + "." + (generation % 2));
+    }
+}
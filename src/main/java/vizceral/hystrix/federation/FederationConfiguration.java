@@ -0,0 +1,129 @@
+package vizceral.hystrix.federation;
+
+import com.fasterxml.jackson.annotation.JsonSetter;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonPOJOBuilder;
+import vizceral.hystrix.ConfigurationException;
+
+/**
+ * Configuration for reading a region from another vizceral-hystrix instance instead of tailing turbine.
+ */
+@JsonDeserialize(builder = FederationConfiguration.Builder.class)
+public class FederationConfiguration
+{
+    private final String url;
+    private final String region;
+    private final int refreshIntervalSeconds;
+    private final int fullRefreshIntervalSeconds;
+
+    private FederationConfiguration(Builder builder)
+    {
+        url = builder.url != null && builder.url.endsWith("/") ? builder.url.substring(0, builder.url.length() - 1) : builder.url;
+        region = builder.region;
+        refreshIntervalSeconds = builder.refreshIntervalSeconds == 0 ? 5 : builder.refreshIntervalSeconds;
+        fullRefreshIntervalSeconds = builder.fullRefreshIntervalSeconds == 0 ? 60 : builder.fullRefreshIntervalSeconds;
+        if (url == null || url.isEmpty())
+        {
+            throw new ConfigurationException("federation.url cannot be empty");
+        }
+        if (refreshIntervalSeconds < 0)
+        {
+            throw new ConfigurationException("federation.refreshIntervalSeconds must be larger than 0");
+        }
+        if (fullRefreshIntervalSeconds < refreshIntervalSeconds)
+        {
+            throw new ConfigurationException("federation.fullRefreshIntervalSeconds must not be smaller than federation.refreshIntervalSeconds");
+        }
+    }
+
+    public static Builder newBuilder()
+    {
+        return new Builder();
+    }
+
+    /**
+     * Gets the url of the upstream instance, for example http://eu-west-1.vizceral:8081.
+     *
+     * @return The url.
+     */
+    public String getUrl()
+    {
+        return url;
+    }
+
+    /**
+     * Gets the name of the region on the upstream instance.
+     *
+     * @return The upstream region, or null to use the name of this region.
+     */
+    public String getRegion()
+    {
+        return region;
+    }
+
+    /**
+     * Gets how often the upstream is polled for changes. Defaults to 5 seconds.
+     *
+     * @return Seconds between polls.
+     */
+    public int getRefreshIntervalSeconds()
+    {
+        return refreshIntervalSeconds;
+    }
+
+    /**
+     * Gets how often the whole region is fetched instead of only the changed clusters. Defaults to 60 seconds.
+     *
+     * @return Seconds between full fetches.
+     */
+    public int getFullRefreshIntervalSeconds()
+    {
+        return fullRefreshIntervalSeconds;
+    }
+
+    @JsonPOJOBuilder(withPrefix = "")
+    public static final class Builder
+    {
+        private String url;
+        private String region;
+        private int refreshIntervalSeconds;
+        private int fullRefreshIntervalSeconds;
+
+        private Builder()
+        {
+        }
+
+        @JsonSetter
+        public Builder url(String val)
+        {
+            url = val;
+            return this;
+        }
+
+        @JsonSetter
+        public Builder region(String val)
+        {
+            region = val;
+            return this;
+        }
+
+        @JsonSetter
+        public Builder refreshIntervalSeconds(int val)
+        {
+            refreshIntervalSeconds = val;
+            return this;
+        }
+
+        @JsonSetter
+        public Builder fullRefreshIntervalSeconds(int val)
+        {
+            fullRefreshIntervalSeconds = val;
+            return this;
+        }
+
+        public FederationConfiguration build()
+        {
+            return new FederationConfiguration(this);
+        }
+    }
+}
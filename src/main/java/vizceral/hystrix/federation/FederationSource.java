@@ -0,0 +1,176 @@
+package vizceral.hystrix.federation;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import rx.Observable;
+import rx.Subscription;
+import rx.schedulers.Schedulers;
+import vizceral.hystrix.ClusterSnapshot;
+import vizceral.hystrix.VizceralConnection;
+import vizceral.hystrix.sharding.PartialSnapshotCodec;
+import vizceral.hystrix.sharding.PeerClient;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads a whole region from another vizceral-hystrix instance, so a global instance can merge regional instances
+ * without tailing any turbine streams itself.
+ * <p>
+ * Polls {@code /partial?region=<region>&scope=region} and only asks for the clusters that changed since the last poll,
+ * passing the generation the upstream stamped on the previous payload (see {@link vizceral.hystrix.sharding.ChangeStamps}).
+ * The whole region is fetched periodically and after any failure, so the state can never drift from the upstream.
+ */
+public class FederationSource
+{
+    private static final Logger logger = LoggerFactory.getLogger(FederationSource.class);
+    private final FederationConfiguration configuration;
+    private final PeerClient client;
+    private final String path;
+    private volatile Map<String, ClusterSnapshot> snapshots = Collections.emptyMap();
+    private volatile List<VizceralConnection> regionTraffic = Collections.emptyList();
+    private volatile long updated;
+    private volatile boolean connected;
+    private long since;
+    private long lastFullRefresh;
+    private Subscription subscription;
+
+    /**
+     * Creates a new federation source.
+     *
+     * @param configuration The federation configuration.
+     * @param region        The name of this region, used if the upstream region is not configured.
+     */
+    public FederationSource(FederationConfiguration configuration, String region)
+    {
+        this.configuration = configuration;
+        this.client = new PeerClient(configuration.getUrl());
+        this.path = "/partial?scope=region&region=" + encode(configuration.getRegion() == null ? region : configuration.getRegion());
+    }
+
+    /**
+     * Starts polling the upstream.
+     */
+    public synchronized void start()
+    {
+        int interval = configuration.getRefreshIntervalSeconds();
+        subscription = Observable.interval(0, interval, TimeUnit.SECONDS, Schedulers.io())
+                .subscribe(ignore -> refresh(), ex -> logger.error("Federation of " + configuration.getUrl() + " failed", ex));
+    }
+
+    /**
+     * Stops polling the upstream.
+     */
+    public synchronized void stop()
+    {
+        if (subscription != null)
+        {
+            subscription.unsubscribe();
+        }
+    }
+
+    /**
+     * Polls the upstream once.
+     *
+     * @return true if the poll succeeded, otherwise false.
+     */
+    public synchronized boolean refresh()
+    {
+        long now = System.currentTimeMillis();
+        boolean full = since == 0 || now - lastFullRefresh >= configuration.getFullRefreshIntervalSeconds() * 1000L;
+        try
+        {
+            JsonNode json = client.get(full ? path : path + "&since=" + since, configuration.getRefreshIntervalSeconds() * 1000L)
+                    .toBlocking()
+                    .single();
+            Map<String, ClusterSnapshot> next = new LinkedHashMap<>();
+            for (ClusterSnapshot snapshot : PartialSnapshotCodec.fromJson(json, full ? Collections.emptyMap() : snapshots))
+            {
+                next.put(snapshot.getName(), snapshot);
+            }
+            long generation = json.path("generation").asLong();
+            if (!full && generation < since)
+            {
+                //The upstream restarted with other stamps, so its short form clusters may not be ours
+                throw new IllegalStateException("Generation of " + configuration.getUrl() + " went back from " + since + " to " + generation);
+            }
+            snapshots = next;
+            regionTraffic = PartialSnapshotCodec.readRegionTraffic(json);
+            updated = json.path("updated").asLong();
+            since = generation;
+            if (full)
+            {
+                lastFullRefresh = now;
+            }
+            connected = true;
+            return true;
+        }
+        catch (RuntimeException ex)
+        {
+            logger.warn("Could not read region from {}", configuration.getUrl(), ex);
+            //Start over with a full fetch, the next delta may otherwise refer to clusters we do not have
+            since = 0;
+            connected = false;
+            return false;
+        }
+    }
+
+    /**
+     * Gets the latest snapshots of all clusters in the upstream region.
+     *
+     * @return The snapshots.
+     */
+    public Collection<ClusterSnapshot> getSnapshots()
+    {
+        return snapshots.values();
+    }
+
+    /**
+     * Gets the traffic from the upstream region towards other regions.
+     *
+     * @return One connection per region.
+     */
+    public List<VizceralConnection> getRegionTraffic()
+    {
+        return regionTraffic;
+    }
+
+    /**
+     * Gets when the upstream region was last updated.
+     *
+     * @return Epoch millis, or 0 if nothing has been read.
+     */
+    public long getUpdated()
+    {
+        return updated;
+    }
+
+    /**
+     * Gets if the last poll of the upstream succeeded.
+     *
+     * @return true if connected, otherwise false.
+     */
+    public boolean isConnected()
+    {
+        return connected;
+    }
+
+    private static String encode(String value)
+    {
+        try
+        {
+            return URLEncoder.encode(value, "UTF-8");
+        }
+        catch (UnsupportedEncodingException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package vizceral.hystrix.history;
+
+import com.fasterxml.jackson.annotation.JsonSetter;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonPOJOBuilder;
+import vizceral.hystrix.ConfigurationException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Configuration for the connection history store.
+ */
+@JsonDeserialize(builder = HistoryConfiguration.Builder.class)
+public class HistoryConfiguration
+{
+    private static final List<HistoryResolution> DEFAULT_RESOLUTIONS = Arrays.asList(
+            HistoryResolution.newBuilder().resolutionSeconds(1).retentionSeconds(3600).build(),
+            HistoryResolution.newBuilder().resolutionSeconds(60).retentionSeconds(86400).build(),
+            HistoryResolution.newBuilder().resolutionSeconds(600).retentionSeconds(2592000).build());
+    private final List<HistoryResolution> resolutions;
+
+    private HistoryConfiguration(Builder builder)
+    {
+        resolutions = builder.resolutions == null || builder.resolutions.isEmpty()
+                ? DEFAULT_RESOLUTIONS
+                : Collections.unmodifiableList(new ArrayList<>(builder.resolutions));
+        for (int i = 1; i < resolutions.size(); i++)
+        {
+            HistoryResolution finer = resolutions.get(i - 1);
+            HistoryResolution coarser = resolutions.get(i);
+            if (coarser.getResolutionSeconds() <= finer.getResolutionSeconds()
+                    || coarser.getResolutionSeconds() % finer.getResolutionSeconds() != 0)
+            {
+                throw new ConfigurationException("history.resolutions must be ordered from finest to coarsest, each a multiple of the previous");
+            }
+        }
+    }
+
+    public static Builder newBuilder()
+    {
+        return new Builder();
+    }
+
+    /**
+     * Gets the resolutions, ordered from the finest to the coarsest.
+     *
+     * @return List of resolutions.
+     */
+    public List<HistoryResolution> getResolutions()
+    {
+        return resolutions;
+    }
+
+    @JsonPOJOBuilder(withPrefix = "")
+    public static final class Builder
+    {
+        private List<HistoryResolution> resolutions;
+
+        private Builder()
+        {
+        }
+
+        @JsonSetter
+        public Builder resolutions(List<HistoryResolution> val)
+        {
+            resolutions = val;
+            return this;
+        }
+
+        public HistoryConfiguration build()
+        {
+            return new HistoryConfiguration(this);
+        }
+    }
+}
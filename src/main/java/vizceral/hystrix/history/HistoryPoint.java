@@ -0,0 +1,136 @@
+package vizceral.hystrix.history;
+
+/**
+ * Traffic on a connection during one period of time, as read from the history store.
+ */
+public class HistoryPoint
+{
+    /**
+     * Flag set if any circuit breaker on the connection was open during the period.
+     */
+    public static final int CIRCUIT_BREAKER_OPEN = 1;
+    /**
+     * Flag set if any request on the connection was rejected by a thread pool/semaphore during the period.
+     */
+    public static final int REJECTED = 2;
+
+    private final long timestamp;
+    private final long durationMillis;
+    private final int requests;
+    private final int errors;
+    private final int timeouts;
+    private final int flags;
+
+    /**
+     * Creates a new history point.
+     *
+     * @param timestamp      Epoch millis of the start of the period.
+     * @param durationMillis Length of the period.
+     * @param requests       Average successful requests per second.
+     * @param errors         Average errors per second.
+     * @param timeouts       Average timeouts per second.
+     * @param flags          Flags seen during the period, see {@link #CIRCUIT_BREAKER_OPEN} and {@link #REJECTED}.
+     */
+    public HistoryPoint(long timestamp, long durationMillis, int requests, int errors, int timeouts, int flags)
+    {
+        this.timestamp = timestamp;
+        this.durationMillis = durationMillis;
+        this.requests = requests;
+        this.errors = errors;
+        this.timeouts = timeouts;
+        this.flags = flags;
+    }
+
+    /**
+     * Gets the start of the period.
+     *
+     * @return Epoch millis.
+     */
+    public long getTimestamp()
+    {
+        return timestamp;
+    }
+
+    /**
+     * Gets the length of the period.
+     *
+     * @return Milliseconds.
+     */
+    public long getDurationMillis()
+    {
+        return durationMillis;
+    }
+
+    /**
+     * Gets the average number of successful requests per second.
+     *
+     * @return Successful requests.
+     */
+    public int getRequests()
+    {
+        return requests;
+    }
+
+    /**
+     * Gets the average number of errors per second.
+     *
+     * @return Errors.
+     */
+    public int getErrors()
+    {
+        return errors;
+    }
+
+    /**
+     * Gets the average number of timeouts per second.
+     *
+     * @return Timeouts.
+     */
+    public int getTimeouts()
+    {
+        return timeouts;
+    }
+
+    /**
+     * Gets the flags seen during the period.
+     *
+     * @return Bitwise or of {@link #CIRCUIT_BREAKER_OPEN} and {@link #REJECTED}.
+     */
+    public int getFlags()
+    {
+        return flags;
+    }
+
+    /**
+     * Gets if any circuit breaker was open during the period.
+     *
+     * @return true if a circuit breaker was open, otherwise false.
+     */
+    public boolean isCircuitBreakerOpen()
+    {
+        return (flags & CIRCUIT_BREAKER_OPEN) != 0;
+    }
+
+    /**
+     * Gets if any requests were rejected during the period.
+     *
+     * @return true if requests were rejected, otherwise false.
+     */
+    public boolean isRejected()
+    {
+        return (flags & REJECTED) != 0;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "HistoryPoint{" +
+                "timestamp=" + timestamp +
+                ", durationMillis=" + durationMillis +
+                ", requests=" + requests +
+                ", errors=" + errors +
+                ", timeouts=" + timeouts +
+                ", flags=" + flags +
+                '}';
+    }
+}
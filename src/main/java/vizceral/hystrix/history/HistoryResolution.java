@@ -0,0 +1,95 @@
+package vizceral.hystrix.history;
+
+import com.fasterxml.jackson.annotation.JsonSetter;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonPOJOBuilder;
+import vizceral.hystrix.ConfigurationException;
+
+/**
+ * One resolution level of the history store, e.g. one slot per second kept for an hour.
+ */
+@JsonDeserialize(builder = HistoryResolution.Builder.class)
+public class HistoryResolution
+{
+    private final int resolutionSeconds;
+    private final int retentionSeconds;
+
+    private HistoryResolution(Builder builder)
+    {
+        resolutionSeconds = builder.resolutionSeconds;
+        retentionSeconds = builder.retentionSeconds;
+        if (resolutionSeconds <= 0)
+        {
+            throw new ConfigurationException("history.resolutions.resolutionSeconds must be set and larger than 0");
+        }
+        if (retentionSeconds < resolutionSeconds)
+        {
+            throw new ConfigurationException("history.resolutions.retentionSeconds must be at least resolutionSeconds");
+        }
+    }
+
+    public static Builder newBuilder()
+    {
+        return new Builder();
+    }
+
+    /**
+     * Gets how many seconds each slot covers.
+     *
+     * @return Seconds per slot.
+     */
+    public int getResolutionSeconds()
+    {
+        return resolutionSeconds;
+    }
+
+    /**
+     * Gets how many seconds back this resolution keeps data.
+     *
+     * @return Seconds of retention.
+     */
+    public int getRetentionSeconds()
+    {
+        return retentionSeconds;
+    }
+
+    /**
+     * Gets the number of slots needed to cover the retention.
+     *
+     * @return Number of slots.
+     */
+    public int getSlots()
+    {
+        return (retentionSeconds + resolutionSeconds - 1) / resolutionSeconds;
+    }
+
+    @JsonPOJOBuilder(withPrefix = "")
+    public static final class Builder
+    {
+        private int resolutionSeconds;
+        private int retentionSeconds;
+
+        private Builder()
+        {
+        }
+
+        @JsonSetter
+        public Builder resolutionSeconds(int val)
+        {
+            resolutionSeconds = val;
+            return this;
+        }
+
+        @JsonSetter
+        public Builder retentionSeconds(int val)
+        {
+            retentionSeconds = val;
+            return this;
+        }
+
+        public HistoryResolution build()
+        {
+            return new HistoryResolution(this);
+        }
+    }
+}
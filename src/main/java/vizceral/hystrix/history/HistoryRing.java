@@ -0,0 +1,178 @@
+package vizceral.hystrix.history;
+
+import java.util.List;
+
+/**
+ * Fixed size ring of time slots at one resolution, stored in primitive arrays.
+ * Every sample recorded is added to the slot of its timestamp. When time moves on to a new slot, the average of the
+ * finished slot is recorded as one sample in the next (coarser) ring, and the slots that were skipped are cleared.
+ * <p>
+ * Only one thread may record at a time. Queries may run concurrently and will then see the ring as it was somewhere
+ * during the write.
+ */
+class HistoryRing
+{
+    private final long resolutionMillis;
+    private final int slots;
+    private final HistoryRing next;
+    private final int[] requests;
+    private final int[] errors;
+    private final int[] timeouts;
+    private final int[] samples;
+    private final byte[] flags;
+    private volatile long currentSlot = Long.MIN_VALUE;
+
+    /**
+     * Creates a new ring.
+     *
+     * @param resolution The resolution of the ring.
+     * @param next       The coarser ring to feed finished slots into, or null if this is the coarsest one.
+     */
+    HistoryRing(HistoryResolution resolution, HistoryRing next)
+    {
+        this.resolutionMillis = resolution.getResolutionSeconds() * 1000L;
+        this.slots = resolution.getSlots();
+        this.next = next;
+        requests = new int[slots];
+        errors = new int[slots];
+        timeouts = new int[slots];
+        samples = new int[slots];
+        flags = new byte[slots];
+    }
+
+    /**
+     * Records one sample. Samples older than the current slot are dropped since that slot might already have been
+     * handed over to the coarser ring.
+     *
+     * @param timestamp Epoch millis of the sample.
+     * @param requests  Successful requests per second.
+     * @param errors    Errors per second.
+     * @param timeouts  Timeouts per second.
+     * @param flags     Flags of the sample.
+     */
+    void record(long timestamp, int requests, int errors, int timeouts, int flags)
+    {
+        long slot = Math.floorDiv(timestamp, resolutionMillis);
+        if (slot < currentSlot)
+        {
+            return;
+        }
+        advance(slot);
+        int index = index(slot);
+        this.requests[index] += requests;
+        this.errors[index] += errors;
+        this.timeouts[index] += timeouts;
+        this.samples[index]++;
+        this.flags[index] |= flags;
+    }
+
+    private void advance(long slot)
+    {
+        long current = currentSlot;
+        if (slot <= current)
+        {
+            return;
+        }
+        if (current != Long.MIN_VALUE)
+        {
+            int index = index(current);
+            if (next != null && samples[index] > 0)
+            {
+                next.record(current * resolutionMillis, average(requests, index), average(errors, index), average(timeouts, index), flags[index]);
+            }
+            long skipped = Math.min(slot - current, slots);
+            for (long i = 1; i <= skipped; i++)
+            {
+                clear(index(current + i));
+            }
+        }
+        currentSlot = slot;
+        if (next != null)
+        {
+            //Keep the coarser rings moving even when they get no samples, so old data there is cleared as well
+            next.advance(Math.floorDiv(slot * resolutionMillis, next.resolutionMillis));
+        }
+    }
+
+    private void clear(int index)
+    {
+        requests[index] = 0;
+        errors[index] = 0;
+        timeouts[index] = 0;
+        samples[index] = 0;
+        flags[index] = 0;
+    }
+
+    /**
+     * Gets the epoch millis of the oldest data this ring can hold, given its latest slot.
+     *
+     * @return Epoch millis, or Long.MAX_VALUE if nothing has been recorded.
+     */
+    long getOldest()
+    {
+        long current = currentSlot;
+        if (current == Long.MIN_VALUE)
+        {
+            return Long.MAX_VALUE;
+        }
+        return (current - slots + 1) * resolutionMillis;
+    }
+
+    /**
+     * Gets the epoch millis of the start of the latest slot something was recorded in.
+     *
+     * @return Epoch millis, or Long.MIN_VALUE if nothing has been recorded.
+     */
+    long getNewest()
+    {
+        long current = currentSlot;
+        return current == Long.MIN_VALUE ? Long.MIN_VALUE : current * resolutionMillis;
+    }
+
+    /**
+     * Gets the next coarser ring.
+     *
+     * @return The ring, or null if this is the coarsest one.
+     */
+    HistoryRing getNext()
+    {
+        return next;
+    }
+
+    /**
+     * Adds all slots with data overlapping the range to the output, oldest first.
+     *
+     * @param from Epoch millis to start from, inclusive.
+     * @param to   Epoch millis to end at, inclusive.
+     * @param out  The list to add the points to.
+     */
+    void collect(long from, long to, List<HistoryPoint> out)
+    {
+        long current = currentSlot;
+        if (current == Long.MIN_VALUE)
+        {
+            return;
+        }
+        long first = Math.max(Math.floorDiv(from, resolutionMillis), current - slots + 1);
+        long last = Math.min(Math.floorDiv(to, resolutionMillis), current);
+        for (long slot = first; slot <= last; slot++)
+        {
+            int index = index(slot);
+            if (samples[index] > 0)
+            {
+                out.add(new HistoryPoint(slot * resolutionMillis, resolutionMillis, average(requests, index), average(errors, index), average(timeouts, index), flags[index]));
+            }
+        }
+    }
+
+    private int average(int[] values, int index)
+    {
+        int count = samples[index];
+        return count == 0 ? 0 : Math.round((float) values[index] / count);
+    }
+
+    private int index(long slot)
+    {
+        return (int) Math.floorMod(slot, (long) slots);
+    }
+}
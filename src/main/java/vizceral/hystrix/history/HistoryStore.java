@@ -0,0 +1,211 @@
+package vizceral.hystrix.history;
+
+import vizceral.hystrix.ConnectionRollup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Bounded memory history of the traffic on every connection (source cluster to target cluster).
+ * Each connection has one ring per configured resolution. Recording a sample touches the finest ring only, except for
+ * when a slot is finished and its average is handed over to the next coarser ring. Connections that recorded nothing
+ * for the longest retention are dropped by {@link #sweep(long)}.
+ */
+public class HistoryStore
+{
+    private final HistoryConfiguration configuration;
+    private final long retentionMillis;
+    private final ConcurrentMap<String, ConcurrentMap<String, HistoryRing>> connections = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new history store.
+     *
+     * @param configuration The configuration to use.
+     */
+    public HistoryStore(HistoryConfiguration configuration)
+    {
+        this.configuration = configuration;
+        List<HistoryResolution> resolutions = configuration.getResolutions();
+        this.retentionMillis = resolutions.get(resolutions.size() - 1).getRetentionSeconds() * 1000L;
+    }
+
+    /**
+     * Records the current state of a connection.
+     *
+     * @param source    The cluster the connection goes out from.
+     * @param rollup    The running totals of the connection.
+     * @param timestamp Epoch millis of when the state was seen.
+     */
+    public void record(String source, ConnectionRollup rollup, long timestamp)
+    {
+        int flags = (rollup.isCircuitBreakerOpen() ? HistoryPoint.CIRCUIT_BREAKER_OPEN : 0)
+                | (rollup.getRejected() > 0 ? HistoryPoint.REJECTED : 0);
+        record(source, rollup.getTarget(), timestamp, rollup.getRequests(), rollup.getErrors(), rollup.getTimeouts(), flags);
+    }
+
+    /**
+     * Records one sample for a connection.
+     *
+     * @param source    The cluster the connection goes out from.
+     * @param target    The cluster the connection goes to.
+     * @param timestamp Epoch millis of the sample.
+     * @param requests  Successful requests per second.
+     * @param errors    Errors per second.
+     * @param timeouts  Timeouts per second.
+     * @param flags     Flags, see {@link HistoryPoint}.
+     */
+    public void record(String source, String target, long timestamp, int requests, int errors, int timeouts, int flags)
+    {
+        connections.computeIfAbsent(source, s -> new ConcurrentHashMap<>())
+                .computeIfAbsent(target, t -> newRings())
+                .record(timestamp, requests, errors, timeouts, flags);
+    }
+
+    /**
+     * Gets the history of a connection for a range of time, at the finest resolution that still covers the start of the
+     * range.
+     *
+     * @param source The cluster the connection goes out from.
+     * @param target The cluster the connection goes to.
+     * @param from   Epoch millis to start from, inclusive.
+     * @param to     Epoch millis to end at, inclusive.
+     *
+     * @return List of points, oldest first. Empty if nothing is known about the connection.
+     */
+    public List<HistoryPoint> query(String source, String target, long from, long to)
+    {
+        HistoryRing ring = getRing(source, target);
+        if (ring == null)
+        {
+            return Collections.emptyList();
+        }
+        while (ring.getNext() != null && ring.getOldest() > from)
+        {
+            ring = ring.getNext();
+        }
+        List<HistoryPoint> points = new ArrayList<>();
+        ring.collect(from, to, points);
+        return points;
+    }
+
+    /**
+     * Gets the average traffic on a connection over a range of time. Flags are set if they were seen anywhere in the
+     * range.
+     *
+     * @param source The cluster the connection goes out from.
+     * @param target The cluster the connection goes to.
+     * @param from   Epoch millis to start from, inclusive.
+     * @param to     Epoch millis to end at, inclusive.
+     *
+     * @return The aggregated point, or null if there is no data in the range.
+     */
+    public HistoryPoint aggregate(String source, String target, long from, long to)
+    {
+        List<HistoryPoint> points = query(source, target, from, to);
+        if (points.isEmpty())
+        {
+            return null;
+        }
+        long requests = 0;
+        long errors = 0;
+        long timeouts = 0;
+        int flags = 0;
+        for (HistoryPoint point : points)
+        {
+            requests += point.getRequests();
+            errors += point.getErrors();
+            timeouts += point.getTimeouts();
+            flags |= point.getFlags();
+        }
+        int count = points.size();
+        return new HistoryPoint(from, to - from, Math.round((float) requests / count), Math.round((float) errors / count), Math.round((float) timeouts / count), flags);
+    }
+
+    /**
+     * Gets the highest traffic going out from a cluster within a range of time, summed over its connections per slot.
+     *
+     * @param source The cluster the connections go out from.
+     * @param from   Epoch millis to start from, inclusive.
+     * @param to     Epoch millis to end at, inclusive.
+     *
+     * @return The highest requests, errors and timeouts per second of any slot, 0 if there is no data in the range.
+     */
+    public int getMaxOutgoing(String source, long from, long to)
+    {
+        Map<String, HistoryRing> targets = connections.get(source);
+        if (targets == null)
+        {
+            return 0;
+        }
+        Map<Long, Integer> outgoing = new HashMap<>();
+        for (String target : targets.keySet())
+        {
+            for (HistoryPoint point : query(source, target, from, to))
+            {
+                outgoing.merge(point.getTimestamp(), point.getRequests() + point.getErrors() + point.getTimeouts(), Integer::sum);
+            }
+        }
+        return outgoing.values().stream().mapToInt(Integer::intValue).max().orElse(0);
+    }
+
+    /**
+     * Gets all connections that have history, as source cluster to target clusters.
+     *
+     * @return Map of source cluster to the target clusters it has history towards.
+     */
+    public Map<String, List<String>> getConnections()
+    {
+        Map<String, List<String>> result = new HashMap<>();
+        for (Map.Entry<String, ConcurrentMap<String, HistoryRing>> entry : connections.entrySet())
+        {
+            result.put(entry.getKey(), new ArrayList<>(entry.getValue().keySet()));
+        }
+        return result;
+    }
+
+    /**
+     * Drops the connections that recorded nothing for the longest retention, so clusters that were stopped or whose
+     * connections went away do not keep their rings forever. A source is dropped with its last connection.
+     * <p>
+     * A sample recorded on a connection while it is dropped can be lost, which only happens to a connection that was
+     * silent for the whole retention.
+     *
+     * @param now Epoch millis of now.
+     */
+    public void sweep(long now)
+    {
+        for (Map.Entry<String, ConcurrentMap<String, HistoryRing>> source : connections.entrySet())
+        {
+            source.getValue().values().removeIf(ring -> isExpired(ring, now));
+            connections.computeIfPresent(source.getKey(), (name, targets) -> targets.isEmpty() ? null : targets);
+        }
+    }
+
+    private boolean isExpired(HistoryRing ring, long now)
+    {
+        long newest = ring.getNewest();
+        return newest != Long.MIN_VALUE && newest + retentionMillis < now;
+    }
+
+    private HistoryRing getRing(String source, String target)
+    {
+        Map<String, HistoryRing> targets = connections.get(source);
+        return targets == null ? null : targets.get(target);
+    }
+
+    private HistoryRing newRings()
+    {
+        List<HistoryResolution> resolutions = configuration.getResolutions();
+        HistoryRing ring = null;
+        for (int i = resolutions.size() - 1; i >= 0; i--)
+        {
+            ring = new HistoryRing(resolutions.get(i), ring);
+        }
+        return ring;
+    }
+}
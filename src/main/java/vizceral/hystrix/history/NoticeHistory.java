@@ -0,0 +1,92 @@
+package vizceral.hystrix.history;
+
+import vizceral.hystrix.VizceralNotice;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * History of the notices on each cluster. Only changes are stored, so a cluster whose notices stay the same costs one
+ * entry no matter for how long.
+ */
+public class NoticeHistory
+{
+    private static final int MAX_CHANGES_PER_CLUSTER = 1000;
+    private final long retentionMillis;
+    private final ConcurrentMap<String, NavigableMap<Long, List<VizceralNotice>>> changes = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new notice history.
+     *
+     * @param configuration The history configuration, the longest retention is used for notices as well.
+     */
+    public NoticeHistory(HistoryConfiguration configuration)
+    {
+        List<HistoryResolution> resolutions = configuration.getResolutions();
+        this.retentionMillis = resolutions.get(resolutions.size() - 1).getRetentionSeconds() * 1000L;
+    }
+
+    /**
+     * Records the current notices of a cluster, if they differ from the last recorded ones.
+     *
+     * @param cluster   The name of the cluster.
+     * @param notices   The current notices.
+     * @param timestamp Epoch millis of when the notices were seen.
+     */
+    public void record(String cluster, List<VizceralNotice> notices, long timestamp)
+    {
+        NavigableMap<Long, List<VizceralNotice>> clusterChanges = changes.computeIfAbsent(cluster, c -> new TreeMap<>());
+        synchronized (clusterChanges)
+        {
+            Map.Entry<Long, List<VizceralNotice>> last = clusterChanges.lastEntry();
+            if (last == null ? notices.isEmpty() : last.getValue().equals(notices))
+            {
+                return;
+            }
+            clusterChanges.put(timestamp, Collections.unmodifiableList(new ArrayList<>(notices)));
+            //Keep the newest change that is older than the retention, it's still valid at the start of the retention
+            Long oldestNeeded = clusterChanges.floorKey(timestamp - retentionMillis);
+            while (clusterChanges.size() > MAX_CHANGES_PER_CLUSTER
+                    || (oldestNeeded != null && clusterChanges.firstKey() < oldestNeeded))
+            {
+                clusterChanges.pollFirstEntry();
+            }
+        }
+    }
+
+    /**
+     * Gets all notices a cluster had at any time during a range.
+     *
+     * @param cluster The name of the cluster.
+     * @param from    Epoch millis to start from, inclusive.
+     * @param to      Epoch millis to end at, inclusive.
+     *
+     * @return List of distinct notices.
+     */
+    public List<VizceralNotice> get(String cluster, long from, long to)
+    {
+        NavigableMap<Long, List<VizceralNotice>> clusterChanges = changes.get(cluster);
+        if (clusterChanges == null)
+        {
+            return Collections.emptyList();
+        }
+        Set<VizceralNotice> notices = new LinkedHashSet<>();
+        synchronized (clusterChanges)
+        {
+            Long start = clusterChanges.floorKey(from);
+            for (List<VizceralNotice> changed : clusterChanges.subMap(start == null ? from : start, true, to, true).values())
+            {
+                notices.addAll(changed);
+            }
+        }
+        return new ArrayList<>(notices);
+    }
+}
@@ -11,7 +11,7 @@ import java.util.List;
  */
 public class MonitoringService
 {
-    private final List<MonitoringSystem> monitoringSystems;
+    private volatile List<MonitoringSystem> monitoringSystems;
 
     public MonitoringService(Configuration configuration)
     {
@@ -26,6 +26,24 @@ public class MonitoringService
         }
     }
 
+    /**
+     * Stops the running monitoring systems and starts new ones in their place.
+     *
+     * @param replacements The new monitoring systems.
+     */
+    public synchronized void replace(List<MonitoringSystem> replacements)
+    {
+        for (MonitoringSystem monitoringSystem : monitoringSystems)
+        {
+            monitoringSystem.stop();
+        }
+        monitoringSystems = replacements;
+        for (MonitoringSystem monitoringSystem : replacements)
+        {
+            monitoringSystem.start();
+        }
+    }
+
     public List<VizceralNotice> getAlertsForCluster(String clusterName)
     {
         List<VizceralNotice> notices = new ArrayList<>();
@@ -22,4 +22,11 @@ public interface MonitoringSystem
      * Starts the system. Might trigger timers, pollers etc.
      */
     void start();
+
+    /**
+     * Stops the system, e.g. when it is replaced after the configuration changed.
+     */
+    default void stop()
+    {
+    }
 }
@@ -13,6 +13,7 @@ import io.reactivex.netty.protocol.http.client.HttpClientRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import rx.Observable;
+import rx.subscriptions.CompositeSubscription;
 import vizceral.hystrix.NoticeSeverity;
 import vizceral.hystrix.VizceralNotice;
 import vizceral.hystrix.monitoring.MonitoringSystem;
@@ -37,6 +38,7 @@ public class ZmonMonitoringSystem implements MonitoringSystem
     private final ZmonConfiguration configuration;
     private volatile Map<String, String> entitiesToApplication = new HashMap<>();
     private volatile Map<String, Collection<VizceralNotice>> notices = new HashMap<>();
+    private final CompositeSubscription subscriptions = new CompositeSubscription();
 
     public ZmonMonitoringSystem(ZmonConfiguration configuration)
     {
@@ -68,7 +70,7 @@ public class ZmonMonitoringSystem implements MonitoringSystem
     @Override
     public void start()
     {
-        pollEntities()
+        subscriptions.add(pollEntities()
                 .subscribe(entities ->
                         {
                             Map<String, String> applicationsById = new HashMap<>();
@@ -82,9 +84,18 @@ public class ZmonMonitoringSystem implements MonitoringSystem
                             }
                             entitiesToApplication = applicationsById;
                         },
-                        ex -> logger.error("Got error polling entities", ex));
-        pollAlerts().subscribe(alerts -> this.notices = getNotices(alerts),
-                ex -> logger.error("Got error polling alerts", ex));
+                        ex -> logger.error("Got error polling entities", ex)));
+        subscriptions.add(pollAlerts().subscribe(alerts -> this.notices = getNotices(alerts),
+                ex -> logger.error("Got error polling alerts", ex)));
+    }
+
+    /**
+     * Stops polling from zmon.
+     */
+    @Override
+    public void stop()
+    {
+        subscriptions.unsubscribe();
     }
 
     private Map<String, Collection<VizceralNotice>> getNotices(JsonNode alerts)
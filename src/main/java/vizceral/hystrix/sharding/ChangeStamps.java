@@ -0,0 +1,76 @@
+package vizceral.hystrix.sharding;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Stamps the clusters written by {@link PartialSnapshotCodec} with a generation that increases every time a cluster is
+ * written with other content than before. The generation is the delta cursor handed out to readers: a reader passing
+ * the generation of its previous payload gets the clusters stamped after it in full.
+ * <p>
+ * The stamps are taken by this instance while writing, so they do not depend on the event times of the clusters, which
+ * can arrive out of order across clusters and instances. A change not yet visible while a payload is written is stamped
+ * by a later payload, after the generation the reader already has. The generation starts at the current time times
+ * 1000, so it keeps increasing across restarts.
+ */
+public class ChangeStamps
+{
+    private final Map<String, Stamp> stamps = new HashMap<>();
+    private long generation = System.currentTimeMillis() * 1000;
+
+    /**
+     * Gets the stamp of a cluster, stamping it with a new generation if its content changed since it was last written.
+     * Must be called while holding the lock of this object.
+     *
+     * @param name    The name of the cluster.
+     * @param content The json of the cluster that makes up a change.
+     *
+     * @return The stamp.
+     */
+    long stamp(String name, JsonNode content)
+    {
+        Stamp stamp = stamps.get(name);
+        if (stamp == null || !stamp.content.equals(content))
+        {
+            stamp = new Stamp(content, ++generation);
+            stamps.put(name, stamp);
+        }
+        return stamp.generation;
+    }
+
+    /**
+     * Drops the stamps of clusters that are gone, so they are written in full if they come back. Must be called while
+     * holding the lock of this object.
+     *
+     * @param names The clusters still present.
+     */
+    void retain(Set<String> names)
+    {
+        stamps.keySet().retainAll(names);
+    }
+
+    /**
+     * Gets the latest generation handed out. Must be called while holding the lock of this object.
+     *
+     * @return The generation.
+     */
+    long getGeneration()
+    {
+        return generation;
+    }
+
+    private static final class Stamp
+    {
+        private final JsonNode content;
+        private final long generation;
+
+        private Stamp(JsonNode content, long generation)
+        {
+            this.content = content;
+            this.generation = generation;
+        }
+    }
+}
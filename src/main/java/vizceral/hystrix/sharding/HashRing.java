@@ -0,0 +1,83 @@
+package vizceral.hystrix.sharding;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Consistent hash ring assigning clusters to aggregator instances. Every instance is placed on the ring a number of
+ * times (virtual nodes) so that the clusters are spread evenly, and when an instance joins or leaves only the clusters
+ * next to its points move. Instances that see the same members always agree on the owner of a cluster.
+ */
+public class HashRing
+{
+    private final TreeMap<Long, String> ring = new TreeMap<>();
+    private final Set<String> members;
+
+    /**
+     * Creates a new ring.
+     *
+     * @param members      The instances on the ring.
+     * @param virtualNodes How many points each instance gets on the ring.
+     */
+    public HashRing(Collection<String> members, int virtualNodes)
+    {
+        this.members = new TreeSet<>(members);
+        for (String member : this.members)
+        {
+            for (int i = 0; i < virtualNodes; i++)
+            {
+                //On a collision the lowest member wins, so all instances build the same ring
+                ring.putIfAbsent(hash(member + "#" + i), member);
+            }
+        }
+    }
+
+    /**
+     * Gets the instance owning a cluster.
+     *
+     * @param cluster The name of the cluster.
+     * @return The owning instance, or null if the ring is empty.
+     */
+    public String getOwner(String cluster)
+    {
+        if (ring.isEmpty())
+        {
+            return null;
+        }
+        Map.Entry<Long, String> entry = ring.ceilingEntry(hash(cluster));
+        return entry == null ? ring.firstEntry().getValue() : entry.getValue();
+    }
+
+    /**
+     * Gets the instances on the ring.
+     *
+     * @return The members.
+     */
+    public Set<String> getMembers()
+    {
+        return members;
+    }
+
+    /**
+     * 64 bit FNV-1a followed by the murmur3 finalizer to spread similar names over the whole ring.
+     */
+    static long hash(String key)
+    {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8))
+        {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
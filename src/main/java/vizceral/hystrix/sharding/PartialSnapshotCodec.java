@@ -0,0 +1,307 @@
+package vizceral.hystrix.sharding;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import vizceral.hystrix.ClusterSnapshot;
+import vizceral.hystrix.LatencyPercentiles;
+import vizceral.hystrix.NoticeSeverity;
+import vizceral.hystrix.VizceralConnection;
+import vizceral.hystrix.VizceralNotice;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compact json form of cluster snapshots, exchanged between aggregator instances. Connections are written as arrays
+ * of {@code [target, requests, errors, timeouts, circuitBreakerOpen, notices?, [p50, p90, p99]?]} and empty notices
+ * and unknown latencies are left out, which keeps the payload a fraction of the size of the rendered vizceral json.
+ * <p>
+ * A delta can be written with {@link ChangeStamps} by passing the {@code generation} of the previous payload as
+ * {@code since}. Clusters not changed since are then only written with their name, max value and notices, and the
+ * reader takes the rest from the previous payload.
+ * <p>
+ * The traffic towards other regions is written as {@code regions} arrays of {@code [region, requests, errors, timeouts]}.
+ */
+public final class PartialSnapshotCodec
+{
+    private PartialSnapshotCodec()
+    {
+    }
+
+    /**
+     * Writes snapshots to json.
+     *
+     * @param region    The region the snapshots belong to.
+     * @param snapshots The snapshots to write.
+     * @return The json.
+     */
+    public static ObjectNode toJson(String region, Collection<ClusterSnapshot> snapshots)
+    {
+        return toJson(region, snapshots, 0, null);
+    }
+
+    /**
+     * Writes snapshots and the traffic towards other regions to json.
+     *
+     * @param region        The region the snapshots belong to.
+     * @param snapshots     All current snapshots, unchanged ones are written in short form.
+     * @param since         The generation of the previous payload, or 0 to write everything.
+     * @param stamps        The stamps of the clusters written before, or null to write everything without generation.
+     * @param regionTraffic The traffic towards other regions, one connection per region.
+     * @return The json.
+     */
+    public static ObjectNode toJson(String region, Collection<ClusterSnapshot> snapshots, long since, ChangeStamps stamps, Collection<VizceralConnection> regionTraffic)
+    {
+        ObjectNode root = toJson(region, snapshots, since, stamps);
+        ArrayNode regions = root.putArray("regions");
+        for (VizceralConnection connection : regionTraffic)
+        {
+            regions.addArray()
+                    .add(connection.getName())
+                    .add(connection.getRequests())
+                    .add(connection.getErrors())
+                    .add(connection.getTimeouts());
+        }
+        return root;
+    }
+
+    /**
+     * Reads the traffic towards other regions written by
+     * {@link #toJson(String, Collection, long, ChangeStamps, Collection)}.
+     *
+     * @param json The json.
+     * @return One connection per region, empty if the json has no region traffic.
+     */
+    public static List<VizceralConnection> readRegionTraffic(JsonNode json)
+    {
+        List<VizceralConnection> connections = new ArrayList<>();
+        for (JsonNode region : json.path("regions"))
+        {
+            connections.add(new VizceralConnection(region.get(0).asText(), region.get(2).asInt(), region.get(1).asInt(), region.get(3).asInt(), false, Collections.emptyList()));
+        }
+        return connections;
+    }
+
+    /**
+     * Writes the snapshots that changed since a previous payload to json, together with the generation to pass as
+     * {@code since} for the next delta.
+     *
+     * @param region    The region the snapshots belong to.
+     * @param snapshots All current snapshots, unchanged ones are written in short form.
+     * @param since     The generation of the previous payload, or 0 to write everything.
+     * @param stamps    The stamps of the clusters written before, or null to write everything without generation.
+     * @return The json.
+     */
+    public static ObjectNode toJson(String region, Collection<ClusterSnapshot> snapshots, long since, ChangeStamps stamps)
+    {
+        ObjectNode root = JsonNodeFactory.instance.objectNode()
+                .put("region", region)
+                .put("updated", snapshots.stream().mapToLong(ClusterSnapshot::getUpdated).max().orElse(0));
+        ArrayNode clusters = root.putArray("clusters");
+        if (stamps == null)
+        {
+            for (ClusterSnapshot snapshot : snapshots)
+            {
+                writeCluster(clusters, snapshot, false).setAll(writeContent(snapshot));
+            }
+            return root;
+        }
+        synchronized (stamps)
+        {
+            Set<String> names = new HashSet<>();
+            for (ClusterSnapshot snapshot : snapshots)
+            {
+                ObjectNode content = writeContent(snapshot);
+                names.add(snapshot.getName());
+                boolean unchanged = stamps.stamp(snapshot.getName(), content) <= since;
+                ObjectNode cluster = writeCluster(clusters, snapshot, unchanged);
+                if (!unchanged)
+                {
+                    cluster.setAll(content);
+                }
+            }
+            stamps.retain(names);
+            root.put("generation", stamps.getGeneration());
+        }
+        return root;
+    }
+
+    private static ObjectNode writeCluster(ArrayNode clusters, ClusterSnapshot snapshot, boolean unchanged)
+    {
+        ObjectNode cluster = clusters.addObject()
+                .put("name", snapshot.getName())
+                .put("maxValue", snapshot.getMaxValue());
+        if (!snapshot.getNotices().isEmpty())
+        {
+            writeNotices(cluster.putArray("notices"), snapshot.getNotices());
+        }
+        if (unchanged)
+        {
+            cluster.put("unchanged", true);
+        }
+        return cluster;
+    }
+
+    /**
+     * Writes the part of a cluster that is left out when it is unchanged.
+     */
+    private static ObjectNode writeContent(ClusterSnapshot snapshot)
+    {
+        ObjectNode cluster = JsonNodeFactory.instance.objectNode()
+                .put("outgoingRequests", snapshot.getOutgoingRequests())
+                .put("updated", snapshot.getUpdated());
+        if (snapshot.isRejected())
+        {
+            cluster.put("rejected", true);
+        }
+        ArrayNode connections = cluster.putArray("connections");
+        for (VizceralConnection connection : snapshot.getConnections())
+        {
+            ArrayNode connectionNode = connections.addArray()
+                    .add(connection.getName())
+                    .add(connection.getRequests())
+                    .add(connection.getErrors())
+                    .add(connection.getTimeouts())
+                    .add(connection.isCircuitBreakerOpen() ? 1 : 0);
+            if (!connection.getNotices().isEmpty() || connection.getLatency() != null)
+            {
+                writeNotices(connectionNode.addArray(), connection.getNotices());
+            }
+            if (connection.getLatency() != null)
+            {
+                connectionNode.addArray()
+                        .add(connection.getLatency().getP50())
+                        .add(connection.getLatency().getP90())
+                        .add(connection.getLatency().getP99());
+            }
+        }
+        return cluster;
+    }
+
+    /**
+     * Reads snapshots written by {@link #toJson(String, Collection)}.
+     *
+     * @param json The json.
+     * @return The snapshots.
+     * @throws IllegalArgumentException If the json is not a partial snapshot.
+     */
+    public static List<ClusterSnapshot> fromJson(JsonNode json)
+    {
+        return fromJson(json, Collections.emptyMap());
+    }
+
+    /**
+     * Reads snapshots written by {@link #toJson(String, Collection, long, ChangeStamps)}.
+     *
+     * @param json     The json.
+     * @param previous The snapshots read from the previous payload, by name.
+     * @return The snapshots.
+     * @throws IllegalArgumentException If the json is not a partial snapshot or refers to a cluster not in previous.
+     */
+    public static List<ClusterSnapshot> fromJson(JsonNode json, Map<String, ClusterSnapshot> previous)
+    {
+        JsonNode clusters = json.get("clusters");
+        if (clusters == null || !clusters.isArray())
+        {
+            throw new IllegalArgumentException("Partial snapshot must have clusters");
+        }
+        List<ClusterSnapshot> snapshots = new ArrayList<>(clusters.size());
+        for (JsonNode cluster : clusters)
+        {
+            if (cluster.path("unchanged").asBoolean())
+            {
+                ClusterSnapshot last = previous.get(cluster.get("name").asText());
+                if (last == null)
+                {
+                    throw new IllegalArgumentException("Partial snapshot refers to unknown cluster " + cluster.get("name").asText());
+                }
+                snapshots.add(ClusterSnapshot.newBuilder()
+                        .name(last.getName())
+                        .connections(last.getConnections())
+                        .notices(readNotices(cluster.get("notices")))
+                        .maxValue(cluster.path("maxValue").asInt())
+                        .outgoingRequests(last.getOutgoingRequests())
+                        .rejected(last.isRejected())
+                        .updated(last.getUpdated())
+                        .build());
+                continue;
+            }
+            List<VizceralConnection> connections = new ArrayList<>();
+            for (JsonNode connection : cluster.path("connections"))
+            {
+                connections.add(new VizceralConnection(connection.get(0).asText(),
+                        connection.get(2).asInt(),
+                        connection.get(1).asInt(),
+                        connection.get(3).asInt(),
+                        connection.get(4).asInt() == 1,
+                        readNotices(connection.get(5)),
+                        readLatency(connection.get(6))));
+            }
+            snapshots.add(ClusterSnapshot.newBuilder()
+                    .name(cluster.get("name").asText())
+                    .connections(connections)
+                    .notices(readNotices(cluster.get("notices")))
+                    .maxValue(cluster.path("maxValue").asInt())
+                    .outgoingRequests(cluster.path("outgoingRequests").asInt())
+                    .rejected(cluster.path("rejected").asBoolean())
+                    .updated(cluster.path("updated").asLong())
+                    .build());
+        }
+        return snapshots;
+    }
+
+    private static void writeNotices(ArrayNode array, Collection<VizceralNotice> notices)
+    {
+        for (VizceralNotice notice : notices)
+        {
+            array.add(notice.toJson());
+        }
+    }
+
+    private static LatencyPercentiles readLatency(JsonNode array)
+    {
+        if (array == null || array.size() < 3)
+        {
+            return null;
+        }
+        return new LatencyPercentiles(array.get(0).asInt(), array.get(1).asInt(), array.get(2).asInt());
+    }
+
+    private static List<VizceralNotice> readNotices(JsonNode array)
+    {
+        if (array == null || array.size() == 0)
+        {
+            return Collections.emptyList();
+        }
+        List<VizceralNotice> notices = new ArrayList<>(array.size());
+        for (JsonNode notice : array)
+        {
+            notices.add(VizceralNotice.newBuilder()
+                    .title(notice.path("title").asText(null))
+                    .subtitle(notice.path("subtitle").asText(null))
+                    .link(notice.path("link").asText(null))
+                    .severity(notice.has("severity") ? toSeverity(notice.get("severity").asInt()) : null)
+                    .build());
+        }
+        return notices;
+    }
+
+    private static NoticeSeverity toSeverity(int level)
+    {
+        for (NoticeSeverity severity : NoticeSeverity.values())
+        {
+            if (severity.get() == level)
+            {
+                return severity;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,97 @@
+package vizceral.hystrix.sharding;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.reactivex.netty.RxNetty;
+import io.reactivex.netty.pipeline.ssl.DefaultFactories;
+import io.reactivex.netty.protocol.http.client.HttpClient;
+import io.reactivex.netty.protocol.http.client.HttpClientBuilder;
+import io.reactivex.netty.protocol.http.client.HttpClientRequest;
+import rx.Observable;
+import vizceral.hystrix.GraphFormat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fetches json from another vizceral-hystrix instance. Smile is asked for since it is smaller and faster to parse,
+ * and json is still understood from instances that do not serve it.
+ */
+public class PeerClient
+{
+    private static final String ACCEPT = GraphFormat.SMILE.getContentType() + ", " + GraphFormat.JSON.getContentType() + ";q=0.5";
+    private final String url;
+    private final String basePath;
+    private final HttpClient<ByteBuf, ByteBuf> rxNetty;
+
+    /**
+     * Creates a new client.
+     *
+     * @param url The url of the instance, for example http://10.0.0.1:8081.
+     */
+    public PeerClient(String url)
+    {
+        this.url = url;
+        URI uri = URI.create(url);
+        boolean secure = "https".equalsIgnoreCase(uri.getScheme());
+        int port = uri.getPort() == -1 ? (secure ? 443 : 80) : uri.getPort();
+        basePath = uri.getRawPath() == null ? "" : uri.getRawPath();
+        HttpClientBuilder<ByteBuf, ByteBuf> builder = RxNetty.newHttpClientBuilder(uri.getHost(), port);
+        if (secure)
+        {
+            builder.withSslEngineFactory(DefaultFactories.trustAll());
+        }
+        rxNetty = builder.build();
+    }
+
+    /**
+     * Gets the url of the instance.
+     *
+     * @return The url.
+     */
+    public String getUrl()
+    {
+        return url;
+    }
+
+    /**
+     * Gets json from a path on the instance.
+     *
+     * @param path          The path, including the query string.
+     * @param timeoutMillis How long to wait for the whole response.
+     * @return Observable emitting the parsed json, or an error if the request failed or did not return 200.
+     */
+    public Observable<JsonNode> get(String path, long timeoutMillis)
+    {
+        return rxNetty.submit(HttpClientRequest.createGet(basePath + path).withHeader("Accept", ACCEPT))
+                .flatMap(response ->
+                {
+                    if (response.getStatus().code() != 200)
+                    {
+                        return Observable.error(new IOException("Got " + response.getStatus().code() + " from " + url + path));
+                    }
+                    GraphFormat format = GraphFormat.fromContentType(response.getHeaders().get("Content-Type"));
+                    //Copy each chunk as it arrives, netty releases the buffer after it has been emitted
+                    return response.getContent()
+                            .map(ByteBufUtil::getBytes)
+                            .collect(ByteArrayOutputStream::new, (out, bytes) -> out.write(bytes, 0, bytes.length))
+                            .flatMap(out -> parse(format, out));
+                })
+                .timeout(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private static Observable<JsonNode> parse(GraphFormat format, ByteArrayOutputStream out)
+    {
+        try
+        {
+            return Observable.just(format.read(out.toByteArray()));
+        }
+        catch (IOException e)
+        {
+            return Observable.error(e);
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package vizceral.hystrix.sharding;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import rx.Observable;
+import vizceral.hystrix.ClusterSnapshot;
+import vizceral.hystrix.VizceralConnection;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Keeps track of which aggregator instances sharing a region are alive and which of them owns each cluster.
+ * <p>
+ * Every refresh fetches the partial snapshot of each peer. A peer joins the ring on its first successful fetch and
+ * leaves it after a number of failed fetches in a row, so all instances converge on the same ring and therefore the same
+ * owners. The fetched snapshots are kept so that any instance can render the whole region without waiting on its peers.
+ */
+public class ShardCoordinator
+{
+    private static final Logger logger = LoggerFactory.getLogger(ShardCoordinator.class);
+    private final ShardingConfiguration configuration;
+    private final String partialPath;
+    private final Map<String, Peer> peers = new LinkedHashMap<>();
+    private volatile HashRing ring;
+
+    /**
+     * Creates a new coordinator. Until the first refresh this instance owns every cluster.
+     *
+     * @param configuration The sharding configuration.
+     * @param region        The region being sharded.
+     */
+    public ShardCoordinator(ShardingConfiguration configuration, String region)
+    {
+        this.configuration = configuration;
+        this.partialPath = "/partial?region=" + encode(region);
+        for (String url : configuration.getPeers())
+        {
+            peers.put(url, new Peer(new PeerClient(url)));
+        }
+        this.ring = new HashRing(Collections.singleton(configuration.getSelf()), configuration.getVirtualNodes());
+    }
+
+    /**
+     * Fetches the partial snapshots of all peers and rebuilds the ring if any peer joined or left. The peers are
+     * fetched on the event loops of the http client, so no thread is blocked while waiting on them.
+     *
+     * @return Emits true if the ring changed, otherwise false, once all peers answered or failed.
+     */
+    public Observable<Boolean> refresh()
+    {
+        long timeout = configuration.getRefreshIntervalSeconds() * 1000L;
+        return Observable.from(peers.values())
+                .flatMap(peer -> peer.client.get(partialPath, timeout)
+                        .doOnNext(peer::succeeded)
+                        .onErrorResumeNext(ex ->
+                        {
+                            peer.failed(ex);
+                            return Observable.empty();
+                        }))
+                .toList()
+                .map(ignore -> updateRing());
+    }
+
+    /**
+     * Checks if this instance should tail a cluster.
+     *
+     * @param cluster The name of the cluster.
+     * @return true if this instance owns the cluster, otherwise false.
+     */
+    public boolean isOwner(String cluster)
+    {
+        return configuration.getSelf().equals(ring.getOwner(cluster));
+    }
+
+    /**
+     * Gets the latest snapshots of the clusters tailed by the live peers.
+     *
+     * @return The snapshots.
+     */
+    public List<ClusterSnapshot> getPeerSnapshots()
+    {
+        List<ClusterSnapshot> snapshots = new ArrayList<>();
+        for (Peer peer : peers.values())
+        {
+            if (peer.isAlive())
+            {
+                snapshots.addAll(peer.snapshots);
+            }
+        }
+        return snapshots;
+    }
+
+    /**
+     * Gets how often the peers should be refreshed.
+     *
+     * @return Seconds between refreshes.
+     */
+    public int getRefreshInterval()
+    {
+        return configuration.getRefreshIntervalSeconds();
+    }
+
+    /**
+     * Gets the latest traffic towards other regions from the live peers.
+     *
+     * @return The traffic of each peer, one connection per region.
+     */
+    public List<List<VizceralConnection>> getPeerRegionTraffic()
+    {
+        List<List<VizceralConnection>> traffic = new ArrayList<>();
+        for (Peer peer : peers.values())
+        {
+            if (peer.isAlive())
+            {
+                traffic.add(peer.regionTraffic);
+            }
+        }
+        return traffic;
+    }
+
+    private synchronized boolean updateRing()
+    {
+        Set<String> members = new TreeSet<>();
+        members.add(configuration.getSelf());
+        for (Peer peer : peers.values())
+        {
+            if (peer.isAlive())
+            {
+                members.add(peer.client.getUrl());
+            }
+        }
+        if (members.equals(ring.getMembers()))
+        {
+            return false;
+        }
+        logger.info("Shard members changed from {} to {}", ring.getMembers(), members);
+        ring = new HashRing(members, configuration.getVirtualNodes());
+        return true;
+    }
+
+    /**
+     * Gets the number of instances on the ring, including this one.
+     *
+     * @return Number of members.
+     */
+    public int getMembers()
+    {
+        return ring.getMembers().size();
+    }
+
+    private static String encode(String value)
+    {
+        try
+        {
+            return URLEncoder.encode(value, "UTF-8");
+        }
+        catch (UnsupportedEncodingException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private class Peer
+    {
+        private final PeerClient client;
+        private volatile List<ClusterSnapshot> snapshots = Collections.emptyList();
+        private volatile List<VizceralConnection> regionTraffic = Collections.emptyList();
+        private volatile int failures = Integer.MAX_VALUE;
+
+        private Peer(PeerClient client)
+        {
+            this.client = client;
+        }
+
+        private boolean isAlive()
+        {
+            return failures < configuration.getMaxFailures();
+        }
+
+        private void succeeded(JsonNode json)
+        {
+            snapshots = PartialSnapshotCodec.fromJson(json);
+            regionTraffic = PartialSnapshotCodec.readRegionTraffic(json);
+            failures = 0;
+        }
+
+        private void failed(Throwable ex)
+        {
+            if (failures == Integer.MAX_VALUE)
+            {
+                logger.debug("Peer {} is not reachable", client.getUrl(), ex);
+                return;
+            }
+            failures++;
+            logger.warn("Could not fetch partial snapshot from peer {}, {} failures in a row", client.getUrl(), failures, ex);
+            if (!isAlive())
+            {
+                failures = Integer.MAX_VALUE;
+                snapshots = Collections.emptyList();
+                regionTraffic = Collections.emptyList();
+            }
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package vizceral.hystrix.sharding;
+
+import com.fasterxml.jackson.annotation.JsonSetter;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonPOJOBuilder;
+import vizceral.hystrix.ConfigurationException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Configuration for splitting the clusters of a region between several aggregator instances.
+ */
+@JsonDeserialize(builder = ShardingConfiguration.Builder.class)
+public class ShardingConfiguration
+{
+    private final String self;
+    private final List<String> peers;
+    private final int virtualNodes;
+    private final int refreshIntervalSeconds;
+    private final int maxFailures;
+
+    private ShardingConfiguration(Builder builder)
+    {
+        self = trimSlash(builder.self);
+        virtualNodes = builder.virtualNodes == 0 ? 128 : builder.virtualNodes;
+        refreshIntervalSeconds = builder.refreshIntervalSeconds == 0 ? 5 : builder.refreshIntervalSeconds;
+        maxFailures = builder.maxFailures == 0 ? 2 : builder.maxFailures;
+        if (self == null || self.isEmpty())
+        {
+            throw new ConfigurationException("sharding.self cannot be empty");
+        }
+        Set<String> uniquePeers = new LinkedHashSet<>();
+        for (String peer : builder.peers)
+        {
+            if (peer == null || peer.isEmpty())
+            {
+                throw new ConfigurationException("sharding.peers cannot contain empty urls");
+            }
+            if (!trimSlash(peer).equals(self))
+            {
+                uniquePeers.add(trimSlash(peer));
+            }
+        }
+        peers = Collections.unmodifiableList(new ArrayList<>(uniquePeers));
+        if (virtualNodes < 0)
+        {
+            throw new ConfigurationException("sharding.virtualNodes must be larger than 0, or 0 for the default");
+        }
+        if (refreshIntervalSeconds < 0)
+        {
+            throw new ConfigurationException("sharding.refreshIntervalSeconds must be larger than 0, or 0 for the default");
+        }
+        if (maxFailures < 0)
+        {
+            throw new ConfigurationException("sharding.maxFailures must be larger than 0, or 0 for the default");
+        }
+    }
+
+    private static String trimSlash(String url)
+    {
+        return url != null && url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+    }
+
+    public static Builder newBuilder()
+    {
+        return new Builder();
+    }
+
+    /**
+     * Gets the url other instances reach this instance on, for example http://10.0.0.1:8081.
+     *
+     * @return The url of this instance.
+     */
+    public String getSelf()
+    {
+        return self;
+    }
+
+    /**
+     * Gets the urls of the other instances sharing the region, not including this instance.
+     *
+     * @return The peer urls.
+     */
+    public List<String> getPeers()
+    {
+        return peers;
+    }
+
+    /**
+     * Gets how many points each instance gets on the hash ring. Defaults to 128.
+     *
+     * @return Virtual nodes per instance.
+     */
+    public int getVirtualNodes()
+    {
+        return virtualNodes;
+    }
+
+    /**
+     * Gets how often the partial snapshots of the peers are fetched. Defaults to 5 seconds.
+     *
+     * @return Seconds between refreshes.
+     */
+    public int getRefreshIntervalSeconds()
+    {
+        return refreshIntervalSeconds;
+    }
+
+    /**
+     * Gets how many refreshes in a row may fail before a peer is considered gone and its clusters are taken over.
+     * Defaults to 2.
+     *
+     * @return Failures in a row.
+     */
+    public int getMaxFailures()
+    {
+        return maxFailures;
+    }
+
+    @JsonPOJOBuilder(withPrefix = "")
+    public static final class Builder
+    {
+        private String self;
+        private List<String> peers = new ArrayList<>();
+        private int virtualNodes;
+        private int refreshIntervalSeconds;
+        private int maxFailures;
+
+        private Builder()
+        {
+        }
+
+        @JsonSetter
+        public Builder self(String val)
+        {
+            self = val;
+            return this;
+        }
+
+        @JsonSetter
+        public Builder peers(List<String> val)
+        {
+            peers = val == null ? new ArrayList<>() : val;
+            return this;
+        }
+
+        @JsonSetter
+        public Builder virtualNodes(int val)
+        {
+            virtualNodes = val;
+            return this;
+        }
+
+        @JsonSetter
+        public Builder refreshIntervalSeconds(int val)
+        {
+            refreshIntervalSeconds = val;
+            return this;
+        }
+
+        @JsonSetter
+        public Builder maxFailures(int val)
+        {
+            maxFailures = val;
+            return this;
+        }
+
+        public ShardingConfiguration build()
+        {
+            return new ShardingConfiguration(this);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package vizceral.hystrix.slo;
+
+import com.fasterxml.jackson.annotation.JsonSetter;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonPOJOBuilder;
+import vizceral.hystrix.ConfigurationException;
+import vizceral.hystrix.NoticeSeverity;
+
+/**
+ * A burn rate notice: shown when the error budget burns at least a given rate over both a long and a short window.
+ * The long window makes sure enough budget is spent to matter, the short one that it is still burning.
+ */
+@JsonDeserialize(builder = BurnRateAlert.Builder.class)
+public class BurnRateAlert
+{
+    private final int longWindowSeconds;
+    private final int shortWindowSeconds;
+    private final double burnRate;
+    private final NoticeSeverity severity;
+
+    private BurnRateAlert(Builder builder)
+    {
+        longWindowSeconds = builder.longWindowSeconds;
+        shortWindowSeconds = builder.shortWindowSeconds;
+        burnRate = builder.burnRate;
+        severity = builder.severity == null ? NoticeSeverity.ERROR : builder.severity;
+        if (longWindowSeconds <= 0 || longWindowSeconds > BurnRates.MAX_WINDOW_SECONDS)
+        {
+            throw new ConfigurationException("slo.alerts longWindowSeconds must be between 1 and " + BurnRates.MAX_WINDOW_SECONDS);
+        }
+        if (shortWindowSeconds <= 0 || shortWindowSeconds > longWindowSeconds)
+        {
+            throw new ConfigurationException("slo.alerts shortWindowSeconds must be between 1 and longWindowSeconds");
+        }
+        if (burnRate <= 0)
+        {
+            throw new ConfigurationException("slo.alerts burnRate must be larger than 0");
+        }
+    }
+
+    public static Builder newBuilder()
+    {
+        return new Builder();
+    }
+
+    /**
+     * Gets the long window.
+     *
+     * @return Window in seconds.
+     */
+    public int getLongWindowSeconds()
+    {
+        return longWindowSeconds;
+    }
+
+    /**
+     * Gets the short window.
+     *
+     * @return Window in seconds.
+     */
+    public int getShortWindowSeconds()
+    {
+        return shortWindowSeconds;
+    }
+
+    /**
+     * Gets how many times faster than sustainable the budget must burn, e.g. 14.4 spends 2% of a 30 day budget in an
+     * hour.
+     *
+     * @return The burn rate.
+     */
+    public double getBurnRate()
+    {
+        return burnRate;
+    }
+
+    /**
+     * Gets the severity of the notice. Defaults to ERROR.
+     *
+     * @return The severity.
+     */
+    public NoticeSeverity getSeverity()
+    {
+        return severity;
+    }
+
+    @JsonPOJOBuilder(withPrefix = "")
+    public static final class Builder
+    {
+        private int longWindowSeconds;
+        private int shortWindowSeconds;
+        private double burnRate;
+        private NoticeSeverity severity;
+
+        private Builder()
+        {
+        }
+
+        @JsonSetter
+        public Builder longWindowSeconds(int val)
+        {
+            longWindowSeconds = val;
+            return this;
+        }
+
+        @JsonSetter
+        public Builder shortWindowSeconds(int val)
+        {
+            shortWindowSeconds = val;
+            return this;
+        }
+
+        @JsonSetter
+        public Builder burnRate(double val)
+        {
+            burnRate = val;
+            return this;
+        }
+
+        @JsonSetter
+        public Builder severity(NoticeSeverity val)
+        {
+            severity = val;
+            return this;
+        }
+
+        public BurnRateAlert build()
+        {
+            return new BurnRateAlert(this);
+        }
+    }
+}
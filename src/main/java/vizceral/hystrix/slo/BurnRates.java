@@ -0,0 +1,355 @@
+package vizceral.hystrix.slo;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import vizceral.hystrix.ConnectionRollup;
+import vizceral.hystrix.ConnectionSlots;
+import vizceral.hystrix.ConnectionStatistics;
+import vizceral.hystrix.VizceralNotice;
+
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Error and timeout ratios of every connection over sliding windows of up to six hours, and how fast they burn the
+ * error budget of a {@link SloConfiguration}.
+ * <p>
+ * Hystrix only reports rolling counts over the last ten seconds, so the counts are sampled at most once per second per
+ * connection into two rings of buckets: one minute buckets covering an hour and five minute buckets covering six
+ * hours. Sampling only adds to the current bucket and clears the buckets skipped since the previous sample, so it is
+ * constant time. A window is the sum of its most recent buckets, including the one being filled. The rings are kept in
+ * pages of primitive arrays indexed by a slot per connection, about 1.6 kB per connection.
+ */
+public class BurnRates implements ConnectionStatistics
+{
+    /**
+     * The longest window that can be computed.
+     */
+    public static final int MAX_WINDOW_SECONDS = 21600;
+    private static final ThreadLocal<DecimalFormat> FORMAT = ThreadLocal.withInitial(() -> new DecimalFormat("#.#"));
+    private static final int PAGE_SIZE = 256;
+    private static final int COUNTERS = 3;
+    private static final int TOTAL = 0;
+    private static final int ERRORS = 1;
+    private static final int TIMEOUTS = 2;
+    private static final Ring FINE = new Ring(60, 60000);
+    private static final Ring COARSE = new Ring(72, 300000);
+    private final SloConfiguration configuration;
+    private final double budget;
+    private final ConnectionSlots slots;
+    private volatile Page[] pages = new Page[0];
+
+    /**
+     * Creates empty burn rates.
+     *
+     * @param configuration The configuration.
+     */
+    public BurnRates(SloConfiguration configuration)
+    {
+        this(configuration, new ConnectionSlots());
+    }
+
+    /**
+     * Creates empty burn rates on slots shared with other statistics.
+     *
+     * @param configuration The configuration.
+     * @param slots         The slots of the connections.
+     */
+    public BurnRates(SloConfiguration configuration, ConnectionSlots slots)
+    {
+        this.configuration = configuration;
+        this.budget = 1 - configuration.getObjective();
+        this.slots = slots;
+        slots.onFree(slot -> page(slot).reset(slot % PAGE_SIZE));
+    }
+
+    /**
+     * Samples the current counts of a connection into its rings. Samples less than a second after the previous one are
+     * ignored.
+     */
+    @Override
+    public void record(String source, ConnectionRollup rollup, long now)
+    {
+        int slot = slots.getOrAllocate(source, rollup);
+        Page page = page(slot);
+        int index = slot % PAGE_SIZE;
+        if (now < page.nextSample[index])
+        {
+            return;
+        }
+        page.nextSample[index] = now + 1000;
+        page.lastFine[index] = add(FINE, page.fine, index, page.lastFine[index], rollup, now);
+        page.lastCoarse[index] = add(COARSE, page.coarse, index, page.lastCoarse[index], rollup, now);
+    }
+
+    /**
+     * Gets a notice per kind (errors and timeouts) for the first alert whose long and short windows both burn the
+     * budget too fast.
+     */
+    @Override
+    public List<VizceralNotice> getNotices(String source, ConnectionRollup rollup, long now)
+    {
+        int slot = slots.get(rollup);
+        Page[] current = pages;
+        if (slot < 0 || slot / PAGE_SIZE >= current.length)
+        {
+            return Collections.emptyList();
+        }
+        Page page = current[slot / PAGE_SIZE];
+        int index = slot % PAGE_SIZE;
+        Map<Integer, long[]> windows = new HashMap<>();
+        List<VizceralNotice> notices = new ArrayList<>();
+        boolean errors = false;
+        boolean timeouts = false;
+        for (BurnRateAlert alert : configuration.getAlerts())
+        {
+            long[] longWindow = windows.computeIfAbsent(alert.getLongWindowSeconds(), window -> sum(page, index, window, now));
+            long[] shortWindow = windows.computeIfAbsent(alert.getShortWindowSeconds(), window -> sum(page, index, window, now));
+            if (!errors && isBurning(alert, longWindow, shortWindow, ERRORS))
+            {
+                notices.add(notice(alert, "Error", longWindow, shortWindow, ERRORS));
+                errors = true;
+            }
+            if (!timeouts && isBurning(alert, longWindow, shortWindow, TIMEOUTS))
+            {
+                notices.add(notice(alert, "Timeout", longWindow, shortWindow, TIMEOUTS));
+                timeouts = true;
+            }
+        }
+        return notices;
+    }
+
+    @Override
+    public void forget(String source)
+    {
+        slots.forget(source);
+    }
+
+    @Override
+    public void forget(String source, ConnectionRollup rollup)
+    {
+        slots.free(rollup);
+    }
+
+    @Override
+    public int size()
+    {
+        return slots.size();
+    }
+
+    /**
+     * Gets the ratios and burn rates of the connections over the configured windows.
+     *
+     * @param source Only the connections going out from this cluster, or null for all connections.
+     * @param now    The current time.
+     *
+     * @return The burn rates json.
+     */
+    public JsonNode toJson(String source, long now)
+    {
+        List<Connection> connections = new ArrayList<>();
+        slots.forEach((from, to, slot) ->
+        {
+            if (source == null || source.equals(from))
+            {
+                connections.add(new Connection(from, to, slot));
+            }
+        });
+        connections.sort(Comparator.comparing((Connection connection) -> connection.source).thenComparing(connection -> connection.target));
+        ObjectNode objectNode = JsonNodeFactory.instance.objectNode()
+                .put("objective", configuration.getObjective());
+        ArrayNode windowsNode = objectNode.putArray("windowsSeconds");
+        configuration.getWindowsSeconds().forEach(windowsNode::add);
+        ArrayNode connectionsNode = objectNode.putArray("connections");
+        Page[] current = pages;
+        for (Connection connection : connections)
+        {
+            if (connection.slot / PAGE_SIZE >= current.length)
+            {
+                continue;
+            }
+            ObjectNode connectionNode = connectionsNode.addObject()
+                    .put("source", connection.source)
+                    .put("target", connection.target);
+            ArrayNode windows = connectionNode.putArray("windows");
+            for (int window : configuration.getWindowsSeconds())
+            {
+                long[] sums = sum(current[connection.slot / PAGE_SIZE], connection.slot % PAGE_SIZE, window, now);
+                windows.addObject()
+                        .put("seconds", window)
+                        .put("requests", sums[TOTAL])
+                        .put("errorRatio", ratio(sums, ERRORS))
+                        .put("timeoutRatio", ratio(sums, TIMEOUTS))
+                        .put("errorBurnRate", ratio(sums, ERRORS) / budget)
+                        .put("timeoutBurnRate", ratio(sums, TIMEOUTS) / budget);
+            }
+        }
+        return objectNode;
+    }
+
+    private boolean isBurning(BurnRateAlert alert, long[] longWindow, long[] shortWindow, int counter)
+    {
+        return ratio(longWindow, counter) / budget >= alert.getBurnRate() && ratio(shortWindow, counter) / budget >= alert.getBurnRate();
+    }
+
+    private VizceralNotice notice(BurnRateAlert alert, String kind, long[] longWindow, long[] shortWindow, int counter)
+    {
+        return VizceralNotice.newBuilder()
+                .severity(alert.getSeverity())
+                .title(kind + " budget burning " + FORMAT.get().format(ratio(longWindow, counter) / budget) + "x")
+                .subtitle("over " + describe(alert.getLongWindowSeconds()) + ", " + FORMAT.get().format(ratio(shortWindow, counter) / budget)
+                        + "x over " + describe(alert.getShortWindowSeconds()))
+                .build();
+    }
+
+    private static String describe(int seconds)
+    {
+        if (seconds % 3600 == 0)
+        {
+            return seconds / 3600 + "h";
+        }
+        if (seconds % 60 == 0)
+        {
+            return seconds / 60 + "m";
+        }
+        return seconds + "s";
+    }
+
+    private static double ratio(long[] sums, int counter)
+    {
+        return sums[TOTAL] == 0 ? 0 : (double) sums[counter] / sums[TOTAL];
+    }
+
+    /**
+     * Adds the counts to the bucket of now, clearing the buckets skipped since the last sample.
+     *
+     * @return The bucket sampled last.
+     */
+    private static long add(Ring ring, int[] counts, int index, long last, ConnectionRollup rollup, long now)
+    {
+        long bucket = now / ring.millis;
+        if (bucket > last)
+        {
+            for (long skipped = Math.max(last + 1, bucket - ring.size + 1); skipped <= bucket; skipped++)
+            {
+                int offset = ring.offset(index, skipped);
+                counts[offset + TOTAL] = 0;
+                counts[offset + ERRORS] = 0;
+                counts[offset + TIMEOUTS] = 0;
+            }
+            last = bucket;
+        }
+        else if (bucket <= last - ring.size)
+        {
+            //Too old for the ring
+            return last;
+        }
+        int offset = ring.offset(index, bucket);
+        counts[offset + TOTAL] += rollup.getTotalRequests();
+        counts[offset + ERRORS] += rollup.getErrors();
+        counts[offset + TIMEOUTS] += rollup.getTimeouts();
+        return last;
+    }
+
+    private static long[] sum(Page page, int index, int windowSeconds, long now)
+    {
+        boolean fine = windowSeconds * 1000L <= FINE.size * FINE.millis;
+        Ring ring = fine ? FINE : COARSE;
+        int[] counts = fine ? page.fine : page.coarse;
+        long last = fine ? page.lastFine[index] : page.lastCoarse[index];
+        long bucket = now / ring.millis;
+        long buckets = (windowSeconds * 1000L + ring.millis - 1) / ring.millis;
+        long from = Math.max(0, Math.max(bucket - buckets + 1, last - ring.size + 1));
+        long[] sums = new long[COUNTERS];
+        for (long b = from; b <= Math.min(bucket, last); b++)
+        {
+            int offset = ring.offset(index, b);
+            sums[TOTAL] += counts[offset + TOTAL];
+            sums[ERRORS] += counts[offset + ERRORS];
+            sums[TIMEOUTS] += counts[offset + TIMEOUTS];
+        }
+        return sums;
+    }
+
+    private Page page(int slot)
+    {
+        Page[] current = pages;
+        if (slot / PAGE_SIZE < current.length)
+        {
+            return current[slot / PAGE_SIZE];
+        }
+        return grow(slot);
+    }
+
+    private synchronized Page grow(int slot)
+    {
+        while (slot / PAGE_SIZE >= pages.length)
+        {
+            Page[] grown = new Page[pages.length + 1];
+            System.arraycopy(pages, 0, grown, 0, pages.length);
+            grown[pages.length] = new Page();
+            pages = grown;
+        }
+        return pages[slot / PAGE_SIZE];
+    }
+
+    private static final class Connection
+    {
+        private final String source;
+        private final String target;
+        private final int slot;
+
+        private Connection(String source, String target, int slot)
+        {
+            this.source = source;
+            this.target = target;
+            this.slot = slot;
+        }
+    }
+
+    private static final class Ring
+    {
+        private final int size;
+        private final long millis;
+
+        private Ring(int size, long millis)
+        {
+            this.size = size;
+            this.millis = millis;
+        }
+
+        private int offset(int index, long bucket)
+        {
+            return (index * size + (int) (bucket % size)) * COUNTERS;
+        }
+    }
+
+    /**
+     * The rings of {@link #PAGE_SIZE} connections.
+     */
+    private static final class Page
+    {
+        private final int[] fine = new int[PAGE_SIZE * FINE.size * COUNTERS];
+        private final int[] coarse = new int[PAGE_SIZE * COARSE.size * COUNTERS];
+        private final long[] lastFine = new long[PAGE_SIZE];
+        private final long[] lastCoarse = new long[PAGE_SIZE];
+        private final long[] nextSample = new long[PAGE_SIZE];
+
+        private void reset(int index)
+        {
+            Arrays.fill(fine, index * FINE.size * COUNTERS, (index + 1) * FINE.size * COUNTERS, 0);
+            Arrays.fill(coarse, index * COARSE.size * COUNTERS, (index + 1) * COARSE.size * COUNTERS, 0);
+            lastFine[index] = 0;
+            lastCoarse[index] = 0;
+            nextSample[index] = 0;
+        }
+    }
+}
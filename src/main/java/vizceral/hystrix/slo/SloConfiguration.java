@@ -0,0 +1,119 @@
+package vizceral.hystrix.slo;
+
+import com.fasterxml.jackson.annotation.JsonSetter;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonPOJOBuilder;
+import vizceral.hystrix.ConfigurationException;
+import vizceral.hystrix.NoticeSeverity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Configuration for the error budget burn rates of the connections.
+ */
+@JsonDeserialize(builder = SloConfiguration.Builder.class)
+public class SloConfiguration
+{
+    private final double objective;
+    private final List<Integer> windowsSeconds;
+    private final List<BurnRateAlert> alerts;
+
+    private SloConfiguration(Builder builder)
+    {
+        objective = builder.objective == 0 ? 0.999 : builder.objective;
+        alerts = Collections.unmodifiableList(builder.alerts == null ? Arrays.asList(
+                BurnRateAlert.newBuilder().longWindowSeconds(3600).shortWindowSeconds(300).burnRate(14.4).severity(NoticeSeverity.ERROR).build(),
+                BurnRateAlert.newBuilder().longWindowSeconds(21600).shortWindowSeconds(1800).burnRate(6).severity(NoticeSeverity.WARNING).build())
+                : builder.alerts);
+        windowsSeconds = Collections.unmodifiableList(new ArrayList<>(new TreeSet<>(builder.windowsSeconds == null ? Arrays.asList(60, 300, 1800, 3600, 21600) : builder.windowsSeconds)));
+        if (objective <= 0 || objective >= 1)
+        {
+            throw new ConfigurationException("slo.objective must be larger than 0 and smaller than 1");
+        }
+        for (int window : windowsSeconds)
+        {
+            if (window <= 0 || window > BurnRates.MAX_WINDOW_SECONDS)
+            {
+                throw new ConfigurationException("slo.windowsSeconds must be between 1 and " + BurnRates.MAX_WINDOW_SECONDS);
+            }
+        }
+    }
+
+    public static Builder newBuilder()
+    {
+        return new Builder();
+    }
+
+    /**
+     * Gets the share of requests that should succeed, e.g. 0.999. The error budget is what is left. Defaults to 0.999.
+     *
+     * @return The objective.
+     */
+    public double getObjective()
+    {
+        return objective;
+    }
+
+    /**
+     * Gets the windows reported by the burn rate api. Defaults to 1 minute, 5 minutes, 30 minutes, 1 hour and 6 hours.
+     *
+     * @return Windows in seconds, ascending.
+     */
+    public List<Integer> getWindowsSeconds()
+    {
+        return windowsSeconds;
+    }
+
+    /**
+     * Gets when notices are shown, checked in order. Defaults to burning 14.4 times over 1 hour and 5 minutes (ERROR),
+     * and 6 times over 6 hours and 30 minutes (WARNING).
+     *
+     * @return The alerts.
+     */
+    public List<BurnRateAlert> getAlerts()
+    {
+        return alerts;
+    }
+
+    @JsonPOJOBuilder(withPrefix = "")
+    public static final class Builder
+    {
+        private double objective;
+        private List<Integer> windowsSeconds;
+        private List<BurnRateAlert> alerts;
+
+        private Builder()
+        {
+        }
+
+        @JsonSetter
+        public Builder objective(double val)
+        {
+            objective = val;
+            return this;
+        }
+
+        @JsonSetter
+        public Builder windowsSeconds(List<Integer> val)
+        {
+            windowsSeconds = new ArrayList<>(val);
+            return this;
+        }
+
+        @JsonSetter
+        public Builder alerts(List<BurnRateAlert> val)
+        {
+            alerts = new ArrayList<>(val);
+            return this;
+        }
+
+        public SloConfiguration build()
+        {
+            return new SloConfiguration(this);
+        }
+    }
+}
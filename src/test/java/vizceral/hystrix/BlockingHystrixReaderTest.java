@@ -0,0 +1,108 @@
+package vizceral.hystrix;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for the blocking turbine client
+ */
+public class BlockingHystrixReaderTest
+{
+    private static final String EVENT = "{\"type\":\"HystrixCommand\",\"name\":\"getFoo\",\"group\":\"foo\",\"rollingCountSuccess\":100,"
+            + "\"rollingCountFailure\":20,\"rollingCountTimeout\":10,\"requestCount\":130,\"isCircuitBreakerOpen\":false}";
+    private ServerSocket server;
+    private Configuration configuration;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        server = new ServerSocket(0);
+        configuration = TestConfiguration.load("{\"regionName\":\"test\",\"turbine\":{\"host\":\"127.0.0.1\",\"port\":" + server.getLocalPort()
+                + ",\"client\":\"blocking\"},\"entryClusters\":[\"proxy\"]}");
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        server.close();
+    }
+
+    @Test
+    public void readsChunkedEventStream() throws Exception
+    {
+        assertEquals(TurbineClient.BLOCKING, configuration.getTurbineClient());
+        Thread serverThread = serve("HTTP/1.1 200 OK\r\nContent-Type: text/event-stream\r\nTransfer-Encoding: chunked\r\n\r\n",
+                chunk(": ping\n\n") + chunk("data: " + EVENT.substring(0, 40)) + chunk(EVENT.substring(40) + "\n\n") + "0\r\n\r\n");
+
+        List<HystrixEvent> events = HystrixReader.create(configuration, "proxy").read()
+                .take(1)
+                .toList()
+                .timeout(10, TimeUnit.SECONDS)
+                .toBlocking()
+                .single();
+
+        assertEquals(1, events.size());
+        HystrixEvent event = events.get(0);
+        assertEquals("getFoo", event.getName());
+        assertEquals("foo", event.getGroup());
+        assertEquals(10, event.getRequestCount());
+        assertEquals(2, event.getErrorCount());
+        assertEquals(1, event.getTimeoutCount());
+        serverThread.join(10000);
+    }
+
+    @Test(expected = UnknownClusterException.class)
+    public void failsOnUnknownCluster() throws Exception
+    {
+        serve("HTTP/1.1 404 Not Found\r\nContent-Length: 0\r\n\r\n", "");
+
+        HystrixReader.create(configuration, "unknown").read()
+                .timeout(10, TimeUnit.SECONDS)
+                .toBlocking()
+                .first();
+    }
+
+    private Thread serve(String head, String body)
+    {
+        Thread thread = new Thread(() ->
+        {
+            try (Socket socket = server.accept())
+            {
+                BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.ISO_8859_1));
+                String line;
+                while ((line = reader.readLine()) != null && !line.isEmpty())
+                {
+                    //Consume the request
+                }
+                OutputStream out = socket.getOutputStream();
+                out.write((head + body).getBytes(StandardCharsets.UTF_8));
+                out.flush();
+                Thread.sleep(500);
+            }
+            catch (Exception e)
+            {
+                //Reader disconnected
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    private static String chunk(String data)
+    {
+        return Integer.toHexString(data.getBytes(StandardCharsets.UTF_8).length) + "\r\n" + data + "\r\n";
+    }
+}
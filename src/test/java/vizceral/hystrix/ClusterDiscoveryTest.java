@@ -0,0 +1,86 @@
+package vizceral.hystrix;
+
+import org.junit.After;
+import org.junit.Test;
+import rx.subjects.PublishSubject;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the cluster discovery queue
+ */
+public class ClusterDiscoveryTest
+{
+    private final List<String> opened = new CopyOnWriteArrayList<>();
+    private final Map<String, PublishSubject<String>> streams = new ConcurrentHashMap<>();
+    private final ClusterDiscovery discovery = new ClusterDiscovery("test-discovery", 2, cluster ->
+    {
+        opened.add(cluster);
+        PublishSubject<String> stream = PublishSubject.create();
+        streams.put(cluster, stream);
+        return stream;
+    });
+
+    @After
+    public void after()
+    {
+        discovery.stop();
+    }
+
+    @Test
+    public void opensEachClusterOnce() throws InterruptedException
+    {
+        assertTrue(discovery.discover("a"));
+        assertFalse(discovery.discover("a"));
+        waitFor(1);
+        assertEquals(1, opened.size());
+    }
+
+    @Test
+    public void limitsConcurrentOpens() throws InterruptedException
+    {
+        discovery.discover("a");
+        discovery.discover("b");
+        discovery.discover("c");
+        waitFor(2);
+        Thread.sleep(100);
+        assertEquals(2, opened.size());
+        assertEquals(1, discovery.getQueued());
+
+        streams.get("a").onCompleted();
+        waitFor(3);
+        assertEquals("c", opened.get(2));
+    }
+
+    @Test
+    public void forgottenClusterCanBeDiscoveredAgain() throws InterruptedException
+    {
+        discovery.discover("a");
+        waitFor(1);
+        discovery.forget("a");
+        long deadline = System.currentTimeMillis() + 5000;
+        while (discovery.isKnown("a") && System.currentTimeMillis() < deadline)
+        {
+            Thread.sleep(10);
+        }
+        assertTrue(discovery.discover("a"));
+    }
+
+    private void waitFor(int count) throws InterruptedException
+    {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(5);
+        while (opened.size() < count && System.currentTimeMillis() < deadline)
+        {
+            Thread.sleep(10);
+        }
+        assertEquals(count, opened.size());
+    }
+}
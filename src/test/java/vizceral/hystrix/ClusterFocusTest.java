@@ -0,0 +1,61 @@
+package vizceral.hystrix;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests for the single cluster graph
+ */
+public class ClusterFocusTest
+{
+    @Test
+    public void rendersCommandsAndTargets()
+    {
+        HystrixCluster cluster = new HystrixCluster("api", 60);
+        cluster.addEvent(event("getUser", "users", 10, false));
+        cluster.addEvent(event("getOrder", "orders", 5, true));
+
+        JsonNode json = new ClusterFocus().get(cluster);
+        assertEquals("api", json.get("name").asText());
+        assertEquals(4, json.get("nodes").size());
+        assertEquals("getOrder", json.get("nodes").get(0).get("name").asText());
+        assertEquals("danger", json.get("nodes").get(0).get("class").asText());
+        assertEquals(2, json.get("connections").size());
+        assertEquals("orders", json.get("connections").get(0).get("target").asText());
+        assertEquals(5, json.get("connections").get(0).get("metrics").get("normal").asInt());
+    }
+
+    @Test
+    public void cachesUntilClusterChanges()
+    {
+        HystrixCluster cluster = new HystrixCluster("api", 60);
+        cluster.addEvent(event("getUser", "users", 10, false));
+        ClusterFocus focus = new ClusterFocus();
+
+        JsonNode first = focus.get(cluster);
+        assertSame(first, focus.get(cluster));
+
+        cluster.addEvent(event("getUser", "users", 20, false));
+        JsonNode second = focus.get(cluster);
+        assertNotSame(first, second);
+        assertEquals(20, second.get("connections").get(0).get("metrics").get("normal").asInt());
+
+        focus.invalidate("api");
+        assertNotSame(second, focus.get(cluster));
+    }
+
+    private static HystrixEvent event(String name, String group, int requests, boolean circuitBreakerOpen)
+    {
+        return HystrixEvent.newBuilder()
+                .name(name)
+                .group(group)
+                .requestCount(requests)
+                .totalRequestCount(requests)
+                .isCircuitBreakerOpen(circuitBreakerOpen)
+                .build();
+    }
+}
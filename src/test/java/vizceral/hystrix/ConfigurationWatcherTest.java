@@ -0,0 +1,107 @@
+package vizceral.hystrix;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for reloading the configuration
+ */
+public class ConfigurationWatcherTest
+{
+    private static final String CONFIG = "{\"regionName\":\"test\",\"turbine\":{\"host\":\"127.0.0.1\",\"port\":8080},\"entryClusters\":[\"proxy\"]%s}";
+    private File directory;
+    private File configFile;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        directory = Files.createTempDirectory("config").toFile();
+        configFile = new File(directory, "config.json");
+        write("");
+    }
+
+    @After
+    public void tearDown()
+    {
+        for (File file : directory.listFiles())
+        {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void updatesReloadableSettings() throws Exception
+    {
+        Configuration configuration = Configuration.load(configFile.getAbsolutePath());
+        write(",\"timeoutPercentageThreshold\":0.5,\"entryClusters\":[\"proxy\",\"api\"],\"internetClusters\":[\"proxy\"],\"httpPort\":9000");
+
+        ConfigurationChange change = configuration.update(Configuration.load(configFile.getAbsolutePath()));
+
+        assertEquals(Arrays.asList("entryClusters", "timeoutPercentageThreshold", "internetClusters"), change.getApplied());
+        assertEquals(Collections.singletonList("httpPort"), change.getRequiresRestart());
+        assertEquals(Collections.singleton("api"), change.getAddedEntryClusters());
+        assertFalse(change.isTurbineChanged());
+        assertEquals(0.5, configuration.getTimeoutPercentageThreshold(), 0.0);
+        assertTrue(configuration.isEntryCluster("api"));
+        assertTrue(configuration.isInternetCluster("proxy"));
+        assertEquals(8081, configuration.getHttpPort());
+
+        //Loading the same file again changes nothing, the port is still reported until restarted
+        change = configuration.update(Configuration.load(configFile.getAbsolutePath()));
+        assertTrue(change.getApplied().isEmpty());
+        assertEquals(Collections.singletonList("httpPort"), change.getRequiresRestart());
+    }
+
+    @Test
+    public void detectsTurbineChange() throws Exception
+    {
+        Configuration configuration = Configuration.load(configFile.getAbsolutePath());
+        Files.write(configFile.toPath(), "{\"regionName\":\"test\",\"turbine\":{\"host\":\"10.0.0.1\",\"port\":8080},\"entryClusters\":[\"proxy\"]}".getBytes(StandardCharsets.UTF_8));
+
+        ConfigurationChange change = configuration.update(Configuration.load(configFile.getAbsolutePath()));
+
+        assertTrue(change.isTurbineChanged());
+        assertEquals("10.0.0.1", configuration.getTurbineHost());
+    }
+
+    @Test
+    public void reloadsWhenFileChanges() throws Exception
+    {
+        BlockingQueue<Configuration> reloaded = new LinkedBlockingQueue<>();
+        ConfigurationWatcher watcher = new ConfigurationWatcher(configFile.getAbsolutePath(), reloaded::add);
+        watcher.start();
+        try
+        {
+            write(",\"failurePercentageThreshold\":");
+            write(",\"failurePercentageThreshold\":0.2");
+            Configuration configuration = reloaded.poll(30, TimeUnit.SECONDS);
+            assertNotNull(configuration);
+            assertEquals(0.2, configuration.getFailurePercentageThreshold(), 0.0);
+        }
+        finally
+        {
+            watcher.stop();
+        }
+    }
+
+    private void write(String extra) throws Exception
+    {
+        Files.write(configFile.toPath(), String.format(CONFIG, extra).getBytes(StandardCharsets.UTF_8));
+    }
+}
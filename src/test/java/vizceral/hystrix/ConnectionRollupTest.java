@@ -0,0 +1,71 @@
+package vizceral.hystrix;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for the connection rollups
+ */
+public class ConnectionRollupTest
+{
+    private final HystrixCluster cluster = new HystrixCluster("api", 60);
+
+    @Test
+    public void weighsLatencyByVolume()
+    {
+        cluster.applyEvent(event("getUser", 90, new LatencyPercentiles(10, 20, 100), 1));
+        cluster.applyEvent(event("getUsers", 10, new LatencyPercentiles(110, 220, 1100), 1));
+
+        LatencyPercentiles latency = cluster.getCurrentRollup("users").getLatency();
+
+        assertEquals(20, latency.getP50());
+        assertEquals(40, latency.getP90());
+        assertEquals(200, latency.getP99());
+    }
+
+    @Test
+    public void replacesLatencyOfCommand()
+    {
+        cluster.applyEvent(event("getUser", 10, new LatencyPercentiles(10, 20, 100), 1));
+        cluster.applyEvent(event("getUser", 10, new LatencyPercentiles(30, 40, 500), 2));
+
+        assertEquals(500, cluster.getCurrentRollup("users").getLatency().getP99());
+    }
+
+    @Test
+    public void ignoresCommandsWithoutLatencyOrTraffic()
+    {
+        cluster.applyEvent(event("getUser", 10, new LatencyPercentiles(10, 20, 100), 1));
+        cluster.applyEvent(event("getUsers", 10, null, 1));
+        cluster.applyEvent(event("getGroups", 0, new LatencyPercentiles(900, 900, 900), 1));
+
+        assertEquals(100, cluster.getCurrentRollup("users").getLatency().getP99());
+    }
+
+    @Test
+    public void showsNoticeAboveLatencyThreshold() throws Exception
+    {
+        Configuration configuration = TestConfiguration.load(8080, "\"latencyThresholdMillis\":500");
+        cluster.applyEvent(event("getUser", 10, new LatencyPercentiles(100, 400, 800), 1));
+        cluster.publish();
+
+        VizceralConnection connection = cluster.getConnections(configuration).iterator().next();
+
+        assertEquals(800, connection.getLatency().getP99());
+        assertEquals(1, connection.getNotices().size());
+        assertEquals("p99 latency 800 ms", connection.getNotices().get(0).getTitle());
+    }
+
+    private static HystrixEvent event(String name, int total, LatencyPercentiles latency, long created)
+    {
+        return HystrixEvent.newBuilder()
+                .name(name)
+                .group("users")
+                .totalRequestCount(total)
+                .requestCount(total)
+                .latency(latency)
+                .created(created)
+                .build();
+    }
+}
@@ -0,0 +1,79 @@
+package vizceral.hystrix;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static vizceral.hystrix.TestSnapshots.byName;
+import static vizceral.hystrix.TestSnapshots.connection;
+import static vizceral.hystrix.TestSnapshots.names;
+import static vizceral.hystrix.TestSnapshots.snapshot;
+
+/**
+ * Tests for filtering the region graph
+ */
+public class GraphFilterTest
+{
+    //proxy -> api -> users -> db, api -> orders (circuit breaker open), batch -> db
+    private final List<ClusterSnapshot> snapshots = Arrays.asList(
+            snapshot("proxy", connection("api", 100, false)),
+            snapshot("api", connection("users", 60, false), connection("orders", 5, true)),
+            snapshot("users", connection("db", 40, false)),
+            snapshot("batch", connection("db", 2, false)),
+            snapshot("orders"),
+            snapshot("db"));
+
+    @Test
+    public void keepsEverythingWithoutParameters()
+    {
+        GraphFilter filter = GraphFilter.fromQuery(Collections.emptyMap());
+        assertTrue(filter.isEmpty());
+        assertSame(snapshots, filter.apply(snapshots));
+    }
+
+    @Test
+    public void filtersByNamePattern()
+    {
+        Collection<ClusterSnapshot> filtered = apply("cluster", "api,u*");
+        assertEquals(names("api", "users"), names(filtered));
+        ClusterSnapshot api = byName(filtered).get("api");
+        assertEquals(1, api.getConnections().size());
+        assertEquals("users", api.getConnections().iterator().next().getName());
+    }
+
+    @Test
+    public void filtersByVolumeAndStatus()
+    {
+        assertEquals(names("proxy", "api", "users", "db"), names(apply("minVolume", "40")));
+        assertEquals(names("orders"), names(apply("status", "danger")));
+    }
+
+    @Test
+    public void keepsNeighbourhood()
+    {
+        Map<String, List<String>> parameters = new HashMap<>();
+        parameters.put("around", Collections.singletonList("users"));
+        assertEquals(names("api", "users", "db"), names(GraphFilter.fromQuery(parameters).apply(snapshots)));
+        parameters.put("hops", Collections.singletonList("2"));
+        assertEquals(names("proxy", "api", "users", "orders", "db", "batch"), names(GraphFilter.fromQuery(parameters).apply(snapshots)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownStatus()
+    {
+        apply("status", "purple");
+    }
+
+    private Collection<ClusterSnapshot> apply(String key, String value)
+    {
+        return GraphFilter.fromQuery(Collections.singletonMap(key, Collections.singletonList(value))).apply(snapshots);
+    }
+}
@@ -0,0 +1,55 @@
+package vizceral.hystrix;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the binary graph formats
+ */
+public class GraphFormatTest
+{
+    @Test
+    public void negotiatesFromAcceptHeader()
+    {
+        assertEquals(GraphFormat.JSON, GraphFormat.negotiate(null));
+        assertEquals(GraphFormat.JSON, GraphFormat.negotiate("*/*"));
+        assertEquals(GraphFormat.JSON, GraphFormat.negotiate("text/html, application/json"));
+        assertEquals(GraphFormat.SMILE, GraphFormat.negotiate("application/x-jackson-smile"));
+        assertEquals(GraphFormat.CBOR, GraphFormat.negotiate("application/json;q=0.5, application/cbor"));
+        assertEquals(GraphFormat.JSON, GraphFormat.negotiate("application/json, application/cbor"));
+        assertEquals(GraphFormat.JSON, GraphFormat.negotiate("application/cbor;q=0"));
+        assertEquals(GraphFormat.SMILE, GraphFormat.fromContentType("application/x-jackson-smile; charset=binary"));
+        assertEquals(GraphFormat.JSON, GraphFormat.fromContentType(null));
+    }
+
+    @Test
+    public void binaryFormatsRoundTripAndAreSmaller() throws Exception
+    {
+        ObjectNode graph = JsonNodeFactory.instance.objectNode().put("renderer", "region").put("name", "eu-west-1");
+        ArrayNode connections = graph.putArray("connections");
+        for (int i = 0; i < 100; i++)
+        {
+            ObjectNode connection = connections.addObject()
+                    .put("source", "cluster-" + i)
+                    .put("target", "cluster-" + (i + 1));
+            connection.putObject("metrics").put("normal", i * 10).put("warning", i).put("danger", 0);
+        }
+        RenderedGraph rendered = new RenderedGraph(graph);
+        byte[] json = rendered.getBytes(GraphFormat.JSON);
+        for (GraphFormat format : new GraphFormat[]{GraphFormat.SMILE, GraphFormat.CBOR})
+        {
+            byte[] encoded = rendered.getBytes(format);
+            assertSame(encoded, rendered.getBytes(format));
+            assertTrue(format + " should be smaller than json", encoded.length < json.length);
+            JsonNode decoded = format.read(encoded);
+            assertEquals(graph, decoded);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package vizceral.hystrix;
+
+import java.util.Random;
+
+/**
+ * Measures the cost of mapping the group of one event with a large rule set, with and without the cache of resolved
+ * groups. Not a test, run the main method by hand, e.g.
+ * <pre>mvn test-compile exec:java -Dexec.mainClass=vizceral.hystrix.GroupMatcherBenchmark -Dexec.classpathScope=test</pre>
+ */
+public class GroupMatcherBenchmark
+{
+    private static final int RULES = 500;
+    private static final int GROUPS = 2000;
+    private static final int EVENTS = 5_000_000;
+
+    public static void main(String[] args)
+    {
+        GroupMatcher.Builder builder = GroupMatcher.newBuilder();
+        for (int i = 0; i < RULES; i++)
+        {
+            builder.group("hystrix-exact-" + i, "exact-" + i)
+                    .groupPrefix("hystrix-prefix-" + i + "-", "prefix-" + i)
+                    .groupSuffix("-suffix-" + i, "suffix-" + i);
+        }
+        for (int i = 0; i < RULES / 10; i++)
+        {
+            builder.groupPattern("hystrix-pattern" + i + "-(.+)-(prod|staging)", "$1-" + i);
+        }
+        GroupMatcher cached = builder.build();
+        GroupMatcher uncached = builder.cacheSize(0).build();
+
+        //Events from a fixed set of groups, mixing all kinds of rules and groups no rule matches
+        String[] groups = new String[GROUPS];
+        Random random = new Random(42);
+        for (int i = 0; i < GROUPS; i++)
+        {
+            int rule = random.nextInt(RULES);
+            switch (i % 5)
+            {
+                case 0:
+                    groups[i] = "hystrix-exact-" + rule;
+                    break;
+                case 1:
+                    groups[i] = "hystrix-prefix-" + rule + "-service" + i;
+                    break;
+                case 2:
+                    groups[i] = "service" + i + "-suffix-" + rule;
+                    break;
+                case 3:
+                    groups[i] = "hystrix-pattern" + rule % (RULES / 10) + "-service" + i + "-prod";
+                    break;
+                default:
+                    groups[i] = "unmapped-service" + i;
+                    break;
+            }
+        }
+
+        for (int round = 0; round < 3; round++)
+        {
+            run("cached", cached, groups);
+            run("uncached", uncached, groups);
+        }
+    }
+
+    private static void run(String name, GroupMatcher matcher, String[] groups)
+    {
+        long start = System.nanoTime();
+        int length = 0;
+        for (int i = 0; i < EVENTS; i++)
+        {
+            length += matcher.getCluster(groups[i % groups.length]).length();
+        }
+        long nanos = System.nanoTime() - start;
+        System.out.printf("%-8s %8.1f ns/event (%d)%n", name, (double) nanos / EVENTS, length);
+    }
+}
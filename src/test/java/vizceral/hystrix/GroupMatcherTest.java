@@ -0,0 +1,131 @@
+package vizceral.hystrix;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for mapping hystrix groups to clusters
+ */
+public class GroupMatcherTest
+{
+    @Test
+    public void keepsUnmatchedGroups()
+    {
+        GroupMatcher matcher = GroupMatcher.newBuilder().build();
+
+        assertTrue(matcher.isEmpty());
+        assertEquals("Foo", matcher.getCluster("Foo"));
+    }
+
+    @Test
+    public void matchesExactGroupsCaseInsensitive()
+    {
+        GroupMatcher matcher = GroupMatcher.newBuilder()
+                .group("Hystrix-Prod-Proxy", "prod-proxy")
+                .build();
+
+        assertEquals("prod-proxy", matcher.getCluster("hystrix-prod-proxy"));
+        assertEquals("prod-proxy", matcher.getCluster("HYSTRIX-PROD-PROXY"));
+    }
+
+    @Test
+    public void prefersLongestPrefix()
+    {
+        GroupMatcher matcher = GroupMatcher.newBuilder()
+                .groupPrefix("hystrix-", "generic")
+                .groupPrefix("hystrix-billing-", "billing")
+                .build();
+
+        assertEquals("billing", matcher.getCluster("hystrix-billing-prod"));
+        assertEquals("generic", matcher.getCluster("hystrix-search-prod"));
+        assertEquals("hystrix", matcher.getCluster("hystrix"));
+    }
+
+    @Test
+    public void appliesRulesInOrderOfPrecedence()
+    {
+        GroupMatcher matcher = GroupMatcher.newBuilder()
+                .groupPattern("hystrix-(.+)-(prod|staging)", "$2-$1")
+                .groupSuffix("-payments-prod", "payments")
+                .groupPrefix("hystrix-payments-", "payments-prefix")
+                .group("hystrix-payments-prod", "payments-exact")
+                .build();
+
+        assertEquals("payments-exact", matcher.getCluster("hystrix-payments-prod"));
+        assertEquals("payments-prefix", matcher.getCluster("hystrix-payments-staging"));
+        assertEquals("payments", matcher.getCluster("legacy-payments-prod"));
+        assertEquals("staging-search", matcher.getCluster("hystrix-search-staging"));
+        assertEquals("hystrix-search-test", matcher.getCluster("hystrix-search-test"));
+    }
+
+    @Test
+    public void firstPatternWins()
+    {
+        GroupMatcher matcher = GroupMatcher.newBuilder()
+                .groupPattern("(a+)-(b+)", "first-$2")
+                .groupPattern("(a)(.*)", "second$1")
+                .build();
+
+        assertEquals("first-bb", matcher.getCluster("aa-bb"));
+        assertEquals("seconda", matcher.getCluster("a-c"));
+    }
+
+    @Test
+    public void keepsBackreferencesAndNamedGroupsOfEachPattern()
+    {
+        GroupMatcher matcher = GroupMatcher.newBuilder()
+                .groupPattern("(a+)-\\1", "x$1")
+                .groupPattern("(?<env>prod|test)-(?<name>.+)", "${name}-${env}")
+                .groupPattern("(?<env>staging)-(?<name>.+)", "${name}")
+                .build();
+
+        assertEquals("xaa", matcher.getCluster("aa-aa"));
+        assertEquals("aa-a", matcher.getCluster("aa-a"));
+        assertEquals("search-prod", matcher.getCluster("prod-search"));
+        assertEquals("search", matcher.getCluster("staging-search"));
+    }
+
+    @Test
+    public void boundsCache()
+    {
+        GroupMatcher matcher = GroupMatcher.newBuilder()
+                .groupPrefix("a", "cluster")
+                .cacheSize(10)
+                .build();
+
+        for (int i = 0; i < 25; i++)
+        {
+            assertEquals("cluster", matcher.getCluster("a" + i));
+        }
+
+        assertTrue(matcher.getCacheCount() <= 10);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsDuplicatePrefix()
+    {
+        GroupMatcher.newBuilder()
+                .groupPrefix("foo", "a")
+                .groupPrefix("FOO", "b");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsInvalidPattern()
+    {
+        GroupMatcher.newBuilder().groupPattern("(foo", "a");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownGroupReference()
+    {
+        GroupMatcher.newBuilder().groupPattern("(foo)", "$2");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownNamedGroupReference()
+    {
+        GroupMatcher.newBuilder().groupPattern("(?<env>foo)", "${name}");
+    }
+}
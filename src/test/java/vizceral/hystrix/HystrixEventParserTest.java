@@ -0,0 +1,75 @@
+package vizceral.hystrix;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for parsing hystrix events
+ */
+public class HystrixEventParserTest
+{
+    private static final String LATENCY = "{\"0\":1,\"25\":3,\"50\":5,\"75\":9,\"90\":14,\"95\":21,\"99\":48,\"99.5\":60,\"100\":112}";
+    private HystrixEventParser parser;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        parser = new HystrixEventParser(TestConfiguration.load(8080, "\"hystrixGroupToCluster\":[{\"group\":\"FooClient\",\"cluster\":\"foo\"}]"));
+    }
+
+    @Test
+    public void parsesCountsAndLatency()
+    {
+        HystrixEvent event = parser.parse("{\"rollingCountSuccess\":100,\"latencyExecute\":{\"50\":1,\"90\":2,\"99\":3},"
+                + "\"latencyTotal\":" + LATENCY + ",\"type\":\"HystrixCommand\",\"name\":\"getFoo\",\"group\":\"FooClient\","
+                + "\"rollingCountFailure\":20,\"rollingCountSemaphoreRejected\":10,\"rollingCountThreadPoolRejected\":10,"
+                + "\"rollingCountTimeout\":10,\"requestCount\":150,\"isCircuitBreakerOpen\":true,\"propertyValue_metricsRollingStatisticalWindowInMilliseconds\":10000}");
+
+        assertEquals("getFoo", event.getName());
+        assertEquals("foo", event.getGroup());
+        assertEquals(10, event.getRequestCount());
+        assertEquals(3, event.getErrorCount());
+        assertEquals(1, event.getTimeoutCount());
+        assertEquals(2, event.getRejectedCount());
+        assertEquals(15, event.getTotalRequestCount());
+        assertTrue(event.isCircuitBreakerOpen());
+        assertEquals(5, event.getLatency().getP50());
+        assertEquals(14, event.getLatency().getP90());
+        assertEquals(48, event.getLatency().getP99());
+    }
+
+    @Test
+    public void fallsBackToExecuteLatency()
+    {
+        HystrixEvent event = parser.parse("{\"type\":\"HystrixCommand\",\"name\":\"getFoo\",\"group\":\"foo\",\"latencyExecute\":" + LATENCY + "}");
+
+        assertEquals(48, event.getLatency().getP99());
+    }
+
+    @Test
+    public void parsesEventsWithoutLatency()
+    {
+        HystrixEvent event = parser.parse("{\"type\":\"HystrixCommand\",\"name\":\"getFoo\",\"group\":\"foo\",\"requestCount\":100}");
+
+        assertEquals(10, event.getTotalRequestCount());
+        assertNull(event.getLatency());
+    }
+
+    @Test
+    public void skipsOtherEvents()
+    {
+        assertNull(parser.parse("{\"type\":\"HystrixThreadPool\",\"name\":\"foo\",\"currentActiveCount\":1}"));
+        assertNull(parser.parse("{\"type\":\"HystrixCommand\",\"name\":\"getFoo\",\"requestCount\":100}"));
+        assertNull(parser.parse("{\"type\":\"HystrixCommand\""));
+    }
+
+    @Test
+    public void skipsEventsOfReservedGroup()
+    {
+        assertNull(parser.parse("{\"type\":\"HystrixCommand\",\"name\":\"getFoo\",\"group\":\"" + TopConnections.OTHER + "\",\"requestCount\":100}"));
+    }
+}
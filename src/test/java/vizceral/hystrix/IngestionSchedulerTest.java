@@ -0,0 +1,71 @@
+package vizceral.hystrix;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the sharded ingestion
+ */
+public class IngestionSchedulerTest
+{
+    private final IngestionScheduler scheduler = new IngestionScheduler("test-ingest", 4);
+
+    @After
+    public void after()
+    {
+        scheduler.stop();
+    }
+
+    @Test
+    public void changesFromManyThreadsAreAppliedAndPublished() throws InterruptedException
+    {
+        HystrixCluster cluster = new HystrixCluster("cluster", 60);
+        int threads = 8;
+        int eventsPerThread = 1000;
+        CountDownLatch applied = new CountDownLatch(threads * eventsPerThread);
+        for (int t = 0; t < threads; t++)
+        {
+            String command = "command" + t;
+            new Thread(() ->
+            {
+                for (int i = 1; i <= eventsPerThread; i++)
+                {
+                    HystrixEvent event = HystrixEvent.newBuilder().name(command).group("target").totalRequestCount(i).requestCount(i).build();
+                    scheduler.submit(cluster, writer ->
+                    {
+                        writer.applyEvent(event);
+                        applied.countDown();
+                    });
+                }
+            }).start();
+        }
+        assertTrue(applied.await(10, TimeUnit.SECONDS));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (cluster.getSumOfOutgoingRequests() < threads * eventsPerThread && System.currentTimeMillis() < deadline)
+        {
+            Thread.sleep(10);
+        }
+        assertEquals(threads, cluster.getEvents().size());
+        assertEquals(threads * eventsPerThread, cluster.getSumOfOutgoingRequests());
+        assertEquals(threads * eventsPerThread, cluster.getRollup("target").getRequests());
+    }
+
+    @Test
+    public void keepsApplyingChangesAfterAnError() throws InterruptedException
+    {
+        HystrixCluster cluster = new HystrixCluster("cluster", 60);
+        CountDownLatch applied = new CountDownLatch(1);
+        scheduler.submit(cluster, writer ->
+        {
+            throw new AssertionError("broken change");
+        });
+        scheduler.submit(cluster, writer -> applied.countDown());
+        assertTrue(applied.await(5, TimeUnit.SECONDS));
+    }
+}
@@ -46,4 +46,17 @@ public class MaxVolumeTest
         Thread.sleep(2000);
         assertEquals(0, cluster.getMaxValue());
     }
+
+    @Test
+    public void removedCommandNoLongerCountsTowardsCurrentVolume()
+    {
+        HystrixEvent event = HystrixEvent.newBuilder().name(command1).group("target").totalRequestCount(10).build();
+        cluster.addEvent(event);
+        cluster.addEvent(HystrixEvent.newBuilder().name(command2).group("target").totalRequestCount(3).build());
+        cluster.removeEvent(event);
+        assertEquals(3, cluster.getSumOfOutgoingRequests());
+        assertEquals(1, cluster.getRollup("target").getCommands());
+        //Max is still kept from when the command was alive
+        assertEquals(13, cluster.getMaxValue());
+    }
 }
@@ -0,0 +1,96 @@
+package vizceral.hystrix;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import rx.Observable;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the region threads
+ */
+public class RegionThreadsTest
+{
+    private static final String EVENT = "{\"type\":\"HystrixCommand\",\"name\":\"getFoo\",\"group\":\"foo\",\"rollingCountSuccess\":100,"
+            + "\"rollingCountFailure\":0,\"rollingCountTimeout\":0,\"requestCount\":100,\"isCircuitBreakerOpen\":false}";
+    private ServerSocket server;
+    private Configuration configuration;
+    private RegionThreads threads;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        server = new ServerSocket(0);
+        configuration = TestConfiguration.load(server.getLocalPort(), "");
+        threads = new RegionThreads("region-test", 1);
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        threads.stop();
+        server.close();
+    }
+
+    @Test
+    public void readsStreamOnRegionEventLoop() throws Exception
+    {
+        serve();
+
+        String thread = HystrixReader.create(configuration, "proxy", threads).read()
+                .map(event -> Thread.currentThread().getName())
+                .timeout(10, TimeUnit.SECONDS)
+                .toBlocking()
+                .first();
+
+        assertTrue(thread, thread.startsWith("region-test-loop"));
+    }
+
+    @Test
+    public void runsTimersOnRegionScheduler()
+    {
+        String thread = Observable.timer(10, TimeUnit.MILLISECONDS, threads.getScheduler())
+                .map(ignore -> Thread.currentThread().getName())
+                .toBlocking()
+                .single();
+
+        assertTrue(thread, thread.startsWith("region-test-scheduler"));
+        assertEquals(0, threads.getSchedulerQueueDepth());
+    }
+
+    private void serve()
+    {
+        Thread thread = new Thread(() ->
+        {
+            try (Socket socket = server.accept())
+            {
+                BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.ISO_8859_1));
+                String line;
+                while ((line = reader.readLine()) != null && !line.isEmpty())
+                {
+                    //Consume the request
+                }
+                OutputStream out = socket.getOutputStream();
+                out.write(("HTTP/1.1 200 OK\r\nContent-Type: text/event-stream\r\n\r\ndata: " + EVENT + "\n\n").getBytes(StandardCharsets.UTF_8));
+                out.flush();
+                Thread.sleep(2000);
+            }
+            catch (Exception e)
+            {
+                //Reader disconnected
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+    }
+}
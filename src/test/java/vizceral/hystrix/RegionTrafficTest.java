@@ -0,0 +1,117 @@
+package vizceral.hystrix;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests for the traffic between regions
+ */
+public class RegionTrafficTest
+{
+    private Configuration configuration;
+    private RegionTraffic traffic;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        configuration = TestConfiguration.load("{\"regionName\":\"eu-west-1\",\"turbine\":{\"host\":\"127.0.0.1\",\"port\":8080},\"entryClusters\":[\"proxy\"],"
+                + "\"groupToRegion\":[{\"group\":\"payments\",\"region\":\"us-east-1\"},{\"groupPrefix\":\"us-\",\"region\":\"us-east-1\"},"
+                + "{\"groupPrefix\":\"us-local-\",\"region\":\"eu-west-1\"}]}");
+        traffic = new RegionTraffic(configuration);
+    }
+
+    @Test
+    public void mapsGroupsToRegions()
+    {
+        assertEquals("us-east-1", configuration.getRegionForGroup("payments"));
+        assertEquals("us-east-1", configuration.getRegionForGroup("us-search"));
+        assertNull(configuration.getRegionForGroup("us-local-cache"));
+        assertNull(configuration.getRegionForGroup("orders"));
+    }
+
+    @Test
+    public void keepsTotalsAsEventsAreReplaced()
+    {
+        HystrixEvent first = event("charge", "payments", 10, 1, 2);
+        HystrixEvent second = event("search", "us-search", 5, 0, 0);
+        HystrixEvent local = event("order", "orders", 100, 0, 0);
+        traffic.replace(null, first);
+        traffic.replace(null, second);
+        traffic.replace(null, local);
+        assertTraffic(15, 1, 2);
+
+        HystrixEvent replacement = event("charge", "payments", 20, 3, 0);
+        traffic.replace(first, replacement);
+        assertTraffic(25, 3, 0);
+
+        traffic.replace(second, null);
+        traffic.replace(replacement, null);
+        assertTraffic(0, 0, 0);
+    }
+
+    @Test
+    public void removesEventsFromTheRegionTheyWereCountedForAfterReload() throws Exception
+    {
+        HystrixEvent charge = event("charge", "payments", 10, 1, 2);
+        HystrixEvent order = event("order", "orders", 100, 0, 0);
+        traffic.replace(null, charge);
+        traffic.replace(null, order);
+
+        configuration.update(TestConfiguration.load("{\"regionName\":\"eu-west-1\",\"turbine\":{\"host\":\"127.0.0.1\",\"port\":8080},"
+                + "\"entryClusters\":[\"proxy\"],\"groupToRegion\":[{\"group\":\"orders\",\"region\":\"us-east-1\"}]}"));
+        assertNull(configuration.getRegionForGroup("payments"));
+        assertTraffic(10, 1, 2);
+
+        HystrixEvent nextCharge = event("charge", "payments", 20, 0, 0);
+        HystrixEvent nextOrder = event("order", "orders", 50, 0, 0);
+        traffic.replace(charge, nextCharge);
+        traffic.replace(order, nextOrder);
+        assertTraffic(50, 0, 0);
+
+        traffic.replace(nextCharge, null);
+        traffic.replace(nextOrder, null);
+        assertTraffic(0, 0, 0);
+    }
+
+    @Test
+    public void sumsSources()
+    {
+        traffic.replace(null, event("charge", "payments", 10, 1, 2));
+        List<VizceralConnection> other = Arrays.asList(new VizceralConnection("us-east-1", 1, 5, 0, false, null),
+                new VizceralConnection("ap-south-1", 0, 7, 0, false, null));
+        VizceralConnection[] sum = RegionTraffic.sum(Arrays.asList(traffic.getConnections(), other)).toArray(new VizceralConnection[0]);
+        assertEquals(2, sum.length);
+        assertEquals("us-east-1", sum[0].getName());
+        assertEquals(15, sum[0].getRequests());
+        assertEquals(2, sum[0].getErrors());
+        assertEquals(7, sum[1].getRequests());
+    }
+
+    private void assertTraffic(int requests, int errors, int timeouts)
+    {
+        List<VizceralConnection> connections = traffic.getConnections();
+        assertEquals(1, connections.size());
+        assertEquals("us-east-1", connections.get(0).getName());
+        assertEquals(requests, connections.get(0).getRequests());
+        assertEquals(errors, connections.get(0).getErrors());
+        assertEquals(timeouts, connections.get(0).getTimeouts());
+    }
+
+    private static HystrixEvent event(String name, String group, int requests, int errors, int timeouts)
+    {
+        return HystrixEvent.newBuilder()
+                .name(name)
+                .group(group)
+                .requestCount(requests)
+                .errorCount(errors)
+                .timeoutCount(timeouts)
+                .totalRequestCount(requests + errors + timeouts)
+                .build();
+    }
+}
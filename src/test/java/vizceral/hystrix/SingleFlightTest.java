@@ -0,0 +1,133 @@
+package vizceral.hystrix;
+
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for coalescing renderings
+ */
+public class SingleFlightTest
+{
+    @Test
+    public void sharesComputationInFlight() throws Exception
+    {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>(0);
+        AtomicInteger computations = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<CompletableFuture<String>> first = CompletableFuture.supplyAsync(() -> singleFlight.get("graph", () ->
+        {
+            computations.incrementAndGet();
+            started.countDown();
+            await(release);
+            return "rendered";
+        }));
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        CompletableFuture<String> second = singleFlight.get("graph", () ->
+        {
+            computations.incrementAndGet();
+            return "again";
+        });
+        assertFalse(second.isDone());
+        release.countDown();
+
+        assertEquals("rendered", second.get(10, TimeUnit.SECONDS));
+        assertEquals("rendered", first.get(10, TimeUnit.SECONDS).get());
+        assertEquals(1, computations.get());
+        //Nothing is kept without staleness
+        assertEquals("new", singleFlight.get("graph", () -> "new").get());
+        assertEquals(0, singleFlight.size());
+    }
+
+    @Test
+    public void reusesResultUntilStale() throws Exception
+    {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>(200);
+        assertEquals("first", singleFlight.get("graph", () -> "first").get());
+        assertEquals("first", singleFlight.get("graph", () -> "second").get());
+        assertEquals("other", singleFlight.get("other", () -> "other").get());
+        Thread.sleep(300);
+        assertEquals("third", singleFlight.get("graph", () -> "third").get());
+    }
+
+    @Test
+    public void doesNotKeepFailures() throws Exception
+    {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>(10000);
+        CompletableFuture<String> failed = singleFlight.get("graph", () ->
+        {
+            throw new IllegalArgumentException("bad");
+        });
+        try
+        {
+            failed.get();
+            fail("Expected failure");
+        }
+        catch (ExecutionException e)
+        {
+            assertTrue(e.getCause() instanceof IllegalArgumentException);
+        }
+        assertEquals("ok", singleFlight.get("graph", () -> "ok").get());
+    }
+
+    @Test
+    public void failsWaitingCallersOnError() throws Exception
+    {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>(10000);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<CompletableFuture<String>> first = CompletableFuture.supplyAsync(() -> singleFlight.get("graph", () ->
+        {
+            started.countDown();
+            await(release);
+            throw new StackOverflowError();
+        }));
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        CompletableFuture<String> second = singleFlight.get("graph", () -> "again");
+        release.countDown();
+
+        try
+        {
+            second.get(10, TimeUnit.SECONDS);
+            fail("Expected failure");
+        }
+        catch (ExecutionException e)
+        {
+            assertTrue(e.getCause() instanceof StackOverflowError);
+        }
+        try
+        {
+            first.get(10, TimeUnit.SECONDS);
+            fail("Expected failure");
+        }
+        catch (ExecutionException e)
+        {
+            assertTrue(e.getCause() instanceof StackOverflowError);
+        }
+        assertEquals(0, singleFlight.size());
+        assertEquals("ok", singleFlight.get("graph", () -> "ok").get());
+    }
+
+    private static void await(CountDownLatch latch)
+    {
+        try
+        {
+            latch.await(10, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package vizceral.hystrix;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests for the maps of published snapshots
+ */
+public class SnapshotMapTest
+{
+    @Test
+    public void appliesChangesToNewVersionOnly()
+    {
+        Map<String, Integer> changes = new HashMap<>();
+        for (int i = 0; i < 200; i++)
+        {
+            changes.put("command" + i, i);
+        }
+        SnapshotMap<Integer> first = SnapshotMap.<Integer>empty().with(changes);
+        changes.clear();
+        changes.put("command1", 1000);
+        changes.put("command2", null);
+        changes.put("command300", 300);
+
+        SnapshotMap<Integer> second = first.with(changes);
+
+        assertEquals(200, first.values().size());
+        assertEquals(Integer.valueOf(1), first.get("command1"));
+        assertEquals(Integer.valueOf(2), first.get("command2"));
+        assertEquals(200, second.values().size());
+        assertEquals(200, new HashSet<>(second.values()).size());
+        assertEquals(Integer.valueOf(1000), second.get("command1"));
+        assertNull(second.get("command2"));
+        assertEquals(Integer.valueOf(300), second.get("command300"));
+    }
+
+    @Test
+    public void unchangedVersionIsShared()
+    {
+        SnapshotMap<Integer> map = SnapshotMap.<Integer>empty().with(Collections.singletonMap("getUser", 1));
+
+        assertSame(map, map.with(Collections.emptyMap()));
+        assertEquals(0, map.with(Collections.singletonMap("getUser", null)).values().size());
+    }
+
+    @Test
+    public void publishesOnlyChangedRollups()
+    {
+        HystrixCluster cluster = new HystrixCluster("api", 60);
+        cluster.addEvent(HystrixEvent.newBuilder().name("getUser").group("users").totalRequestCount(10).created(1).build());
+        cluster.addEvent(HystrixEvent.newBuilder().name("getRow").group("db").totalRequestCount(20).created(1).build());
+        ConnectionRollup users = cluster.getRollup("users");
+
+        cluster.addEvent(HystrixEvent.newBuilder().name("getRow").group("db").totalRequestCount(30).created(2).build());
+
+        assertSame(users, cluster.getRollup("users"));
+        assertEquals(30, cluster.getRollup("db").getTotalRequests());
+        assertEquals(2, cluster.getRollups().size());
+    }
+}
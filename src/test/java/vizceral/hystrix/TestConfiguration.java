@@ -0,0 +1,55 @@
+package vizceral.hystrix;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Loads configurations for tests from json, through a temporary configuration file.
+ */
+public final class TestConfiguration
+{
+    private TestConfiguration()
+    {
+    }
+
+    /**
+     * Loads the configuration of region test, with turbine on 127.0.0.1 and proxy as entry cluster.
+     *
+     * @param turbinePort The port of turbine.
+     * @param keys        More top level keys, e.g. {@code "commandTtlSeconds":10}, or empty.
+     *
+     * @return The configuration.
+     *
+     * @throws IOException If the temporary file could not be written.
+     */
+    public static Configuration load(int turbinePort, String keys) throws IOException
+    {
+        return load("{\"regionName\":\"test\",\"turbine\":{\"host\":\"127.0.0.1\",\"port\":" + turbinePort + "},\"entryClusters\":[\"proxy\"]"
+                + (keys.isEmpty() ? "" : "," + keys) + "}");
+    }
+
+    /**
+     * Loads a configuration.
+     *
+     * @param json The whole configuration.
+     *
+     * @return The configuration.
+     *
+     * @throws IOException If the temporary file could not be written.
+     */
+    public static Configuration load(String json) throws IOException
+    {
+        File configFile = File.createTempFile("config", ".json");
+        try
+        {
+            Files.write(configFile.toPath(), json.getBytes(StandardCharsets.UTF_8));
+            return Configuration.load(configFile.getAbsolutePath());
+        }
+        finally
+        {
+            configFile.delete();
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package vizceral.hystrix;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Cluster snapshots and helpers shared by the tests working on rendered graphs.
+ */
+public final class TestSnapshots
+{
+    private TestSnapshots()
+    {
+    }
+
+    /**
+     * Gets a small region graph: proxy -> api -> users -> db, api -> orders (circuit breaker open), api -> cache,
+     * batch -> db and batch -> users.
+     *
+     * @return The snapshots.
+     */
+    public static List<ClusterSnapshot> region()
+    {
+        return Arrays.asList(
+                snapshot("proxy", connection("api", 100, false)),
+                snapshot("api", connection("users", 60, false), connection("orders", 5, true), connection("cache", 3, false)),
+                snapshot("users", connection("db", 40, false)),
+                snapshot("batch", connection("db", 2, false), connection("users", 1, false)),
+                snapshot("orders"),
+                snapshot("cache"),
+                snapshot("db"));
+    }
+
+    /**
+     * Creates a snapshot with the given connections.
+     *
+     * @param name        The name of the cluster.
+     * @param connections The connections going out from the cluster.
+     *
+     * @return The snapshot.
+     */
+    public static ClusterSnapshot snapshot(String name, VizceralConnection... connections)
+    {
+        int outgoing = Arrays.stream(connections).mapToInt(VizceralConnection::getRequests).sum();
+        return ClusterSnapshot.newBuilder()
+                .name(name)
+                .connections(new ArrayList<>(Arrays.asList(connections)))
+                .outgoingRequests(outgoing)
+                .build();
+    }
+
+    /**
+     * Creates a snapshot with one connection, as published at a given time.
+     *
+     * @param name     The name of the cluster.
+     * @param target   The target of the connection.
+     * @param requests The requests on the connection.
+     * @param updated  When the snapshot was updated.
+     *
+     * @return The snapshot.
+     */
+    public static ClusterSnapshot snapshot(String name, String target, int requests, long updated)
+    {
+        return ClusterSnapshot.newBuilder()
+                .name(name)
+                .connections(new ArrayList<>(Collections.singletonList(connection(target, requests, false))))
+                .maxValue(requests)
+                .outgoingRequests(requests)
+                .updated(updated)
+                .build();
+    }
+
+    /**
+     * Creates a connection without errors, timeouts or notices.
+     *
+     * @param target             The target of the connection.
+     * @param requests           The requests on the connection.
+     * @param circuitBreakerOpen If the circuit breaker is open.
+     *
+     * @return The connection.
+     */
+    public static VizceralConnection connection(String target, int requests, boolean circuitBreakerOpen)
+    {
+        return new VizceralConnection(target, 0, requests, 0, circuitBreakerOpen, Collections.emptyList());
+    }
+
+    /**
+     * Gets a sorted set of names.
+     *
+     * @param names The names.
+     *
+     * @return The set.
+     */
+    public static Set<String> names(String... names)
+    {
+        return new TreeSet<>(Arrays.asList(names));
+    }
+
+    /**
+     * Gets the sorted names of snapshots.
+     *
+     * @param snapshots The snapshots.
+     *
+     * @return The names.
+     */
+    public static Set<String> names(Collection<ClusterSnapshot> snapshots)
+    {
+        return new TreeSet<>(byName(snapshots).keySet());
+    }
+
+    /**
+     * Gets the sorted targets of the connections of a snapshot.
+     *
+     * @param snapshot The snapshot.
+     *
+     * @return The targets.
+     */
+    public static Set<String> targets(ClusterSnapshot snapshot)
+    {
+        Set<String> targets = new TreeSet<>();
+        for (VizceralConnection connection : snapshot.getConnections())
+        {
+            targets.add(connection.getName());
+        }
+        return targets;
+    }
+
+    /**
+     * Finds a connection of a snapshot.
+     *
+     * @param snapshot The snapshot.
+     * @param target   The target of the connection.
+     *
+     * @return The connection, or null if there is none towards the target.
+     */
+    public static VizceralConnection find(ClusterSnapshot snapshot, String target)
+    {
+        return snapshot.getConnections().stream().filter(c -> c.getName().equals(target)).findFirst().orElse(null);
+    }
+
+    /**
+     * Gets snapshots by name.
+     *
+     * @param snapshots The snapshots.
+     *
+     * @return The snapshots by name.
+     */
+    public static Map<String, ClusterSnapshot> byName(Collection<ClusterSnapshot> snapshots)
+    {
+        Map<String, ClusterSnapshot> byName = new HashMap<>();
+        for (ClusterSnapshot snapshot : snapshots)
+        {
+            byName.put(snapshot.getName(), snapshot);
+        }
+        return byName;
+    }
+}
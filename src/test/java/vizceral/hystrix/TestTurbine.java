@@ -0,0 +1,206 @@
+package vizceral.hystrix;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * A turbine on a local port for the tests running a whole aggregator. Each stream sends the events of its cluster
+ * every 100ms until the reader disconnects, clusters without events are answered with 404.
+ */
+public final class TestTurbine implements Closeable
+{
+    private static final long TIMEOUT_MILLIS = 10000;
+    private final ServerSocket server;
+    private final Map<String, List<String>> events = new ConcurrentHashMap<>();
+    private final List<String> opened = new CopyOnWriteArrayList<>();
+    private final List<Socket> sockets = new CopyOnWriteArrayList<>();
+    private volatile CountDownLatch held = new CountDownLatch(0);
+
+    /**
+     * Starts a turbine on a free port.
+     *
+     * @throws IOException If no port could be bound.
+     */
+    public TestTurbine() throws IOException
+    {
+        server = new ServerSocket(0);
+        Thread thread = new Thread(this::accept, "test-turbine");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Loads the configuration of region test, reading from this turbine with the blocking client and with proxy as
+     * entry cluster.
+     *
+     * @param keys More top level keys, e.g. {@code "commandTtlSeconds":10}, or empty.
+     *
+     * @return The configuration.
+     *
+     * @throws IOException If the temporary file could not be written.
+     */
+    public Configuration configuration(String keys) throws IOException
+    {
+        return TestConfiguration.load("{\"regionName\":\"test\",\"turbine\":{\"host\":\"127.0.0.1\",\"port\":" + server.getLocalPort()
+                + ",\"client\":\"blocking\"},\"entryClusters\":[\"proxy\"]" + (keys.isEmpty() ? "" : "," + keys) + "}");
+    }
+
+    /**
+     * Sets the events the stream of a cluster sends.
+     *
+     * @param cluster The cluster.
+     * @param events  The events as json, see {@link #event(String, String, int)}.
+     */
+    public void stream(String cluster, String... events)
+    {
+        this.events.put(cluster, new ArrayList<>(Arrays.asList(events)));
+    }
+
+    /**
+     * Holds the responses to new streams until {@link #release()} is called.
+     */
+    public void hold()
+    {
+        held = new CountDownLatch(1);
+    }
+
+    /**
+     * Answers the held streams.
+     */
+    public void release()
+    {
+        held.countDown();
+    }
+
+    /**
+     * Gets the clusters whose streams were requested, in order.
+     *
+     * @return The clusters.
+     */
+    public List<String> getOpened()
+    {
+        return Collections.unmodifiableList(opened);
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        release();
+        server.close();
+        for (Socket socket : sockets)
+        {
+            socket.close();
+        }
+    }
+
+    /**
+     * Creates a command event.
+     *
+     * @param name     The name of the command.
+     * @param group    The group, i.e. the cluster the command calls.
+     * @param requests The requests in the 10s window.
+     *
+     * @return The event as json.
+     */
+    public static String event(String name, String group, int requests)
+    {
+        return "{\"type\":\"HystrixCommand\",\"name\":\"" + name + "\",\"group\":\"" + group + "\",\"rollingCountSuccess\":" + requests
+                + ",\"requestCount\":" + requests + ",\"isCircuitBreakerOpen\":false}";
+    }
+
+    /**
+     * Waits until a condition holds.
+     *
+     * @param message   The assertion message if it never does.
+     * @param condition The condition.
+     *
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public static void await(String message, BooleanSupplier condition) throws InterruptedException
+    {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline)
+        {
+            Thread.sleep(20);
+        }
+        assertTrue(message, condition.getAsBoolean());
+    }
+
+    private void accept()
+    {
+        while (!server.isClosed())
+        {
+            try
+            {
+                Socket socket = server.accept();
+                sockets.add(socket);
+                Thread thread = new Thread(() -> serve(socket), "test-turbine-stream");
+                thread.setDaemon(true);
+                thread.start();
+            }
+            catch (IOException e)
+            {
+                //Closed
+            }
+        }
+    }
+
+    private void serve(Socket socket)
+    {
+        try (Socket ignored = socket)
+        {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.ISO_8859_1));
+            String requestLine = reader.readLine();
+            String line;
+            while ((line = reader.readLine()) != null && !line.isEmpty())
+            {
+                //Consume the headers
+            }
+            String cluster = requestLine.substring(requestLine.indexOf("cluster=") + 8, requestLine.lastIndexOf(' '));
+            opened.add(cluster);
+            held.await();
+            OutputStream out = socket.getOutputStream();
+            if (!events.containsKey(cluster))
+            {
+                out.write("HTTP/1.1 404 Not Found\r\nContent-Length: 0\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1));
+                out.flush();
+                return;
+            }
+            out.write("HTTP/1.1 200 OK\r\nContent-Type: text/event-stream\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1));
+            while (!socket.isClosed())
+            {
+                for (String event : events.get(cluster))
+                {
+                    out.write(("data: " + event + "\n\n").getBytes(StandardCharsets.UTF_8));
+                }
+                out.flush();
+                Thread.sleep(100);
+            }
+        }
+        catch (IOException | InterruptedException e)
+        {
+            //Reader disconnected
+        }
+        finally
+        {
+            sockets.remove(socket);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package vizceral.hystrix;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for the expiry timer wheel
+ */
+public class TimerWheelTest
+{
+    @Test
+    public void firesOnlyAfterDeadline()
+    {
+        TimerWheel wheel = new TimerWheel(1000, 8);
+        AtomicInteger fired = new AtomicInteger();
+        wheel.advance(0);
+        wheel.schedule(5000, now ->
+        {
+            fired.incrementAndGet();
+            return TimerWheel.DONE;
+        });
+        wheel.advance(4000);
+        assertEquals(0, fired.get());
+        wheel.advance(5000);
+        assertEquals(1, fired.get());
+        wheel.advance(20000);
+        assertEquals(1, fired.get());
+    }
+
+    @Test
+    public void firesDeadlineWithinTickAtNextAdvance()
+    {
+        TimerWheel wheel = new TimerWheel(1000, 8);
+        AtomicInteger fired = new AtomicInteger();
+        wheel.advance(200);
+        wheel.schedule(1700, now ->
+        {
+            fired.incrementAndGet();
+            return TimerWheel.DONE;
+        });
+        wheel.advance(1200);
+        assertEquals(0, fired.get());
+        wheel.advance(2200);
+        assertEquals(1, fired.get());
+    }
+
+    @Test
+    public void deadlinesBeyondOneTurnWaitForTheirRound()
+    {
+        TimerWheel wheel = new TimerWheel(1000, 4);
+        AtomicInteger fired = new AtomicInteger();
+        wheel.advance(0);
+        wheel.schedule(10000, now ->
+        {
+            fired.incrementAndGet();
+            return TimerWheel.DONE;
+        });
+        for (long now = 1000; now < 10000; now += 1000)
+        {
+            wheel.advance(now);
+        }
+        assertEquals(0, fired.get());
+        wheel.advance(10000);
+        assertEquals(1, fired.get());
+    }
+
+    @Test
+    public void timeoutCanAskToBeCheckedAgain()
+    {
+        TimerWheel wheel = new TimerWheel(1000, 8);
+        AtomicLong lastUpdated = new AtomicLong(0);
+        AtomicInteger evicted = new AtomicInteger();
+        wheel.advance(0);
+        wheel.schedule(3000, now ->
+        {
+            if (lastUpdated.get() + 3000 > now)
+            {
+                return lastUpdated.get() + 3000;
+            }
+            evicted.incrementAndGet();
+            return TimerWheel.DONE;
+        });
+        lastUpdated.set(2000);
+        wheel.advance(3000);
+        assertEquals(0, evicted.get());
+        wheel.advance(4000);
+        wheel.advance(5000);
+        assertEquals(1, evicted.get());
+    }
+}
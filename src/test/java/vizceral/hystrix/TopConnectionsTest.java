@@ -0,0 +1,90 @@
+package vizceral.hystrix;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static vizceral.hystrix.TestSnapshots.byName;
+import static vizceral.hystrix.TestSnapshots.find;
+import static vizceral.hystrix.TestSnapshots.names;
+import static vizceral.hystrix.TestSnapshots.targets;
+
+/**
+ * Tests for keeping the top connections
+ */
+public class TopConnectionsTest
+{
+    private final List<ClusterSnapshot> snapshots = TestSnapshots.region();
+
+    @Test
+    public void heavyHittersKeepsHeaviestKeys()
+    {
+        HeavyHitters heavyHitters = new HeavyHitters(3);
+        for (int i = 0; i < 100; i++)
+        {
+            heavyHitters.offer("heavy", 10);
+            heavyHitters.offer("medium", 5);
+            heavyHitters.offer("tail" + i, 1);
+        }
+        assertEquals(Arrays.asList("heavy", "medium"), heavyHitters.top(2));
+        assertTrue(heavyHitters.getCount("heavy") >= 1000);
+
+        heavyHitters.decay();
+        assertEquals(Arrays.asList("heavy", "medium"), heavyHitters.top(2));
+        assertTrue(heavyHitters.getCount("heavy") >= 500);
+    }
+
+    @Test
+    public void foldsTailIntoOther()
+    {
+        Collection<ClusterSnapshot> folded = TopConnections.fold(snapshots, 2, Collections.emptyList(), cluster -> "proxy".equals(cluster));
+
+        Map<String, ClusterSnapshot> byName = byName(folded);
+        assertEquals(names("proxy", "api", "users", "orders", TopConnections.OTHER), byName.keySet());
+        //Kept because of the open circuit breaker even though it is not in the top 2
+        assertEquals(names("users", "orders", TopConnections.OTHER), targets(byName.get("api")));
+        assertEquals(3, find(byName.get("api"), TopConnections.OTHER).getRequests());
+        assertEquals(names(TopConnections.OTHER), targets(byName.get("users")));
+        //batch is hidden, its traffic towards users comes from OTHER
+        assertEquals(names("users"), targets(byName.get(TopConnections.OTHER)));
+        assertEquals(1, find(byName.get(TopConnections.OTHER), "users").getRequests());
+    }
+
+    @Test
+    public void mergesRankingOfWriterShards()
+    {
+        TopConnections topConnections = new TopConnections(8, 4);
+        for (int i = 0; i < 8; i++)
+        {
+            topConnections.record("cluster" + i, HystrixEvent.newBuilder().name("get").group("db").requestCount(10 * (i + 1)).build());
+        }
+
+        List<String> ranking = topConnections.getRanking();
+
+        assertEquals(8, ranking.size());
+        for (int i = 0; i < 8; i++)
+        {
+            assertEquals(TopConnections.key("cluster" + (7 - i), "db"), ranking.get(i));
+        }
+    }
+
+    @Test
+    public void followsRankingBeforeCurrentVolume()
+    {
+        TopConnections topConnections = new TopConnections(16, 1);
+        topConnections.record("users", HystrixEvent.newBuilder().name("getUser").group("db").requestCount(500).build());
+        Collection<ClusterSnapshot> folded = TopConnections.fold(snapshots, 1, topConnections.getRanking(), cluster -> false);
+
+        Map<String, ClusterSnapshot> byName = byName(folded);
+        assertEquals(names("db"), targets(byName.get("users")));
+        assertTrue(targets(byName.get("api")).contains("orders"));
+        assertFalse(targets(byName.get("api")).contains("users"));
+    }
+}
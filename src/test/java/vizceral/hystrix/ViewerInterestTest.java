@@ -0,0 +1,49 @@
+package vizceral.hystrix;
+
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for tracking the viewed clusters
+ */
+public class ViewerInterestTest
+{
+    @Test
+    public void wantsClusterUntilIdle()
+    {
+        ViewerInterest viewers = new ViewerInterest(1000);
+
+        assertFalse(viewers.isWanted("api", 0));
+        assertTrue(viewers.view("api", 0));
+        assertTrue(viewers.isWanted("api", 1000));
+        assertFalse(viewers.isWanted("api", 1001));
+    }
+
+    @Test
+    public void extendsInterestOnEveryView()
+    {
+        ViewerInterest viewers = new ViewerInterest(1000);
+
+        viewers.view("api", 0);
+        assertFalse(viewers.view("api", 800));
+        assertTrue(viewers.isWanted("api", 1500));
+        assertTrue(viewers.view("api", 2000));
+    }
+
+    @Test
+    public void expiresIdleClusters()
+    {
+        ViewerInterest viewers = new ViewerInterest(1000);
+        viewers.view("api", 0);
+        viewers.view("db", 500);
+
+        assertEquals(Collections.singletonList("api"), viewers.expire(1200));
+        assertEquals(1, viewers.size());
+        assertTrue(viewers.isWanted("db", 1200));
+    }
+}
@@ -0,0 +1,298 @@
+package vizceral.hystrix;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.reactivex.netty.RxNetty;
+import io.reactivex.netty.protocol.http.server.HttpServer;
+import io.reactivex.netty.protocol.http.server.RequestHandler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import vizceral.hystrix.checkpoint.CheckpointConfiguration;
+import vizceral.hystrix.checkpoint.StateCheckpointer;
+import vizceral.hystrix.monitoring.MonitoringSystem;
+import vizceral.hystrix.sharding.HashRing;
+import vizceral.hystrix.sharding.PartialSnapshotCodec;
+
+import java.io.File;
+import java.net.ServerSocket;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static vizceral.hystrix.TestSnapshots.byName;
+import static vizceral.hystrix.TestSnapshots.names;
+import static vizceral.hystrix.TestSnapshots.snapshot;
+import static vizceral.hystrix.TestTurbine.await;
+import static vizceral.hystrix.TestTurbine.event;
+
+/**
+ * Tests for the aggregator reading from a turbine
+ */
+public class VizceralAggregatorTest
+{
+    private static final String SELF = "http://127.0.0.1:1";
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    private TestTurbine turbine;
+    private VizceralAggregator aggregator;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        turbine = new TestTurbine();
+        turbine.stream("proxy", event("getApi", "api", 100));
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        if (aggregator != null)
+        {
+            aggregator.stop();
+        }
+        turbine.close();
+    }
+
+    @Test
+    public void opensRestoredClustersInParallel() throws Exception
+    {
+        String file = checkpoint(cluster("a", "db"), cluster("b", "db"), cluster("c", "db"));
+        turbine.hold();
+
+        start("\"maxConcurrentStreamOpens\":8,\"checkpoint\":{\"file\":\"" + file + "\"}");
+
+        await("all restored streams requested before any answered", () -> turbine.getOpened().size() == 5);
+        assertEquals(names("a", "b", "c", "db", "proxy"), names(turbine.getOpened().toArray(new String[0])));
+    }
+
+    @Test
+    public void prunesRestoredClustersThatNeverReport() throws Exception
+    {
+        turbine.stream("api", event("getUser", "users", 50));
+        String file = checkpoint(cluster("stale", "gone"), cluster("api", "users"));
+
+        start("\"checkpoint\":{\"file\":\"" + file + "\",\"pruneAfterSeconds\":1}");
+
+        await("stale and gone pruned", () -> names(aggregator.snapshot()).equals(names("api", "proxy", "users")));
+        assertEquals(1, turbine.getOpened().stream().filter("stale"::equals).count());
+    }
+
+    @Test
+    public void rendersHistoryWithTheMaxVolumeOfThePeriod() throws Exception
+    {
+        aggregator = new VizceralAggregator(turbine.configuration("\"history\":{}"));
+        aggregator.getHistoryStore().record("proxy", "api", 1000, 100, 0, 0, 0);
+        aggregator.getHistoryStore().record("proxy", "api", 2000, 10, 0, 0, 0);
+        aggregator.getHistoryStore().record("proxy", "cache", 2000, 4, 1, 0, 0);
+
+        JsonNode graph = aggregator.vizceral(0, 2999);
+
+        assertEquals(100, graph.get("maxVolume").asInt());
+        JsonNode region = graph.get("nodes").get(1);
+        assertEquals("test", region.get("name").asText());
+        assertEquals(2, region.get("connections").size());
+        for (JsonNode connection : region.get("connections"))
+        {
+            assertEquals("proxy", connection.get("source").asText());
+            assertEquals("api".equals(connection.get("target").asText()) ? 55 : 4, connection.get("metrics").get("normal").asInt());
+        }
+    }
+
+    @Test(expected = NotFoundException.class)
+    public void historyNotActivatedIsNotFound() throws Exception
+    {
+        aggregator = new VizceralAggregator(turbine.configuration(""));
+
+        aggregator.vizceral(0, 2999);
+    }
+
+    @Test
+    public void tailsOnlyEntryAndInternetClustersUntilViewed() throws Exception
+    {
+        turbine.stream("api", event("getUser", "users", 50));
+        turbine.stream("users", event("getRow", "db", 40));
+
+        start("\"viewerIdleSeconds\":1,\"internetClusters\":[\"api\"]");
+
+        await("api tailed without a view", () -> names(aggregator.snapshot()).equals(names("api", "proxy")));
+        //Longer than the idle timeout and the interval of stopping unviewed clusters
+        Thread.sleep(2500);
+        assertEquals(names("api", "proxy"), names(aggregator.snapshot()));
+        assertEquals(names("api", "proxy"), names(turbine.getOpened().toArray(new String[0])));
+    }
+
+    @Test
+    public void viewTailsClusterOneHopFurtherUntilIdle() throws Exception
+    {
+        turbine.stream("api", event("getUser", "users", 50));
+        turbine.stream("users", event("getRow", "db", 40));
+        start("\"viewerIdleSeconds\":1");
+        await("proxy tailed", () -> find(aggregator, "proxy", "api"));
+
+        aggregator.vizceral("api");
+        await("api tailed once viewed", () -> find(aggregator, "api", "users"));
+        aggregator.vizceral(GraphFilter.fromQuery(Collections.singletonMap("around", Collections.singletonList("api"))));
+        await("users tailed as target of a viewed cluster", () -> find(aggregator, "users", "db"));
+        assertEquals(names("api", "proxy", "users"), names(turbine.getOpened().toArray(new String[0])));
+
+        await("unviewed clusters stopped", () -> names(aggregator.snapshot()).equals(names("proxy")));
+        assertEquals(2, aggregator.getMetrics().getCounter("unviewedStoppedClusters"));
+    }
+
+    @Test
+    public void viewDoesNotTailUnknownClusters() throws Exception
+    {
+        start("\"viewerIdleSeconds\":1");
+        await("proxy tailed", () -> find(aggregator, "proxy", "api"));
+
+        assertNull(aggregator.vizceral("made-up"));
+        aggregator.vizceral("api");
+
+        await("api tailed", () -> turbine.getOpened().contains("api"));
+        Thread.sleep(200);
+        assertFalse(turbine.getOpened().contains("made-up"));
+        assertNull(aggregator.vizceral("made-up"));
+    }
+
+    @Test
+    public void forgetsBurnRatesOfExpiredConnection() throws Exception
+    {
+        start("\"commandTtlSeconds\":1,\"slo\":{}");
+        await("burn rates of proxy to api", () -> aggregator.burnRates("proxy").get("connections").size() == 1);
+
+        turbine.stream("proxy", event("getCache", "cache", 10));
+
+        await("only proxy to cache left", () -> aggregator.burnRates("proxy").get("connections").size() == 1
+                && "cache".equals(aggregator.burnRates("proxy").get("connections").get(0).get("target").asText()));
+    }
+
+    @Test
+    public void shardRefreshDoesNotHoldUpStart() throws Exception
+    {
+        try (ServerSocket silentPeer = new ServerSocket(0))
+        {
+            long before = System.currentTimeMillis();
+            start(sharding("http://127.0.0.1:" + silentPeer.getLocalPort()));
+
+            assertTrue(System.currentTimeMillis() - before < 1000);
+            assertTrue(turbine.getOpened().isEmpty());
+            await("proxy opened once the peer timed out", () -> turbine.getOpened().contains("proxy"));
+        }
+    }
+
+    @Test
+    public void rebalanceTakesOverClustersOfPeerThatLeft() throws Exception
+    {
+        AtomicBoolean available = new AtomicBoolean(true);
+        AtomicReference<String> partial = new AtomicReference<>();
+        HttpServer<ByteBuf, ByteBuf> peer = RxNetty.newHttpServerBuilder(0, (RequestHandler<ByteBuf, ByteBuf>) (request, response) ->
+        {
+            if (!available.get())
+            {
+                response.setStatus(HttpResponseStatus.SERVICE_UNAVAILABLE);
+            }
+            return response.writeStringAndFlush(available.get() ? partial.get() : "");
+        }).build();
+        peer.start();
+        try
+        {
+            String peerUrl = "http://127.0.0.1:" + peer.getServerPort();
+            HashRing ring = new HashRing(Arrays.asList(SELF, peerUrl), 128);
+            String mine = owned(ring, SELF);
+            String theirs = owned(ring, peerUrl);
+            turbine.stream(mine, event("getRow", "db", 10));
+            turbine.stream(theirs, event("getUser", mine, 10));
+            partial.set(PartialSnapshotCodec.toJson("test", Collections.singletonList(snapshot(theirs, mine, 1, System.currentTimeMillis()))).toString());
+
+            start(sharding(peerUrl));
+
+            await("cluster learned from the peer started", () -> turbine.getOpened().contains(mine));
+            assertFalse(turbine.getOpened().contains(theirs));
+            available.set(false);
+            await("cluster of the peer taken over", () -> turbine.getOpened().contains(theirs));
+        }
+        finally
+        {
+            peer.shutdown();
+        }
+    }
+
+    @Test
+    public void federatedRegionWithoutEntryClustersStartsMonitoring() throws Exception
+    {
+        AtomicBoolean started = new AtomicBoolean();
+        Configuration configuration = TestConfiguration.load("{\"regionName\":\"test\",\"federation\":{\"url\":\"" + SELF + "\"}}");
+        configuration.getMonitoringSystems().add(new MonitoringSystem()
+        {
+            @Override
+            public Collection<VizceralNotice> getAlertsForCluster(String clusterName)
+            {
+                return Collections.emptyList();
+            }
+
+            @Override
+            public void start()
+            {
+                started.set(true);
+            }
+        });
+        aggregator = new VizceralAggregator(configuration);
+
+        aggregator.start();
+
+        assertTrue(started.get());
+        assertTrue(turbine.getOpened().isEmpty());
+    }
+
+    private void start(String keys) throws Exception
+    {
+        aggregator = new VizceralAggregator(turbine.configuration(keys));
+        aggregator.start();
+    }
+
+    private String checkpoint(HystrixCluster... clusters) throws Exception
+    {
+        String file = new File(folder.getRoot(), "state").getPath();
+        new StateCheckpointer(CheckpointConfiguration.newBuilder().file(file).build(), 3600).write(Arrays.asList(clusters));
+        return file;
+    }
+
+    private static String sharding(String peer)
+    {
+        return "\"sharding\":{\"self\":\"" + SELF + "\",\"peers\":[\"" + peer + "\"],\"refreshIntervalSeconds\":1,\"maxFailures\":1}";
+    }
+
+    private static String owned(HashRing ring, String member)
+    {
+        for (int i = 0; ; i++)
+        {
+            if (member.equals(ring.getOwner("cluster-" + i)))
+            {
+                return "cluster-" + i;
+            }
+        }
+    }
+
+    private static HystrixCluster cluster(String name, String target)
+    {
+        HystrixCluster cluster = new HystrixCluster(name, 3600);
+        cluster.addEvent(HystrixEvent.newBuilder().name("get").group(target).totalRequestCount(10).requestCount(10).created(System.currentTimeMillis()).build());
+        return cluster;
+    }
+
+    private static boolean find(VizceralAggregator aggregator, String source, String target)
+    {
+        ClusterSnapshot snapshot = byName(aggregator.snapshot()).get(source);
+        return snapshot != null && TestSnapshots.find(snapshot, target) != null;
+    }
+}
@@ -0,0 +1,202 @@
+package vizceral.hystrix;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.netty.buffer.ByteBuf;
+import io.reactivex.netty.RxNetty;
+import io.reactivex.netty.protocol.http.server.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static vizceral.hystrix.TestTurbine.await;
+import static vizceral.hystrix.TestTurbine.event;
+
+/**
+ * Tests for the routes of the http handler
+ */
+public class VizceralRequestHandlerTest
+{
+    private TestTurbine turbine;
+    private List<VizceralAggregator> aggregators;
+    private HttpServer<ByteBuf, ByteBuf> server;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        turbine = new TestTurbine();
+        turbine.stream("proxy", event("getApi", "api", 100), event("getRemote", "remote", 30));
+        aggregators = Arrays.asList(
+                new VizceralAggregator(turbine.configuration("\"slo\":{},\"history\":{},\"internetClusters\":[\"proxy\"],"
+                        + "\"groupToRegion\":[{\"group\":\"remote\",\"region\":\"other\"}]")),
+                new VizceralAggregator(TestConfiguration.load("{\"regionName\":\"other\",\"turbine\":{\"host\":\"127.0.0.1\",\"port\":8080},\"entryClusters\":[\"proxy\"]}")));
+        server = RxNetty.newHttpServerBuilder(0, new VizceralRequestHandler(aggregators)).build();
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        server.shutdown();
+        aggregators.forEach(VizceralAggregator::stop);
+        turbine.close();
+    }
+
+    @Test
+    public void servesSummaryFromRegionTotals() throws Exception
+    {
+        aggregators.get(0).start();
+
+        await("traffic towards other region", () -> get("/summary").body.contains("\"source\":\"test\",\"target\":\"other\",\"metrics\":{\"normal\":3,"));
+        JsonNode summary = new ObjectMapper().readTree(get("/summary").body);
+        assertEquals(3, summary.get("nodes").size());
+        for (JsonNode region : summary.get("nodes"))
+        {
+            assertEquals(0, region.get("nodes").size());
+        }
+        assertEquals("INTERNET", summary.get("connections").get(0).get("source").asText());
+        assertEquals("test", summary.get("connections").get(0).get("target").asText());
+        assertEquals(13, summary.get("connections").get(0).get("metrics").get("normal").asInt());
+        assertEquals(400, get("/summary?at=10000").status);
+    }
+
+    @Test
+    public void mergedGraphConnectsRegionsLikeSummary() throws Exception
+    {
+        aggregators.get(0).start();
+
+        await("traffic towards other region", () -> get("/").body.contains("\"source\":\"test\",\"target\":\"other\",\"metrics\":{\"normal\":3,"));
+        assertTrue(get("/").body.contains("\"source\":\"other\",\"target\":\"test\",\"metrics\":{\"normal\":0,\"warning\":0,\"danger\":0}"));
+    }
+
+    @Test
+    public void unknownRegionsAndClustersAreNotFound()
+    {
+        assertEquals(200, get("/regions/test").status);
+        assertEquals(404, get("/regions/missing").status);
+        assertEquals(404, get("/regions/missing/clusters/proxy").status);
+        assertEquals(404, get("/regions/test/clusters/missing").status);
+    }
+
+    @Test
+    public void servesClusterOfRegion() throws Exception
+    {
+        aggregators.get(0).start();
+
+        await("commands of proxy", () -> get("/regions/test/clusters/proxy").body.contains("getApi"));
+        assertEquals(200, get("/regions/test/clusters/proxy").status);
+    }
+
+    @Test
+    public void rendersRegionAtInstant()
+    {
+        aggregators.get(0).getHistoryStore().record("proxy", "api", 5000, 100, 2, 0, 0);
+
+        Response response = get("/regions/test?at=10000");
+
+        assertEquals(200, response.status);
+        assertTrue(response.body, response.body.contains("\"source\":\"proxy\",\"target\":\"api\""));
+        assertTrue(response.body, response.body.contains("\"danger\":2,\"warning\":0,\"normal\":100"));
+    }
+
+    @Test
+    public void invalidTimesAreBadRequests()
+    {
+        assertEquals(400, get("/regions/test?at=yesterday").status);
+        assertEquals(400, get("/regions/test?from=2000&to=1000").status);
+        assertEquals(400, get("/?from=1000").status);
+    }
+
+    @Test
+    public void historyNotActivatedIsNotFound()
+    {
+        Response response = get("/regions/other?from=1000&to=2000");
+
+        assertEquals(404, response.status);
+        assertEquals("History is not activated for region other", response.body);
+        //Merging all regions needs the history of each
+        assertEquals(404, get("/?at=10000").status);
+    }
+
+    @Test
+    public void servesBurnRates()
+    {
+        Response response = get("/burnrates?region=test");
+
+        assertEquals(200, response.status);
+        assertTrue(response.body, response.body.contains("\"objective\":0.999"));
+    }
+
+    @Test
+    public void burnRatesOfUnknownRegionAreNotFound()
+    {
+        assertEquals(404, get("/burnrates?region=missing").status);
+        //Ambiguous with more than one region
+        assertEquals(404, get("/burnrates").status);
+    }
+
+    @Test
+    public void burnRatesNotActivatedAreNotFound()
+    {
+        Response response = get("/burnrates?region=other");
+
+        assertEquals(404, response.status);
+        assertEquals("Burn rates are not activated for region other", response.body);
+    }
+
+    private Response get(String path)
+    {
+        HttpURLConnection connection = null;
+        try
+        {
+            connection = (HttpURLConnection) new URL("http://127.0.0.1:" + server.getServerPort() + path).openConnection();
+            int status = connection.getResponseCode();
+            try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream())
+            {
+                ByteArrayOutputStream body = new ByteArrayOutputStream();
+                byte[] buffer = new byte[4096];
+                int read;
+                while (in != null && (read = in.read(buffer)) != -1)
+                {
+                    body.write(buffer, 0, read);
+                }
+                return new Response(status, body.toString(StandardCharsets.UTF_8.name()));
+            }
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+        finally
+        {
+            if (connection != null)
+            {
+                connection.disconnect();
+            }
+        }
+    }
+
+    private static final class Response
+    {
+        private final int status;
+        private final String body;
+
+        private Response(int status, String body)
+        {
+            this.status = status;
+            this.body = body;
+        }
+    }
+}
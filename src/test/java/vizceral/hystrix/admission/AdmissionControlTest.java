@@ -0,0 +1,84 @@
+package vizceral.hystrix.admission;
+
+import org.junit.Test;
+import vizceral.hystrix.ConfigurationException;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the admission control
+ */
+public class AdmissionControlTest
+{
+    @Test
+    public void admitsEverythingWithoutConfiguration()
+    {
+        AdmissionControl admission = new AdmissionControl(null);
+
+        assertTrue(admission.isAllowed("anything"));
+        assertFalse(admission.isFull(100000));
+        assertTrue(admission.hasRoomForCommand(100000));
+    }
+
+    @Test
+    public void appliesAllowAndDenyPatterns()
+    {
+        AdmissionControl admission = new AdmissionControl(AdmissionConfiguration.newBuilder()
+                .allow(Arrays.asList("prod-.*", "proxy"))
+                .deny(Collections.singletonList("prod-test-.*"))
+                .build());
+
+        assertTrue(admission.isAllowed("prod-api"));
+        assertTrue(admission.isAllowed("proxy"));
+        assertFalse(admission.isAllowed("proxy-2"));
+        assertFalse(admission.isAllowed("prod-test-api"));
+        assertFalse(admission.isAllowed("prod-test-api"));
+        assertEquals(2, admission.getDenied());
+    }
+
+    @Test
+    public void tracksCommandBudgets()
+    {
+        AdmissionControl admission = new AdmissionControl(AdmissionConfiguration.newBuilder()
+                .maxClusters(2)
+                .maxCommandsPerCluster(3)
+                .maxCommands(4)
+                .build());
+
+        assertFalse(admission.isFull(1));
+        assertTrue(admission.isFull(2));
+        assertTrue(admission.hasRoomForCommand(2));
+        assertFalse(admission.hasRoomForCommand(3));
+        for (int i = 0; i < 4; i++)
+        {
+            admission.commandAdded();
+        }
+        assertFalse(admission.hasRoomForCommand(0));
+        admission.commandsRemoved(1);
+        assertTrue(admission.hasRoomForCommand(0));
+        assertEquals(3, admission.getCommands());
+    }
+
+    @Test
+    public void showsNoticesForAWhile()
+    {
+        AdmissionControl admission = new AdmissionControl(null);
+
+        admission.limited("api", "Command budget reached", "Not tracking getFoo", 1000);
+
+        assertEquals("Command budget reached", admission.getNotices("api", 2000).get(0).getTitle());
+        assertTrue(admission.getNotices("other", 2000).isEmpty());
+        assertTrue(admission.getNotices("api", 1000 + 61000).isEmpty());
+    }
+
+    @Test(expected = ConfigurationException.class)
+    public void rejectsInvalidPattern()
+    {
+        AdmissionConfiguration.newBuilder().deny(Collections.singletonList("(prod")).build();
+    }
+}
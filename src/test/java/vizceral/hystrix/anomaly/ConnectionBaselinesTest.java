@@ -0,0 +1,171 @@
+package vizceral.hystrix.anomaly;
+
+import org.junit.Test;
+import vizceral.hystrix.ConnectionRollup;
+import vizceral.hystrix.ConnectionSlots;
+import vizceral.hystrix.HystrixCluster;
+import vizceral.hystrix.HystrixEvent;
+import vizceral.hystrix.NoticeSeverity;
+import vizceral.hystrix.VizceralNotice;
+import vizceral.hystrix.slo.BurnRates;
+import vizceral.hystrix.slo.SloConfiguration;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the per connection baselines
+ */
+public class ConnectionBaselinesTest
+{
+    private final HystrixCluster cluster = new HystrixCluster("api", 60);
+    private final ConnectionBaselines baselines = new ConnectionBaselines(AnomalyConfiguration.newBuilder()
+            .halfLifeSeconds(60)
+            .warmupSeconds(30)
+            .build());
+
+    @Test
+    public void learnsBeforeShowingNotices()
+    {
+        long now = 0;
+        for (int i = 0; i < 20; i++, now += 1000)
+        {
+            baselines.record("api", rollup(100, 1, 0, now), now);
+        }
+
+        assertTrue(baselines.getNotices("api", rollup(100, 50, 0, now), now).isEmpty());
+    }
+
+    @Test
+    public void showsErrorsAboveBaseline()
+    {
+        long now = warmUp();
+
+        List<VizceralNotice> notices = baselines.getNotices("api", rollup(100, 20, 0, now), now);
+
+        assertEquals(1, notices.size());
+        assertEquals(NoticeSeverity.ERROR, notices.get(0).getSeverity());
+        assertTrue(notices.get(0).getTitle(), notices.get(0).getTitle().startsWith("20% failures"));
+    }
+
+    @Test
+    public void ignoresUsualNoise()
+    {
+        long now = warmUp();
+
+        assertTrue(baselines.getNotices("api", rollup(104, 2, 1, now), now).isEmpty());
+    }
+
+    @Test
+    public void showsTrafficDrop()
+    {
+        long now = warmUp();
+
+        List<VizceralNotice> notices = baselines.getNotices("api", rollup(10, 0, 0, now), now);
+
+        assertEquals(1, notices.size());
+        assertTrue(notices.get(0).getTitle(), notices.get(0).getTitle().startsWith("10 requests/s"));
+    }
+
+    @Test
+    public void samplesAtMostOncePerSecond()
+    {
+        baselines.record("api", rollup(100, 0, 0, 0), 0);
+        for (int i = 0; i < 100; i++)
+        {
+            baselines.record("api", rollup(100, 100, 0, 500), 500);
+        }
+        long now = 1000;
+        for (int i = 0; i < 40; i++, now += 1000)
+        {
+            baselines.record("api", rollup(100, 0, 0, now), now);
+        }
+
+        assertEquals(1, baselines.getNotices("api", rollup(100, 20, 0, now), now).size());
+    }
+
+    @Test
+    public void forgetsConnectionsOfCluster()
+    {
+        long now = warmUp();
+
+        baselines.forget("api");
+
+        assertEquals(0, baselines.size());
+        assertTrue(baselines.getNotices("api", rollup(100, 50, 0, now), now).isEmpty());
+    }
+
+    @Test
+    public void resetsSharedSlotOfDroppedConnection()
+    {
+        ConnectionSlots slots = new ConnectionSlots();
+        ConnectionBaselines shared = new ConnectionBaselines(AnomalyConfiguration.newBuilder().halfLifeSeconds(60).warmupSeconds(30).build(), slots);
+        BurnRates burnRates = new BurnRates(SloConfiguration.newBuilder().build(), slots);
+        long now = 0;
+        for (int i = 0; i < 60; i++, now += 1000)
+        {
+            shared.record("api", rollup(100, 0, 0, now), now);
+            burnRates.record("api", rollup(100, 0, 0, now), now);
+        }
+        ConnectionRollup dropped = cluster.getCurrentRollup("users");
+
+        shared.forget("api", dropped);
+        ConnectionRollup reused = new ConnectionRollup("cache");
+        shared.record("api", reused, now);
+
+        assertEquals(1, slots.size());
+        assertEquals(0, slots.get(reused));
+        assertTrue(shared.getNotices("api", rollup(100, 50, 0, now), now).isEmpty());
+        assertEquals(0, burnRates.toJson(null, now).get("connections").get(0).get("windows").get(0).get("requests").asLong());
+    }
+
+    @Test
+    public void keepsBaselinePerPartOfDay()
+    {
+        ConnectionBaselines seasonal = new ConnectionBaselines(AnomalyConfiguration.newBuilder()
+                .warmupSeconds(30)
+                .seasonalBuckets(2)
+                .build());
+        long night = 0;
+        long day = 43200000;
+        for (int i = 0; i < 60; i++)
+        {
+            seasonal.record("api", rollup(10, 0, 0, night + i * 1000), night + i * 1000);
+        }
+        for (int i = 0; i < 60; i++)
+        {
+            seasonal.record("api", rollup(1000, 0, 0, day + i * 1000), day + i * 1000);
+        }
+
+        assertTrue(seasonal.getNotices("api", rollup(1000, 0, 0, day + 60000), day + 60000).isEmpty());
+        assertEquals(1, seasonal.getNotices("api", rollup(1000, 0, 0, night + 60000), night + 60000).size());
+    }
+
+    private long warmUp()
+    {
+        Random random = new Random(1);
+        long now = 0;
+        for (int i = 0; i < 120; i++, now += 1000)
+        {
+            baselines.record("api", rollup(95 + random.nextInt(10), random.nextInt(3), random.nextInt(2), now), now);
+        }
+        return now;
+    }
+
+    private ConnectionRollup rollup(int total, int errors, int timeouts, long created)
+    {
+        cluster.applyEvent(HystrixEvent.newBuilder()
+                .name("getUser")
+                .group("users")
+                .totalRequestCount(total)
+                .requestCount(total - errors - timeouts)
+                .errorCount(errors)
+                .timeoutCount(timeouts)
+                .created(created)
+                .build());
+        return cluster.getCurrentRollup("users");
+    }
+}
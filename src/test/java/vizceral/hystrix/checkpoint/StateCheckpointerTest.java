@@ -0,0 +1,73 @@
+package vizceral.hystrix.checkpoint;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import vizceral.hystrix.HystrixCluster;
+import vizceral.hystrix.HystrixEvent;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for writing and restoring checkpoints
+ */
+public class StateCheckpointerTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void restoresEventsAndMaxVolume() throws Exception
+    {
+        String file = new File(folder.getRoot(), "state").getPath();
+        HystrixCluster cluster = new HystrixCluster("proxy", 3600);
+        cluster.addEvent(HystrixEvent.newBuilder().name("command1").group("backend").totalRequestCount(20).requestCount(18).errorCount(2).build());
+        cluster.addEvent(HystrixEvent.newBuilder().name("command1").group("backend").totalRequestCount(5).requestCount(5).build());
+        new StateCheckpointer(config(file), 3600).write(Collections.singletonList(cluster));
+
+        List<HystrixCluster> restored = new StateCheckpointer(config(file), 3600).load();
+        assertEquals(1, restored.size());
+        HystrixCluster restoredCluster = restored.get(0);
+        assertEquals("proxy", restoredCluster.getName());
+        assertEquals(20, restoredCluster.getMaxValue());
+        assertEquals(5, restoredCluster.getSumOfOutgoingRequests());
+        assertEquals(5, restoredCluster.getRollup("backend").getRequests());
+    }
+
+    @Test
+    public void fallsBackToPreviousCheckpointWhenLatestIsCorrupt() throws Exception
+    {
+        String file = new File(folder.getRoot(), "state").getPath();
+        StateCheckpointer checkpointer = new StateCheckpointer(config(file), 3600);
+        HystrixCluster first = new HystrixCluster("first", 3600);
+        checkpointer.write(Collections.singletonList(first));
+        HystrixCluster second = new HystrixCluster("second", 3600);
+        checkpointer.write(Collections.singletonList(second));
+        try (RandomAccessFile latest = new RandomAccessFile(file + ".0", "rw"))
+        {
+            latest.seek(latest.length() - 1);
+            latest.write(0x7f);
+        }
+
+        List<HystrixCluster> restored = new StateCheckpointer(config(file), 3600).load();
+        assertEquals("first", restored.get(0).getName());
+    }
+
+    @Test
+    public void noCheckpointRestoresNothing()
+    {
+        String file = new File(folder.getRoot(), "missing").getPath();
+        assertTrue(new StateCheckpointer(config(file), 3600).load().isEmpty());
+    }
+
+    private static CheckpointConfiguration config(String file)
+    {
+        return CheckpointConfiguration.newBuilder().file(file).build();
+    }
+}
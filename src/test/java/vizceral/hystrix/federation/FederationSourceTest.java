@@ -0,0 +1,106 @@
+package vizceral.hystrix.federation;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.netty.buffer.ByteBuf;
+import io.reactivex.netty.RxNetty;
+import io.reactivex.netty.protocol.http.server.HttpServer;
+import io.reactivex.netty.protocol.http.server.RequestHandler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import vizceral.hystrix.ClusterSnapshot;
+import vizceral.hystrix.sharding.ChangeStamps;
+import vizceral.hystrix.sharding.PartialSnapshotCodec;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static vizceral.hystrix.TestSnapshots.byName;
+import static vizceral.hystrix.TestSnapshots.snapshot;
+
+/**
+ * Tests for reading a federated region from upstream
+ */
+public class FederationSourceTest
+{
+    private HttpServer<ByteBuf, ByteBuf> upstream;
+    private volatile List<ClusterSnapshot> snapshots;
+    private final List<String> queries = new CopyOnWriteArrayList<>();
+    private final List<Long> generations = new CopyOnWriteArrayList<>();
+    private final ChangeStamps stamps = new ChangeStamps();
+
+    @Before
+    public void setUp()
+    {
+        snapshots = Arrays.asList(snapshot("api", "db", 10, 1000), snapshot("web", "api", 20, 1000));
+        RequestHandler<ByteBuf, ByteBuf> handler = (request, response) ->
+        {
+            queries.add(request.getUri());
+            List<String> since = request.getQueryParameters().get("since");
+            ObjectNode json = PartialSnapshotCodec.toJson("eu-west-1", snapshots, since == null ? 0 : Long.parseLong(since.get(0)), stamps);
+            generations.add(json.get("generation").asLong());
+            return response.writeStringAndFlush(json.toString());
+        };
+        upstream = RxNetty.newHttpServerBuilder(0, handler).build();
+        upstream.start();
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        upstream.shutdown();
+    }
+
+    @Test
+    public void readsOnlyChangedClustersAfterFirstPoll()
+    {
+        FederationSource source = new FederationSource(FederationConfiguration.newBuilder()
+                .url("http://127.0.0.1:" + upstream.getServerPort() + "/")
+                .build(), "eu-west-1");
+
+        assertTrue(source.refresh());
+        assertEquals(2, source.getSnapshots().size());
+        assertEquals(1000, source.getUpdated());
+        assertFalse(queries.get(0).contains("since"));
+
+        snapshots = Arrays.asList(snapshot("api", "db", 15, 2000), snapshot("web", "api", 20, 1000));
+        assertTrue(source.refresh());
+        assertTrue(queries.get(1).contains("since=" + generations.get(0)));
+        Map<String, ClusterSnapshot> byName = byName(source.getSnapshots());
+        assertEquals(15, byName.get("api").getConnections().iterator().next().getRequests());
+        assertEquals(20, byName.get("web").getConnections().iterator().next().getRequests());
+        assertEquals(2000, source.getUpdated());
+
+        //The web cluster is now only sent in short form
+        assertTrue(source.refresh());
+        assertEquals(20, byName(source.getSnapshots()).get("web").getConnections().iterator().next().getRequests());
+        assertTrue(source.isConnected());
+    }
+
+    @Test
+    public void readsChangesWithOlderEventTimesThanOtherClusters()
+    {
+        FederationSource source = new FederationSource(FederationConfiguration.newBuilder()
+                .url("http://127.0.0.1:" + upstream.getServerPort() + "/")
+                .build(), "eu-west-1");
+        snapshots = Arrays.asList(snapshot("api", "db", 10, 5000), snapshot("web", "api", 20, 1000));
+        assertTrue(source.refresh());
+
+        //web reports late, with events older than the newest ones of api
+        snapshots = Arrays.asList(snapshot("api", "db", 10, 5000), snapshot("web", "api", 25, 3000));
+        assertTrue(source.refresh());
+        snapshots = Arrays.asList(snapshot("api", "db", 12, 6000), snapshot("web", "api", 30, 2000));
+        assertTrue(source.refresh());
+
+        Map<String, ClusterSnapshot> byName = byName(source.getSnapshots());
+        assertEquals(12, byName.get("api").getConnections().iterator().next().getRequests());
+        assertEquals(30, byName.get("web").getConnections().iterator().next().getRequests());
+        assertTrue(queries.get(2).contains("since=" + generations.get(1)));
+        assertTrue(generations.get(1) < generations.get(2));
+    }
+}
@@ -0,0 +1,109 @@
+package vizceral.hystrix.history;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the multi resolution connection history
+ */
+public class HistoryStoreTest
+{
+    private HistoryStore store;
+
+    @Before
+    public void before()
+    {
+        store = new HistoryStore(HistoryConfiguration.newBuilder()
+                .resolutions(Arrays.asList(
+                        HistoryResolution.newBuilder().resolutionSeconds(1).retentionSeconds(10).build(),
+                        HistoryResolution.newBuilder().resolutionSeconds(5).retentionSeconds(100).build()))
+                .build());
+    }
+
+    @Test
+    public void averagesSamplesWithinOneSlot()
+    {
+        store.record("a", "b", 1000, 10, 2, 0, 0);
+        store.record("a", "b", 1500, 20, 4, 0, HistoryPoint.REJECTED);
+        List<HistoryPoint> points = store.query("a", "b", 1000, 1999);
+        assertEquals(1, points.size());
+        assertEquals(15, points.get(0).getRequests());
+        assertEquals(3, points.get(0).getErrors());
+        assertTrue(points.get(0).isRejected());
+    }
+
+    @Test
+    public void downsamplesToCoarserResolutionWhenFinestNoLongerCovers()
+    {
+        for (int second = 0; second < 30; second++)
+        {
+            store.record("a", "b", second * 1000L, second < 5 ? 10 : 20, 0, 0, second == 2 ? HistoryPoint.CIRCUIT_BREAKER_OPEN : 0);
+        }
+        //Finest ring only has 10 seconds, so the query falls back to 5 second slots
+        List<HistoryPoint> points = store.query("a", "b", 0, 9999);
+        assertEquals(2, points.size());
+        assertEquals(5000, points.get(0).getDurationMillis());
+        assertEquals(10, points.get(0).getRequests());
+        assertTrue(points.get(0).isCircuitBreakerOpen());
+        assertEquals(20, points.get(1).getRequests());
+
+        //Recent range is still served at one second resolution
+        assertEquals(5, store.query("a", "b", 25000, 29999).size());
+    }
+
+    @Test
+    public void aggregatesRange()
+    {
+        store.record("a", "b", 1000, 10, 0, 2, 0);
+        store.record("a", "b", 2000, 30, 0, 4, 0);
+        HistoryPoint point = store.aggregate("a", "b", 1000, 2999);
+        assertEquals(20, point.getRequests());
+        assertEquals(3, point.getTimeouts());
+        assertNull(store.aggregate("a", "c", 1000, 2999));
+    }
+
+    @Test
+    public void maxOutgoingSumsConnectionsPerSlot()
+    {
+        store.record("a", "b", 1000, 10, 0, 0, 0);
+        store.record("a", "c", 1000, 5, 1, 0, 0);
+        store.record("a", "b", 2000, 12, 0, 0, 0);
+        assertEquals(16, store.getMaxOutgoing("a", 1000, 2999));
+        assertEquals(12, store.getMaxOutgoing("a", 2000, 2999));
+        assertEquals(0, store.getMaxOutgoing("b", 1000, 2999));
+    }
+
+    @Test
+    public void dropsDataOlderThanRetention()
+    {
+        store.record("a", "b", 0, 10, 0, 0, 0);
+        store.record("a", "b", 1000000, 10, 0, 0, 0);
+        assertTrue(store.query("a", "b", 0, 999).isEmpty());
+    }
+
+    @Test
+    public void sweepDropsConnectionsSilentForLongestRetention()
+    {
+        store.record("a", "b", 0, 10, 0, 0, 0);
+        store.record("a", "c", 200000, 10, 0, 0, 0);
+        store.record("d", "b", 0, 10, 0, 0, 0);
+
+        store.sweep(250000);
+
+        assertEquals(Collections.singletonMap("a", Collections.singletonList("c")), store.getConnections());
+        assertTrue(store.query("a", "b", 0, 250000).isEmpty());
+        assertEquals(1, store.query("a", "c", 200000, 250000).size());
+
+        store.sweep(400000);
+
+        assertTrue(store.getConnections().isEmpty());
+    }
+}
@@ -0,0 +1,60 @@
+package vizceral.hystrix.sharding;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the consistent hash ring
+ */
+public class HashRingTest
+{
+    private static final int CLUSTERS = 3000;
+
+    @Test
+    public void spreadsClustersEvenly()
+    {
+        HashRing ring = new HashRing(Arrays.asList("http://a:8081", "http://b:8081", "http://c:8081"), 128);
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < CLUSTERS; i++)
+        {
+            counts.merge(ring.getOwner("cluster-" + i), 1, Integer::sum);
+        }
+        assertEquals(3, counts.size());
+        for (int count : counts.values())
+        {
+            assertTrue("Uneven split " + counts, count > CLUSTERS / 3 * 0.7 && count < CLUSTERS / 3 * 1.3);
+        }
+    }
+
+    @Test
+    public void onlyMovesClustersOfLeavingMember()
+    {
+        HashRing before = new HashRing(Arrays.asList("http://a:8081", "http://b:8081", "http://c:8081"), 128);
+        HashRing after = new HashRing(Arrays.asList("http://a:8081", "http://b:8081"), 128);
+        for (int i = 0; i < CLUSTERS; i++)
+        {
+            String owner = before.getOwner("cluster-" + i);
+            if (!"http://c:8081".equals(owner))
+            {
+                assertEquals(owner, after.getOwner("cluster-" + i));
+            }
+        }
+    }
+
+    @Test
+    public void ownerDoesNotDependOnMemberOrder()
+    {
+        HashRing first = new HashRing(Arrays.asList("http://a:8081", "http://b:8081"), 16);
+        HashRing second = new HashRing(Arrays.asList("http://b:8081", "http://a:8081"), 16);
+        for (int i = 0; i < 100; i++)
+        {
+            assertEquals(first.getOwner("cluster-" + i), second.getOwner("cluster-" + i));
+        }
+    }
+}
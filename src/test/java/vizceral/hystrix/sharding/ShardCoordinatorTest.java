@@ -0,0 +1,105 @@
+package vizceral.hystrix.sharding;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.reactivex.netty.RxNetty;
+import io.reactivex.netty.protocol.http.server.HttpServer;
+import io.reactivex.netty.protocol.http.server.RequestHandler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import vizceral.hystrix.ClusterSnapshot;
+import vizceral.hystrix.NoticeSeverity;
+import vizceral.hystrix.VizceralConnection;
+import vizceral.hystrix.VizceralNotice;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for coordinating the shards
+ */
+public class ShardCoordinatorTest
+{
+    private static final String SELF = "http://127.0.0.1:1";
+    private HttpServer<ByteBuf, ByteBuf> peer;
+    private volatile String partial;
+    private volatile boolean available = true;
+
+    @Before
+    public void setUp()
+    {
+        VizceralNotice notice = VizceralNotice.newBuilder().severity(NoticeSeverity.ERROR).title("Circuit breaker triggered").build();
+        ClusterSnapshot snapshot = ClusterSnapshot.newBuilder()
+                .name("api")
+                .connections(Collections.singletonList(new VizceralConnection("db", 2, 10, 1, true, Collections.singletonList(notice))))
+                .maxValue(20)
+                .outgoingRequests(13)
+                .updated(1000)
+                .build();
+        partial = PartialSnapshotCodec.toJson("eu-west-1", Collections.singletonList(snapshot)).toString();
+        RequestHandler<ByteBuf, ByteBuf> handler = (request, response) ->
+        {
+            if (!available)
+            {
+                response.setStatus(HttpResponseStatus.SERVICE_UNAVAILABLE);
+            }
+            return response.writeStringAndFlush(available ? partial : "");
+        };
+        peer = RxNetty.newHttpServerBuilder(0, handler).build();
+        peer.start();
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        peer.shutdown();
+    }
+
+    @Test
+    public void peersJoinAndLeaveTheRing() throws Exception
+    {
+        String peerUrl = "http://127.0.0.1:" + peer.getServerPort();
+        ShardCoordinator coordinator = new ShardCoordinator(ShardingConfiguration.newBuilder()
+                .self(SELF)
+                .peers(Arrays.asList(SELF, peerUrl))
+                .refreshIntervalSeconds(2)
+                .build(), "eu-west-1");
+        assertEquals(1, coordinator.getMembers());
+        assertTrue(coordinator.isOwner("api"));
+
+        assertTrue(coordinator.refresh().toBlocking().single());
+        assertEquals(2, coordinator.getMembers());
+        List<ClusterSnapshot> snapshots = coordinator.getPeerSnapshots();
+        assertEquals(1, snapshots.size());
+        ClusterSnapshot api = snapshots.get(0);
+        assertEquals("api", api.getName());
+        assertEquals(20, api.getMaxValue());
+        VizceralConnection db = api.getConnections().iterator().next();
+        assertEquals("db", db.getName());
+        assertEquals(10, db.getRequests());
+        assertEquals(2, db.getErrors());
+        assertEquals(1, db.getTimeouts());
+        assertTrue(db.isCircuitBreakerOpen());
+        assertEquals(NoticeSeverity.ERROR, db.getNotices().get(0).getSeverity());
+
+        int owned = 0;
+        for (int i = 0; i < 1000; i++)
+        {
+            owned += coordinator.isOwner("cluster-" + i) ? 1 : 0;
+        }
+        assertTrue("Owned " + owned, owned > 300 && owned < 700);
+
+        available = false;
+        assertFalse(coordinator.refresh().toBlocking().single());
+        assertTrue(coordinator.refresh().toBlocking().single());
+        assertEquals(1, coordinator.getMembers());
+        assertTrue(coordinator.getPeerSnapshots().isEmpty());
+        assertTrue(coordinator.isOwner("cluster-1"));
+    }
+}
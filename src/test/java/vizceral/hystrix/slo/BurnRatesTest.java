@@ -0,0 +1,164 @@
+package vizceral.hystrix.slo;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.Test;
+import vizceral.hystrix.ConfigurationException;
+import vizceral.hystrix.ConnectionRollup;
+import vizceral.hystrix.HystrixCluster;
+import vizceral.hystrix.HystrixEvent;
+import vizceral.hystrix.NoticeSeverity;
+import vizceral.hystrix.VizceralNotice;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the error budget burn rates
+ */
+public class BurnRatesTest
+{
+    private final HystrixCluster cluster = new HystrixCluster("api", 60);
+    private final BurnRates burnRates = new BurnRates(SloConfiguration.newBuilder().build());
+
+    @Test
+    public void noNoticesWithinBudget()
+    {
+        long now = record(0, 3600, 1000, 0, 0);
+
+        assertTrue(burnRates.getNotices("api", rollup(1000, 0, 0, now), now).isEmpty());
+    }
+
+    @Test
+    public void showsFastBurnOverLongAndShortWindow()
+    {
+        long now = record(0, 3600, 100, 2, 0);
+
+        List<VizceralNotice> notices = burnRates.getNotices("api", rollup(100, 2, 0, now), now);
+
+        assertEquals(1, notices.size());
+        assertEquals(NoticeSeverity.ERROR, notices.get(0).getSeverity());
+        assertTrue(notices.get(0).getTitle(), notices.get(0).getTitle().startsWith("Error budget burning 20x"));
+    }
+
+    @Test
+    public void noNoticeWhenShortWindowRecovered()
+    {
+        long now = record(0, 1800, 100, 3, 0);
+        now = record(now, 1800, 100, 0, 0);
+
+        assertTrue(burnRates.getNotices("api", rollup(100, 0, 0, now), now).isEmpty());
+    }
+
+    @Test
+    public void showsSlowBurnOverSixHours()
+    {
+        long now = record(0, 21600, 100, 0, 1);
+
+        List<VizceralNotice> notices = burnRates.getNotices("api", rollup(100, 0, 1, now), now);
+
+        assertEquals(1, notices.size());
+        assertEquals(NoticeSeverity.WARNING, notices.get(0).getSeverity());
+        assertTrue(notices.get(0).getTitle(), notices.get(0).getTitle().startsWith("Timeout budget burning 10x"));
+    }
+
+    @Test
+    public void slidesOldBucketsOut()
+    {
+        long now = record(0, 600, 100, 50, 0);
+        now = record(now, 3600, 100, 0, 0);
+
+        JsonNode windows = burnRates.toJson("api", now).get("connections").get(0).get("windows");
+
+        assertEquals(3600, windows.get(3).get("seconds").asInt());
+        assertEquals(0, windows.get(3).get("errorRatio").asDouble(), 0);
+        assertEquals(0.071, windows.get(4).get("errorRatio").asDouble(), 0.001);
+    }
+
+    @Test
+    public void skipsIdleTime()
+    {
+        long now = record(0, 600, 100, 50, 0);
+        now += 86400000;
+        now = record(now, 60, 100, 0, 0);
+
+        JsonNode windows = burnRates.toJson("api", now).get("connections").get(0).get("windows");
+
+        assertEquals(0, windows.get(4).get("errorRatio").asDouble(), 0);
+        assertEquals(6000, windows.get(4).get("requests").asLong());
+    }
+
+    @Test
+    public void samplesAtMostOncePerSecond()
+    {
+        for (int i = 0; i < 100; i++)
+        {
+            burnRates.record("api", rollup(100, 0, 0, 0), 0);
+        }
+
+        JsonNode windows = burnRates.toJson(null, 500).get("connections").get(0).get("windows");
+
+        assertEquals(100, windows.get(0).get("requests").asLong());
+    }
+
+    @Test
+    public void forgetsConnectionsOfCluster()
+    {
+        long now = record(0, 3600, 100, 2, 0);
+
+        burnRates.forget("api");
+
+        assertEquals(0, burnRates.size());
+        assertTrue(burnRates.getNotices("api", rollup(100, 2, 0, now), now).isEmpty());
+        assertEquals(0, burnRates.toJson(null, now).get("connections").size());
+    }
+
+    @Test
+    public void forgetsConnectionWhoseRollupIsDropped()
+    {
+        long now = record(0, 3600, 100, 2, 0);
+        ConnectionRollup dropped = cluster.getCurrentRollup("users");
+
+        burnRates.forget("api", dropped);
+        burnRates.record("api", new ConnectionRollup("cache"), now);
+
+        assertEquals(1, burnRates.size());
+        assertTrue(burnRates.getNotices("api", dropped, now).isEmpty());
+        JsonNode connection = burnRates.toJson(null, now).get("connections").get(0);
+        assertEquals("cache", connection.get("target").asText());
+        //The slot of the dropped connection is reused, without its counts
+        assertEquals(0, connection.get("windows").get(0).get("requests").asLong());
+    }
+
+    @Test(expected = ConfigurationException.class)
+    public void rejectsWindowsLongerThanRings()
+    {
+        SloConfiguration.newBuilder().windowsSeconds(Collections.singletonList(86400)).build();
+    }
+
+    private long record(long from, int seconds, int total, int errors, int timeouts)
+    {
+        long now = from;
+        for (int i = 0; i < seconds; i++, now += 1000)
+        {
+            burnRates.record("api", rollup(total, errors, timeouts, now), now);
+        }
+        return now;
+    }
+
+    private ConnectionRollup rollup(int total, int errors, int timeouts, long created)
+    {
+        cluster.applyEvent(HystrixEvent.newBuilder()
+                .name("getUser")
+                .group("users")
+                .totalRequestCount(total)
+                .requestCount(total - errors - timeouts)
+                .errorCount(errors)
+                .timeoutCount(timeouts)
+                .created(created)
+                .build());
+        return cluster.getCurrentRollup("users");
+    }
+}